@@ -0,0 +1,23 @@
+package jayslabs.kafka.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+Entry point of benchmarks.jar: the JMH command line, with the gc profiler always on,
+so every run reports gc.alloc.rate.norm (bytes allocated per operation) next to the score.
+    java -jar choreo-benchmarks/target/benchmarks.jar                       all benchmarks
+    java -jar choreo-benchmarks/target/benchmarks.jar MessageConverter -f 2 one class, JMH options as usual
+*/
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        var options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,40 @@
+package jayslabs.kafka.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+
+/*
+Subscribes a benchmark's Mono and hands its signals to the Blackhole.
+Reused across invocations (the benchmarked publishers complete synchronously),
+so the score does not include a subscriber allocation that block() or
+subscribe(Consumer) would add.
+*/
+final class BlackholeSubscriber implements CoreSubscriber<Object> {
+
+    private final Blackhole blackhole;
+
+    BlackholeSubscriber(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Object value) {
+        this.blackhole.consume(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        this.blackhole.consume(t);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+}
@@ -0,0 +1,77 @@
+package jayslabs.kafka.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.util.DuplicateEventValidator;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+DuplicateEventValidator.validate composition, as the handlers build it per event
+(database lookups replaced by completed Monos, so the score is the operator chain):
+  newEvent           db check says new, processing Mono subscribed
+  duplicateEvent     db check says duplicate; error swallowed by the handler (onErrorResume)
+  cachedDuplicate    ProcessedEventCache in front: bloom + LRU answer, db check skipped;
+                     markProcessed runs outside a transaction (NoTransactionException path)
+    java -jar choreo-benchmarks/target/benchmarks.jar DuplicateValidatorBenchmark
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuplicateValidatorBenchmark {
+
+    private final Mono<Boolean> isNew = Mono.just(false);
+    private final Mono<Boolean> isDuplicate = Mono.just(true);
+    private final Mono<String> processing = Mono.just("processed");
+
+    private UUID processedOrderId;
+    private ProcessedEventCache cache;
+    private BlackholeSubscriber subscriber;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole){
+        this.processedOrderId = UUID.randomUUID();
+        this.cache = new ProcessedEventCache("benchmark", 100_000, 0.01, 1_000);
+        this.cache.rebuild(Flux.just(this.processedOrderId)).block();
+        this.subscriber = new BlackholeSubscriber(blackhole);
+    }
+
+    @Benchmark
+    public void newEvent(){
+        DuplicateEventValidator.validate(this.isNew, this.processing)
+            .subscribe(this.subscriber);
+    }
+
+    @Benchmark
+    public void duplicateEvent(){
+        DuplicateEventValidator.validate(this.isDuplicate, this.processing)
+            .onErrorResume(EventAlreadyProcessedException.class, ex -> Mono.empty())
+            .subscribe(this.subscriber);
+    }
+
+    @Benchmark
+    public void cachedDuplicate(){
+        DuplicateEventValidator.validate(this.processedOrderId, this.cache, this.isNew, this.processing)
+            .onErrorResume(EventAlreadyProcessedException.class, ex -> Mono.empty())
+            .subscribe(this.subscriber);
+    }
+}
@@ -0,0 +1,132 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.common.processor.PaymentEventProcessor;
+import reactor.core.publisher.Mono;
+
+/*
+Pattern-matching dispatch of the sealed event hierarchies:
+OrderEventProcessor.process (payment/inventory/shipping services) and
+PaymentEventProcessor.process (order-service). Handlers return a pre-built
+Mono, so the score is the switch plus the subscription of the returned Mono.
+  orderCreated / paymentDeducted   one subtype only (monomorphic call site)
+  orderMix / paymentMix            every subtype in turn, per event
+    java -jar choreo-benchmarks/target/benchmarks.jar EventDispatchBenchmark
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    private OrderEventProcessor<PaymentEvent> orderProcessor;
+    private PaymentEventProcessor<OrderEvent> paymentProcessor;
+
+    private OrderEvent[] orderEvents;
+    private PaymentEvent[] paymentEvents;
+    private BlackholeSubscriber subscriber;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole){
+        var orderId = UUID.randomUUID();
+        var now = Instant.now();
+        this.orderEvents = new OrderEvent[]{
+            new OrderEvent.OrderCreated(orderId, 1, 2, 3, 10, 30, now),
+            new OrderEvent.OrderCancelled(orderId, now),
+            new OrderEvent.OrderCompleted(orderId, now)
+        };
+        this.paymentEvents = new PaymentEvent[]{
+            new PaymentEvent.PaymentDeducted(orderId, UUID.randomUUID(), 2, 30, now),
+            new PaymentEvent.PaymentRefunded(orderId, UUID.randomUUID(), 2, 30, now),
+            new PaymentEvent.PaymentFailed(orderId, 2, 30, "Insufficient balance", now)
+        };
+        this.orderProcessor = new StubOrderEventProcessor(Mono.just(this.paymentEvents[0]));
+        this.paymentProcessor = new StubPaymentEventProcessor(Mono.just(this.orderEvents[2]));
+        this.subscriber = new BlackholeSubscriber(blackhole);
+    }
+
+    @Benchmark
+    public void orderCreated(){
+        this.orderProcessor.process(this.orderEvents[0]).subscribe(this.subscriber);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public void orderMix(){
+        for (var event : this.orderEvents){
+            this.orderProcessor.process(event).subscribe(this.subscriber);
+        }
+    }
+
+    @Benchmark
+    public void paymentDeducted(){
+        this.paymentProcessor.process(this.paymentEvents[0]).subscribe(this.subscriber);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public void paymentMix(){
+        for (var event : this.paymentEvents){
+            this.paymentProcessor.process(event).subscribe(this.subscriber);
+        }
+    }
+
+    //pre-built replies keep the handlers allocation free: the benchmark measures the dispatch
+    private record StubOrderEventProcessor(Mono<PaymentEvent> reply) implements OrderEventProcessor<PaymentEvent> {
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCreated e) {
+            return this.reply;
+        }
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCancelled e) {
+            return this.reply;
+        }
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCompleted e) {
+            return this.reply;
+        }
+    }
+
+    private record StubPaymentEventProcessor(Mono<OrderEvent> reply) implements PaymentEventProcessor<OrderEvent> {
+
+        @Override
+        public Mono<OrderEvent> handle(PaymentEvent.PaymentDeducted e) {
+            return this.reply;
+        }
+
+        @Override
+        public Mono<OrderEvent> handle(PaymentEvent.PaymentRefunded e) {
+            return this.reply;
+        }
+
+        @Override
+        public Mono<OrderEvent> handle(PaymentEvent.PaymentFailed e) {
+            return this.reply;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import jayslabs.kafka.payment.application.mapper.EntityDTOMapper;
+import jayslabs.kafka.payment.common.dto.PaymentDTO;
+import jayslabs.kafka.payment.messaging.mapper.EventDTOMapper;
+
+/*
+Entity / DTO / event mapping of one payment, in the order OrderEventProcessorImpl runs it:
+  OrderCreated -> PaymentProcessRequest -> CustomerPayment (entity) -> PaymentDTO -> PaymentDeducted
+Each step alone, and the whole chain per event (fullChain).
+    java -jar choreo-benchmarks/target/benchmarks.jar EventMapperBenchmark
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventMapperBenchmark {
+
+    private OrderEvent.OrderCreated orderCreated;
+    private CustomerPayment payment;
+    private PaymentDTO paymentDTO;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        this.orderCreated = new OrderEvent.OrderCreated(UUID.randomUUID(), 1, 2, 3, 10, 30, Instant.now());
+        this.payment = EntityDTOMapper.toCustomerPayment(EventDTOMapper.toPaymentProcessRequest(this.orderCreated));
+        this.payment.setPaymentId(UUID.randomUUID()); //assigned by the insert
+        this.payment.setStatus(PaymentStatus.DEDUCTED);
+        this.paymentDTO = EntityDTOMapper.toPaymentDTO(this.payment);
+    }
+
+    @Benchmark
+    public Object toPaymentProcessRequest(){
+        return EventDTOMapper.toPaymentProcessRequest(this.orderCreated);
+    }
+
+    @Benchmark
+    public CustomerPayment toCustomerPayment(){
+        return EntityDTOMapper.toCustomerPayment(EventDTOMapper.toPaymentProcessRequest(this.orderCreated));
+    }
+
+    @Benchmark
+    public PaymentDTO toPaymentDTO(){
+        return EntityDTOMapper.toPaymentDTO(this.payment);
+    }
+
+    @Benchmark
+    public PaymentEvent toPaymentDeductedEvent(){
+        return EventDTOMapper.toPaymentDeductedEvent(this.paymentDTO);
+    }
+
+    @Benchmark
+    public PaymentEvent fullChain(){
+        var entity = EntityDTOMapper.toCustomerPayment(EventDTOMapper.toPaymentProcessRequest(this.orderCreated));
+        entity.setPaymentId(this.payment.getPaymentId());
+        entity.setStatus(PaymentStatus.DEDUCTED);
+        return EventDTOMapper.toPaymentDeductedEvent(EntityDTOMapper.toPaymentDTO(entity));
+    }
+}
@@ -0,0 +1,167 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.shipping.ShippingEvent;
+import jayslabs.kafka.common.serde.EventBinaryDeserializer;
+import jayslabs.kafka.common.serde.EventBinarySerializer;
+import jayslabs.kafka.common.serde.EventJsonDeserializer;
+import jayslabs.kafka.common.serde.EventJsonSerializer;
+
+/*
+Event serde per subtype:
+  json*       spring-kafka JsonSerializer/JsonDeserializer (__TypeId__ class name header)
+  shortIdJson* EventJsonSerializer/EventJsonDeserializer (pre-built readers/writers, short id header)
+  binary*     EventBinarySerializer/EventBinaryDeserializer
+
+Run with the gc profiler for allocations per operation (gc.alloc.rate.norm):
+    java -jar choreo-benchmarks/target/benchmarks.jar EventSerdeBenchmark -prof gc
+
+Payload sizes are printed once per trial (they do not depend on timing).
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSerdeBenchmark {
+
+    private static final String TOPIC = "order-events";
+
+    //every record of the sealed event hierarchies
+    @Param({"OrderCreated", "OrderCancelled", "OrderCompleted",
+            "PaymentDeducted", "PaymentRefunded", "PaymentFailed",
+            "InventoryDeducted", "InventoryRestored", "InventoryFailed",
+            "ShippingScheduled"})
+    private String eventType;
+
+    private DomainEvent event;
+
+    private JsonSerializer<DomainEvent> jsonSerializer;
+    private JsonDeserializer<Object> jsonDeserializer;
+    private EventBinarySerializer binarySerializer;
+    private EventBinaryDeserializer binaryDeserializer;
+    private EventJsonSerializer shortIdJsonSerializer;
+    private EventJsonDeserializer shortIdJsonDeserializer;
+
+    private byte[] jsonPayload;
+    private RecordHeaders jsonHeaders;
+    private byte[] binaryPayload;
+    private byte[] shortIdJsonPayload;
+    private RecordHeaders shortIdJsonHeaders;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        this.event = event(this.eventType);
+
+        this.jsonSerializer = new JsonSerializer<>();
+        this.jsonDeserializer = new JsonDeserializer<>();
+        //headers are reused across invocations, so the __TypeId__ header must stay on them
+        this.jsonDeserializer.configure(Map.of(
+            JsonDeserializer.TRUSTED_PACKAGES, "jayslabs.kafka.common.events.*",
+            JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+        this.binarySerializer = new EventBinarySerializer();
+        this.binaryDeserializer = new EventBinaryDeserializer();
+        this.shortIdJsonSerializer = new EventJsonSerializer();
+        this.shortIdJsonDeserializer = new EventJsonDeserializer();
+
+        this.jsonHeaders = new RecordHeaders();
+        this.jsonPayload = this.jsonSerializer.serialize(TOPIC, this.jsonHeaders, this.event);
+        this.binaryPayload = this.binarySerializer.serialize(TOPIC, this.event);
+        this.shortIdJsonHeaders = new RecordHeaders();
+        this.shortIdJsonPayload = this.shortIdJsonSerializer.serialize(TOPIC, this.shortIdJsonHeaders, this.event);
+
+        System.out.printf("%n%s payload: json=%d bytes (+%d header bytes), shortIdJson=%d bytes (+%d header bytes), binary=%d bytes%n",
+            this.eventType, this.jsonPayload.length, headerBytes(this.jsonHeaders),
+            this.shortIdJsonPayload.length, headerBytes(this.shortIdJsonHeaders), this.binaryPayload.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.jsonSerializer.close();
+        this.jsonDeserializer.close();
+        this.shortIdJsonDeserializer.close();
+    }
+
+    @Benchmark
+    public byte[] jsonEncode(){
+        //a fresh headers instance per record, as the producer does
+        return this.jsonSerializer.serialize(TOPIC, new RecordHeaders(), this.event);
+    }
+
+    @Benchmark
+    public Object jsonDecode(){
+        return this.jsonDeserializer.deserialize(TOPIC, this.jsonHeaders, this.jsonPayload);
+    }
+
+    @Benchmark
+    public byte[] shortIdJsonEncode(){
+        return this.shortIdJsonSerializer.serialize(TOPIC, new RecordHeaders(), this.event);
+    }
+
+    @Benchmark
+    public Object shortIdJsonDecode(){
+        return this.shortIdJsonDeserializer.deserialize(TOPIC, this.shortIdJsonHeaders, this.shortIdJsonPayload);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode(){
+        return this.binarySerializer.serialize(TOPIC, this.event);
+    }
+
+    @Benchmark
+    public Object binaryDecode(){
+        return this.binaryDeserializer.deserialize(TOPIC, this.binaryPayload);
+    }
+
+    private static int headerBytes(RecordHeaders headers){
+        var size = 0;
+        for (var header : headers){
+            size += header.key().length() + header.value().length;
+        }
+        return size;
+    }
+
+    private static DomainEvent event(String type){
+        var orderId = UUID.randomUUID();
+        var now = Instant.now();
+        return switch (type) {
+            case "OrderCreated" -> new OrderEvent.OrderCreated(orderId, 1, 2, 3, 10, 30, now);
+            case "OrderCancelled" -> new OrderEvent.OrderCancelled(orderId, now);
+            case "OrderCompleted" -> new OrderEvent.OrderCompleted(orderId, now);
+            case "PaymentDeducted" -> new PaymentEvent.PaymentDeducted(orderId, UUID.randomUUID(), 2, 30, now);
+            case "PaymentRefunded" -> new PaymentEvent.PaymentRefunded(orderId, UUID.randomUUID(), 2, 30, now);
+            case "PaymentFailed" -> new PaymentEvent.PaymentFailed(orderId, 2, 30, "Insufficient balance", now);
+            case "InventoryDeducted" -> new InventoryEvent.InventoryDeducted(orderId, UUID.randomUUID(), 1, 3, now);
+            case "InventoryRestored" -> new InventoryEvent.InventoryRestored(orderId, UUID.randomUUID(), 1, 3, now);
+            case "InventoryFailed" -> new InventoryEvent.InventoryFailed(orderId, 1, 11, "Out of stock", now);
+            case "ShippingScheduled" -> new ShippingEvent.ShippingScheduled(orderId, UUID.randomUUID(), now.plusSeconds(604800), now);
+            default -> throw new IllegalArgumentException(type);
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.serde.EventJsonDeserializer;
+import jayslabs.kafka.common.serde.EventJsonSerializer;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.ExactlyOnceProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+
+/*
+Read-process-write throughput against an embedded single-node KRaft broker:
+  exactlyOnce=false  receive -> process -> send, offset acknowledged per record
+                     (what the function binding does)
+  exactlyOnce=true   ExactlyOnceProcessor: one kafka transaction per polled batch
+
+Each invocation drains the same pre-filled order-events topic with a fresh
+consumer group; the processing step is a plain OrderCreated -> PaymentDeducted
+mapping, so the score is the messaging overhead only (no database).
+Score is ms per drain; throughput = records / score.
+    java -jar choreo-benchmarks/target/benchmarks.jar ExactlyOnceBenchmark
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExactlyOnceBenchmark {
+
+    private static final String INPUT = "order-events";
+    private static final String OUTPUT = "payment-events";
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+
+    @Param({"false", "true"})
+    private boolean exactlyOnce;
+
+    @Param({"20000"})
+    private int records;
+
+    private EmbeddedKafkaKraftBroker broker;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        this.broker = new EmbeddedKafkaKraftBroker(1, 1, INPUT, OUTPUT);
+        this.broker.afterPropertiesSet();
+
+        var sender = KafkaSender.create(SenderOptions.<String, OrderEvent>create(this.producerProps()));
+        sender.send(Flux.range(0, this.records)
+            .map(i -> orderCreated())
+            .map(evt -> SenderRecord.create(new ProducerRecord<>(INPUT, evt.orderId().toString(), evt), (Void) null)))
+            .then()
+            .block();
+        sender.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.broker.destroy();
+    }
+
+    @Benchmark
+    public long drain() throws InterruptedException{
+        return this.exactlyOnce ? this.drainExactlyOnce() : this.drainAtLeastOnce();
+    }
+
+    private long drainAtLeastOnce(){
+        var receiver = KafkaReceiver.create(this.receiverOptions());
+        var sender = KafkaSender.create(SenderOptions.<String, PaymentEvent>create(this.producerProps()));
+        try {
+            return receiver.receive()
+                .map(rec -> new CustomRecord<>(rec.key(), rec.value(), rec.receiverOffset()))
+                .transform(pipeline())
+                .map(evt -> SenderRecord.create(new ProducerRecord<>(OUTPUT, evt.orderId().toString(), evt), (Void) null))
+                .as(sender::send)
+                .take(this.records)
+                .count()
+                .block(DRAIN_TIMEOUT);
+        } finally {
+            sender.close();
+        }
+    }
+
+    private long drainExactlyOnce() throws InterruptedException{
+        var props = this.producerProps();
+        props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "eos-bench-" + UUID.randomUUID());
+        var processor = new ExactlyOnceProcessor<OrderEvent, PaymentEvent>("bench", this.receiverOptions(),
+            SenderOptions.create(props), OUTPUT, pipeline());
+        processor.start();
+        try {
+            var deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+            while (processor.committed() < this.records && System.nanoTime() < deadline){
+                Thread.sleep(1);
+            }
+            return processor.committed();
+        } finally {
+            processor.stop();
+        }
+    }
+
+    //acknowledge per record, as the services' perRecord() does (a no-op in exactly-once mode)
+    private static Function<Flux<CustomRecord<OrderEvent>>, Flux<PaymentEvent>> pipeline(){
+        return flux -> flux.concatMap(cr -> Mono.fromSupplier(() -> paymentDeducted((OrderEvent.OrderCreated) cr.message()))
+            .doOnSuccess(evt -> cr.acknowledgement().acknowledge()));
+    }
+
+    private ReceiverOptions<String, OrderEvent> receiverOptions(){
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.broker.getBrokersAsString());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "bench-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EventJsonDeserializer.class);
+        return ReceiverOptions.<String, OrderEvent>create(props).subscription(List.of(INPUT));
+    }
+
+    private Map<String, Object> producerProps(){
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, this.broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, EventJsonSerializer.class);
+        return props;
+    }
+
+    private static OrderEvent orderCreated(){
+        return new OrderEvent.OrderCreated(UUID.randomUUID(), 1, 2, 3, 10, 30, Instant.now());
+    }
+
+    private static PaymentEvent paymentDeducted(OrderEvent.OrderCreated evt){
+        return new PaymentEvent.PaymentDeducted(evt.orderId(), UUID.randomUUID(), evt.customerId(), evt.totalAmount(), Instant.now());
+    }
+}
@@ -0,0 +1,127 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.TraceContext;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.MessageConverter;
+import jayslabs.kafka.common.util.OffsetTracker;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverOffset;
+
+/*
+MessageConverter.toRecord, the first step of every binding:
+  plain     headers -> CustomRecord
+  tracked   + OffsetTracker watermark (what the services run), record acknowledged right away
+  traced    + traceparent header restored into a hop span, and the hop's send() for the output
+
+Each invocation consumes the next offset of one partition, as the binder would.
+    java -jar choreo-benchmarks/target/benchmarks.jar MessageConverterBenchmark
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageConverterBenchmark {
+
+    private final CountingOffset offset = new CountingOffset(new TopicPartition("order-events", 0));
+
+    private UUID orderId;
+    private Message<OrderEvent> message;
+    private Message<OrderEvent> tracedMessage;
+    private OffsetTracker tracker;
+    private SagaTracer.Hop hop;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        this.orderId = UUID.randomUUID();
+        var event = new OrderEvent.OrderCreated(this.orderId, 1, 2, 3, 10, 30, Instant.now());
+        var trace = new TraceContext(this.orderId.getMostSignificantBits(), this.orderId.getLeastSignificantBits(), 42);
+        this.message = MessageBuilder.withPayload((OrderEvent) event)
+            .setHeader(KafkaHeaders.RECEIVED_KEY, this.orderId.toString())
+            .setHeader(KafkaHeaders.ACKNOWLEDGMENT, this.offset)
+            .build();
+        this.tracedMessage = MessageBuilder.fromMessage(this.message)
+            .setHeader(TraceContext.HEADER, trace.toTraceparent())
+            .build();
+        this.tracker = new OffsetTracker("processor");
+        this.hop = new SagaTracer("benchmark", 1.0, span -> {}).hop("processor");
+    }
+
+    @Benchmark
+    public CustomRecord<OrderEvent> plain(){
+        return MessageConverter.toRecord(this.message);
+    }
+
+    @Benchmark
+    public CustomRecord<OrderEvent> tracked(){
+        this.offset.next();
+        var cr = MessageConverter.toRecord(this.message, this.tracker);
+        cr.acknowledgement().acknowledge();
+        return cr;
+    }
+
+    @Benchmark
+    public TraceContext traced(){
+        this.offset.next();
+        var cr = MessageConverter.toRecord(this.tracedMessage, this.tracker, this.hop);
+        cr.acknowledgement().acknowledge();
+        return this.hop.send(this.orderId);
+    }
+
+    //the binder's offset of the record being converted; acknowledging it is free
+    private static final class CountingOffset implements ReceiverOffset {
+
+        private final TopicPartition partition;
+        private long offset;
+
+        CountingOffset(TopicPartition partition) {
+            this.partition = partition;
+        }
+
+        void next(){
+            this.offset++;
+        }
+
+        @Override
+        public TopicPartition topicPartition() {
+            return this.partition;
+        }
+
+        @Override
+        public long offset() {
+            return this.offset;
+        }
+
+        @Override
+        public void acknowledge() {
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            return Mono.empty();
+        }
+    }
+}
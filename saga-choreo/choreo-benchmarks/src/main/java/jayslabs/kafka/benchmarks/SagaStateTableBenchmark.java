@@ -0,0 +1,118 @@
+package jayslabs.kafka.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jayslabs.kafka.common.util.SagaStateTable;
+
+/*
+Memory per in-flight saga in order-service's in-memory saga state (saga.state.mode=in-memory):
+`sagas` orderIds with a state byte each, then one update per saga (the decision path).
+  table    SagaStateTable: two longs + one byte per slot, no per-entry objects
+  hashmap  ConcurrentHashMap<UUID, Byte>: the boxed equivalent (node + UUID key per entry)
+
+Besides the time per fill, reported as secondary results (per invocation):
+  retainedBytesPerSaga   heap used after the fill - before, both after a full gc,
+                         divided by sagas; the baseline is dropped before measuring
+  footprintBytesPerSaga  table only: exact bytes of its slot arrays / sagas
+Run with a heap large enough for the hashmap variant, e.g.
+    java -Xmx2g -jar choreo-benchmarks/target/benchmarks.jar SagaStateTableBenchmark
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SagaStateTableBenchmark {
+
+    private static final byte IN_FLIGHT = 1 << 6;
+
+    @Param({"table", "hashmap"})
+    private String impl;
+
+    @Param({"1000000"})
+    private int sagas;
+
+    private long[] msbs;
+    private long[] lsbs;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        var random = ThreadLocalRandom.current();
+        this.msbs = new long[this.sagas];
+        this.lsbs = new long[this.sagas];
+        for (int i = 0; i < this.sagas; i++){
+            //version 4 layout, as UUID.randomUUID()
+            this.msbs[i] = (random.nextLong() & ~0xF000L) | 0x4000L;
+            this.lsbs[i] = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        }
+    }
+
+    @Benchmark
+    public Object fill(Memory memory){
+        var before = usedHeap();
+        Object held;
+        if ("table".equals(this.impl)){
+            var table = new SagaStateTable(16, 0, Integer.MAX_VALUE);
+            for (int i = 0; i < this.sagas; i++){
+                table.putIfAbsent(new UUID(this.msbs[i], this.lsbs[i]), IN_FLIGHT);
+            }
+            for (int i = 0; i < this.sagas; i++){
+                table.update(new UUID(this.msbs[i], this.lsbs[i]), state -> state | 1);
+            }
+            memory.footprintBytesPerSaga = (double) table.footprint() / this.sagas;
+            held = table;
+        } else {
+            Map<UUID, Byte> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < this.sagas; i++){
+                map.putIfAbsent(new UUID(this.msbs[i], this.lsbs[i]), IN_FLIGHT);
+            }
+            for (int i = 0; i < this.sagas; i++){
+                map.computeIfPresent(new UUID(this.msbs[i], this.lsbs[i]), (id, state) -> (byte) (state | 1));
+            }
+            held = map;
+        }
+        memory.retainedBytesPerSaga = (double) (usedHeap() - before) / this.sagas;
+        return held;
+    }
+
+    private static long usedHeap(){
+        for (int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+
+        public double retainedBytesPerSaga;
+        public double footprintBytesPerSaga;
+
+        @Setup(Level.Invocation)
+        public void reset(){
+            this.retainedBytesPerSaga = 0;
+            this.footprintBytesPerSaga = 0;
+        }
+    }
+}
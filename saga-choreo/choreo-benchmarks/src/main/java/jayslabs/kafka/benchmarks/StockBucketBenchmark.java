@@ -0,0 +1,132 @@
+package jayslabs.kafka.benchmarks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import jayslabs.kafka.inventory.application.service.BucketedStockServiceImpl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+Deductions of one hot product against an in-memory H2 database (pooled R2DBC):
+each order is one transaction doing the stock deduction and the order_inventory
+insert, as InventoryServiceImpl.processInventory() does, with `concurrency`
+transactions in flight.
+  buckets=1   every transaction updates the single product row
+  buckets=K   the stock is split over K product_stock_bucket rows
+              (BucketedStockServiceImpl), so up to K transactions hold
+              different row locks
+
+Stock is refilled to exactly `orders` before each invocation, so the last
+deductions also go through fallback / consolidation.
+Score is ms per drain; throughput = orders / score.
+    java -jar choreo-benchmarks/target/benchmarks.jar StockBucketBenchmark
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StockBucketBenchmark {
+
+    private static final int PRODUCT = 1;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+    private static final String SCHEMA = """
+        CREATE TABLE product (id int AUTO_INCREMENT primary key, description VARCHAR(50), available_quantity int);
+        CREATE TABLE order_inventory (inventory_id uuid default random_uuid() primary key, order_id uuid unique,
+            product_id int, status VARCHAR(50), quantity int, foreign key (product_id) references product(id));
+        CREATE TABLE product_stock_bucket (product_id int, bucket int, quantity int,
+            primary key (product_id, bucket), foreign key (product_id) references product(id));
+        INSERT INTO product(description, available_quantity) VALUES ('hot', 0);""";
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int buckets;
+
+    @Param({"32"})
+    private int concurrency;
+
+    @Param({"5000"})
+    private int orders;
+
+    private ConnectionFactory connections;
+    private DatabaseClient client;
+    private BucketedStockServiceImpl stock;
+    private TransactionalOperator tx;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        this.connections = ConnectionFactories.get("r2dbc:pool:h2:mem:///stock-bucket-" + this.buckets
+            + "?options=DB_CLOSE_DELAY=-1&maxSize=" + this.concurrency);
+        this.client = DatabaseClient.create(this.connections);
+        this.tx = TransactionalOperator.create(new R2dbcTransactionManager(this.connections));
+        for (var statement : SCHEMA.split(";")){
+            if (!statement.isBlank()){
+                this.client.sql(statement).then().block();
+            }
+        }
+        //never started: refill() splits, no rebalancing during a drain
+        this.stock = new BucketedStockServiceImpl(this.client, this.tx, 1, Map.of(PRODUCT, this.buckets), Duration.ofHours(1));
+    }
+
+    //full stock for every order, spread over the buckets again
+    @Setup(Level.Invocation)
+    public void refill(){
+        this.client.sql("DELETE FROM order_inventory").then().block();
+        this.client.sql("DELETE FROM product_stock_bucket").then().block();
+        this.client.sql("UPDATE product SET available_quantity = :quantity WHERE id = :id")
+            .bind("quantity", this.orders)
+            .bind("id", PRODUCT)
+            .then()
+            .block();
+        this.stock.split().block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.client.sql("SHUTDOWN").then().onErrorResume(ex -> Mono.empty()).block();
+    }
+
+    @Benchmark
+    public long drain(){
+        return Flux.range(0, this.orders)
+            .flatMap(i -> this.tx.transactional(this.order())
+                .subscribeOn(Schedulers.parallel()), this.concurrency)
+            .filter(Boolean::booleanValue)
+            .count()
+            .block(DRAIN_TIMEOUT);
+    }
+
+    private Mono<Boolean> order(){
+        return this.stock.deduct(PRODUCT, 1)
+            .filter(Boolean::booleanValue)
+            .flatMap(ok -> this.client.sql("INSERT INTO order_inventory(order_id, product_id, status, quantity) VALUES (:orderId, :id, 'DEDUCTED', 1)")
+                .bind("orderId", UUID.randomUUID())
+                .bind("id", PRODUCT)
+                .then()
+                .thenReturn(ok))
+            .defaultIfEmpty(false);
+    }
+}
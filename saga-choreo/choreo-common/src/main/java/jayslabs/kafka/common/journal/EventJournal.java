@@ -0,0 +1,65 @@
+package jayslabs.kafka.common.journal;
+
+import java.nio.file.Path;
+
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.util.unit.DataSize;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+/*
+  Records the events a service consumes, for replay without a broker
+  (JournalReader, JournalReplayer).
+
+  saga.journal.enabled       off by default; NONE is a no-op
+  saga.journal.directory     segment files, default journal/<application>
+  saga.journal.segment-size  size of each memory-mapped segment, default 64MB
+*/
+public interface EventJournal extends AutoCloseable {
+
+    EventJournal NONE = new EventJournal() {
+
+        @Override
+        public void append(String topic, int partition, long offset, long timestamp, DomainEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    void append(String topic, int partition, long offset, long timestamp, DomainEvent event);
+
+    //a consumed message, position taken from the kafka headers the binder sets
+    default void record(Message<?> message){
+        if (!(message.getPayload() instanceof DomainEvent event)){
+            return;
+        }
+        var headers = message.getHeaders();
+        var topic = headers.get(KafkaHeaders.RECEIVED_TOPIC, String.class);
+        var partition = headers.get(KafkaHeaders.RECEIVED_PARTITION, Integer.class);
+        var offset = headers.get(KafkaHeaders.OFFSET, Long.class);
+        var timestamp = headers.get(KafkaHeaders.RECEIVED_TIMESTAMP, Long.class);
+        this.append(topic != null ? topic : "",
+            partition != null ? partition : -1,
+            offset != null ? offset : -1,
+            timestamp != null ? timestamp : System.currentTimeMillis(),
+            event);
+    }
+
+    @Override
+    void close();
+
+    static EventJournal fromEnvironment(Environment env){
+        if (!env.getProperty("saga.journal.enabled", Boolean.class, false)){
+            return NONE;
+        }
+        var service = env.getProperty("spring.application.name",
+            env.getProperty("management.metrics.tags.application", "saga"));
+        var directory = env.getProperty("saga.journal.directory", "journal/" + service);
+        var segmentSize = env.getProperty("saga.journal.segment-size", DataSize.class, DataSize.ofMegabytes(64));
+        return new MappedEventJournal(Path.of(directory), Math.toIntExact(segmentSize.toBytes()));
+    }
+}
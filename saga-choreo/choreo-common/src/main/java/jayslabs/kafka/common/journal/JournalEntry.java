@@ -0,0 +1,12 @@
+package jayslabs.kafka.common.journal;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+//one consumed record: where it was read from (-1 when not consumed from kafka) and the event
+public record JournalEntry(
+    String topic,
+    int partition,
+    long offset,
+    long timestamp, //record timestamp, epoch millis
+    DomainEvent event) {
+}
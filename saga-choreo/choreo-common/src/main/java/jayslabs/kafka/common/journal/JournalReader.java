@@ -0,0 +1,84 @@
+package jayslabs.kafka.common.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import jayslabs.kafka.common.serde.EventBinaryCodec;
+import reactor.core.publisher.Flux;
+
+/*
+  Reads a journal written by MappedEventJournal, segment by segment in write
+  order. Each segment is mapped read-only and decoded lazily as the flux is
+  consumed; a segment that is still being written is read up to its last
+  complete record.
+*/
+public final class JournalReader {
+
+    private JournalReader() {
+    }
+
+    public static Flux<JournalEntry> read(Path directory){
+        return Flux.defer(() -> Flux.fromIterable(segments(directory)))
+            .concatMap(JournalReader::read0);
+    }
+
+    //segment files of the journal, in write order
+    static List<Path> segments(Path directory){
+        if (!Files.isDirectory(directory)){
+            return List.of();
+        }
+        try (var files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(MappedEventJournal.SUFFIX))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't list journal " + directory, e);
+        }
+    }
+
+    private static Flux<JournalEntry> read0(Path segment){
+        return Flux.generate(() -> map(segment), (buffer, sink) -> {
+            var entry = next(buffer);
+            if (entry == null){
+                sink.complete();
+            } else {
+                sink.next(entry);
+            }
+            return buffer;
+        });
+    }
+
+    private static ByteBuffer map(Path segment){
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read journal segment " + segment, e);
+        }
+    }
+
+    //null at the end of the written part
+    private static JournalEntry next(ByteBuffer buffer){
+        if (buffer.remaining() < MappedEventJournal.RECORD_HEADER_BYTES){
+            return null;
+        }
+        var length = buffer.getInt();
+        if (length <= 0){
+            return null;
+        }
+        var offset = buffer.getLong();
+        var timestamp = buffer.getLong();
+        var partition = buffer.getInt();
+        var topic = new byte[buffer.getShort()];
+        buffer.get(topic);
+        var payload = new byte[length - (MappedEventJournal.RECORD_HEADER_BYTES - Integer.BYTES) - topic.length];
+        buffer.get(payload);
+        return new JournalEntry(new String(topic, StandardCharsets.UTF_8), partition, offset, timestamp, EventBinaryCodec.decode(payload));
+    }
+}
@@ -0,0 +1,154 @@
+package jayslabs.kafka.common.journal;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.OrderSaga;
+import jayslabs.kafka.common.processor.EventProcessor;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.KeyOrderedExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+  Feeds a recorded journal back through a service's EventProcessors, without
+  a broker:
+
+    JournalReplayer.of(Path.of("journal/customer-payment"))
+        .route(OrderEvent.class, orderEventProcessor)
+        .lanes(8)
+        .speed(0)
+        .replay()
+
+  speed <= 0  as fast as the processors go (default)
+  speed = 1   original rate: an entry is due (timestamp - first timestamp) after the start
+  speed = n   n times the original rate
+
+  Entries are routed by event type, types without a route are skipped. With
+  lanes > 1, entries of different orders run concurrently while the entries
+  of one order keep their journal order (KeyOrderedExecutor), as on the live
+  binding. Processor errors are counted and the replay goes on.
+*/
+public class JournalReplayer {
+
+    private final Flux<JournalEntry> entries;
+    private final Map<Class<?>, Function<DomainEvent, Mono<? extends DomainEvent>>> routes = new LinkedHashMap<>();
+    private double speed;
+    private int lanes = 1;
+
+    public JournalReplayer(Flux<JournalEntry> entries) {
+        this.entries = entries;
+    }
+
+    public static JournalReplayer of(Path directory){
+        return new JournalReplayer(JournalReader.read(directory));
+    }
+
+    public JournalReplayer speed(double speed){
+        this.speed = speed;
+        return this;
+    }
+
+    public JournalReplayer lanes(int lanes){
+        this.lanes = lanes;
+        return this;
+    }
+
+    public <T extends DomainEvent> JournalReplayer route(Class<T> type, EventProcessor<T, ?> processor){
+        this.routes.put(type, evt -> processor.process(type.cast(evt)));
+        return this;
+    }
+
+    public Mono<ReplayResult> replay(){
+        return Mono.defer(() -> {
+            var counters = new Counters();
+            var start = System.nanoTime();
+            var pacing = this.speed > 0 ? new Pacing(start, this.speed) : null;
+            Function<CustomRecord<DomainEvent>, Publisher<DomainEvent>> task = cr -> this.process(cr.message(), counters);
+            return this.entries
+                .concatMap(entry -> pacing == null ? Mono.just(entry) : pacing.await(entry))
+                .map(entry -> new CustomRecord<>(entry.event() instanceof OrderSaga saga ? String.valueOf(saga.orderId()) : null,
+                    entry.event(), null)) //nothing to acknowledge
+                .transform(KeyOrderedExecutor.execute(this.lanes, task))
+                .then(Mono.fromSupplier(() -> counters.result(Duration.ofNanos(System.nanoTime() - start))));
+        });
+    }
+
+    private Publisher<DomainEvent> process(DomainEvent event, Counters counters){
+        var route = this.routeOf(event);
+        if (route == null){
+            counters.skipped.increment();
+            return Mono.empty();
+        }
+        return route.apply(event)
+            .cast(DomainEvent.class)
+            .doOnNext(evt -> counters.outputs.increment())
+            .onErrorResume(ex -> {
+                counters.errors.increment();
+                return Mono.empty();
+            })
+            .doFinally(signal -> counters.replayed.increment());
+    }
+
+    private Function<DomainEvent, Mono<? extends DomainEvent>> routeOf(DomainEvent event){
+        for (var route : this.routes.entrySet()){
+            if (route.getKey().isInstance(event)){
+                return route.getValue();
+            }
+        }
+        return null;
+    }
+
+    //replayed: entries handed to a processor, outputs: events the processors returned
+    public record ReplayResult(long replayed, long skipped, long outputs, long errors, Duration elapsed) {
+
+        public double eventsPerSecond(){
+            var seconds = this.elapsed.toNanos() / 1e9;
+            return seconds > 0 ? this.replayed / seconds : 0.0;
+        }
+    }
+
+    private static final class Counters {
+
+        private final LongAdder replayed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder outputs = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private ReplayResult result(Duration elapsed){
+            return new ReplayResult(this.replayed.sum(), this.skipped.sum(), this.outputs.sum(), this.errors.sum(), elapsed);
+        }
+    }
+
+    //delays each entry until its recorded distance from the first entry, scaled by speed
+    private static final class Pacing {
+
+        private final long start;
+        private final double speed;
+        private long firstTimestamp = Long.MIN_VALUE;
+
+        private Pacing(long start, double speed) {
+            this.start = start;
+            this.speed = speed;
+        }
+
+        //called from concatMap, one entry at a time
+        private Mono<JournalEntry> await(JournalEntry entry){
+            if (this.firstTimestamp == Long.MIN_VALUE){
+                this.firstTimestamp = entry.timestamp();
+            }
+            var due = this.start + (long) ((entry.timestamp() - this.firstTimestamp) * 1_000_000L / this.speed);
+            var wait = due - System.nanoTime();
+            return wait > 0
+                ? Mono.delay(Duration.ofNanos(wait)).thenReturn(entry)
+                : Mono.just(entry);
+        }
+    }
+}
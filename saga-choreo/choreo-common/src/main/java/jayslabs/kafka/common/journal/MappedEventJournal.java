@@ -0,0 +1,111 @@
+package jayslabs.kafka.common.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.serde.EventBinaryCodec;
+
+/*
+  Append-only event journal in memory-mapped segment files.
+
+  A segment is a file of segmentSize bytes, mapped once and filled front to
+  back; the next one is created when a record does not fit. Files are named
+  by sequence number (00000000000000000007.journal) so name order is write
+  order, and a restarted service continues after the highest existing one.
+
+  Record layout (big endian):
+    int    length of the rest of the record; 0 = end of the written part
+    long   offset
+    long   timestamp (epoch millis)
+    int    partition
+    short  topic length, then the topic in UTF-8
+    bytes  the event, EventBinaryCodec
+
+  The length is written last, so a reader never sees a partly written record.
+  Appends are serialized; an append is a few puts into the mapping, the page
+  cache writes it out (force() on roll and close).
+*/
+public class MappedEventJournal implements EventJournal {
+
+    static final String SUFFIX = ".journal";
+    static final int RECORD_HEADER_BYTES = Integer.BYTES + 2 * Long.BYTES + Integer.BYTES + Short.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<String, byte[]> topics = new ConcurrentHashMap<>();
+    private long nextSegment;
+    private MappedByteBuffer segment;
+
+    public MappedEventJournal(Path directory, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER_BYTES){
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            this.nextSegment = JournalReader.segments(directory).stream()
+                .mapToLong(MappedEventJournal::sequenceOf)
+                .max()
+                .orElse(-1) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open journal " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void append(String topic, int partition, long offset, long timestamp, DomainEvent event) {
+        var payload = EventBinaryCodec.encode(event);
+        var topicBytes = this.topics.computeIfAbsent(topic, t -> t.getBytes(StandardCharsets.UTF_8));
+        var size = RECORD_HEADER_BYTES + topicBytes.length + payload.length;
+        if (size > this.segmentSize){
+            throw new IllegalArgumentException("record of " + size + " bytes exceeds the segment size " + this.segmentSize);
+        }
+        if (this.segment == null || this.segment.remaining() < size){
+            this.roll();
+        }
+        var start = this.segment.position();
+        this.segment.position(start + Integer.BYTES);
+        this.segment.putLong(offset)
+            .putLong(timestamp)
+            .putInt(partition)
+            .putShort((short) topicBytes.length)
+            .put(topicBytes)
+            .put(payload);
+        this.segment.putInt(start, size - Integer.BYTES); //publishes the record
+    }
+
+    private void roll(){
+        if (this.segment != null){
+            this.segment.force();
+        }
+        var file = this.directory.resolve("%020d%s".formatted(this.nextSegment++, SUFFIX));
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize); //stays valid after the channel is closed
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create journal segment " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.segment != null){
+            this.segment.force();
+            this.segment = null;
+        }
+    }
+
+    private static long sequenceOf(Path segment){
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
@@ -1,10 +1,23 @@
 package jayslabs.kafka.common.processor;
 
+import java.util.List;
+
 import jayslabs.kafka.common.events.DomainEvent;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface EventProcessor<T extends DomainEvent, R extends DomainEvent> {
 
     Mono<R> process(T event);
 
+    /*
+    Micro-batch entry point: events arrive in consumption order (same lane).
+    Default loops over process() one event at a time; implementations override
+    it to collapse the per-event database round trips into multi-row statements.
+    */
+    default Flux<R> processBatch(List<T> events){
+        return Flux.fromIterable(events)
+            .concatMap(this::process);
+    }
+
 }
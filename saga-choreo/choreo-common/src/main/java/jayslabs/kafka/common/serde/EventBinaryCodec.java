@@ -0,0 +1,273 @@
+package jayslabs.kafka.common.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.shipping.ShippingEvent;
+
+/*
+  Compact binary encoding of the sealed event records.
+
+  layout: [tag:1][null bitmap:1][fields in record component order]
+
+    UUID     16 bytes (msb, lsb)
+    Integer   4 bytes
+    Instant   8 bytes, epoch nanoseconds (covers 1677..2262)
+    String    4 byte length + UTF-8 bytes
+
+  A null field sets its bit in the bitmap (bit i = i-th component) and writes
+  nothing. Tags are stable wire ids: never reuse or renumber them, add new
+  subtypes with new tags. No tag is 0x7B ('{'), so a JSON payload can be told
+  apart from a binary one by its first byte.
+*/
+public final class EventBinaryCodec {
+
+    static final byte ORDER_CREATED = 1;
+    static final byte ORDER_CANCELLED = 2;
+    static final byte ORDER_COMPLETED = 3;
+    static final byte PAYMENT_DEDUCTED = 10;
+    static final byte PAYMENT_REFUNDED = 11;
+    static final byte PAYMENT_FAILED = 12;
+    static final byte INVENTORY_DEDUCTED = 20;
+    static final byte INVENTORY_RESTORED = 21;
+    static final byte INVENTORY_FAILED = 22;
+    static final byte SHIPPING_SCHEDULED = 30;
+
+    private static final int HEADER_BYTES = 2;
+    private static final int UUID_BYTES = 16;
+    private static final int INT_BYTES = 4;
+    private static final int INSTANT_BYTES = 8;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private EventBinaryCodec() {
+    }
+
+    public static byte[] encode(DomainEvent event){
+        return switch (event) {
+            case OrderEvent.OrderCreated e -> new Writer(ORDER_CREATED, UUID_BYTES + 5 * INT_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).integer(e.productId()).integer(e.customerId()).integer(e.quantity())
+                .integer(e.price()).integer(e.totalAmount()).instant(e.createdAt()).bytes();
+            case OrderEvent.OrderCancelled e -> new Writer(ORDER_CANCELLED, UUID_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).instant(e.createdAt()).bytes();
+            case OrderEvent.OrderCompleted e -> new Writer(ORDER_COMPLETED, UUID_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).instant(e.createdAt()).bytes();
+
+            case PaymentEvent.PaymentDeducted e -> new Writer(PAYMENT_DEDUCTED, 2 * UUID_BYTES + 2 * INT_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).uuid(e.paymentId()).integer(e.customerId()).integer(e.amount())
+                .instant(e.createdAt()).bytes();
+            case PaymentEvent.PaymentRefunded e -> new Writer(PAYMENT_REFUNDED, 2 * UUID_BYTES + 2 * INT_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).uuid(e.paymentId()).integer(e.customerId()).integer(e.amount())
+                .instant(e.createdAt()).bytes();
+            case PaymentEvent.PaymentFailed e -> {
+                var message = utf8(e.message());
+                yield new Writer(PAYMENT_FAILED, UUID_BYTES + 2 * INT_BYTES + lengthOf(message) + INSTANT_BYTES)
+                    .uuid(e.orderId()).integer(e.customerId()).integer(e.amount()).string(message)
+                    .instant(e.createdAt()).bytes();
+            }
+
+            case InventoryEvent.InventoryDeducted e -> new Writer(INVENTORY_DEDUCTED, 2 * UUID_BYTES + 2 * INT_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).uuid(e.inventoryId()).integer(e.productId()).integer(e.quantity())
+                .instant(e.createdAt()).bytes();
+            case InventoryEvent.InventoryRestored e -> new Writer(INVENTORY_RESTORED, 2 * UUID_BYTES + 2 * INT_BYTES + INSTANT_BYTES)
+                .uuid(e.orderId()).uuid(e.inventoryId()).integer(e.productId()).integer(e.quantity())
+                .instant(e.createdAt()).bytes();
+            case InventoryEvent.InventoryFailed e -> {
+                var message = utf8(e.message());
+                yield new Writer(INVENTORY_FAILED, UUID_BYTES + 2 * INT_BYTES + lengthOf(message) + INSTANT_BYTES)
+                    .uuid(e.orderId()).integer(e.productId()).integer(e.quantity()).string(message)
+                    .instant(e.createdAt()).bytes();
+            }
+
+            case ShippingEvent.ShippingScheduled e -> new Writer(SHIPPING_SCHEDULED, 2 * UUID_BYTES + 2 * INSTANT_BYTES)
+                .uuid(e.orderId()).uuid(e.shipmentId()).instant(e.expectedDeliveryDate())
+                .instant(e.createdAt()).bytes();
+
+            default -> throw new SerializationException("No binary encoding for " + event.getClass().getName());
+        };
+    }
+
+    public static DomainEvent decode(byte[] data){
+        var in = new Reader(data);
+        return switch (in.tag()) {
+            case ORDER_CREATED -> new OrderEvent.OrderCreated(
+                in.uuid(), in.integer(), in.integer(), in.integer(), in.integer(), in.integer(), in.instant());
+            case ORDER_CANCELLED -> new OrderEvent.OrderCancelled(in.uuid(), in.instant());
+            case ORDER_COMPLETED -> new OrderEvent.OrderCompleted(in.uuid(), in.instant());
+
+            case PAYMENT_DEDUCTED -> new PaymentEvent.PaymentDeducted(
+                in.uuid(), in.uuid(), in.integer(), in.integer(), in.instant());
+            case PAYMENT_REFUNDED -> new PaymentEvent.PaymentRefunded(
+                in.uuid(), in.uuid(), in.integer(), in.integer(), in.instant());
+            case PAYMENT_FAILED -> new PaymentEvent.PaymentFailed(
+                in.uuid(), in.integer(), in.integer(), in.string(), in.instant());
+
+            case INVENTORY_DEDUCTED -> new InventoryEvent.InventoryDeducted(
+                in.uuid(), in.uuid(), in.integer(), in.integer(), in.instant());
+            case INVENTORY_RESTORED -> new InventoryEvent.InventoryRestored(
+                in.uuid(), in.uuid(), in.integer(), in.integer(), in.instant());
+            case INVENTORY_FAILED -> new InventoryEvent.InventoryFailed(
+                in.uuid(), in.integer(), in.integer(), in.string(), in.instant());
+
+            case SHIPPING_SCHEDULED -> new ShippingEvent.ShippingScheduled(
+                in.uuid(), in.uuid(), in.instant(), in.instant());
+
+            default -> throw new SerializationException("Unknown event tag " + data[0]);
+        };
+    }
+
+    private static byte[] utf8(String s){
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int lengthOf(byte[] string){
+        return string == null ? 0 : INT_BYTES + string.length;
+    }
+
+    //sized for the subtype with every field present; only null fields leave a tail to trim
+    private static final class Writer {
+
+        private final byte[] buf;
+        private int pos = HEADER_BYTES;
+        private int field;
+
+        Writer(byte tag, int fieldBytes) {
+            this.buf = new byte[HEADER_BYTES + fieldBytes];
+            this.buf[0] = tag;
+        }
+
+        Writer uuid(UUID v){
+            if (this.isNull(v)){
+                return this;
+            }
+            this.putLong(v.getMostSignificantBits());
+            this.putLong(v.getLeastSignificantBits());
+            return this;
+        }
+
+        Writer integer(Integer v){
+            if (this.isNull(v)){
+                return this;
+            }
+            this.putInt(v);
+            return this;
+        }
+
+        Writer instant(Instant v){
+            if (this.isNull(v)){
+                return this;
+            }
+            this.putLong(Math.addExact(Math.multiplyExact(v.getEpochSecond(), NANOS_PER_SECOND), v.getNano()));
+            return this;
+        }
+
+        Writer string(byte[] utf8){
+            if (this.isNull(utf8)){
+                return this;
+            }
+            this.putInt(utf8.length);
+            System.arraycopy(utf8, 0, this.buf, this.pos, utf8.length);
+            this.pos += utf8.length;
+            return this;
+        }
+
+        byte[] bytes(){
+            return this.pos == this.buf.length ? this.buf : Arrays.copyOf(this.buf, this.pos);
+        }
+
+        private boolean isNull(Object v){
+            var bit = this.field++;
+            if (v == null){
+                this.buf[1] |= (byte) (1 << bit);
+                return true;
+            }
+            return false;
+        }
+
+        private void putInt(int v){
+            this.buf[this.pos++] = (byte) (v >>> 24);
+            this.buf[this.pos++] = (byte) (v >>> 16);
+            this.buf[this.pos++] = (byte) (v >>> 8);
+            this.buf[this.pos++] = (byte) v;
+        }
+
+        private void putLong(long v){
+            this.putInt((int) (v >>> 32));
+            this.putInt((int) v);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buf;
+        private int pos = HEADER_BYTES;
+        private int field;
+
+        Reader(byte[] buf) {
+            if (buf == null || buf.length < HEADER_BYTES){
+                throw new SerializationException("Binary event too short");
+            }
+            this.buf = buf;
+        }
+
+        byte tag(){
+            return this.buf[0];
+        }
+
+        UUID uuid(){
+            return this.isNull() ? null : new UUID(this.getLong(), this.getLong());
+        }
+
+        Integer integer(){
+            return this.isNull() ? null : this.getInt();
+        }
+
+        Instant instant(){
+            if (this.isNull()){
+                return null;
+            }
+            var nanos = this.getLong();
+            return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+        }
+
+        String string(){
+            if (this.isNull()){
+                return null;
+            }
+            var length = this.getInt();
+            this.require(length);
+            var s = new String(this.buf, this.pos, length, StandardCharsets.UTF_8);
+            this.pos += length;
+            return s;
+        }
+
+        private boolean isNull(){
+            return (this.buf[1] & (1 << this.field++)) != 0;
+        }
+
+        private int getInt(){
+            this.require(4);
+            return (this.buf[this.pos++] & 0xff) << 24
+                | (this.buf[this.pos++] & 0xff) << 16
+                | (this.buf[this.pos++] & 0xff) << 8
+                | (this.buf[this.pos++] & 0xff);
+        }
+
+        private long getLong(){
+            return ((long) this.getInt() << 32) | (this.getInt() & 0xffffffffL);
+        }
+
+        private void require(int n){
+            if (n < 0 || this.pos + n > this.buf.length){
+                throw new SerializationException("Binary event truncated at byte " + this.pos);
+            }
+        }
+    }
+}
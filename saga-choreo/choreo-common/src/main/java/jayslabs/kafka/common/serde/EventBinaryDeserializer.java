@@ -0,0 +1,51 @@
+package jayslabs.kafka.common.serde;
+
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+/*
+Kafka value deserializer for the sealed event records (see EventBinaryCodec).
+Switched on per service with
+    "value.deserializer": jayslabs.kafka.common.serde.EventBinaryDeserializer
+
+JSON payloads (first byte '{') are handed to a JsonDeserializer configured with
+the same consumer properties, so a consumer can switch before its producers do
+and still read records already on the topic.
+*/
+public class EventBinaryDeserializer implements Deserializer<DomainEvent> {
+
+    private static final byte JSON_OBJECT = '{';
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.json.configure(configs, isKey);
+    }
+
+    @Override
+    public DomainEvent deserialize(String topic, byte[] data) {
+        return this.deserialize(topic, null, data);
+    }
+
+    @Override
+    public DomainEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null){
+            return null;
+        }
+        if (data.length > 0 && data[0] == JSON_OBJECT){
+            return (DomainEvent) this.json.deserialize(topic, headers, data);
+        }
+        return EventBinaryCodec.decode(data);
+    }
+
+    @Override
+    public void close() {
+        this.json.close();
+    }
+}
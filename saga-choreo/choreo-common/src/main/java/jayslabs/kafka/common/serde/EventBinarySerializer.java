@@ -0,0 +1,19 @@
+package jayslabs.kafka.common.serde;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+/*
+Kafka value serializer for the sealed event records (see EventBinaryCodec).
+Switched on per service with
+    "value.serializer": jayslabs.kafka.common.serde.EventBinarySerializer
+No type headers are written: the subtype is the first byte of the payload.
+*/
+public class EventBinarySerializer implements Serializer<DomainEvent> {
+
+    @Override
+    public byte[] serialize(String topic, DomainEvent event) {
+        return event == null ? null : EventBinaryCodec.encode(event);
+    }
+}
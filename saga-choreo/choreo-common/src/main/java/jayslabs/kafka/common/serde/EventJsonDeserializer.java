@@ -0,0 +1,72 @@
+package jayslabs.kafka.common.serde;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+/*
+JSON value deserializer for records written by EventJsonSerializer: the short
+type id header selects an ObjectReader built up front, so there is no class
+name lookup or trusted package check per record.
+    "value.deserializer": jayslabs.kafka.common.serde.EventJsonDeserializer
+
+Records without the id header (written by spring-kafka's JsonSerializer) go to
+a JsonDeserializer configured with the same consumer properties, so consumers
+can switch before producers do.
+*/
+public class EventJsonDeserializer implements Deserializer<DomainEvent> {
+
+    private final Map<EventTypeIds.EventType, ObjectReader> readers = new IdentityHashMap<>();
+    private final JsonDeserializer<Object> fallback = new JsonDeserializer<>();
+
+    public EventJsonDeserializer() {
+        var mapper = JacksonUtils.enhancedObjectMapper();
+        EventTypeIds.all().forEach(t -> this.readers.put(t, mapper.readerFor(t.type())));
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        this.fallback.configure(configs, isKey);
+    }
+
+    //no headers: only the fallback can tell the type (spring.json.value.default.type)
+    @Override
+    public DomainEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : (DomainEvent) this.fallback.deserialize(topic, data);
+    }
+
+    @Override
+    public DomainEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null){
+            return null;
+        }
+        var header = headers.lastHeader(EventTypeIds.HEADER);
+        if (header == null){
+            return (DomainEvent) this.fallback.deserialize(topic, headers, data);
+        }
+        var type = EventTypeIds.forId(header.value());
+        if (type == null){
+            throw new SerializationException("Unknown event type id in header " + EventTypeIds.HEADER);
+        }
+        try {
+            return this.readers.get(type).readValue(data);
+        } catch (IOException e) {
+            throw new SerializationException("Can't deserialize " + type.type().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.fallback.close();
+    }
+}
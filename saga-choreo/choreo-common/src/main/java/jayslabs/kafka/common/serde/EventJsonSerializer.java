@@ -0,0 +1,65 @@
+package jayslabs.kafka.common.serde;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.JacksonUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import jayslabs.kafka.common.events.DomainEvent;
+
+/*
+JSON value serializer for the sealed event records. Same body as spring-kafka's
+JsonSerializer, but with one ObjectWriter per subtype resolved up front and the
+type sent as a short id header (EventTypeIds) instead of the class name.
+    "value.serializer": jayslabs.kafka.common.serde.EventJsonSerializer
+*/
+public class EventJsonSerializer implements Serializer<DomainEvent> {
+
+    private final Map<Class<?>, Target> targets = new IdentityHashMap<>();
+
+    private record Target(ObjectWriter writer, byte[] idBytes) {
+    }
+
+    public EventJsonSerializer() {
+        var mapper = JacksonUtils.enhancedObjectMapper();
+        EventTypeIds.all().forEach(t -> this.targets.put(t.type(), new Target(mapper.writerFor(t.type()), t.idBytes())));
+    }
+
+    @Override
+    public byte[] serialize(String topic, DomainEvent event) {
+        return event == null ? null : this.write(this.targetOf(event), event);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, DomainEvent event) {
+        if (event == null){
+            return null;
+        }
+        var target = this.targetOf(event);
+        headers.remove(EventTypeIds.HEADER);
+        headers.add(EventTypeIds.HEADER, target.idBytes());
+        return this.write(target, event);
+    }
+
+    private Target targetOf(DomainEvent event){
+        var target = this.targets.get(event.getClass());
+        if (target == null){
+            throw new SerializationException("No type id for " + event.getClass().getName());
+        }
+        return target;
+    }
+
+    private byte[] write(Target target, DomainEvent event){
+        try {
+            return target.writer().writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Can't serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package jayslabs.kafka.common.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.shipping.ShippingEvent;
+
+/*
+Short wire ids for the sealed event records, carried in the HEADER record header
+instead of spring-kafka's fully qualified __TypeId__ class name.
+Ids are part of the wire format: never reuse or rename one.
+*/
+public final class EventTypeIds {
+
+    public static final String HEADER = "evt";
+
+    public record EventType(String id, byte[] idBytes, Class<? extends DomainEvent> type) {
+    }
+
+    private static final List<EventType> TYPES = List.of(
+        of("oc", OrderEvent.OrderCreated.class),
+        of("ox", OrderEvent.OrderCancelled.class),
+        of("ok", OrderEvent.OrderCompleted.class),
+        of("pd", PaymentEvent.PaymentDeducted.class),
+        of("pr", PaymentEvent.PaymentRefunded.class),
+        of("pf", PaymentEvent.PaymentFailed.class),
+        of("id", InventoryEvent.InventoryDeducted.class),
+        of("ir", InventoryEvent.InventoryRestored.class),
+        of("if", InventoryEvent.InventoryFailed.class),
+        of("ss", ShippingEvent.ShippingScheduled.class)
+    );
+
+    private EventTypeIds() {
+    }
+
+    public static List<EventType> all(){
+        return TYPES;
+    }
+
+    //linear scan over 10 entries: cheaper than hashing, and no String is built from the header
+    public static EventType forId(byte[] idBytes){
+        for (var type : TYPES){
+            if (Arrays.equals(type.idBytes(), idBytes)){
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static EventType of(String id, Class<? extends DomainEvent> type){
+        return new EventType(id, id.getBytes(StandardCharsets.US_ASCII), type);
+    }
+}
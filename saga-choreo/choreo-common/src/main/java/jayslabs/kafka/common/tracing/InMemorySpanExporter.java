@@ -0,0 +1,39 @@
+package jayslabs.kafka.common.tracing;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+Keeps finished spans in memory, for tests:
+
+    @TestConfiguration
+    static class TracingTestConfig {
+        @Bean
+        public InMemorySpanExporter spanExporter(){
+            return new InMemorySpanExporter();
+        }
+    }
+*/
+public class InMemorySpanExporter implements SpanExporter {
+
+    private final ConcurrentLinkedQueue<SpanData> spans = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void export(SpanData span) {
+        this.spans.add(span);
+    }
+
+    public List<SpanData> spans(){
+        return List.copyOf(this.spans);
+    }
+
+    //spans of one saga, in the order they finished
+    public List<SpanData> spans(UUID orderId){
+        return this.spans.stream().filter(span -> orderId.equals(span.orderId())).toList();
+    }
+
+    public void reset(){
+        this.spans.clear();
+    }
+}
@@ -0,0 +1,225 @@
+package jayslabs.kafka.common.tracing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.env.Environment;
+
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverOffset;
+
+/*
+  Saga tracing without a tracing library: one trace per order, one span per hop.
+
+  trace id = the orderId's 128 bits, so a trace is found by its order.
+  Sampling is decided once, when order-service publishes OrderCreated
+  (saga.tracing.sampling-probability, by orderId so it is stable per order);
+  every later hop just follows the traceparent header. Unsampled orders carry
+  no header and cost a header lookup per record.
+
+  Hop spans run from MessageConverter.toRecord (context restored from the
+  header) to the record's acknowledgement; the output event's header carries
+  the hop span as parent. The context is handed from toRecord to toMessage
+  through a per-binding map keyed by orderId (records of one order are
+  processed one at a time per binding, see KeyOrderedExecutor), so nothing
+  relies on ThreadLocals across the reactive pipeline's thread hops.
+*/
+public class SagaTracer {
+
+    private static final int MAX_OPEN_SPANS = 10_000;
+    private static final long MAX_OPEN_NANOS = Duration.ofMinutes(5).toNanos();
+    private static final double RANDOM_BITS = 0x1p62; //low 62 bits of a v4 UUID are random
+
+    private final String service;
+    private final long sampleBelow;
+    private final SpanExporter exporter;
+
+    public SagaTracer(String service, double samplingProbability, SpanExporter exporter) {
+        this.service = service;
+        this.sampleBelow = samplingProbability >= 1 ? Long.MAX_VALUE : (long) (Math.max(0, samplingProbability) * RANDOM_BITS);
+        this.exporter = exporter;
+    }
+
+    public static SagaTracer fromEnvironment(Environment env, SpanExporter exporter){
+        var service = env.getProperty("spring.application.name",
+            env.getProperty("management.metrics.tags.application", "saga"));
+        return new SagaTracer(service, env.getProperty("saga.tracing.sampling-probability", Double.class, 0.0), exporter);
+    }
+
+    public boolean isSampled(UUID orderId){
+        return (orderId.getLeastSignificantBits() & 0x3fffffffffffffffL) < this.sampleBelow;
+    }
+
+    /*
+    Root span of a saga: createdAt until OrderCreated is handed to the binder.
+    Returns the context to send with OrderCreated, null when the order is not sampled.
+    */
+    public TraceContext startSaga(UUID orderId, Instant createdAt){
+        if (!this.isSampled(orderId)){
+            return null;
+        }
+        var context = new TraceContext(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits(), nextSpanId());
+        var end = Instant.now();
+        this.exporter.export(new SpanData(this.service, "OrderCreated", orderId, context, 0, createdAt, Duration.between(createdAt, end)));
+        return context;
+    }
+
+    public Hop hop(String binding){
+        return new Hop(binding);
+    }
+
+    private static long nextSpanId(){
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    //spans of one consuming binding
+    public final class Hop {
+
+        private final String binding;
+        private final Map<UUID, Span> open = new ConcurrentHashMap<>();
+        private final Queue<Span> received = new ConcurrentLinkedQueue<>(); //arrival order, oldest first
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        private Hop(String binding) {
+            this.binding = binding;
+        }
+
+        //consumer side: starts the hop span under the header's context, null when not traced
+        public Span receive(UUID orderId, Object traceparent){
+            var parent = TraceContext.parse(traceparent);
+            if (parent == null){
+                return null;
+            }
+            var span = new Span(this.binding, orderId, parent);
+            var previous = this.open.put(orderId, span);
+            if (previous != null){
+                previous.end(); //the previous record of this order produced no output
+            }
+            this.received.offer(span);
+            this.queued.incrementAndGet();
+            this.evict();
+            return span;
+        }
+
+        //producer side: context for the output event's header, null when the input was not traced
+        public TraceContext send(UUID orderId){
+            var span = this.open.remove(orderId);
+            if (span == null){
+                return null;
+            }
+            span.end();
+            return span.context;
+        }
+
+        /*
+        Oldest first, stops at the first span still in the map (its output may follow, even
+        after the acknowledgement ended it). Spans already sent or replaced are dropped; the
+        others once more than MAX_OPEN_SPANS were received after them or they are older than
+        MAX_OPEN_NANOS (never acknowledged), ended as they are. Every mapped span is queued,
+        so both stay bounded. One evictor at a time; a receive that finds it busy leaves the
+        work to it.
+        */
+        private void evict(){
+            if (!this.evicting.compareAndSet(false, true)){
+                return;
+            }
+            try {
+                var now = System.nanoTime();
+                for (var span = this.received.peek(); span != null; span = this.received.peek()){
+                    if (this.open.get(span.orderId) == span && this.queued.get() <= MAX_OPEN_SPANS && now - span.startNanos < MAX_OPEN_NANOS){
+                        return;
+                    }
+                    this.received.poll();
+                    this.queued.decrementAndGet();
+                    this.open.remove(span.orderId, span);
+                    span.end();
+                }
+            } finally {
+                this.evicting.set(false);
+            }
+        }
+
+        //spans whose output may still follow
+        int openSpans(){
+            return this.open.size();
+        }
+    }
+
+    public final class Span {
+
+        private final String name;
+        private final UUID orderId;
+        private final TraceContext context;
+        private final long parentSpanId;
+        private final Instant start = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Span(String name, UUID orderId, TraceContext parent) {
+            this.name = name;
+            this.orderId = orderId;
+            this.context = new TraceContext(parent.traceIdHigh(), parent.traceIdLow(), nextSpanId());
+            this.parentSpanId = parent.spanId();
+        }
+
+        public TraceContext context(){
+            return this.context;
+        }
+
+        public boolean isEnded(){
+            return this.ended.get();
+        }
+
+        //exported once, by whichever comes first: acknowledgement or output
+        public void end(){
+            if (this.ended.compareAndSet(false, true)){
+                var duration = Duration.ofNanos(System.nanoTime() - this.startNanos);
+                exporter.export(new SpanData(service, this.name, this.orderId, this.context, this.parentSpanId, this.start, duration));
+            }
+        }
+
+        //acknowledging the record ends the span
+        public ReceiverOffset endOnAcknowledge(ReceiverOffset offset){
+            return offset == null ? null : new SpanOffset(this, offset);
+        }
+    }
+
+    private record SpanOffset(Span span, ReceiverOffset delegate) implements ReceiverOffset {
+
+        @Override
+        public TopicPartition topicPartition() {
+            return this.delegate.topicPartition();
+        }
+
+        @Override
+        public long offset() {
+            return this.delegate.offset();
+        }
+
+        @Override
+        public void acknowledge() {
+            this.span.end();
+            this.delegate.acknowledge();
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            this.span.end();
+            return this.delegate.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package jayslabs.kafka.common.tracing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/*
+A finished span. name is "OrderCreated" for the root span of a saga (written by
+order-service) and the consuming binding for every hop after it, e.g.
+"processor" in customer-payment or "paymentProcessor" in order-service.
+parentSpanId is 0 for the root span.
+*/
+public record SpanData(
+    String service,
+    String name,
+    UUID orderId,
+    TraceContext context,
+    long parentSpanId,
+    Instant start,
+    Duration duration
+) {
+
+    public String traceId(){
+        return this.context.traceId();
+    }
+
+    public boolean isRoot(){
+        return this.parentSpanId == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "%s %s trace=%s span=%s parent=%s order=%s %dµs".formatted(this.service, this.name, this.traceId(),
+            TraceContext.hex(this.context.spanId()), TraceContext.hex(this.parentSpanId), this.orderId, this.duration.toNanos() / 1000);
+    }
+}
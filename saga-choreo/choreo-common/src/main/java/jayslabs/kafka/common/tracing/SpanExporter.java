@@ -0,0 +1,16 @@
+package jayslabs.kafka.common.tracing;
+
+import org.slf4j.LoggerFactory;
+
+//receives every finished span of a sampled saga; called on the processing thread, must not block
+@FunctionalInterface
+public interface SpanExporter {
+
+    void export(SpanData span);
+
+    //default when no exporter bean is defined
+    static SpanExporter logging(){
+        var log = LoggerFactory.getLogger(SpanExporter.class);
+        return span -> log.info("span {}", span);
+    }
+}
@@ -0,0 +1,110 @@
+package jayslabs.kafka.common.tracing;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+Sampled trace context, carried in the W3C "traceparent" record header:
+    00-<trace id, 32 hex>-<parent span id, 16 hex>-01
+
+Only sampled contexts exist: an order that is not sampled travels without the
+header at all, so its hops skip tracing entirely. The header is written as raw
+bytes (the binder's header mapper passes byte[] through untouched) and parsed
+without building a String; a JSON-quoted String value is accepted as well.
+*/
+public record TraceContext(long traceIdHigh, long traceIdLow, long spanId) {
+
+    public static final String HEADER = "traceparent";
+
+    private static final int LENGTH = 55;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    public byte[] toTraceparent(){
+        var out = new byte[LENGTH];
+        out[0] = '0';
+        out[1] = '0';
+        out[2] = '-';
+        writeHex(out, 3, this.traceIdHigh);
+        writeHex(out, 19, this.traceIdLow);
+        out[35] = '-';
+        writeHex(out, 36, this.spanId);
+        out[52] = '-';
+        out[53] = '0';
+        out[54] = '1';
+        return out;
+    }
+
+    //null when absent, malformed or not sampled
+    public static TraceContext parse(Object header){
+        byte[] value;
+        if (header instanceof byte[] bytes){
+            value = bytes;
+        } else if (header instanceof String s){
+            value = s.getBytes(StandardCharsets.US_ASCII);
+        } else {
+            return null;
+        }
+        var from = value.length == LENGTH + 2 && value[0] == '"' ? 1 : 0; //JSON-encoded String
+        if (value.length - 2 * from != LENGTH || value[from] != '0' || value[from + 1] != '0'
+            || value[from + 2] != '-' || value[from + 35] != '-' || value[from + 52] != '-'){
+            return null;
+        }
+        var flags = readHex(value, from + 53, 2);
+        if (flags < 0 || (flags & 1) == 0){
+            return null;
+        }
+        var high = readLong(value, from + 3);
+        var low = readLong(value, from + 19);
+        var span = readLong(value, from + 36);
+        if (high == null || low == null || span == null){
+            return null;
+        }
+        return new TraceContext(high, low, span);
+    }
+
+    public String traceId(){
+        return hex(this.traceIdHigh) + hex(this.traceIdLow);
+    }
+
+    public static String hex(long value){
+        var out = new byte[16];
+        writeHex(out, 0, value);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeHex(byte[] out, int at, long value){
+        for (int i = 15; i >= 0; i--){
+            out[at + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    //16 hex digits; null on a non-hex digit
+    private static Long readLong(byte[] value, int at){
+        var high = readHex(value, at, 8);
+        var low = readHex(value, at + 8, 8);
+        return high < 0 || low < 0 ? null : high << 32 | low;
+    }
+
+    //up to 8 digits, so the result fits in the low 32 bits; -1 on a non-hex digit
+    private static long readHex(byte[] value, int at, int digits){
+        long result = 0;
+        for (int i = 0; i < digits; i++){
+            var nibble = nibble(value[at + i]);
+            if (nibble < 0){
+                return -1;
+            }
+            result = result << 4 | nibble;
+        }
+        return result;
+    }
+
+    private static int nibble(byte b){
+        if (b >= '0' && b <= '9'){
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f'){
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+}
@@ -1,10 +1,15 @@
 package jayslabs.kafka.common.util;
 
+import jayslabs.kafka.common.tracing.TraceContext;
 import reactor.kafka.receiver.ReceiverOffset;
 
 public record CustomRecord<T>(
     String key, 
     T message, 
-    ReceiverOffset acknowledgement) {
+    ReceiverOffset acknowledgement,
+    TraceContext trace) { //hop span of a sampled saga, else null
 
+    public CustomRecord(String key, T message, ReceiverOffset acknowledgement) {
+        this(key, message, acknowledgement, null);
+    }
 }
@@ -1,9 +1,11 @@
 package jayslabs.kafka.common.util;
 
+import java.util.UUID;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
 
 import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
 import reactor.core.publisher.Mono;
@@ -30,10 +32,43 @@ public class DuplicateEventValidator {
             .then(evtProcessingPub);
     }
 
+    /**
+        same as above, with the in-memory tier (ProcessedEventCache) in front of the db check:
+        evtValidationPub is only subscribed to when the cache cannot answer. orderId is only
+        registered once the check passed and the processing succeeded: added to the cache when
+        the surrounding transaction commits, right away without a transaction.
+    */
+    public static <T> Mono<T> validate(UUID orderId, ProcessedEventCache cache, Mono<Boolean> evtValidationPub, Mono<T> evtProcessingPub){
+        return validate(cache.isDuplicate(orderId, evtValidationPub), markProcessed(orderId, cache, evtProcessingPub));
+    }
+
+    /**
+        processed_event table: the claim (ProcessedEventTable.claim, true = claimed now) takes the
+        place of the existence check and always runs, unless the cache already knows the orderId
+        as a duplicate. evtProcessingPub runs in the same transaction, so a failure rolls the claim back.
+    */
+    public static <T> Mono<T> claim(UUID orderId, ProcessedEventCache cache, Mono<Boolean> claim, Mono<T> evtProcessingPub){
+        var duplicate = claim.map(claimed -> !claimed).cache(); //at most one MERGE, whichever tier asks
+        return validate(cache.isDuplicate(orderId, duplicate).flatMap(dup -> dup ? Mono.just(true) : duplicate),
+            markProcessed(orderId, cache, evtProcessingPub));
+    }
+
+    //registration follows the processing: a rejected or failed event is never cached as processed
+    private static <T> Mono<T> markProcessed(UUID orderId, ProcessedEventCache cache, Mono<T> evtProcessingPub){
+        return evtProcessingPub.flatMap(result -> cache.markProcessed(orderId).thenReturn(result));
+    }
+
+    //unique order_id violated by a concurrent/redelivered insert (the cache did not know the orderId)
+    public static <T> Function<Mono<T>, Mono<T>> mapDuplicateKey(){
+        return mono -> mono
+            .onErrorResume(DuplicateKeyException.class, ex -> duplicate())
+            .doOnError(EventAlreadyProcessedException.class, ex -> log.warn("Duplicate event"));
+    }
+
     public static Function<Mono<Boolean>, Mono<Void>> emitDuplicateError(){
         //mono below is the original Mono<Boolean> passed from transform() "evtValidationPub"
         return mono -> mono
-            .flatMap(b -> b ? Mono.error(new EventAlreadyProcessedException()) : Mono.empty())
+            .flatMap(b -> b ? duplicate() : Mono.empty())
             .doOnError(EventAlreadyProcessedException.class, ex -> log.warn("Duplicate event"))
             
             //if not duplicate, Converts Mono.empty() to Mono<Void> that 
@@ -41,6 +76,14 @@ public class DuplicateEventValidator {
             //with error signal.
             .then();
     }
+
+    //handlers usually swallow the error, so the outcome is also flagged for ProcessorMetrics
+    private static <T> Mono<T> duplicate(){
+        return Mono.deferContextual(ctx -> {
+            ProcessorMetrics.markDuplicate(ctx);
+            return Mono.error(new EventAlreadyProcessedException());
+        });
+    }
 }
 
 /*
@@ -0,0 +1,213 @@
+package jayslabs.kafka.common.util;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.events.OrderSaga;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.TransactionManager;
+import reactor.util.retry.Retry;
+
+/*
+  Exactly-once read-process-write loop for a saga processor (opt-in,
+  saga.processing.exactly-once.enabled=true).
+
+  The function binding sends the output and commits the input offset
+  independently, so a crash in between redelivers the input and the output is
+  produced again. Here both happen in one kafka transaction (reactor-kafka):
+  receiveExactlyOnce() begins a transaction per polled batch and adds the
+  batch's offsets to it, the outputs are sent with the transactional sender and
+  the transaction is committed once every send of the batch is acknowledged.
+  Any error aborts the transaction and the loop re-subscribes from the last
+  committed offset. Readers of the output topic must use
+  isolation.level=read_committed, otherwise they also see aborted outputs.
+
+  The processor's database work is not part of the kafka transaction: it
+  commits first, so an abort redelivers inputs that are already processed.
+  The duplicate checks in the services stay, and in this mode the processors
+  answer a duplicate with its stored outcome (PaymentDeducted, InventoryDeducted,
+  ShippingScheduled, ...) instead of nothing, so the aborted output is sent by
+  the retry. A duplicate from an at-least-once upstream producer is replayed
+  the same way; the saga state transitions downstream are idempotent.
+
+  The pipeline gets the same CustomRecords as the function binding; their
+  acknowledgement() is a no-op because the offsets ride on the transaction.
+  transactional.id must be stable per instance: a restarted instance fences
+  its predecessor and aborts the transaction it left open.
+*/
+public class ExactlyOnceProcessor<I, O extends OrderSaga> implements SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ExactlyOnceProcessor.class);
+
+    private static final String BINDER = "spring.cloud.stream.kafka.binder.";
+
+    private final String binding;
+    private final ReceiverOptions<String, I> receiverOptions;
+    private final SenderOptions<String, O> senderOptions;
+    private final String outputTopic;
+    private final Function<Flux<CustomRecord<I>>, Flux<O>> pipeline;
+
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private volatile KafkaSender<String, O> sender;
+    private volatile Disposable loop;
+
+    public ExactlyOnceProcessor(String binding, ReceiverOptions<String, I> receiverOptions, SenderOptions<String, O> senderOptions,
+                                String outputTopic, Function<Flux<CustomRecord<I>>, Flux<O>> pipeline) {
+        this.binding = binding;
+        this.receiverOptions = receiverOptions;
+        this.senderOptions = senderOptions;
+        this.outputTopic = outputTopic;
+        this.pipeline = pipeline;
+    }
+
+    /*
+    Topics, group and serializers are taken from the function binding (<binding>-in-0 / -out-0)
+    and the binder's consumer/producer-properties, so both modes read the same configuration.
+    */
+    public static <I, O extends OrderSaga> ExactlyOnceProcessor<I, O> fromBinding(
+        Environment env, String binding, Function<Flux<CustomRecord<I>>, Flux<O>> pipeline){
+
+        var bindings = "spring.cloud.stream.bindings." + binding;
+        var group = env.getRequiredProperty(bindings + "-in-0.group");
+        var bootstrap = env.getProperty("spring.kafka.bootstrap-servers", "localhost:9092");
+        var transactionalId = env.getProperty("saga.processing.exactly-once.transactional-id", group + "-tx");
+
+        Map<String, Object> consumerProps = binderProperties(env, "consumer-properties");
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, group);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+        Map<String, Object> producerProps = binderProperties(env, "producer-properties");
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        producerProps.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+
+        var receiverOptions = ReceiverOptions.<String, I>create(consumerProps)
+            .subscription(List.of(env.getRequiredProperty(bindings + "-in-0.destination")));
+        var senderOptions = SenderOptions.<String, O>create(producerProps);
+        return new ExactlyOnceProcessor<>(binding, receiverOptions, senderOptions,
+            env.getRequiredProperty(bindings + "-out-0.destination"), pipeline);
+    }
+
+    //binder-wide configuration first, the consumer/producer specific map overrides it
+    private static Map<String, Object> binderProperties(Environment env, String name){
+        var binder = Binder.get(env);
+        var type = Bindable.mapOf(String.class, String.class);
+        Map<String, Object> props = new HashMap<>(binder.bind(BINDER + "configuration", type).orElseGet(Map::of));
+        props.putAll(binder.bind(BINDER + name, type).orElseGet(Map::of));
+        return props;
+    }
+
+    @Override
+    public void start() {
+        this.sender = KafkaSender.create(this.senderOptions);
+        var txManager = this.sender.transactionManager();
+        var receiver = KafkaReceiver.create(this.receiverOptions);
+        this.loop = receiver.receiveExactlyOnce(txManager)
+        .concatMap(batch -> this.processBatch(batch, txManager))
+        .onErrorResume(ex -> txManager.abort()
+            .onErrorResume(abortEx -> Mono.empty()) //nothing to abort
+            .then(Mono.error(ex)))
+        .doOnError(ex -> {
+            this.aborted.increment();
+            log.error("{} transaction aborted, re-reading from last committed offset: {}", this.binding, ex.getMessage());
+        })
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(10)))
+        .subscribe();
+    }
+
+    //one polled batch = one transaction: outputs + input offsets, committed together
+    private Mono<Void> processBatch(Flux<ConsumerRecord<String, I>> batch, TransactionManager txManager){
+        var inputs = new AtomicInteger();
+        var outputs = batch
+            .doOnNext(rec -> inputs.incrementAndGet())
+            .map(rec -> new CustomRecord<>(rec.key(), rec.value(), (ReceiverOffset) new TransactionalOffset(rec)))
+            .transform(this.pipeline)
+            .map(this::toSenderRecord);
+        return this.sender.send(outputs)
+        .then(txManager.<Void>commit())
+        .doOnSuccess(v -> this.committed.add(inputs.get()));
+    }
+
+    private SenderRecord<String, O, Void> toSenderRecord(O evt){
+        return SenderRecord.create(new ProducerRecord<>(this.outputTopic, evt.orderId().toString(), evt), null);
+    }
+
+    @Override
+    public void stop() {
+        if (this.loop != null){
+            this.loop.dispose();
+        }
+        if (this.sender != null){
+            this.sender.close(); //an open transaction is aborted when the next instance fences this id
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.loop != null && !this.loop.isDisposed();
+    }
+
+    //input records whose transaction committed
+    public long committed(){
+        return this.committed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saga.eos.records.committed", this.committed, LongAdder::sum)
+            .description("Input records committed together with their outputs")
+            .tag("binding", this.binding)
+            .register(registry);
+        FunctionCounter.builder("saga.eos.transactions.aborted", this.aborted, LongAdder::sum)
+            .description("Kafka transactions aborted and re-read from the last committed offset")
+            .tag("binding", this.binding)
+            .register(registry);
+    }
+
+    //offsets are committed by the transaction, acknowledging a record is a no-op
+    private record TransactionalOffset(TopicPartition topicPartition, long offset) implements ReceiverOffset {
+
+        TransactionalOffset(ConsumerRecord<?, ?> rec){
+            this(new TopicPartition(rec.topic(), rec.partition()), rec.offset());
+        }
+
+        @Override
+        public void acknowledge() {
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package jayslabs.kafka.common.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+
+import jayslabs.kafka.common.events.OrderSaga;
+import reactor.core.publisher.Flux;
+
+/*
+  Key-ordered parallel processing of consumed records.
+
+  Records are spread across N lanes by hashing the saga correlation id
+  (OrderSaga.orderId(), falling back to the kafka record key). Every record of
+  a given order always lands on the same lane and each lane is drained with
+  concatMap, so per-order ordering is preserved while unrelated orders are
+  processed concurrently on the other lanes.
+
+  lanes <= 1 is the plain concatMap pipeline (strictly sequential).
+
+  executeBatched() is the micro-batch variant: each lane is buffered by size
+  and time (bufferTimeout) and whole batches are handed to the task in order.
+*/
+public class KeyOrderedExecutor {
+
+    public static <T, R> Function<Flux<CustomRecord<T>>, Flux<R>> execute(
+        int lanes, Function<CustomRecord<T>, ? extends Publisher<? extends R>> task){
+
+        if (lanes <= 1){
+            return flux -> flux.concatMap(task);
+        }
+        return flux -> flux
+            //one GroupedFlux per lane; the number of groups is bounded by lanes
+            .groupBy(cr -> laneOf(cr, lanes))
+            //concurrency must be >= number of groups, else groupBy stalls
+            .flatMap(lane -> lane.concatMap(task), lanes);
+    }
+
+    public static <T, R> Function<Flux<CustomRecord<T>>, Flux<R>> executeBatched(
+        int lanes, int batchSize, Duration maxWait,
+        Function<List<CustomRecord<T>>, ? extends Publisher<? extends R>> task){
+
+        //fairBackpressure=true: only request from kafka what pending batches can absorb
+        if (lanes <= 1){
+            return flux -> flux
+                .bufferTimeout(batchSize, maxWait, true)
+                .concatMap(task);
+        }
+        return flux -> flux
+            .groupBy(cr -> laneOf(cr, lanes))
+            .flatMap(lane -> lane
+                .bufferTimeout(batchSize, maxWait, true)
+                .concatMap(task), lanes);
+    }
+
+    public static int laneOf(CustomRecord<?> cr, int lanes){
+        return Math.floorMod(spread(Objects.hashCode(keyOf(cr))), lanes);
+    }
+
+    private static Object keyOf(CustomRecord<?> cr){
+        return cr.message() instanceof OrderSaga saga && saga.orderId() != null
+            ? saga.orderId()
+            : cr.key();
+    }
+
+    //UUID.hashCode() xors the two halves; mix the bits so low-order lanes are evenly used
+    private static int spread(int h){
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+}
+
+/*
+Lane assignment (lanes = 3):
+
+order-events partition ──► toRecord ──► groupBy(laneOf(orderId))
+                                           │
+              ┌────────────────────────────┼────────────────────────────┐
+              ↓                            ↓                            ↓
+   lane 0: A1 → A2 (concatMap)   lane 1: B1 → C1 (concatMap)   lane 2: D1 (concatMap)
+              └────────────────────────────┼────────────────────────────┘
+                                           ↓
+                               flatMap(…, lanes) merge
+                                           ↓
+                                      toMessage()
+
+A1 always completes before A2 starts; B1, A1 and D1 run concurrently.
+*/
@@ -3,6 +3,9 @@ package jayslabs.kafka.common.util;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 
+import jayslabs.kafka.common.events.OrderSaga;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.TraceContext;
 import reactor.kafka.receiver.ReceiverOffset;
 
 public class MessageConverter {
@@ -14,4 +17,29 @@ public class MessageConverter {
 
         return new CustomRecord<>(key, payload, ack);
     }
+
+    //same as above, but the acknowledgement only commits the contiguous watermark
+    //of the record's partition (safe when records complete out of order)
+    public static <T> CustomRecord<T> toRecord(Message<T> message, OffsetTracker tracker){
+        var cr = toRecord(message);
+        if (cr.acknowledgement() == null){
+            return cr;
+        }
+        return new CustomRecord<>(cr.key(), cr.message(), tracker.track(cr.acknowledgement()));
+    }
+
+    //and restores the saga's trace context: a hop span runs until the record is acknowledged
+    //(the binding's toMessage picks it up via hop.send(orderId) for the output's header)
+    public static <T> CustomRecord<T> toRecord(Message<T> message, OffsetTracker tracker, SagaTracer.Hop hop){
+        var cr = toRecord(message, tracker);
+        var traceparent = message.getHeaders().get(TraceContext.HEADER);
+        if (traceparent == null || !(cr.message() instanceof OrderSaga saga)){
+            return cr;
+        }
+        var span = hop.receive(saga.orderId(), traceparent);
+        if (span == null){
+            return cr;
+        }
+        return new CustomRecord<>(cr.key(), cr.message(), span.endOnAcknowledge(cr.acknowledgement()), span.context());
+    }
 }
@@ -0,0 +1,137 @@
+package jayslabs.kafka.common.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+  Bounded lock-free multi-producer / single-consumer ring buffer.
+
+  Array-based queue with one sequence number per slot (Vyukov bounded queue):
+  producers claim a slot with a CAS on the tail, write the element and then
+  publish it by advancing the slot's sequence; the single consumer only reads
+  slots whose sequence says they are published. offer() never blocks or spins
+  on a full buffer, it returns false and the caller decides what to do.
+
+  Meant to back a unicast sink (MpscSinks.of(queue)): the sink's drain loop is the
+  single consumer, emitters are the producers.
+  size() / fillRatio() are estimates under concurrent use, good enough for
+  admission control and gauges.
+*/
+public class MpscRingBuffer<E> extends AbstractQueue<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong(); //next position to claim (producers)
+    private final AtomicLong head = new AtomicLong(); //next position to read (consumer)
+
+    //capacity is rounded up to the next power of two
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2){
+            throw new IllegalArgumentException("capacity must be >= 2: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+        this.sequence = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++){
+            this.sequence.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long pos = this.tail.get();
+        for (;;){
+            int index = (int) (pos & this.mask);
+            long diff = this.sequence.get(index) - pos;
+            if (diff == 0){
+                if (this.tail.compareAndSet(pos, pos + 1)){
+                    this.buffer.set(index, e);
+                    this.sequence.set(index, pos + 1); //publish to the consumer
+                    return true;
+                }
+                pos = this.tail.get(); //lost the race for this slot
+            } else if (diff < 0){
+                return false; //slot not yet consumed one lap ago: full
+            } else {
+                pos = this.tail.get(); //another producer moved on
+            }
+        }
+    }
+
+    //single consumer only
+    @Override
+    public E poll() {
+        long pos = this.head.get();
+        int index = (int) (pos & this.mask);
+        if (this.sequence.get(index) != pos + 1){
+            return null; //empty, or claimed but not yet published
+        }
+        E e = this.buffer.get(index);
+        this.buffer.set(index, null);
+        this.sequence.set(index, pos + this.capacity); //free the slot for the next lap
+        this.head.set(pos + 1);
+        return e;
+    }
+
+    //single consumer only
+    @Override
+    public E peek() {
+        long pos = this.head.get();
+        int index = (int) (pos & this.mask);
+        return this.sequence.get(index) == pos + 1 ? this.buffer.get(index) : null;
+    }
+
+    @Override
+    public int size() {
+        long size = this.tail.get() - this.head.get();
+        return (int) Math.max(0, Math.min(size, this.capacity));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public int capacity(){
+        return this.capacity;
+    }
+
+    //0.0 (empty) .. 1.0 (full)
+    public double fillRatio(){
+        return (double) this.size() / this.capacity;
+    }
+
+    /*
+    Weakly consistent snapshot of the published elements, oldest first (AbstractQueue's
+    contains / toArray / toString go through it). Stops at the first slot that is claimed
+    but not yet published, or consumed meanwhile; remove() is not supported.
+    */
+    @Override
+    public Iterator<E> iterator() {
+        var elements = new ArrayList<E>(this.size());
+        long tail = this.tail.get();
+        for (long pos = this.head.get(); pos < tail; pos++){
+            int index = (int) (pos & this.mask);
+            if (this.sequence.get(index) != pos + 1){
+                break;
+            }
+            E e = this.buffer.get(index);
+            //re-check: the slot may have been consumed (and refilled a lap later) while reading it
+            if (e == null || this.sequence.get(index) != pos + 1){
+                break;
+            }
+            elements.add(e);
+        }
+        return Collections.unmodifiableList(elements).iterator();
+    }
+}
@@ -0,0 +1,30 @@
+package jayslabs.kafka.common.util;
+
+import java.util.Queue;
+
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+/*
+  Unicast sinks emitted to from many threads at once and drained by their one subscriber.
+
+  The serialized sinks of Sinks.many() fail a tryEmitNext that races another one with
+  FAIL_NON_SERIALIZED. Sinks.unsafe() skips that wrapper, and a multi-producer queue
+  behind the sink makes concurrent tryEmitNext safe instead: the sink's drain loop is the
+  single consumer, the emitters are the producers.
+*/
+public final class MpscSinks {
+
+    private MpscSinks() {
+    }
+
+    //unbounded: tryEmitNext only fails once the sink is terminated or cancelled
+    public static <T> Sinks.Many<T> unbounded() {
+        return of(Queues.<T>unboundedMultiproducer().get());
+    }
+
+    //queue must accept concurrent offers, e.g. an MpscRingBuffer for a bounded sink
+    public static <T> Sinks.Many<T> of(Queue<T> queue) {
+        return Sinks.unsafe().many().unicast().onBackpressureBuffer(queue);
+    }
+}
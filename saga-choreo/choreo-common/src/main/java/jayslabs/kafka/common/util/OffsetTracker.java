@@ -0,0 +1,185 @@
+package jayslabs.kafka.common.util;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.cloud.stream.binder.reactorkafka.ReceiverOptionsCustomizer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverPartition;
+
+/*
+  Per-partition offset watermark for out-of-order completion.
+
+  When records of one partition finish in parallel (see KeyOrderedExecutor),
+  acknowledging each ReceiverOffset as it completes could commit past records
+  that are still in flight; a crash would then skip them. The tracker records
+  completions in any order and only acknowledges the highest CONTIGUOUS
+  completed offset of each partition.
+
+  Usage: MessageConverter.toRecord(message, tracker) wraps the record's
+  ReceiverOffset, so handler code keeps calling cr.acknowledgement().acknowledge().
+
+  As a bean it is also a ReceiverOptionsCustomizer of its <binding>-in-0: a
+  partition revoked or (re)assigned by a rebalance drops its watermark, whatever
+  offset the new assignment resumes at. Records of the previous assignment still
+  in flight complete without acknowledging anything.
+*/
+public class OffsetTracker implements MeterBinder, ReceiverOptionsCustomizer<Object, Object> {
+
+    private final String binding;
+    private final Map<TopicPartition, Watermark> partitions = new ConcurrentHashMap<>();
+
+    public OffsetTracker(String binding) {
+        this.binding = binding;
+    }
+
+    //must be called in consumption order (MessageConverter.toRecord runs in map())
+    public ReceiverOffset track(ReceiverOffset offset){
+        var watermark = this.partitions.computeIfAbsent(offset.topicPartition(), tp -> new Watermark());
+        return watermark.register(offset);
+    }
+
+    //the binder applies every customizer to every binding, only ours is followed
+    @Override
+    public ReceiverOptions<Object, Object> apply(String bindingName, ReceiverOptions<Object, Object> options) {
+        if (!(this.binding + "-in-0").equals(bindingName)){
+            return options;
+        }
+        return options
+            .addAssignListener(assigned -> this.reset(assigned.stream().map(ReceiverPartition::topicPartition).toList()))
+            .addRevokeListener(revoked -> this.reset(revoked.stream().map(ReceiverPartition::topicPartition).toList()));
+    }
+
+    //partitions revoked or (re)assigned: their pending records belong to the previous assignment
+    public void reset(Collection<TopicPartition> topicPartitions){
+        for (var tp : topicPartitions){
+            var watermark = this.partitions.remove(tp);
+            if (watermark != null){
+                watermark.discard();
+            }
+        }
+    }
+
+    //records received but not yet completed, all partitions
+    public long inFlight(){
+        return this.partitions.values().stream().mapToLong(Watermark::inFlight).sum();
+    }
+
+    //records completed but held back behind an in-flight record, all partitions
+    public long completionGap(){
+        return this.partitions.values().stream().mapToLong(Watermark::completedAhead).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.consumer.records.inflight", this, OffsetTracker::inFlight)
+            .description("Records received and not yet completed")
+            .tag("binding", this.binding)
+            .register(registry);
+        Gauge.builder("saga.consumer.offsets.gap", this, OffsetTracker::completionGap)
+            .description("Completed records waiting behind the committed watermark")
+            .tag("binding", this.binding)
+            .register(registry);
+    }
+
+    private static final class Watermark {
+
+        private final ArrayDeque<TrackedOffset> pending = new ArrayDeque<>();
+        private long completedAhead;
+
+        synchronized TrackedOffset register(ReceiverOffset offset){
+            var tracked = new TrackedOffset(this, offset);
+            this.pending.addLast(tracked);
+            return tracked;
+        }
+
+        //stale entries complete as no-ops
+        synchronized void discard(){
+            this.pending.forEach(stale -> stale.done = true);
+            this.pending.clear();
+            this.completedAhead = 0;
+        }
+
+        void complete(TrackedOffset tracked){
+            ReceiverOffset watermark = null;
+            synchronized (this) {
+                if (tracked.done){
+                    return;
+                }
+                tracked.done = true;
+                this.completedAhead++;
+                //advance over the contiguous completed prefix
+                while (!this.pending.isEmpty() && this.pending.peekFirst().done){
+                    watermark = this.pending.pollFirst().delegate;
+                    this.completedAhead--;
+                }
+            }
+            //acknowledging offset N marks N+1 as the commit position for the partition
+            if (watermark != null){
+                watermark.acknowledge();
+            }
+        }
+
+        synchronized long inFlight(){
+            return this.pending.size() - this.completedAhead;
+        }
+
+        synchronized long completedAhead(){
+            return this.completedAhead;
+        }
+    }
+
+    private static final class TrackedOffset implements ReceiverOffset {
+
+        private final Watermark watermark;
+        private final ReceiverOffset delegate;
+        private boolean done; //guarded by watermark
+
+        TrackedOffset(Watermark watermark, ReceiverOffset delegate) {
+            this.watermark = watermark;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TopicPartition topicPartition() {
+            return this.delegate.topicPartition();
+        }
+
+        @Override
+        public long offset() {
+            return this.delegate.offset();
+        }
+
+        @Override
+        public void acknowledge() {
+            this.watermark.complete(this);
+        }
+
+        //the actual commit is done by the binder's periodic commit of acknowledged offsets
+        @Override
+        public Mono<Void> commit() {
+            return Mono.fromRunnable(this::acknowledge);
+        }
+    }
+}
+
+/*
+Example (partition 0, records 10..14 processed on parallel lanes):
+
+complete(12) → pending [10 11 (12✓) 13 14]  gap=1 → nothing acknowledged
+complete(10) → pending [(10✓) 11 (12✓) 13 14] → pop 10 → ack(10)   gap=1
+complete(11) → pop 11, 12 → ack(12)                                 gap=0
+complete(14) → pending [13 (14✓)]                                   gap=1
+crash here   → restart resumes at 13; nothing is lost, 14 is redelivered
+rebalance    → reset(p0): 13 and 14 of the old assignment no longer acknowledge,
+               the partition starts a new watermark at whatever offset it resumes
+*/
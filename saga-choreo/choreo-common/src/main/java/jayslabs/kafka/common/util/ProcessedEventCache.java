@@ -0,0 +1,260 @@
+package jayslabs.kafka.common.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+  In-memory tier in front of the processed_event duplicate check (ProcessedEventTable).
+
+  1. Bloom filter of every processed orderId: "not in filter" = definitely new,
+     answered without a db call (the common case for OrderCreated).
+  2. Bounded LRU of recently processed orderIds: a hit is a confirmed duplicate
+     (redeliveries arrive shortly after the original), again no db call.
+  3. Anything else (bloom says maybe, LRU miss) falls through to the db check.
+     If the db then says "new" that was a bloom false positive.
+
+  The filter is only trusted once rebuild() has loaded the existing orderIds
+  from the table; until then every lookup goes to the db.
+
+  Entries are added on transaction COMMIT (markProcessed), so a rolled back
+  insert never shows up as a duplicate. The cache only knows what this
+  instance committed: the processed_event primary key stays the backstop when a
+  partition moves to another instance.
+
+  ProcessedEventCache.disabled() is a pass-through (always the db check).
+*/
+public class ProcessedEventCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedEventCache.class);
+
+    private final String name;
+    private final BloomFilter bloom;
+    private final Map<UUID, Boolean> recent;
+    private volatile boolean ready;
+
+    private final LongAdder bloomMisses = new LongAdder();    //definitely new, db skipped
+    private final LongAdder recentHits = new LongAdder();     //duplicate from LRU, db skipped
+    private final LongAdder dbHits = new LongAdder();         //maybe -> db confirmed duplicate
+    private final LongAdder falsePositives = new LongAdder(); //maybe -> db said new
+    private final LongAdder bypassed = new LongAdder();       //disabled or not rebuilt yet
+
+    public ProcessedEventCache(String name, int expectedInsertions, double falsePositiveRate, int recentSize) {
+        this.name = name;
+        this.bloom = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(recentSize, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return this.size() > recentSize;
+            }
+        });
+    }
+
+    private ProcessedEventCache(String name) {
+        this.name = name;
+        this.bloom = null;
+        this.recent = null;
+    }
+
+    public static ProcessedEventCache disabled(String name){
+        return new ProcessedEventCache(name);
+    }
+
+    public boolean isEnabled(){
+        return this.bloom != null;
+    }
+
+    //true = duplicate; dbCheck is only subscribed to when the memory tiers cannot answer
+    public Mono<Boolean> isDuplicate(UUID orderId, Mono<Boolean> dbCheck){
+        return Mono.defer(() -> this.lookup(orderId, dbCheck));
+    }
+
+    private Mono<Boolean> lookup(UUID orderId, Mono<Boolean> dbCheck){
+        if (!this.isEnabled() || !this.ready){
+            this.bypassed.increment();
+            return dbCheck;
+        }
+        if (!this.bloom.mightContain(orderId)){
+            this.bloomMisses.increment();
+            return Mono.just(false);
+        }
+        if (this.recent.containsKey(orderId)){
+            this.recentHits.increment();
+            return Mono.just(true);
+        }
+        return dbCheck.doOnNext(duplicate -> {
+            if (duplicate){
+                this.dbHits.increment();
+                this.recent.put(orderId, Boolean.TRUE);
+            } else {
+                this.falsePositives.increment();
+            }
+        });
+    }
+
+    //registers the orderIds to be added once the current transaction commits
+    //(callers are @Transactional; without a transaction they are added right away)
+    public Mono<Void> markProcessed(Collection<UUID> orderIds){
+        if (!this.isEnabled() || orderIds.isEmpty()){
+            return Mono.empty();
+        }
+        return TransactionSynchronizationManager.forCurrentTransaction()
+            .filter(TransactionSynchronizationManager::isSynchronizationActive)
+            .doOnNext(tsm -> tsm.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public Mono<Void> afterCommit() {
+                    return Mono.fromRunnable(() -> orderIds.forEach(ProcessedEventCache.this::add));
+                }
+            }))
+            .switchIfEmpty(Mono.fromRunnable(() -> orderIds.forEach(this::add)))
+            .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(() -> orderIds.forEach(this::add)))
+            .then();
+    }
+
+    public Mono<Void> markProcessed(UUID orderId){
+        return this.markProcessed(List.of(orderId));
+    }
+
+    //the row for orderId was deleted; a bloom filter cannot forget, so the next lookup goes to the db
+    public void evict(UUID orderId){
+        if (this.isEnabled()){
+            this.recent.remove(orderId);
+        }
+    }
+
+    //loads the orderIds already in the table; lookups use the filter once this completes
+    public Mono<Void> rebuild(Flux<UUID> processedOrderIds){
+        if (!this.isEnabled()){
+            return Mono.empty();
+        }
+        return processedOrderIds
+            .doOnNext(this.bloom::put)
+            .count()
+            .doOnNext(count -> {
+                this.ready = true;
+                log.info("Processed event cache [{}] rebuilt from {} orderIds", this.name, count);
+            })
+            .then();
+    }
+
+    private void add(UUID orderId){
+        this.bloom.put(orderId);
+        this.recent.put(orderId, Boolean.TRUE);
+    }
+
+    //share of db lookups that turned out to be new events
+    public double falsePositiveRatio(){
+        var maybe = this.dbHits.sum() + this.falsePositives.sum();
+        return maybe == 0 ? 0 : (double) this.falsePositives.sum() / maybe;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.lookupCounter(registry, "bloom_miss", this.bloomMisses);
+        this.lookupCounter(registry, "recent_hit", this.recentHits);
+        this.lookupCounter(registry, "db_hit", this.dbHits);
+        this.lookupCounter(registry, "false_positive", this.falsePositives);
+        this.lookupCounter(registry, "bypass", this.bypassed);
+        Gauge.builder("saga.dedup.false.positive.ratio", this, ProcessedEventCache::falsePositiveRatio)
+            .description("Bloom filter positives that the db check found to be new events")
+            .tag("cache", this.name)
+            .register(registry);
+    }
+
+    private void lookupCounter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("saga.dedup.lookups", adder, LongAdder::sum)
+            .description("Duplicate checks by the tier that answered them")
+            .tag("cache", this.name)
+            .tag("result", result)
+            .register(registry);
+    }
+
+    /*
+      Standard bloom filter sized for n insertions at false positive rate p:
+        bits m = -n ln(p) / (ln 2)^2,  hashes k = m/n ln 2
+      k indexes from double hashing the two halves of the UUID.
+    */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashes;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            var n = Math.max(1, expectedInsertions);
+            var m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+            this.bitCount = this.bits.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        }
+
+        void put(UUID id){
+            var h1 = mix(id.getMostSignificantBits());
+            var h2 = mix(id.getLeastSignificantBits()) | 1; //odd step visits distinct bits
+            for (int i = 0; i < this.hashes; i++){
+                var bit = Math.floorMod(h1 + i * h2, this.bitCount);
+                var mask = 1L << bit;
+                this.bits.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+            }
+        }
+
+        boolean mightContain(UUID id){
+            var h1 = mix(id.getMostSignificantBits());
+            var h2 = mix(id.getLeastSignificantBits()) | 1;
+            for (int i = 0; i < this.hashes; i++){
+                var bit = Math.floorMod(h1 + i * h2, this.bitCount);
+                if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //murmur3 fmix64: random UUIDs are already spread, but time-based/sequential ones are not
+        private static long mix(long h){
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
+
+/*
+Lookup path for an OrderCreated (cache enabled and rebuilt):
+
+orderId ──► bloom.mightContain? ──no──► new (no db call)             [bloom_miss]
+                  │yes
+                  ▼
+            recent (LRU) hit? ──yes──► duplicate (no db call)         [recent_hit]
+                  │no
+                  ▼
+            claim() ──already there──► duplicate, remembered in LRU  [db_hit]
+                  │claimed
+                  ▼
+            new                                                       [false_positive]
+
+bloom_miss still claims: DuplicateEventValidator.claim() runs the MERGE for every new event.
+
+commit of the processing transaction ──► bloom.put + LRU put (markProcessed)
+*/
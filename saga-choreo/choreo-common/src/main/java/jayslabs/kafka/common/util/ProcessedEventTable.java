@@ -0,0 +1,104 @@
+package jayslabs.kafka.common.util;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+  processed_event table: one row per consumed event, primary key (order_id, event_type).
+
+    CREATE TABLE processed_event (
+       order_id uuid,
+       event_type VARCHAR(50),
+       primary key (order_id, event_type)
+    );
+
+  An event is claimed by inserting its row inside the business transaction that
+  processes it, with a single MERGE that only inserts when the key is absent:
+  1 row = claimed now (new event), 0 rows = already processed. A rolled back
+  transaction takes its claim with it, so a failed event is claimed again on
+  redelivery. Two transactions claiming the same event concurrently meet on the
+  primary key: the second waits for the first and, once it commits, fails with
+  DuplicateKeyException (DuplicateEventValidator.mapDuplicateKey()).
+
+  event_type is the event's simple class name (OrderCreated, ...).
+*/
+public class ProcessedEventTable {
+
+    private static final String CLAIM = """
+        MERGE INTO processed_event t
+        USING (VALUES (CAST(:orderId AS UUID), CAST(:eventType AS VARCHAR(50)))) s(order_id, event_type)
+        ON t.order_id = s.order_id AND t.event_type = s.event_type
+        WHEN NOT MATCHED THEN INSERT (order_id, event_type) VALUES (s.order_id, s.event_type)""";
+    private static final String INSERT = "INSERT INTO processed_event (order_id, event_type) VALUES ";
+    private static final String PROCESSED = "SELECT order_id FROM processed_event WHERE event_type = :eventType AND order_id IN (:orderIds)";
+    private static final String ALL = "SELECT order_id FROM processed_event WHERE event_type = :eventType";
+
+    private final DatabaseClient client;
+
+    public ProcessedEventTable(DatabaseClient client) {
+        this.client = client;
+    }
+
+    //true = claimed by this transaction, false = already processed
+    public Mono<Boolean> claim(UUID orderId, Class<? extends DomainEvent> eventType){
+        return this.client.sql(CLAIM)
+            .bind("orderId", orderId)
+            .bind("eventType", eventType.getSimpleName())
+            .fetch()
+            .rowsUpdated()
+            .map(rows -> rows > 0);
+    }
+
+    //batch paths: claims orders already checked with processed(), in one multi-row insert
+    public Mono<Void> claimAll(Collection<UUID> orderIds, Class<? extends DomainEvent> eventType){
+        if (orderIds.isEmpty()){
+            return Mono.empty();
+        }
+        var sql = new StringBuilder(INSERT);
+        for (int i = 0; i < orderIds.size(); i++){
+            sql.append(i == 0 ? "" : ", ").append("(:orderId").append(i).append(", :eventType)");
+        }
+        var spec = this.client.sql(sql.toString()).bind("eventType", eventType.getSimpleName());
+        int i = 0;
+        for (var orderId : orderIds){
+            spec = spec.bind("orderId" + i++, orderId);
+        }
+        return spec.then();
+    }
+
+    //read-only check, for callers that decide before their write transaction (write-behind ledger)
+    public Mono<Boolean> isProcessed(UUID orderId, Class<? extends DomainEvent> eventType){
+        return this.processed(List.of(orderId), eventType).map(processed -> !processed.isEmpty());
+    }
+
+    //which of the given orders' events are already processed
+    public Mono<Set<UUID>> processed(Collection<UUID> orderIds, Class<? extends DomainEvent> eventType){
+        if (orderIds.isEmpty()){
+            return Mono.just(new HashSet<>());
+        }
+        return this.client.sql(PROCESSED)
+            .bind("eventType", eventType.getSimpleName())
+            .bind("orderIds", orderIds)
+            .map(row -> row.get(0, UUID.class))
+            .all()
+            .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    //every processed orderId of the event type; loaded once at startup into the processed event cache
+    public Flux<UUID> orderIds(Class<? extends DomainEvent> eventType){
+        return this.client.sql(ALL)
+            .bind("eventType", eventType.getSimpleName())
+            .map(row -> row.get(0, UUID.class))
+            .all();
+    }
+}
@@ -0,0 +1,122 @@
+package jayslabs.kafka.common.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.processor.EventProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/*
+  Micrometer instrumentation around EventProcessor, without touching handler code.
+
+  saga.processor.process (timer, percentile histogram)
+    processor = binding name, event = sealed subtype (OrderCreated, PaymentDeducted, ...)
+    outcome   = success (an event was emitted) | empty (completed without one)
+              | duplicate (EventAlreadyProcessedException, even when the handler
+                swallowed it) | failure (error reached the pipeline)
+    its count is the processed events, i.e. events/s per subtype and outcome.
+  saga.processor.batch (timer) / saga.processor.batch.events (counter)
+    processBatch() calls, micro-batch mode.
+
+  All tags come from fixed sets (bindings, sealed subtypes, 4 outcomes); no orderIds.
+
+  Handlers usually turn a duplicate into Mono.empty(), so DuplicateEventValidator
+  reports it through the reactor Context (markDuplicate) instead of the signal.
+*/
+public class ProcessorMetrics {
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_EMPTY = "empty";
+    private static final String OUTCOME_DUPLICATE = "duplicate";
+    private static final String OUTCOME_FAILURE = "failure";
+
+    //one timer per outcome, index = position in OUTCOMES
+    private static final List<String> OUTCOMES = List.of(OUTCOME_SUCCESS, OUTCOME_EMPTY, OUTCOME_DUPLICATE, OUTCOME_FAILURE);
+
+    public static <T extends DomainEvent, R extends DomainEvent> EventProcessor<T, R> instrument(
+        String processor, EventProcessor<T, R> delegate, MeterRegistry registry){
+        return new InstrumentedProcessor<>(processor, delegate, registry);
+    }
+
+    //called on the duplicate path; no-op outside an instrumented process()
+    public static void markDuplicate(ContextView ctx){
+        ctx.<DuplicateFlag>getOrEmpty(DuplicateFlag.class).ifPresent(flag -> flag.duplicate = true);
+    }
+
+    private static final class DuplicateFlag {
+        private volatile boolean duplicate;
+    }
+
+    private static final class InstrumentedProcessor<T extends DomainEvent, R extends DomainEvent> implements EventProcessor<T, R> {
+
+        private final String processor;
+        private final EventProcessor<T, R> delegate;
+        private final MeterRegistry registry;
+        private final Map<Class<?>, Timer[]> timers = new ConcurrentHashMap<>(); //bounded by the sealed subtypes
+        private final Timer batchTimer;
+        private final Counter batchEvents;
+
+        InstrumentedProcessor(String processor, EventProcessor<T, R> delegate, MeterRegistry registry) {
+            this.processor = processor;
+            this.delegate = delegate;
+            this.registry = registry;
+            this.batchTimer = Timer.builder("saga.processor.batch")
+                .description("processBatch() latency")
+                .tag("processor", processor)
+                .publishPercentileHistogram()
+                .register(registry);
+            this.batchEvents = Counter.builder("saga.processor.batch.events")
+                .description("Events handed to processBatch()")
+                .tag("processor", processor)
+                .register(registry);
+        }
+
+        @Override
+        public Mono<R> process(T event) {
+            return Mono.defer(() -> {
+                var start = System.nanoTime();
+                var flag = new DuplicateFlag();
+                return this.delegate.process(event)
+                    .doOnSuccess(r -> this.record(event, r != null ? OUTCOME_SUCCESS : flag.duplicate ? OUTCOME_DUPLICATE : OUTCOME_EMPTY, start))
+                    .doOnError(ex -> this.record(event, ex instanceof EventAlreadyProcessedException ? OUTCOME_DUPLICATE : OUTCOME_FAILURE, start))
+                    .contextWrite(ctx -> ctx.put(DuplicateFlag.class, flag));
+            });
+        }
+
+        @Override
+        public Flux<R> processBatch(List<T> events) {
+            return Flux.defer(() -> {
+                var start = System.nanoTime();
+                this.batchEvents.increment(events.size());
+                return this.delegate.processBatch(events)
+                    .doFinally(signal -> this.batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+            });
+        }
+
+        private void record(T event, String outcome, long start){
+            var byOutcome = this.timers.computeIfAbsent(event.getClass(), this::register);
+            byOutcome[OUTCOMES.indexOf(outcome)].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer[] register(Class<?> eventType){
+            return OUTCOMES.stream()
+                .map(outcome -> Timer.builder("saga.processor.process")
+                    .description("EventProcessor.process() latency per event subtype and outcome")
+                    .tag("processor", this.processor)
+                    .tag("event", eventType.getSimpleName())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(this.registry))
+                .toArray(Timer[]::new);
+        }
+    }
+}
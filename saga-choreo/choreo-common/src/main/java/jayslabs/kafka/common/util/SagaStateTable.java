@@ -0,0 +1,243 @@
+package jayslabs.kafka.common.util;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.IntUnaryOperator;
+
+/*
+  orderId -> state byte of every in-flight saga, without boxed UUID keys or entry objects.
+
+  Open addressing with linear probing over three parallel primitive arrays: the two
+  longs of the UUID and the state byte, 17 bytes per slot. A table is at most 3/4
+  full before it doubles, so a saga costs 23-45 bytes depending on where the
+  doubling falls: ~36 bytes per saga at a million, vs ~73 for a
+  ConcurrentHashMap<UUID, Byte> (SagaStateTableBenchmark). Removal shifts the
+  following entries of the probe run back (no tombstones), so a table that sees
+  steady insert / remove churn never needs a cleanup pass.
+
+  Split into segments by the high bits of the hash, each guarded by its own lock;
+  every operation is a few array reads under one segment lock.
+
+  State 0 is "absent": stored states must be non-zero, and an update returning 0
+  removes the entry. maxEntries bounds the table, putIfAbsent() refuses beyond it.
+*/
+public class SagaStateTable {
+
+    private static final float MAX_LOAD = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int maxEntriesPerSegment;
+
+    //segments is rounded up to the next power of two
+    public SagaStateTable(int segments, int expectedEntries, int maxEntries) {
+        if (segments < 1 || expectedEntries < 0 || maxEntries < 1){
+            throw new IllegalArgumentException("segments, maxEntries must be >= 1 and expectedEntries >= 0");
+        }
+        var count = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segments = new Segment[count];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        this.maxEntriesPerSegment = Math.max(1, maxEntries / count);
+        var capacity = capacityFor(expectedEntries / count);
+        for (int i = 0; i < count; i++){
+            this.segments[i] = new Segment(capacity);
+        }
+    }
+
+    //0 if absent
+    public int get(UUID orderId) {
+        long msb = orderId.getMostSignificantBits(), lsb = orderId.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return this.segment(hash).get(msb, lsb, hash);
+    }
+
+    //false if the entry exists already or the table is full
+    public boolean putIfAbsent(UUID orderId, int state) {
+        if ((state & 0xFF) == 0){
+            throw new IllegalArgumentException("state must be non-zero");
+        }
+        long msb = orderId.getMostSignificantBits(), lsb = orderId.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return this.segment(hash).putIfAbsent(msb, lsb, hash, (byte) state, this.maxEntriesPerSegment);
+    }
+
+    /*
+    atomically replaces the state with fn(state) and returns the previous state; fn returning 0
+    removes the entry. Absent entries return 0 and are left alone (fn is not applied).
+    fn runs under the segment lock, so it must be cheap and side-effect free.
+    */
+    public int update(UUID orderId, IntUnaryOperator fn) {
+        long msb = orderId.getMostSignificantBits(), lsb = orderId.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return this.segment(hash).update(msb, lsb, hash, fn);
+    }
+
+    //previous state, 0 if absent
+    public int remove(UUID orderId) {
+        return this.update(orderId, state -> 0);
+    }
+
+    //drops every entry, keeping the current capacity
+    public void clear() {
+        for (var segment : this.segments){
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (var segment : this.segments){
+            size += segment.size();
+        }
+        return size;
+    }
+
+    //bytes held by the slot arrays (array headers and the segment objects aside)
+    public long footprint() {
+        long bytes = 0;
+        for (var segment : this.segments){
+            bytes += segment.capacity() * (long) (Long.BYTES + Long.BYTES + Byte.BYTES);
+        }
+        return bytes;
+    }
+
+    private Segment segment(long hash) {
+        return this.segments.length == 1 ? this.segments[0] : this.segments[(int) (hash >>> this.segmentShift)];
+    }
+
+    //power of two holding entries at MAX_LOAD
+    private static int capacityFor(int entries) {
+        var needed = Math.max(MIN_CAPACITY, (int) Math.ceil(entries / MAX_LOAD));
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    //murmur3 fmix64 of both halves: random UUIDs are well mixed already, time-based ones are not
+    static long hash(long msb, long lsb) {
+        long h = msb * 31 + lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+
+        private long[] msbs;
+        private long[] lsbs;
+        private byte[] states; //0 = free slot
+        private int mask;
+        private int size;
+
+        private Segment(int capacity) {
+            this.allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            this.msbs = new long[capacity];
+            this.lsbs = new long[capacity];
+            this.states = new byte[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private synchronized int get(long msb, long lsb, long hash) {
+            int i = this.find(msb, lsb, hash);
+            return i < 0 ? 0 : this.states[i] & 0xFF;
+        }
+
+        private synchronized boolean putIfAbsent(long msb, long lsb, long hash, byte state, int maxEntries) {
+            int i = this.find(msb, lsb, hash);
+            if (i >= 0 || this.size >= maxEntries){
+                return false;
+            }
+            if (this.size + 1 > this.states.length * MAX_LOAD){
+                this.resize();
+                i = this.find(msb, lsb, hash);
+            }
+            i = -i - 1;
+            this.msbs[i] = msb;
+            this.lsbs[i] = lsb;
+            this.states[i] = state;
+            this.size++;
+            return true;
+        }
+
+        private synchronized int update(long msb, long lsb, long hash, IntUnaryOperator fn) {
+            int i = this.find(msb, lsb, hash);
+            if (i < 0){
+                return 0;
+            }
+            int previous = this.states[i] & 0xFF;
+            int next = fn.applyAsInt(previous) & 0xFF;
+            if (next == 0){
+                this.delete(i);
+            } else {
+                this.states[i] = (byte) next;
+            }
+            return previous;
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(this.states, (byte) 0);
+            this.size = 0;
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized int capacity() {
+            return this.states.length;
+        }
+
+        //slot of the key, or -(free slot) - 1 where it would go
+        private int find(long msb, long lsb, long hash) {
+            int i = (int) hash & this.mask;
+            while (this.states[i] != 0){
+                if (this.msbs[i] == msb && this.lsbs[i] == lsb){
+                    return i;
+                }
+                i = (i + 1) & this.mask;
+            }
+            return -i - 1;
+        }
+
+        //backward shift: moves later entries of the run into the gap unless that would put them before their home slot
+        private void delete(int gap) {
+            int j = gap;
+            for (;;){
+                j = (j + 1) & this.mask;
+                if (this.states[j] == 0){
+                    break;
+                }
+                int home = (int) hash(this.msbs[j], this.lsbs[j]) & this.mask;
+                boolean movable = j > gap ? (home <= gap || home > j) : (home <= gap && home > j);
+                if (movable){
+                    this.msbs[gap] = this.msbs[j];
+                    this.lsbs[gap] = this.lsbs[j];
+                    this.states[gap] = this.states[j];
+                    gap = j;
+                }
+            }
+            this.states[gap] = 0;
+            this.size--;
+        }
+
+        private void resize() {
+            var oldMsbs = this.msbs;
+            var oldLsbs = this.lsbs;
+            var oldStates = this.states;
+            this.allocate(oldStates.length << 1);
+            for (int i = 0; i < oldStates.length; i++){
+                if (oldStates[i] != 0){
+                    int slot = -this.find(oldMsbs[i], oldLsbs[i], hash(oldMsbs[i], oldLsbs[i])) - 1;
+                    this.msbs[slot] = oldMsbs[i];
+                    this.lsbs[slot] = oldLsbs[i];
+                    this.states[slot] = oldStates[i];
+                }
+            }
+        }
+    }
+}
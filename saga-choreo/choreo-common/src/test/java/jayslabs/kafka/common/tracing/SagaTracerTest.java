@@ -0,0 +1,94 @@
+package jayslabs.kafka.common.tracing;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverOffset;
+
+public class SagaTracerTest {
+
+    private final InMemorySpanExporter exporter = new InMemorySpanExporter();
+    private final SagaTracer tracer = new SagaTracer("test", 1.0, this.exporter);
+
+    @Test
+    public void sendEndsSpanTest(){
+        var hop = this.tracer.hop("processor");
+        var orderId = UUID.randomUUID();
+        var span = hop.receive(orderId, this.traceparent(orderId));
+
+        Assertions.assertEquals(span.context(), hop.send(orderId));
+        Assertions.assertTrue(span.isEnded());
+        Assertions.assertNull(hop.send(orderId));
+        Assertions.assertEquals(0, hop.openSpans());
+    }
+
+    @Test
+    public void acknowledgedSpanKeepsContextTest(){
+        //the record is acknowledged before its output is mapped: the context must survive
+        var hop = this.tracer.hop("processor");
+        var orderId = UUID.randomUUID();
+        var span = hop.receive(orderId, this.traceparent(orderId));
+        span.endOnAcknowledge(new NoOpOffset()).acknowledge();
+        hop.receive(UUID.randomUUID(), this.traceparent(UUID.randomUUID())); //runs the eviction
+
+        Assertions.assertTrue(span.isEnded());
+        Assertions.assertEquals(span.context(), hop.send(orderId));
+        Assertions.assertEquals(2, this.exporter.spans(orderId).size()); //root + hop, exported once
+    }
+
+    @Test
+    public void oldestOpenSpansEvictedTest(){
+        //never acknowledged, never sent: the oldest are ended and dropped, not scanned per receive
+        var hop = this.tracer.hop("processor");
+        var orderIds = IntStream.range(0, 10_005).mapToObj(i -> UUID.randomUUID()).toList();
+        orderIds.forEach(orderId -> hop.receive(orderId, this.traceparent(orderId)));
+
+        Assertions.assertEquals(10_000, hop.openSpans());
+        IntStream.range(0, 5).forEach(i -> {
+            Assertions.assertEquals(2, this.exporter.spans(orderIds.get(i)).size());
+            Assertions.assertNull(hop.send(orderIds.get(i)));
+        });
+        Assertions.assertNotNull(hop.send(orderIds.get(5)));
+    }
+
+    @Test
+    public void unsampledIsNotTracedTest(){
+        var hop = new SagaTracer("test", 0.0, this.exporter).hop("processor");
+        var orderId = UUID.randomUUID();
+        Assertions.assertNull(hop.receive(orderId, null));
+        Assertions.assertNull(hop.send(orderId));
+        Assertions.assertEquals(0, hop.openSpans());
+    }
+
+    private byte[] traceparent(UUID orderId){
+        return this.tracer.startSaga(orderId, Instant.now()).toTraceparent();
+    }
+
+    private record NoOpOffset() implements ReceiverOffset {
+
+        @Override
+        public TopicPartition topicPartition() {
+            return new TopicPartition("order-events", 0);
+        }
+
+        @Override
+        public long offset() {
+            return 0;
+        }
+
+        @Override
+        public void acknowledge() {
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package jayslabs.kafka.common.util;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class DuplicateEventValidatorTest {
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final ProcessedEventCache cache = new ProcessedEventCache("test", 1_000, 0.01, 100);
+
+    @Test
+    public void newEventIsProcessedOnceTest(){
+        this.cache.rebuild(Flux.empty()).block();
+        var orderId = UUID.randomUUID();
+
+        //new: processed, then known to the cache
+        DuplicateEventValidator.validate(orderId, this.cache, Mono.just(false), this.processing())
+            .as(StepVerifier::create)
+            .expectNext("processed")
+            .verifyComplete();
+
+        //redelivery: answered by the cache, not processed again
+        DuplicateEventValidator.validate(orderId, this.cache, Mono.just(false), this.processing())
+            .as(StepVerifier::create)
+            .verifyError(EventAlreadyProcessedException.class);
+        Assertions.assertEquals(1, this.processed.get());
+    }
+
+    @Test
+    public void failedEventIsNotCachedTest(){
+        this.cache.rebuild(Flux.empty()).block();
+        var orderId = UUID.randomUUID();
+
+        DuplicateEventValidator.validate(orderId, this.cache, Mono.just(false), Mono.error(new IllegalStateException()))
+            .as(StepVerifier::create)
+            .verifyError(IllegalStateException.class);
+
+        //the retry is a new event
+        DuplicateEventValidator.validate(orderId, this.cache, Mono.just(false), this.processing())
+            .as(StepVerifier::create)
+            .expectNext("processed")
+            .verifyComplete();
+    }
+
+    @Test
+    public void claimTest(){
+        this.cache.rebuild(Flux.empty()).block();
+        var orderId = UUID.randomUUID();
+        var claims = new AtomicInteger();
+        var claim = Mono.fromSupplier(() -> claims.incrementAndGet() == 1);
+
+        DuplicateEventValidator.claim(orderId, this.cache, claim, this.processing())
+            .as(StepVerifier::create)
+            .expectNext("processed")
+            .verifyComplete();
+        Assertions.assertEquals(1, claims.get());
+
+        //cached now: the duplicate is rejected without a second claim
+        DuplicateEventValidator.claim(orderId, this.cache, claim, this.processing())
+            .as(StepVerifier::create)
+            .verifyError(EventAlreadyProcessedException.class);
+        Assertions.assertEquals(1, claims.get());
+        Assertions.assertEquals(1, this.processed.get());
+    }
+
+    @Test
+    public void claimedElsewhereTest(){
+        //cache not rebuilt: every event is claimed, false = claimed by an earlier delivery
+        DuplicateEventValidator.claim(UUID.randomUUID(), this.cache, Mono.just(false), this.processing())
+            .as(StepVerifier::create)
+            .verifyError(EventAlreadyProcessedException.class);
+        Assertions.assertEquals(0, this.processed.get());
+    }
+
+    private Mono<String> processing(){
+        return Mono.fromSupplier(() -> {
+            this.processed.incrementAndGet();
+            return "processed";
+        });
+    }
+}
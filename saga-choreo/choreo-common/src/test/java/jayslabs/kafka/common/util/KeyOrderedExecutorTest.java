@@ -0,0 +1,129 @@
+package jayslabs.kafka.common.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class KeyOrderedExecutorTest {
+
+    private static final int ORDERS = 16;
+    private static final int EVENTS_PER_ORDER = 8;
+
+    @Test
+    public void perOrderOrderingTest(){
+        var processed = Flux.fromIterable(records())
+            .transform(KeyOrderedExecutor.<OrderEvent, CustomRecord<OrderEvent>>execute(4, cr -> Mono.just(cr)
+                //random latency: later records of other orders overtake, never those of the same order
+                .delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(5)))))
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(ORDERS * EVENTS_PER_ORDER, processed.size());
+        assertOrderedPerOrder(processed);
+    }
+
+    @Test
+    public void lanesRunConcurrentlyTest(){
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        Flux.fromIterable(records())
+            .transform(KeyOrderedExecutor.<OrderEvent, CustomRecord<OrderEvent>>execute(4, cr -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                //decremented before the task completes: doFinally would run after the lane started its next one
+                .then(Mono.delay(Duration.ofMillis(2)).doOnTerminate(running::decrementAndGet))
+                .thenReturn(cr)))
+            .blockLast(Duration.ofSeconds(10));
+        Assertions.assertTrue(maxRunning.get() > 1, "no two lanes ran at the same time");
+        Assertions.assertTrue(maxRunning.get() <= 4, "more tasks than lanes at once: " + maxRunning.get());
+    }
+
+    @Test
+    public void singleLaneIsSequentialTest(){
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var records = records();
+        var processed = Flux.fromIterable(records)
+            .transform(KeyOrderedExecutor.<OrderEvent, CustomRecord<OrderEvent>>execute(1, cr -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                //decremented before the task completes: doFinally would run after the lane started its next one
+                .then(Mono.delay(Duration.ofMillis(1)).doOnTerminate(running::decrementAndGet))
+                .thenReturn(cr)))
+            .collectList()
+            .block(Duration.ofSeconds(10));
+        Assertions.assertEquals(1, maxRunning.get());
+        Assertions.assertEquals(records, processed);
+    }
+
+    @Test
+    public void batchedTest(){
+        var batches = Flux.fromIterable(records())
+            .transform(KeyOrderedExecutor.<OrderEvent, List<CustomRecord<OrderEvent>>>executeBatched(4, 5, Duration.ofMillis(10),
+                batch -> Mono.just(batch).delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(5)))))
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        Assertions.assertTrue(batches.stream().allMatch(batch -> !batch.isEmpty() && batch.size() <= 5));
+        //a batch holds one lane only
+        batches.forEach(batch -> Assertions.assertEquals(1,
+            batch.stream().map(cr -> KeyOrderedExecutor.laneOf(cr, 4)).distinct().count()));
+        var processed = batches.stream().flatMap(List::stream).toList();
+        Assertions.assertEquals(ORDERS * EVENTS_PER_ORDER, processed.size());
+        assertOrderedPerOrder(processed);
+    }
+
+    @Test
+    public void laneOfTest(){
+        var orderId = UUID.randomUUID();
+        //the orderId decides the lane, whatever the kafka key
+        var a = new CustomRecord<>("a", event(orderId, 0), null);
+        var b = new CustomRecord<>("b", event(orderId, 1), null);
+        Assertions.assertEquals(KeyOrderedExecutor.laneOf(a, 8), KeyOrderedExecutor.laneOf(b, 8));
+
+        //no orderId: falls back to the key
+        var c = new CustomRecord<>("key", "message", null);
+        var d = new CustomRecord<>("key", "other", null);
+        Assertions.assertEquals(KeyOrderedExecutor.laneOf(c, 8), KeyOrderedExecutor.laneOf(d, 8));
+
+        //every lane is used
+        var lanes = IntStream.range(0, 1000)
+            .mapToObj(i -> KeyOrderedExecutor.laneOf(new CustomRecord<>(null, event(UUID.randomUUID(), 0), null), 8))
+            .collect(Collectors.toSet());
+        Assertions.assertEquals(8, lanes.size());
+    }
+
+    //EVENTS_PER_ORDER events of ORDERS orders, interleaved; quantity is the sequence within the order
+    private static List<CustomRecord<OrderEvent>> records(){
+        var orderIds = IntStream.range(0, ORDERS).mapToObj(i -> UUID.randomUUID()).toList();
+        return IntStream.range(0, ORDERS * EVENTS_PER_ORDER)
+            .mapToObj(i -> new CustomRecord<OrderEvent>(null, event(orderIds.get(i % ORDERS), i / ORDERS), null))
+            .toList();
+    }
+
+    private static OrderEvent event(UUID orderId, int sequence){
+        return OrderEvent.OrderCreated.builder()
+            .orderId(orderId)
+            .quantity(sequence)
+            .build();
+    }
+
+    private static void assertOrderedPerOrder(List<CustomRecord<OrderEvent>> processed){
+        Map<UUID, List<Integer>> sequences = processed.stream()
+            .map(CustomRecord::message)
+            .map(OrderEvent.OrderCreated.class::cast)
+            .collect(Collectors.groupingBy(OrderEvent.OrderCreated::orderId,
+                Collectors.mapping(OrderEvent.OrderCreated::quantity, Collectors.toList())));
+        Assertions.assertEquals(ORDERS, sequences.size());
+        var expected = IntStream.range(0, EVENTS_PER_ORDER).boxed().toList();
+        sequences.forEach((orderId, sequence) -> Assertions.assertEquals(expected, sequence, "order " + orderId));
+    }
+}
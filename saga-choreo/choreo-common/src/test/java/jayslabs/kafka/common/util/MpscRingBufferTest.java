@@ -0,0 +1,180 @@
+package jayslabs.kafka.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Sinks;
+
+public class MpscRingBufferTest {
+
+    private static final long PARK_NANOS = 10_000;
+    private static final int MAX_EMPTY_POLLS = 100_000; //~1s+ without a single element: producers are stuck
+
+    @Test
+    public void capacityTest(){
+        Assertions.assertEquals(8, new MpscRingBuffer<>(5).capacity());
+        Assertions.assertEquals(8, new MpscRingBuffer<>(8).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(1));
+    }
+
+    @Test
+    public void fifoAndFullTest(){
+        var buffer = new MpscRingBuffer<Integer>(4);
+        Assertions.assertNull(buffer.poll());
+        Assertions.assertTrue(buffer.isEmpty());
+
+        IntStream.range(0, 4).forEach(i -> Assertions.assertTrue(buffer.offer(i)));
+        Assertions.assertFalse(buffer.offer(4)); //full: refused, not blocked
+        Assertions.assertEquals(4, buffer.size());
+        Assertions.assertEquals(1.0, buffer.fillRatio());
+        Assertions.assertEquals(0, buffer.peek());
+
+        Assertions.assertEquals(0, buffer.poll());
+        Assertions.assertTrue(buffer.offer(4)); //the freed slot is reused
+        Assertions.assertEquals(List.of(1, 2, 3, 4), drain(buffer));
+        Assertions.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void wrapAroundTest(){
+        //many laps over 4 slots, the consumer keeping one element behind
+        var buffer = new MpscRingBuffer<Integer>(4);
+        buffer.offer(0);
+        for (int i = 1; i < 1000; i++){
+            Assertions.assertTrue(buffer.offer(i));
+            Assertions.assertEquals(i - 1, buffer.poll());
+        }
+        Assertions.assertEquals(List.of(999), drain(buffer));
+    }
+
+    @Test
+    public void iteratorTest(){
+        var buffer = new MpscRingBuffer<String>(8);
+        Assertions.assertFalse(buffer.iterator().hasNext());
+
+        //past the end of the array: the snapshot follows the positions, not the slots
+        IntStream.range(0, 6).forEach(i -> buffer.offer("x" + i));
+        IntStream.range(0, 5).forEach(i -> buffer.poll());
+        List.of("a", "b", "c", "d").forEach(buffer::offer);
+
+        var snapshot = new ArrayList<String>();
+        buffer.iterator().forEachRemaining(snapshot::add);
+        Assertions.assertEquals(List.of("x5", "a", "b", "c", "d"), snapshot);
+        Assertions.assertTrue(buffer.contains("c"));
+        Assertions.assertArrayEquals(new Object[]{"x5", "a", "b", "c", "d"}, buffer.toArray());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
+            var it = buffer.iterator();
+            it.next();
+            it.remove();
+        });
+
+        //iterating does not consume
+        Assertions.assertEquals(5, buffer.size());
+        buffer.clear();
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void concurrentProducersTest() throws InterruptedException{
+        var producers = 4;
+        var perProducer = 50_000;
+        var buffer = new MpscRingBuffer<Integer>(64);
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            for (int p = 0; p < producers; p++){
+                var base = p * perProducer;
+                executor.execute(() -> {
+                    await(start);
+                    for (int i = 0; i < perProducer; i++){
+                        while (!buffer.offer(base + i)){
+                            LockSupport.parkNanos(PARK_NANOS); //full: let the consumer run, even on one CPU
+                        }
+                    }
+                });
+            }
+            start.countDown();
+
+            //single consumer: every element exactly once, each producer's in its order
+            var seen = new HashSet<Integer>();
+            var last = new int[producers];
+            Arrays.fill(last, -1);
+            //bounded by empty polls in a row, not by wall-clock time
+            var emptyPolls = 0;
+            while (seen.size() < producers * perProducer && emptyPolls < MAX_EMPTY_POLLS){
+                var e = buffer.poll();
+                if (e == null){
+                    emptyPolls++;
+                    LockSupport.parkNanos(PARK_NANOS); //empty: let the producers run
+                    continue;
+                }
+                emptyPolls = 0;
+                Assertions.assertTrue(seen.add(e), "delivered twice: " + e);
+                var producer = e / perProducer;
+                Assertions.assertTrue(e % perProducer > last[producer], "out of order: " + e);
+                last[producer] = e % perProducer;
+            }
+            Assertions.assertEquals(producers * perProducer, seen.size());
+            Assertions.assertNull(buffer.poll());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void unicastSinkTest(){
+        //as in OrderEventListenerConfig: concurrent emitters, no serialization wrapper
+        var buffer = new MpscRingBuffer<Integer>(4);
+        var sink = Sinks.unsafe().many().unicast().<Integer>onBackpressureBuffer(buffer);
+        var received = new ArrayList<Integer>();
+        var subscriber = new BaseSubscriber<Integer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                //no request yet: emissions stay in the buffer
+            }
+
+            @Override
+            protected void hookOnNext(Integer value) {
+                received.add(value);
+            }
+        };
+        sink.asFlux().subscribe(subscriber);
+
+        IntStream.range(0, 4).forEach(i -> Assertions.assertEquals(Sinks.EmitResult.OK, sink.tryEmitNext(i)));
+        Assertions.assertEquals(Sinks.EmitResult.FAIL_OVERFLOW, sink.tryEmitNext(4));
+
+        subscriber.request(4);
+        Assertions.assertEquals(List.of(0, 1, 2, 3), received);
+        Assertions.assertEquals(Sinks.EmitResult.OK, sink.tryEmitNext(4)); //drained: room again
+    }
+
+    private static <E> List<E> drain(MpscRingBuffer<E> buffer){
+        var elements = new ArrayList<E>();
+        for (E e = buffer.poll(); e != null; e = buffer.poll()){
+            elements.add(e);
+        }
+        return elements;
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
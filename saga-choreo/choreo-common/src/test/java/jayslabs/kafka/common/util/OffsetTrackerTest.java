@@ -0,0 +1,145 @@
+package jayslabs.kafka.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+
+public class OffsetTrackerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("order-events", 0);
+    private static final TopicPartition P1 = new TopicPartition("order-events", 1);
+
+    private final List<Long> acked = new ArrayList<>();
+    private final OffsetTracker tracker = new OffsetTracker("processor");
+
+    @Test
+    public void outOfOrderCompletionTest(){
+        var offsets = this.track(P0, 10, 14);
+
+        //12 finishes first: 10 and 11 are still in flight, nothing may be acknowledged
+        offsets.get(2).acknowledge();
+        Assertions.assertEquals(List.of(), this.acked);
+        Assertions.assertEquals(4, this.tracker.inFlight());
+        Assertions.assertEquals(1, this.tracker.completionGap());
+
+        offsets.get(0).acknowledge();
+        Assertions.assertEquals(List.of(10L), this.acked);
+        Assertions.assertEquals(1, this.tracker.completionGap());
+
+        //11 closes the gap: the watermark jumps over the completed 12
+        offsets.get(1).acknowledge();
+        Assertions.assertEquals(List.of(10L, 12L), this.acked);
+        Assertions.assertEquals(0, this.tracker.completionGap());
+        Assertions.assertEquals(2, this.tracker.inFlight());
+
+        offsets.get(4).acknowledge();
+        Assertions.assertEquals(List.of(10L, 12L), this.acked);
+
+        offsets.get(3).acknowledge();
+        Assertions.assertEquals(List.of(10L, 12L, 14L), this.acked);
+        Assertions.assertEquals(0, this.tracker.inFlight());
+        Assertions.assertEquals(0, this.tracker.completionGap());
+    }
+
+    @Test
+    public void contiguousWatermarkTest(){
+        var offsets = this.track(P0, 0, 3);
+
+        //in order: every completion is the new watermark
+        offsets.forEach(ReceiverOffset::acknowledge);
+        Assertions.assertEquals(List.of(0L, 1L, 2L, 3L), this.acked);
+
+        //a second acknowledge of a completed record is ignored
+        offsets.get(3).acknowledge();
+        offsets.get(3).commit().block();
+        Assertions.assertEquals(List.of(0L, 1L, 2L, 3L), this.acked);
+    }
+
+    @Test
+    public void partitionsAreIndependentTest(){
+        var p0 = this.track(P0, 0, 1);
+        var p1 = this.track(P1, 0, 1);
+
+        //p0 is held back by offset 0, p1 is not
+        p0.get(1).acknowledge();
+        p1.get(0).acknowledge();
+        Assertions.assertEquals(List.of(0L), this.acked);
+        Assertions.assertEquals(2, this.tracker.inFlight());
+        Assertions.assertEquals(1, this.tracker.completionGap());
+    }
+
+    @Test
+    public void resetTest(){
+        var beforeRebalance = this.track(P0, 10, 12);
+        beforeRebalance.get(1).acknowledge();
+        Assertions.assertEquals(1, this.tracker.completionGap());
+
+        //rebalance: the partition comes back at a higher offset (another consumer committed meanwhile)
+        this.tracker.reset(List.of(P0));
+        var afterRebalance = this.track(P0, 20, 22);
+        Assertions.assertEquals(3, this.tracker.inFlight());
+        Assertions.assertEquals(0, this.tracker.completionGap());
+
+        //stale offsets of the previous assignment no longer move the watermark
+        beforeRebalance.get(0).acknowledge();
+        beforeRebalance.get(2).acknowledge();
+        Assertions.assertEquals(List.of(), this.acked);
+
+        afterRebalance.get(0).acknowledge();
+        afterRebalance.get(2).acknowledge();
+        Assertions.assertEquals(List.of(20L), this.acked);
+        afterRebalance.get(1).acknowledge();
+        Assertions.assertEquals(List.of(20L, 22L), this.acked);
+    }
+
+    @Test
+    public void resetKeepsOtherPartitionsTest(){
+        var p0 = this.track(P0, 0, 1);
+        var p1 = this.track(P1, 0, 1);
+        this.tracker.reset(List.of(P1));
+
+        p0.get(1).acknowledge();
+        p0.get(0).acknowledge();
+        p1.get(0).acknowledge();
+        Assertions.assertEquals(List.of(1L), this.acked);
+        Assertions.assertEquals(0, this.tracker.inFlight());
+    }
+
+    @Test
+    public void customizesOwnBindingOnlyTest(){
+        ReceiverOptions<Object, Object> options = ReceiverOptions.create(Map.of());
+        Assertions.assertSame(options, this.tracker.apply("other-in-0", options));
+
+        var customized = this.tracker.apply("processor-in-0", options);
+        Assertions.assertEquals(1, customized.assignListeners().size());
+        Assertions.assertEquals(1, customized.revokeListeners().size());
+    }
+
+    private List<ReceiverOffset> track(TopicPartition partition, long from, long to){
+        return LongStream.rangeClosed(from, to)
+            .mapToObj(offset -> this.tracker.track(new TestOffset(partition, offset, this.acked)))
+            .toList();
+    }
+
+    private record TestOffset(TopicPartition topicPartition, long offset, List<Long> acked) implements ReceiverOffset {
+
+        @Override
+        public void acknowledge() {
+            this.acked.add(this.offset);
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            return Mono.fromRunnable(this::acknowledge);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package jayslabs.kafka.common.util;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class ProcessedEventCacheTest {
+
+    private final AtomicInteger dbChecks = new AtomicInteger();
+
+    @Test
+    public void disabledIsPassThroughTest(){
+        var cache = ProcessedEventCache.disabled("test");
+        var orderId = UUID.randomUUID();
+        cache.markProcessed(orderId).block();
+
+        Assertions.assertFalse(cache.isEnabled());
+        Assertions.assertTrue(cache.isDuplicate(orderId, this.db(true)).block());
+        Assertions.assertFalse(cache.isDuplicate(orderId, this.db(false)).block());
+        Assertions.assertEquals(2, this.dbChecks.get());
+    }
+
+    @Test
+    public void dbUntilRebuiltTest(){
+        var cache = cache(10);
+        Assertions.assertFalse(cache.isDuplicate(UUID.randomUUID(), this.db(false)).block());
+        Assertions.assertEquals(1, this.dbChecks.get());
+
+        cache.rebuild(Flux.empty()).block();
+        Assertions.assertFalse(cache.isDuplicate(UUID.randomUUID(), this.db(true)).block());
+        Assertions.assertEquals(1, this.dbChecks.get());
+    }
+
+    @Test
+    public void bloomTierTest(){
+        var processed = UUID.randomUUID();
+        var cache = cache(10);
+        cache.rebuild(Flux.just(processed)).block();
+
+        //not in the filter: definitely new, the db is not asked
+        Assertions.assertFalse(cache.isDuplicate(UUID.randomUUID(), this.db(true)).block());
+        Assertions.assertEquals(0, this.dbChecks.get());
+
+        //in the filter but not recent: the db decides, and a confirmed duplicate is remembered
+        Assertions.assertTrue(cache.isDuplicate(processed, this.db(true)).block());
+        Assertions.assertEquals(1, this.dbChecks.get());
+        Assertions.assertTrue(cache.isDuplicate(processed, this.db(false)).block());
+        Assertions.assertEquals(1, this.dbChecks.get());
+    }
+
+    @Test
+    public void bloomFalsePositiveRateTest(){
+        var cache = new ProcessedEventCache("test", 10_000, 0.01, 10);
+        cache.rebuild(Flux.range(0, 10_000).map(i -> UUID.randomUUID())).block();
+
+        //the db answers "new" for every orderId the filter wrongly holds
+        IntStream.range(0, 10_000).forEach(i -> cache.isDuplicate(UUID.randomUUID(), this.db(false)).block());
+        Assertions.assertTrue(this.dbChecks.get() < 300, "false positives: " + this.dbChecks.get());
+        Assertions.assertEquals(this.dbChecks.get() > 0 ? 1.0 : 0.0, cache.falsePositiveRatio());
+    }
+
+    @Test
+    public void recentTierTest(){
+        var cache = cache(2);
+        cache.rebuild(Flux.empty()).block();
+        var orderIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        //no transaction: added right away
+        cache.markProcessed(orderIds).block();
+
+        //the two most recent are answered from memory
+        Assertions.assertTrue(cache.isDuplicate(orderIds.get(1), this.db(false)).block());
+        Assertions.assertTrue(cache.isDuplicate(orderIds.get(2), this.db(false)).block());
+        Assertions.assertEquals(0, this.dbChecks.get());
+
+        //the eldest was evicted from the LRU, the filter still has it: the db decides
+        Assertions.assertFalse(cache.isDuplicate(orderIds.get(0), this.db(false)).block());
+        Assertions.assertEquals(1, this.dbChecks.get());
+
+        //evict() forgets a recent orderId: the next lookup goes to the db
+        cache.evict(orderIds.get(2));
+        Assertions.assertFalse(cache.isDuplicate(orderIds.get(2), this.db(false)).block());
+        Assertions.assertEquals(2, this.dbChecks.get());
+    }
+
+    private static ProcessedEventCache cache(int recentSize){
+        return new ProcessedEventCache("test", 1_000, 0.01, recentSize);
+    }
+
+    private Mono<Boolean> db(boolean duplicate){
+        return Mono.fromSupplier(() -> {
+            this.dbChecks.incrementAndGet();
+            return duplicate;
+        });
+    }
+}
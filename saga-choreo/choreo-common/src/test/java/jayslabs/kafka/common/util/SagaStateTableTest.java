@@ -0,0 +1,136 @@
+package jayslabs.kafka.common.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SagaStateTableTest {
+
+    @Test
+    public void putGetUpdateRemoveTest(){
+        var table = new SagaStateTable(4, 0, 100);
+        var orderId = UUID.randomUUID();
+        Assertions.assertEquals(0, table.get(orderId));
+        Assertions.assertTrue(table.putIfAbsent(orderId, 1));
+        Assertions.assertFalse(table.putIfAbsent(orderId, 2)); //present: left alone
+        Assertions.assertEquals(1, table.get(orderId));
+
+        Assertions.assertEquals(1, table.update(orderId, state -> state | 4));
+        Assertions.assertEquals(5, table.get(orderId));
+        Assertions.assertEquals(5, table.update(orderId, state -> 0)); //0 removes
+        Assertions.assertEquals(0, table.get(orderId));
+        Assertions.assertEquals(0, table.size());
+
+        //absent: fn is not applied, nothing is added
+        Assertions.assertEquals(0, table.update(orderId, state -> 7));
+        Assertions.assertEquals(0, table.remove(orderId));
+        Assertions.assertEquals(0, table.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> table.putIfAbsent(orderId, 0));
+    }
+
+    @Test
+    public void maxEntriesTest(){
+        var table = new SagaStateTable(1, 0, 3);
+        var orderIds = IntStream.range(0, 4).mapToObj(i -> UUID.randomUUID()).toList();
+        IntStream.range(0, 3).forEach(i -> Assertions.assertTrue(table.putIfAbsent(orderIds.get(i), 1)));
+        Assertions.assertFalse(table.putIfAbsent(orderIds.get(3), 1));
+
+        //a removed entry frees its place
+        table.remove(orderIds.get(0));
+        Assertions.assertTrue(table.putIfAbsent(orderIds.get(3), 1));
+        Assertions.assertEquals(3, table.size());
+    }
+
+    @Test
+    public void resizeTest(){
+        var table = new SagaStateTable(4, 0, 1_000_000);
+        var initial = table.footprint();
+        var orderIds = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID()).toList();
+        for (int i = 0; i < orderIds.size(); i++){
+            Assertions.assertTrue(table.putIfAbsent(orderIds.get(i), 1 + i % 255));
+        }
+        Assertions.assertEquals(10_000, table.size());
+        Assertions.assertTrue(table.footprint() > initial);
+        for (int i = 0; i < orderIds.size(); i++){
+            Assertions.assertEquals(1 + i % 255, table.get(orderIds.get(i)));
+        }
+
+        //clear keeps the capacity
+        var footprint = table.footprint();
+        table.clear();
+        Assertions.assertEquals(0, table.size());
+        Assertions.assertEquals(0, table.get(orderIds.get(0)));
+        Assertions.assertEquals(footprint, table.footprint());
+    }
+
+    @Test
+    public void wrapAroundDeleteTest(){
+        //one segment of 16 slots: a run 14, 15, 0, 1 crossing the end of the arrays
+        var table = new SagaStateTable(1, 0, 100);
+        var a = withHome(14, List.of());
+        var b = withHome(14, List.of(a));
+        var c = withHome(15, List.of(a, b));
+        var d = withHome(0, List.of(a, b, c));
+        var run = List.of(a, b, c, d);
+        for (int i = 0; i < run.size(); i++){
+            Assertions.assertTrue(table.putIfAbsent(run.get(i), i + 1));
+        }
+
+        //deleting the head shifts b to 14, c to 15 and d, past the end, back to 0
+        Assertions.assertEquals(1, table.remove(a));
+        Assertions.assertEquals(0, table.get(a));
+        Assertions.assertEquals(2, table.get(b));
+        Assertions.assertEquals(3, table.get(c));
+        Assertions.assertEquals(4, table.get(d));
+
+        //d sits at its home slot 0 and must not move in front of it
+        Assertions.assertEquals(3, table.remove(c));
+        Assertions.assertEquals(2, table.get(b));
+        Assertions.assertEquals(4, table.get(d));
+        Assertions.assertTrue(table.putIfAbsent(c, 5)); //c takes the freed 15 again
+        Assertions.assertEquals(5, table.get(c));
+        Assertions.assertEquals(3, table.size());
+    }
+
+    @Test
+    public void churnTest(){
+        //insert / remove churn in one 16-slot segment, kept below the resize: every probe run wraps sooner or later
+        var table = new SagaStateTable(1, 0, 100);
+        var reference = new HashMap<UUID, Integer>();
+        var keys = IntStream.range(0, 40).mapToObj(i -> UUID.randomUUID()).toList();
+        var random = new Random(42);
+        for (int op = 0; op < 100_000; op++){
+            var key = keys.get(random.nextInt(keys.size()));
+            if (reference.containsKey(key)){
+                Assertions.assertEquals((int) reference.remove(key), table.remove(key));
+            } else if (reference.size() < 12){
+                var state = 1 + random.nextInt(255);
+                Assertions.assertTrue(table.putIfAbsent(key, state));
+                reference.put(key, state);
+            }
+            if (op % 100 == 0){
+                Assertions.assertEquals(reference.size(), table.size());
+                for (var k : keys){
+                    Assertions.assertEquals((int) reference.getOrDefault(k, 0), table.get(k), "op " + op);
+                }
+            }
+        }
+        Assertions.assertEquals(16L * 17, table.footprint()); //never resized
+    }
+
+    //a random orderId whose home slot in a 16-slot segment is home, distinct from taken
+    private static UUID withHome(int home, List<UUID> taken){
+        for (;;){
+            var orderId = UUID.randomUUID();
+            var slot = (int) SagaStateTable.hash(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits()) & 15;
+            if (slot == home && !taken.contains(orderId)){
+                return orderId;
+            }
+        }
+    }
+}
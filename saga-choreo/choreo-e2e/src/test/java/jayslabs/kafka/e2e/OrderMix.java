@@ -0,0 +1,33 @@
+package jayslabs.kafka.e2e;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import jayslabs.kafka.order.common.dto.OrderCreateRequest;
+
+/*
+Orders for a run: uniform customers and products, most orders cost 1 and take
+1 unit, failBalance of them are priced and failStock of them sized at
+outOfReach, above the seeded balance / stock, so they are cancelled.
+*/
+record OrderMix(int customers, int products, double failBalance, double failStock, int outOfReach) {
+
+    List<OrderCreateRequest> generate(int count, long seed){
+        var random = new SplittableRandom(seed);
+        return IntStream.range(0, count).mapToObj(i -> this.next(random)).toList();
+    }
+
+    private OrderCreateRequest next(SplittableRandom random){
+        var customerId = 1 + random.nextInt(this.customers);
+        var productId = 1 + random.nextInt(this.products);
+        var mix = random.nextDouble();
+        if (mix < this.failBalance){
+            return new OrderCreateRequest(customerId, productId, 1, this.outOfReach);
+        }
+        if (mix < this.failBalance + this.failStock){
+            return new OrderCreateRequest(customerId, productId, this.outOfReach, 0);
+        }
+        return new OrderCreateRequest(customerId, productId, 1, 1);
+    }
+}
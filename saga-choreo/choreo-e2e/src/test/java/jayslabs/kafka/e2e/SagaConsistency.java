@@ -0,0 +1,133 @@
+package jayslabs.kafka.e2e;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/*
+Seeds the services' databases for a run and checks them against each other afterwards.
+
+After every saga has finished:
+  - no purchase_order is PENDING and every COMPLETED order has its delivery date
+  - the orders with a DEDUCTED payment, a DEDUCTED inventory and a SCHEDULED
+    shipment are exactly the COMPLETED orders (cancelled ones were compensated)
+  - no PENDING shipment is left (cancelled orders' shipments are deleted)
+  - per customer: seeded balance - DEDUCTED amounts = balance, never negative
+  - per product: seeded stock - DEDUCTED quantities = available, never negative
+*/
+final class SagaConsistency {
+
+    private static final Duration QUERY_TIMEOUT = Duration.ofSeconds(30);
+
+    private final DatabaseClient orderDb;
+    private final DatabaseClient paymentDb;
+    private final DatabaseClient inventoryDb;
+    private final DatabaseClient shippingDb;
+    private Map<Integer, Integer> seededBalances;
+    private Map<Integer, Integer> seededStock;
+
+    SagaConsistency(Map<SagaService, ConfigurableApplicationContext> contexts) {
+        this.orderDb = contexts.get(SagaService.ORDER).getBean(DatabaseClient.class);
+        this.paymentDb = contexts.get(SagaService.PAYMENT).getBean(DatabaseClient.class);
+        this.inventoryDb = contexts.get(SagaService.INVENTORY).getBean(DatabaseClient.class);
+        this.shippingDb = contexts.get(SagaService.SHIPPING).getBean(DatabaseClient.class);
+    }
+
+    //tops data.sql up to the given number of customers / products, all with the same balance / stock
+    void seed(int customers, int products, int balance, int stock){
+        this.execute(this.paymentDb, "insert into customer(name, balance) select 'customer-' || x, 0 from system_range(1, %d)"
+            .formatted(Math.max(0, customers - this.count(this.paymentDb, "select count(*) from customer"))));
+        this.execute(this.paymentDb, "update customer set balance = " + balance);
+        this.execute(this.inventoryDb, "insert into product(description, available_quantity) select 'product-' || x, 0 from system_range(1, %d)"
+            .formatted(Math.max(0, products - this.count(this.inventoryDb, "select count(*) from product"))));
+        this.execute(this.inventoryDb, "update product set available_quantity = " + stock);
+        this.seededBalances = this.amounts(this.paymentDb, "select id, balance from customer");
+        this.seededStock = this.amounts(this.inventoryDb, "select id, available_quantity from product");
+    }
+
+    //orders still PENDING or COMPLETED without a delivery date (ShippingScheduled not applied yet)
+    int unsettledOrders(){
+        return this.count(this.orderDb, "select count(*) from purchase_order where status = 'PENDING'"
+            + " or (status = 'COMPLETED' and delivery_date is null)");
+    }
+
+    List<String> violations(){
+        var violations = new ArrayList<String>();
+        var pending = this.count(this.orderDb, "select count(*) from purchase_order where status = 'PENDING'");
+        if (pending > 0){
+            violations.add(pending + " orders still PENDING");
+        }
+        var undelivered = this.count(this.orderDb, "select count(*) from purchase_order where status = 'COMPLETED' and delivery_date is null");
+        if (undelivered > 0){
+            violations.add(undelivered + " COMPLETED orders without delivery date");
+        }
+
+        var completed = this.orderIds(this.orderDb, "select order_id from purchase_order where status = 'COMPLETED'");
+        this.sameOrders(violations, "DEDUCTED payments", completed,
+            this.orderIds(this.paymentDb, "select order_id from customer_payment where status = 'DEDUCTED'"));
+        this.sameOrders(violations, "DEDUCTED inventories", completed,
+            this.orderIds(this.inventoryDb, "select order_id from order_inventory where status = 'DEDUCTED'"));
+        this.sameOrders(violations, "SCHEDULED shipments", completed,
+            this.orderIds(this.shippingDb, "select order_id from shipment where status = 'SCHEDULED'"));
+        var leftover = this.count(this.shippingDb, "select count(*) from shipment where status <> 'SCHEDULED'");
+        if (leftover > 0){
+            violations.add(leftover + " shipments still PENDING");
+        }
+
+        this.ledger(violations, "customer", this.seededBalances,
+            this.amounts(this.paymentDb, "select id, balance from customer"),
+            this.amounts(this.paymentDb, "select customer_id, sum(amount) from customer_payment where status = 'DEDUCTED' group by customer_id"));
+        this.ledger(violations, "product", this.seededStock,
+            this.amounts(this.inventoryDb, "select id, available_quantity from product"),
+            this.amounts(this.inventoryDb, "select product_id, sum(quantity) from order_inventory where status = 'DEDUCTED' group by product_id"));
+        return violations;
+    }
+
+    private void sameOrders(List<String> violations, String what, Set<UUID> completed, Set<UUID> actual){
+        var missing = completed.stream().filter(id -> !actual.contains(id)).count();
+        var extra = actual.stream().filter(id -> !completed.contains(id)).count();
+        if (missing > 0 || extra > 0){
+            violations.add("%s: %d COMPLETED orders without one, %d for orders not COMPLETED".formatted(what, missing, extra));
+        }
+    }
+
+    private void ledger(List<String> violations, String what, Map<Integer, Integer> seeded,
+                        Map<Integer, Integer> current, Map<Integer, Integer> deducted){
+        seeded.forEach((id, start) -> {
+            var now = current.getOrDefault(id, 0);
+            var expected = start - deducted.getOrDefault(id, 0);
+            if (now != expected || now < 0){
+                violations.add("%s %d: %d left, expected %d (seeded %d)".formatted(what, id, now, expected, start));
+            }
+        });
+    }
+
+    private void execute(DatabaseClient db, String sql){
+        db.sql(sql).then().block(QUERY_TIMEOUT);
+    }
+
+    private int count(DatabaseClient db, String sql){
+        return db.sql(sql).map(row -> row.get(0, Long.class)).one().block(QUERY_TIMEOUT).intValue();
+    }
+
+    private Set<UUID> orderIds(DatabaseClient db, String sql){
+        return db.sql(sql).map(row -> row.get(0, UUID.class)).all()
+            .collect(Collectors.toCollection(HashSet::new))
+            .block(QUERY_TIMEOUT);
+    }
+
+    //first column -> second column, both read as int
+    private Map<Integer, Integer> amounts(DatabaseClient db, String sql){
+        return db.sql(sql).map(row -> Map.entry(row.get(0, Integer.class), ((Number) row.get(1)).intValue())).all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .block(QUERY_TIMEOUT);
+    }
+}
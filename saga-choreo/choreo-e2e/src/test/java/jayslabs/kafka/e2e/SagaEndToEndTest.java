@@ -0,0 +1,159 @@
+package jayslabs.kafka.e2e;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import jayslabs.kafka.order.common.dto.OrderCreateRequest;
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/*
+End-to-end throughput of the real choreography in one JVM: order-service,
+customer-payment, inventory-service and shipping-service run as separate
+Spring contexts with their own configuration and H2 database, against one
+embedded KRaft broker whose topics have several partitions.
+
+e2e.orders orders are posted to /order with bounded concurrency (503 from the
+order buffer is retried), then the run waits until every accepted saga reached
+OrderCompleted / OrderCancelled and shipping settled. Reported:
+  sagas/s      finished sagas / (last terminal event - first POST)
+  latency      POST sent -> terminal event on order-events, p50..max
+  consistency  SagaConsistency across the four databases (asserted)
+
+Balances and stock are seeded so that only the planned failures cancel:
+e2e.fail-balance / e2e.fail-stock of the orders are priced / sized above them.
+
+    mvn -Pe2e -pl choreo-e2e -am test -De2e.orders=20000 -De2e.partitions=8 -De2e.concurrency=256
+*/
+public class SagaEndToEndTest {
+
+    private static final int ORDERS = Integer.getInteger("e2e.orders", 2000);
+    private static final int PARTITIONS = Integer.getInteger("e2e.partitions", 4);
+    private static final int CONCURRENCY = Integer.getInteger("e2e.concurrency", 64);
+    private static final int CUSTOMERS = Integer.getInteger("e2e.customers", 100);
+    private static final int PRODUCTS = Integer.getInteger("e2e.products", 100);
+    private static final double FAIL_BALANCE = Double.parseDouble(System.getProperty("e2e.fail-balance", "0.05"));
+    private static final double FAIL_STOCK = Double.parseDouble(System.getProperty("e2e.fail-stock", "0.05"));
+    private static final long SEED = Long.getLong("e2e.seed", 42);
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("e2e.timeout-seconds", 300));
+
+    //each passing order costs 1 and takes 1 unit, so a customer or product can never run dry
+    private static final int SEEDED = ORDERS;
+    private static final int OUT_OF_REACH = SEEDED + 1;
+
+    private static EmbeddedKafkaKraftBroker broker;
+    private static final Map<SagaService, ConfigurableApplicationContext> contexts = new EnumMap<>(SagaService.class);
+
+    @BeforeAll
+    static void startServices(){
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, "order-events", "payment-events", "inventory-events", "shipping-events");
+        broker.afterPropertiesSet();
+        Map<String, Object> overrides = Map.of(
+            "spring.kafka.bootstrap-servers", broker.getBrokersAsString(),
+            "logging.level.root", "WARN",
+            //order-service: no spans to log during the run
+            "saga.tracing.sampling-probability", "0");
+        for (var service : SagaService.values()){
+            contexts.put(service, service.start(overrides));
+        }
+    }
+
+    @AfterAll
+    static void stopServices(){
+        contexts.values().forEach(ConfigurableApplicationContext::close);
+        if (broker != null){
+            broker.destroy();
+        }
+    }
+
+    @Test
+    public void sagaThroughputAndConsistency() throws InterruptedException{
+        var consistency = new SagaConsistency(contexts);
+        consistency.seed(CUSTOMERS, PRODUCTS, SEEDED, SEEDED);
+
+        var port = contexts.get(SagaService.ORDER).getEnvironment().getRequiredProperty("local.server.port");
+        var client = WebClient.create("http://localhost:" + port + "/order");
+        var sentAt = new ConcurrentHashMap<UUID, Long>();
+
+        try (var outcomes = new SagaOutcomes()) {
+            outcomes.start(broker.getBrokersAsString());
+
+            var requests = new OrderMix(CUSTOMERS, PRODUCTS, FAIL_BALANCE, FAIL_STOCK, OUT_OF_REACH).generate(ORDERS, SEED);
+            var start = System.nanoTime();
+            Flux.fromIterable(requests)
+                .flatMap(req -> post(client, req, sentAt), CONCURRENCY)
+                .blockLast(TIMEOUT);
+
+            var deadline = start + TIMEOUT.toNanos();
+            while ((outcomes.size() < sentAt.size() || consistency.unsettledOrders() > 0) && System.nanoTime() < deadline){
+                Thread.sleep(100);
+            }
+            report(start, sentAt, outcomes);
+            Assertions.assertEquals(ORDERS, sentAt.size(), "accepted orders");
+            Assertions.assertEquals(sentAt.size(), outcomes.size(), "finished sagas");
+        }
+
+        var violations = consistency.violations();
+        violations.forEach(v -> System.out.println("INCONSISTENT: " + v));
+        Assertions.assertEquals(0, violations.size(), "consistency violations");
+    }
+
+    //send time is taken per attempt, so a 503 retry counts from the accepted attempt
+    private static Mono<Void> post(WebClient client, OrderCreateRequest req, Map<UUID, Long> sentAt){
+        return Mono.defer(() -> {
+                var sent = System.nanoTime();
+                return client.post()
+                    .bodyValue(req)
+                    .retrieve()
+                    .bodyToMono(PurchaseOrderDTO.class)
+                    .doOnNext(order -> sentAt.put(order.orderId(), sent));
+            })
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(20)).maxBackoff(Duration.ofMillis(500))
+                .filter(ex -> ex instanceof WebClientResponseException resp && resp.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE))
+            .then();
+    }
+
+    private static void report(long start, Map<UUID, Long> sentAt, SagaOutcomes outcomes){
+        var latency = new Histogram(3); //microseconds
+        long completed = 0, cancelled = 0, last = start;
+        for (var entry : sentAt.entrySet()){
+            var outcome = outcomes.get(entry.getKey());
+            if (outcome == null){
+                continue;
+            }
+            if (outcome.completed()){
+                completed++;
+            } else {
+                cancelled++;
+            }
+            latency.recordValue(Math.max(0, (outcome.atNanos() - entry.getValue()) / 1000));
+            last = Math.max(last, outcome.atNanos());
+        }
+        var seconds = (last - start) / 1e9;
+        System.out.printf("%n=== e2e: %d orders, %d partitions, concurrency %d, %d customers, %d products ===%n",
+            ORDERS, PARTITIONS, CONCURRENCY, CUSTOMERS, PRODUCTS);
+        System.out.printf("accepted=%d completed=%d cancelled=%d unfinished=%d in %.2fs -> %.1f sagas/s%n",
+            sentAt.size(), completed, cancelled, sentAt.size() - completed - cancelled, seconds,
+            seconds > 0 ? (completed + cancelled) / seconds : 0.0);
+        System.out.printf("saga latency, ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+            latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+            latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+            latency.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,75 @@
+package jayslabs.kafka.e2e;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.serde.EventJsonDeserializer;
+import reactor.core.Disposable;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+
+/*
+Records when each saga reached OrderCompleted / OrderCancelled on order-events.
+Only the terminal time is kept here; the harness pairs it with the send time
+once the run is over, so an outcome seen before the HTTP response needs no
+special handling.
+*/
+final class SagaOutcomes implements AutoCloseable {
+
+    private final Map<UUID, Outcome> outcomes = new ConcurrentHashMap<>();
+    private Disposable receiver;
+
+    //returns once the consumer is assigned its partitions
+    void start(String bootstrapServers) throws InterruptedException{
+        var assigned = new CountDownLatch(1);
+        var options = ReceiverOptions.<String, OrderEvent>create(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ConsumerConfig.GROUP_ID_CONFIG, "e2e-" + UUID.randomUUID(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EventJsonDeserializer.class))
+            .subscription(List.of("order-events"))
+            .addAssignListener(partitions -> assigned.countDown());
+        this.receiver = KafkaReceiver.create(options)
+            .receiveAutoAck()
+            .concatMap(batch -> batch)
+            .subscribe(rec -> this.onEvent(rec.value()));
+        if (!assigned.await(30, TimeUnit.SECONDS)){
+            throw new IllegalStateException("no partition of order-events assigned within 30s");
+        }
+    }
+
+    private void onEvent(OrderEvent event){
+        var now = System.nanoTime();
+        if (event instanceof OrderEvent.OrderCompleted || event instanceof OrderEvent.OrderCancelled){
+            //first terminal event wins, a redelivery does not move it
+            this.outcomes.putIfAbsent(event.orderId(), new Outcome(event instanceof OrderEvent.OrderCompleted, now));
+        }
+    }
+
+    Outcome get(UUID orderId){
+        return this.outcomes.get(orderId);
+    }
+
+    int size(){
+        return this.outcomes.size();
+    }
+
+    record Outcome(boolean completed, long atNanos) {
+    }
+
+    @Override
+    public void close() {
+        if (this.receiver != null){
+            this.receiver.dispose();
+        }
+    }
+}
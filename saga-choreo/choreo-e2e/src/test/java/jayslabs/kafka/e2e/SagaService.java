@@ -0,0 +1,58 @@
+package jayslabs.kafka.e2e;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import jayslabs.kafka.inventory.InventoryApplication;
+import jayslabs.kafka.order.OrderServiceApplication;
+import jayslabs.kafka.payment.CustomerPaymentApplication;
+import jayslabs.kafka.shipping.ShippingApplication;
+
+/*
+  The four services, each started as its own Spring context in this JVM.
+
+  All services ship an application.yaml and a data.sql, and on one classpath
+  only the first of each would be found. Each context is therefore pointed at
+  the files inside its own jar (or target/classes), and gets its own in-memory
+  H2 database and a random server port.
+*/
+enum SagaService {
+
+    ORDER(OrderServiceApplication.class),
+    PAYMENT(CustomerPaymentApplication.class),
+    INVENTORY(InventoryApplication.class),
+    SHIPPING(ShippingApplication.class);
+
+    private final Class<?> application;
+
+    SagaService(Class<?> application) {
+        this.application = application;
+    }
+
+    //overrides (broker, bindings, logging) are passed as command line arguments, so they win over the service's application.yaml
+    ConfigurableApplicationContext start(Map<String, Object> overrides){
+        var properties = new LinkedHashMap<String, Object>(Map.of(
+            "spring.sql.init.data-locations", this.resource("data.sql"),
+            "spring.sql.init.mode", "always",
+            "spring.r2dbc.url", "r2dbc:h2:mem:///e2e-" + this.name().toLowerCase() + "?options=DB_CLOSE_DELAY=-1",
+            "server.port", 0,
+            "spring.main.banner-mode", "off"));
+        properties.putAll(overrides);
+        return new SpringApplicationBuilder(this.application)
+            .web(WebApplicationType.REACTIVE)
+            .properties("spring.config.location=" + this.resource("application.yaml"))
+            .run(properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new));
+    }
+
+    //file:.../<service>/target/classes/<name> or jar:file:.../<service>.jar!/<name>
+    private String resource(String name){
+        var location = this.application.getProtectionDomain().getCodeSource().getLocation().toString();
+        return location.endsWith(".jar")
+            ? "jar:" + location + "!/" + name
+            : location + (location.endsWith("/") ? "" : "/") + name;
+    }
+}
@@ -0,0 +1,260 @@
+package jayslabs.kafka.e2e;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.OrderSaga;
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.shipping.ShippingEvent;
+import jayslabs.kafka.common.processor.EventProcessor;
+import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.common.publisher.EventPublisher;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.KeyOrderedExecutor;
+import jayslabs.kafka.order.common.dto.OrderCreateRequest;
+import jayslabs.kafka.order.common.service.OrderService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+Kafka-free saga simulator: business-logic throughput of the four services.
+
+The services run as in SagaEndToEndTest (own context, configuration and H2
+schema from data.sql) but with no function bound to kafka. Their real
+processors are wired through in-memory topics (SimTopic) instead:
+
+  OrderService.placeOrder ─► order-events ─► payment / inventory / shipping OrderEventProcessor
+          ▲                                      │ payment-, inventory-, shipping-events
+          └── order-events ◄── order-service EventProcessors ◄──┘
+
+Each service consumes on its own scheduler (threads "sim-<service>-"):
+sim.partitions queues per topic, each drained by KeyOrderedExecutor with
+sim.lanes lanes (sim.key-ordered=false: plain flatMap, no per-order ordering).
+At most sim.in-flight sagas are open at a time. After sim.warmup orders, the
+measured run reports sagas/s and, per service, CPU time and allocated bytes per
+saga (ThreadCosts). Comparing with SagaEndToEndTest separates processor costs
+from kafka costs; sim.serde=true adds the JSON codec on every hop.
+
+Opt-in even within the e2e profile: it only runs when sim.orders is given.
+
+    mvn -Pe2e -pl choreo-e2e -am test -Dtest=SagaSimulatorTest -Dsurefire.failIfNoSpecifiedTests=false -Dsim.orders=1000000 -Dsim.partitions=8
+*/
+@EnabledIfSystemProperty(named = "sim.orders", matches = "\\d+")
+public class SagaSimulatorTest {
+
+    private static final int ORDERS = Integer.getInteger("sim.orders", 20000);
+    private static final int WARMUP = Integer.getInteger("sim.warmup", ORDERS / 10);
+    private static final int PARTITIONS = Integer.getInteger("sim.partitions", 4);
+    private static final int LANES = Integer.getInteger("sim.lanes", 4);
+    private static final boolean KEY_ORDERED = Boolean.parseBoolean(System.getProperty("sim.key-ordered", "true"));
+    private static final int THREADS = Integer.getInteger("sim.threads", PARTITIONS); //per service
+    private static final int IN_FLIGHT = Integer.getInteger("sim.in-flight", 512);
+    private static final boolean SERDE = Boolean.getBoolean("sim.serde");
+    private static final int CUSTOMERS = Integer.getInteger("sim.customers", 100);
+    private static final int PRODUCTS = Integer.getInteger("sim.products", 100);
+    private static final double FAIL_BALANCE = Double.parseDouble(System.getProperty("sim.fail-balance", "0.05"));
+    private static final double FAIL_STOCK = Double.parseDouble(System.getProperty("sim.fail-stock", "0.05"));
+    private static final long SEED = Long.getLong("sim.seed", 42);
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("sim.timeout-seconds", 600));
+
+    //each passing order costs 1 and takes 1 unit, so a customer or product can never run dry
+    private static final int SEEDED = WARMUP + ORDERS;
+    private static final int OUT_OF_REACH = SEEDED + 1;
+
+    private static final Map<SagaService, ConfigurableApplicationContext> contexts = new EnumMap<>(SagaService.class);
+    private static final Map<SagaService, Scheduler> schedulers = new EnumMap<>(SagaService.class);
+
+    private final Map<SagaService, LongAdder> processed = new EnumMap<>(SagaService.class);
+    private final LongAdder errors = new LongAdder();
+    private final Map<UUID, Sinks.One<Boolean>> sagas = new ConcurrentHashMap<>(); //orderId -> completed (else cancelled)
+    private final List<SimTopic<?>> topics = new ArrayList<>();
+    private final List<Disposable> consumers = new ArrayList<>();
+
+    @BeforeAll
+    static void startServices(){
+        Map<String, Object> overrides = Map.of(
+            //no function bound: no kafka consumer or producer is created
+            "spring.cloud.function.definition", "",
+            "spring.cloud.stream.function.autodetect", false,
+            "logging.level.root", "WARN",
+            "saga.tracing.sampling-probability", "0");
+        for (var service : SagaService.values()){
+            contexts.put(service, service.start(overrides));
+            schedulers.put(service, Schedulers.newParallel(prefix(service), THREADS));
+        }
+    }
+
+    @AfterAll
+    static void stopServices(){
+        schedulers.values().forEach(Scheduler::dispose);
+        contexts.values().forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void sagaSimulation() throws InterruptedException{
+        var consistency = new SagaConsistency(contexts);
+        consistency.seed(CUSTOMERS, PRODUCTS, SEEDED, SEEDED);
+        this.wire();
+        var mix = new OrderMix(CUSTOMERS, PRODUCTS, FAIL_BALANCE, FAIL_STOCK, OUT_OF_REACH);
+        var orderService = contexts.get(SagaService.ORDER).getBean(OrderService.class);
+
+        try {
+            this.run(orderService, mix.generate(WARMUP, SEED + 1));
+
+            var prefixes = schedulers.keySet().stream().map(SagaSimulatorTest::prefix).toList();
+            this.processed.values().forEach(LongAdder::reset);
+            var before = ThreadCosts.sample(prefixes);
+            var start = System.nanoTime();
+            var outcomes = this.run(orderService, mix.generate(ORDERS, SEED));
+            var elapsed = System.nanoTime() - start;
+            var after = ThreadCosts.sample(prefixes);
+
+            this.report(outcomes, elapsed, before, after);
+            Assertions.assertEquals(ORDERS, outcomes.size(), "finished sagas");
+            Assertions.assertEquals(0, this.errors.sum(), "processor errors");
+        } finally {
+            this.consumers.forEach(Disposable::dispose);
+        }
+
+        var violations = consistency.violations();
+        violations.forEach(v -> System.out.println("INCONSISTENT: " + v));
+        Assertions.assertEquals(0, violations.size(), "consistency violations");
+    }
+
+    private void wire(){
+        var orderEvents = this.topic(new SimTopic<OrderEvent>("order-events", PARTITIONS, SERDE));
+        var paymentEvents = this.topic(new SimTopic<PaymentEvent>("payment-events", PARTITIONS, SERDE));
+        var inventoryEvents = this.topic(new SimTopic<InventoryEvent>("inventory-events", PARTITIONS, SERDE));
+        var shippingEvents = this.topic(new SimTopic<ShippingEvent>("shipping-events", PARTITIONS, SERDE));
+
+        OrderEventProcessor<PaymentEvent> payment = bean(SagaService.PAYMENT, OrderEventProcessor.class, PaymentEvent.class);
+        OrderEventProcessor<InventoryEvent> inventory = bean(SagaService.INVENTORY, OrderEventProcessor.class, InventoryEvent.class);
+        OrderEventProcessor<ShippingEvent> shipping = bean(SagaService.SHIPPING, OrderEventProcessor.class, ShippingEvent.class);
+        this.consume(SagaService.PAYMENT, orderEvents, payment, paymentEvents::publish);
+        this.consume(SagaService.INVENTORY, orderEvents, inventory, inventoryEvents::publish);
+        this.consume(SagaService.SHIPPING, orderEvents, shipping, shippingEvents::publish);
+
+        EventProcessor<PaymentEvent, OrderEvent> paymentReplies = bean(SagaService.ORDER, EventProcessor.class, PaymentEvent.class, OrderEvent.class);
+        EventProcessor<InventoryEvent, OrderEvent> inventoryReplies = bean(SagaService.ORDER, EventProcessor.class, InventoryEvent.class, OrderEvent.class);
+        EventProcessor<ShippingEvent, OrderEvent> shippingReplies = bean(SagaService.ORDER, EventProcessor.class, ShippingEvent.class, OrderEvent.class);
+        Consumer<OrderEvent> orderOutput = evt -> this.onOrderEvent(orderEvents, evt);
+        this.consume(SagaService.ORDER, paymentEvents, paymentReplies, orderOutput);
+        this.consume(SagaService.ORDER, inventoryEvents, inventoryReplies, orderOutput);
+        this.consume(SagaService.ORDER, shippingEvents, shippingReplies, orderOutput);
+
+        //OrderCreated, emitted by placeOrder() on the calling thread
+        EventPublisher<OrderEvent> orderCreated = bean(SagaService.ORDER, EventPublisher.class, OrderEvent.class);
+        this.consumers.add(orderCreated.publish().subscribe(orderEvents::publish));
+    }
+
+    private <E extends DomainEvent & OrderSaga> SimTopic<E> topic(SimTopic<E> topic){
+        this.topics.add(topic);
+        return topic;
+    }
+
+    private <T extends DomainEvent & OrderSaga, R extends DomainEvent> void consume(
+        SagaService service, SimTopic<T> topic, EventProcessor<T, R> processor, Consumer<R> output){
+
+        var counter = this.processed.computeIfAbsent(service, s -> new LongAdder());
+        Function<CustomRecord<T>, Mono<R>> task = cr -> processor.process(cr.message())
+            .onErrorResume(ex -> {
+                this.errors.increment();
+                System.out.println("processor error in " + service + ": " + ex);
+                return Mono.empty();
+            })
+            .doFinally(signal -> {
+                counter.increment();
+                topic.processed();
+            });
+        Function<Flux<CustomRecord<T>>, Flux<R>> pipeline = KEY_ORDERED
+            ? KeyOrderedExecutor.execute(LANES, task)
+            : flux -> flux.flatMap(task, LANES);
+        var partitions = topic.subscribe(schedulers.get(service)).stream()
+            .map(partition -> partition.transform(pipeline))
+            .toList();
+        this.consumers.add(Flux.merge(partitions).subscribe(output));
+    }
+
+    //order-service output goes back to order-events; a terminal event ends the saga
+    private void onOrderEvent(SimTopic<OrderEvent> orderEvents, OrderEvent evt){
+        orderEvents.publish(evt);
+        if (evt instanceof OrderEvent.OrderCompleted || evt instanceof OrderEvent.OrderCancelled){
+            this.saga(evt.orderId()).tryEmitValue(evt instanceof OrderEvent.OrderCompleted);
+        }
+    }
+
+    //the terminal event may come before placeOrder() returned, the sink keeps it
+    private Sinks.One<Boolean> saga(UUID orderId){
+        return this.sagas.computeIfAbsent(orderId, id -> Sinks.one());
+    }
+
+    //returns completed (true) / cancelled (false) per saga, once every topic is drained
+    private List<Boolean> run(OrderService orderService, List<OrderCreateRequest> requests) throws InterruptedException{
+        var outcomes = Flux.fromIterable(requests)
+            .publishOn(schedulers.get(SagaService.ORDER))
+            .flatMap(req -> orderService.placeOrder(req)
+                .flatMap(order -> this.saga(order.orderId()).asMono()
+                    .doFinally(signal -> this.sagas.remove(order.orderId()))), IN_FLIGHT)
+            .collectList()
+            .block(TIMEOUT);
+        //ShippingScheduled and the last OrderCompleted / OrderCancelled deliveries are still queued
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (this.topics.stream().anyMatch(t -> t.pending() > 0) && System.nanoTime() < deadline){
+            Thread.sleep(10);
+        }
+        return outcomes;
+    }
+
+    private void report(List<Boolean> outcomes, long elapsedNanos, Map<String, ThreadCosts.Cost> before, Map<String, ThreadCosts.Cost> after){
+        var completed = outcomes.stream().filter(Boolean::booleanValue).count();
+        var seconds = elapsedNanos / 1e9;
+        System.out.printf("%n=== sim: %d orders (+%d warmup), %d partitions x %d lanes, key-ordered=%s, %d threads/service, in-flight %d, serde=%s ===%n",
+            ORDERS, WARMUP, PARTITIONS, LANES, KEY_ORDERED, THREADS, IN_FLIGHT, SERDE);
+        System.out.printf("completed=%d cancelled=%d in %.2fs -> %.1f sagas/s%n",
+            completed, outcomes.size() - completed, seconds, outcomes.size() / seconds);
+        System.out.printf("%-10s %12s %14s %16s%n", "service", "events", "cpu us/saga", "alloc KB/saga");
+        for (var service : SagaService.values()){
+            var cost = after.getOrDefault(prefix(service), ThreadCosts.Cost.ZERO).minus(before.getOrDefault(prefix(service), ThreadCosts.Cost.ZERO));
+            this.printCost(service.name().toLowerCase(), this.processed.get(service).sum(), cost, outcomes.size());
+        }
+        var other = after.getOrDefault(ThreadCosts.OTHER, ThreadCosts.Cost.ZERO).minus(before.getOrDefault(ThreadCosts.OTHER, ThreadCosts.Cost.ZERO));
+        this.printCost(ThreadCosts.OTHER, 0, other, outcomes.size());
+    }
+
+    private void printCost(String name, long events, ThreadCosts.Cost cost, int sagas){
+        System.out.printf("%-10s %12d %14.1f %16.2f%n", name, events,
+            cost.cpuNanos() / 1e3 / sagas, cost.allocatedBytes() / 1024.0 / sagas);
+    }
+
+    private static String prefix(SagaService service){
+        return "sim-" + service.name().toLowerCase();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T bean(SagaService service, Class<?> type, Class<?>... generics){
+        return (T) contexts.get(service).getBeanProvider(ResolvableType.forClassWithGenerics(type, generics)).getObject();
+    }
+}
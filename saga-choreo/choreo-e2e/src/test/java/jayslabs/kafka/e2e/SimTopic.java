@@ -0,0 +1,121 @@
+package jayslabs.kafka.e2e;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import jayslabs.kafka.common.events.DomainEvent;
+import jayslabs.kafka.common.events.OrderSaga;
+import jayslabs.kafka.common.serde.EventJsonDeserializer;
+import jayslabs.kafka.common.serde.EventJsonSerializer;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.MpscSinks;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.util.concurrent.Queues;
+
+/*
+In-memory stand-in for a kafka topic.
+
+Every subscriber (consumer group) gets each event once, in the partition the
+orderId hashes to, as the services' producers key their records. A partition
+is an unbounded MPSC queue behind a unicast sink, drained on one worker of the
+subscriber's scheduler, so events of a partition are consumed in publish order.
+
+serde=true sends every event through the JSON serializer (publishing thread)
+and deserializer (consuming thread) the services use on kafka, to price the
+codec apart from the processors.
+*/
+final class SimTopic<E extends DomainEvent & OrderSaga> {
+
+    private static final ReceiverOffset NO_ACK = new SimOffset(new TopicPartition("sim", 0), 0);
+
+    private final String name;
+    private final int partitions;
+    private final EventJsonSerializer serializer;
+    private final EventJsonDeserializer deserializer;
+    private final List<List<Sinks.Many<SimRecord>>> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong pending = new AtomicLong(); //published, not yet processed by every subscriber
+
+    SimTopic(String name, int partitions, boolean serde) {
+        this.name = name;
+        this.partitions = partitions;
+        this.serializer = serde ? new EventJsonSerializer() : null;
+        this.deserializer = serde ? new EventJsonDeserializer() : null;
+    }
+
+    //one flux per partition, each drained on a worker of the scheduler; subscribe before publishing
+    List<Flux<CustomRecord<E>>> subscribe(Scheduler scheduler){
+        var sinks = new ArrayList<Sinks.Many<SimRecord>>();
+        var fluxes = new ArrayList<Flux<CustomRecord<E>>>();
+        IntStream.range(0, this.partitions).forEach(p -> {
+            var sink = MpscSinks.<SimRecord>unbounded(); //concurrent publishers
+            sinks.add(sink);
+            fluxes.add(sink.asFlux()
+                .publishOn(scheduler, Queues.SMALL_BUFFER_SIZE)
+                .map(this::toRecord));
+        });
+        this.subscribers.add(sinks);
+        return fluxes;
+    }
+
+    void publish(E event){
+        var partition = Math.floorMod(Objects.hashCode(event.orderId()), this.partitions);
+        var record = this.serializer == null
+            ? new SimRecord(event, null, null)
+            : this.serialize(event);
+        this.pending.addAndGet(this.subscribers.size());
+        for (var sinks : this.subscribers){
+            sinks.get(partition).tryEmitNext(record).orThrow();
+        }
+    }
+
+    //called by a subscriber once it is done with an event
+    void processed(){
+        this.pending.decrementAndGet();
+    }
+
+    long pending(){
+        return this.pending.get();
+    }
+
+    private SimRecord serialize(E event){
+        var headers = new RecordHeaders();
+        return new SimRecord(null, headers, this.serializer.serialize(this.name, headers, event));
+    }
+
+    @SuppressWarnings("unchecked")
+    private CustomRecord<E> toRecord(SimRecord record){
+        var event = (E) (record.event() != null
+            ? record.event()
+            : this.deserializer.deserialize(this.name, record.headers(), record.payload()));
+        return new CustomRecord<>(event.orderId().toString(), event, NO_ACK);
+    }
+
+    //either the event itself or its serialized form (serde=true)
+    private record SimRecord(DomainEvent event, Headers headers, byte[] payload) {
+    }
+
+    //nothing to commit in memory
+    private record SimOffset(TopicPartition topicPartition, long offset) implements ReceiverOffset {
+
+        @Override
+        public void acknowledge() {
+        }
+
+        @Override
+        public Mono<Void> commit() {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jayslabs.kafka.e2e;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.management.ThreadMXBean;
+
+/*
+CPU time and allocated bytes per thread group, a group being the threads whose
+name starts with a given prefix; everything else (driver, GC, JIT, reactor
+timers) lands in OTHER. Counters are per live thread: threads that end between
+two samples take their share with them, so callers keep their schedulers alive
+until the last sample.
+*/
+final class ThreadCosts {
+
+    static final String OTHER = "other";
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static Map<String, Cost> sample(List<String> prefixes){
+        var ids = THREADS.getAllThreadIds();
+        var infos = THREADS.getThreadInfo(ids);
+        var cpu = THREADS.getThreadCpuTime(ids);
+        var allocated = THREADS.getThreadAllocatedBytes(ids);
+        var costs = new HashMap<String, Cost>();
+        for (int i = 0; i < ids.length; i++){
+            if (infos[i] == null || cpu[i] < 0){
+                continue; //ended meanwhile
+            }
+            var name = infos[i].getThreadName();
+            var group = prefixes.stream().filter(name::startsWith).findFirst().orElse(OTHER);
+            costs.merge(group, new Cost(cpu[i], Math.max(0, allocated[i])), Cost::plus);
+        }
+        return costs;
+    }
+
+    record Cost(long cpuNanos, long allocatedBytes) {
+
+        static final Cost ZERO = new Cost(0, 0);
+
+        Cost plus(Cost other){
+            return new Cost(this.cpuNanos + other.cpuNanos, this.allocatedBytes + other.allocatedBytes);
+        }
+
+        Cost minus(Cost other){
+            return new Cost(this.cpuNanos - other.cpuNanos, this.allocatedBytes - other.allocatedBytes);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package jayslabs.kafka.loadgen;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/*
+  Open-loop load generator for POST /order (replaces ConcurrentRequestsTest).
+
+  Orders are sent at a fixed arrival rate whatever the responses do: order i is
+  due at start + i * (1s / rate) and is sent at that time even if earlier
+  requests are still waiting. Latency is measured from the due time, not from
+  the actual send, so time spent behind a stalled generator or waiting for a
+  pooled connection is counted (coordinated omission correction).
+
+  Customers and products are drawn from a zipfian distribution (--zipf) and a
+  share of the orders is built to fail on balance or on stock, so hot keys and
+  compensations are exercised. Accepted orders are followed on order-events to
+  OrderCompleted / OrderCancelled (SagaOutcomeTracker).
+
+      java -jar choreo-loadgen/target/loadgen.jar --rate=500 --duration=60s --zipf=0.99 --fail-stock=0.05
+*/
+public class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    //far above any seeded balance / stock
+    private static final int OUT_OF_REACH = 1_000_000;
+
+    private final LoadProfile profile;
+    private final SagaOutcomeTracker outcomes;
+    private final WebClient client;
+    private final ZipfianSampler customers;
+    private final ZipfianSampler products;
+    private final SplittableRandom random;
+
+    private final Recorder httpLatency = new Recorder(3); //microseconds from due time to response
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder(); //503: order buffer near capacity
+    private final LongAdder failed = new LongAdder();   //other status or transport error
+    private long plannedBalanceFailures; //generator thread only
+    private long plannedStockFailures;
+
+    public LoadGenerator(LoadProfile profile, SagaOutcomeTracker outcomes) {
+        this.profile = profile;
+        this.outcomes = outcomes;
+        var pool = ConnectionProvider.builder("loadgen")
+            .maxConnections(profile.maxConnections())
+            .pendingAcquireMaxCount(-1) //never refuse: waiting for a connection shows up as latency
+            .build();
+        this.client = WebClient.builder()
+            .baseUrl(profile.url())
+            .clientConnector(new ReactorClientHttpConnector(HttpClient.create(pool)))
+            .build();
+        this.customers = new ZipfianSampler(profile.customers(), profile.zipf());
+        this.products = new ZipfianSampler(profile.products(), profile.zipf());
+        this.random = new SplittableRandom(profile.seed());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var profile = LoadProfile.parse(args);
+        log.info("Load profile: {}", profile);
+        try (var outcomes = new SagaOutcomeTracker(profile)) {
+            outcomes.start();
+            new LoadGenerator(profile, outcomes).run();
+        }
+    }
+
+    public void run() throws InterruptedException{
+        var total = this.profile.totalOrders();
+        var period = this.profile.periodNanos();
+        var progress = this.progress();
+        var start = System.nanoTime();
+        for (long i = 0; i < total; i++){
+            var due = start + i * period;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()){
+                LockSupport.parkNanos(wait);
+            }
+            this.send(due);
+        }
+        var sendSeconds = (System.nanoTime() - start) / 1e9;
+
+        //responses, then sagas
+        var deadline = System.nanoTime() + this.profile.sagaTimeout().toNanos();
+        while (this.inFlight.get() > 0 && System.nanoTime() < deadline){
+            Thread.sleep(10);
+        }
+        this.outcomes.awaitOutstanding(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        progress.dispose();
+        this.report(sendSeconds);
+    }
+
+    private void send(long due){
+        this.sent.increment();
+        this.inFlight.incrementAndGet();
+        this.client.post()
+            .bodyValue(this.nextOrder())
+            .exchangeToMono(resp -> resp.statusCode() == HttpStatus.ACCEPTED
+                ? resp.bodyToMono(OrderResponse.class)
+                : resp.releaseBody().then(Mono.error(new IllegalStateException(String.valueOf(resp.statusCode().value())))))
+            .subscribe(
+                order -> {
+                    this.completed(due);
+                    this.accepted.increment();
+                    this.outcomes.accepted(order.orderId(), due);
+                },
+                ex -> {
+                    this.completed(due);
+                    ("503".equals(ex.getMessage()) ? this.rejected : this.failed).increment();
+                });
+    }
+
+    private void completed(long due){
+        this.httpLatency.recordValue(Math.max(0, (System.nanoTime() - due) / 1000));
+        this.inFlight.decrementAndGet();
+    }
+
+    //called on the generator thread only (SplittableRandom is not thread safe)
+    private OrderRequest nextOrder(){
+        var customerId = this.customers.next(this.random);
+        var productId = this.products.next(this.random);
+        var mix = this.random.nextDouble();
+        if (mix < this.profile.failBalance()){
+            this.plannedBalanceFailures++;
+            return new OrderRequest(customerId, productId, 1, OUT_OF_REACH);
+        }
+        if (mix < this.profile.failBalance() + this.profile.failStock()){
+            this.plannedStockFailures++;
+            return new OrderRequest(customerId, productId, OUT_OF_REACH, 0);
+        }
+        return new OrderRequest(customerId, productId, 1, this.profile.unitPrice());
+    }
+
+    private Disposable progress(){
+        return Flux.interval(Duration.ofSeconds(1))
+            .subscribe(tick -> log.info("sent={} accepted={} rejected={} failed={} inFlight={} sagasOutstanding={}",
+                this.sent.sum(), this.accepted.sum(), this.rejected.sum(), this.failed.sum(),
+                this.inFlight.get(), this.outcomes.outstanding()));
+    }
+
+    private void report(double sendSeconds){
+        var sent = this.sent.sum();
+        var accepted = this.accepted.sum();
+        var finished = this.outcomes.completed() + this.outcomes.cancelled();
+        System.out.printf("%n=== POST /order: %d sent in %.1fs (target %d/s, achieved %.1f/s) ===%n",
+            sent, sendSeconds, this.profile.rate(), sent / sendSeconds);
+        System.out.printf("accepted=%d rejected(503)=%d failed=%d%n", accepted, this.rejected.sum(), this.failed.sum());
+        print("HTTP latency (corrected for coordinated omission)", this.httpLatency.getIntervalHistogram());
+        System.out.printf("%n=== sagas: completed=%d cancelled=%d outstanding=%d, completion rate %.2f%% of accepted ===%n",
+            this.outcomes.completed(), this.outcomes.cancelled(), this.outcomes.outstanding(),
+            accepted == 0 ? 0.0 : 100.0 * finished / accepted);
+        System.out.printf("sent to fail: balance=%d stock=%d (expected cancellations, if accepted)%n",
+            this.plannedBalanceFailures, this.plannedStockFailures);
+        print("saga latency (due time -> OrderCompleted/OrderCancelled)", this.outcomes.latency());
+    }
+
+    private static void print(String title, Histogram micros){
+        System.out.printf("%s, ms: count=%d p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", title, micros.getTotalCount(),
+            ms(micros, 50), ms(micros, 90), ms(micros, 99), ms(micros, 99.9), micros.getMaxValue() / 1000.0);
+    }
+
+    private static double ms(Histogram micros, double percentile){
+        return micros.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    //POST /order body (order-service OrderCreateRequest)
+    record OrderRequest(Integer customerId, Integer productId, Integer quantity, Integer unitPrice) {
+    }
+
+    //the part of the 202 response body (PurchaseOrderDTO) needed to follow the saga
+    record OrderResponse(UUID orderId) {
+    }
+}
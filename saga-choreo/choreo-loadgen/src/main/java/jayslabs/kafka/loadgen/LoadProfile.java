@@ -0,0 +1,81 @@
+package jayslabs.kafka.loadgen;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.convert.DurationStyle;
+
+/*
+Load generator options, given as --name=value:
+
+  url                http://localhost:8080/order   order-service POST /order
+  bootstrap-servers  localhost:9092                broker of the order-events topic
+  topic              order-events                  OrderCompleted / OrderCancelled are read from here
+  rate               200                           orders per second, fixed arrival rate (open loop)
+  duration           60s                           how long orders are sent
+  saga-timeout       30s                           wait for outstanding sagas after the last order
+  customers          3                             customer ids 1..customers (see customer-payment data.sql)
+  products           3                             product ids 1..products (see inventory-service data.sql)
+  zipf               0.0                           key skew: 0 = uniform, 0.99 = YCSB-like hot keys (id 1 hottest)
+  fail-balance       0.0                           share of orders priced above any balance (PaymentFailed)
+  fail-stock         0.0                           share of orders above any stock (InventoryFailed)
+  unit-price         1                             unit price of the orders meant to pass
+  max-connections    500                           HTTP connection pool; waiting for one counts as latency
+  seed               42                            key / mix selection is reproducible per seed
+*/
+public record LoadProfile(
+    String url,
+    String bootstrapServers,
+    String topic,
+    int rate,
+    Duration duration,
+    Duration sagaTimeout,
+    int customers,
+    int products,
+    double zipf,
+    double failBalance,
+    double failStock,
+    int unitPrice,
+    int maxConnections,
+    long seed
+) {
+
+    public static LoadProfile parse(String[] args){
+        Map<String, String> options = new HashMap<>();
+        for (var arg : args){
+            if (!arg.startsWith("--") || !arg.contains("=")){
+                throw new IllegalArgumentException("expected --name=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        var profile = new LoadProfile(
+            options.getOrDefault("url", "http://localhost:8080/order"),
+            options.getOrDefault("bootstrap-servers", "localhost:9092"),
+            options.getOrDefault("topic", "order-events"),
+            Integer.parseInt(options.getOrDefault("rate", "200")),
+            DurationStyle.detectAndParse(options.getOrDefault("duration", "60s")),
+            DurationStyle.detectAndParse(options.getOrDefault("saga-timeout", "30s")),
+            Integer.parseInt(options.getOrDefault("customers", "3")),
+            Integer.parseInt(options.getOrDefault("products", "3")),
+            Double.parseDouble(options.getOrDefault("zipf", "0.0")),
+            Double.parseDouble(options.getOrDefault("fail-balance", "0.0")),
+            Double.parseDouble(options.getOrDefault("fail-stock", "0.0")),
+            Integer.parseInt(options.getOrDefault("unit-price", "1")),
+            Integer.parseInt(options.getOrDefault("max-connections", "500")),
+            Long.parseLong(options.getOrDefault("seed", "42")));
+        if (profile.rate <= 0 || profile.failBalance + profile.failStock > 1){
+            throw new IllegalArgumentException("rate must be > 0 and fail-balance + fail-stock <= 1: " + profile);
+        }
+        return profile;
+    }
+
+    public long totalOrders(){
+        return this.rate * this.duration.toMillis() / 1000;
+    }
+
+    //interval between two intended send times
+    public long periodNanos(){
+        return 1_000_000_000L / this.rate;
+    }
+}
@@ -0,0 +1,133 @@
+package jayslabs.kafka.loadgen;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.serde.EventJsonDeserializer;
+import reactor.core.Disposable;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOptions;
+
+/*
+Follows accepted orders to their terminal event on order-events.
+
+Latency is taken from the order's intended send time (not the HTTP response),
+so a saga that waited for a connection or behind a stalled generator is not
+reported as fast. An outcome can arrive before the HTTP response was handled;
+it is parked until the orderId is registered.
+*/
+final class SagaOutcomeTracker implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SagaOutcomeTracker.class);
+
+    private final LoadProfile profile;
+    //orderId -> intended send time (Long), or its Outcome when the response was not handled yet
+    private final Map<UUID, Object> sagas = new ConcurrentHashMap<>();
+    private final Recorder latency = new Recorder(3);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private Disposable receiver;
+
+    SagaOutcomeTracker(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    //returns once the consumer is assigned its partitions, so no outcome is missed
+    void start() throws InterruptedException{
+        var assigned = new CountDownLatch(1);
+        var options = ReceiverOptions.<String, OrderEvent>create(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, this.profile.bootstrapServers(),
+                ConsumerConfig.GROUP_ID_CONFIG, "loadgen-" + UUID.randomUUID(),
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EventJsonDeserializer.class))
+            .subscription(List.of(this.profile.topic()))
+            .addAssignListener(partitions -> assigned.countDown());
+        this.receiver = KafkaReceiver.create(options)
+            .receiveAutoAck()
+            .concatMap(batch -> batch)
+            .subscribe(rec -> this.onEvent(rec.value()), ex -> log.error("order-events consumer failed: {}", ex.getMessage()));
+        if (!assigned.await(30, TimeUnit.SECONDS)){
+            throw new IllegalStateException("no partition of " + this.profile.topic() + " assigned within 30s");
+        }
+    }
+
+    void accepted(UUID orderId, long intendedNanos){
+        this.sagas.compute(orderId, (id, state) -> {
+            if (state instanceof Outcome outcome){
+                this.record(outcome.completed(), outcome.atNanos() - intendedNanos);
+                return null;
+            }
+            return intendedNanos;
+        });
+    }
+
+    private void onEvent(OrderEvent event){
+        var now = System.nanoTime();
+        if (event instanceof OrderEvent.OrderCreated){
+            return;
+        }
+        var completed = event instanceof OrderEvent.OrderCompleted; //else OrderCancelled
+        this.sagas.compute(event.orderId(), (id, state) -> {
+            if (state instanceof Long intended){
+                this.record(completed, now - intended);
+                return null;
+            }
+            return new Outcome(completed, now);
+        });
+    }
+
+    private void record(boolean completed, long nanos){
+        (completed ? this.completed : this.cancelled).increment();
+        this.latency.recordValue(Math.max(0, nanos / 1000));
+    }
+
+    //waits until every accepted saga finished or the timeout passed
+    void awaitOutstanding(Duration timeout) throws InterruptedException{
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (this.outstanding() > 0 && System.nanoTime() < deadline){
+            Thread.sleep(100);
+        }
+    }
+
+    long completed(){
+        return this.completed.sum();
+    }
+
+    long cancelled(){
+        return this.cancelled.sum();
+    }
+
+    long outstanding(){
+        return this.sagas.values().stream().filter(Long.class::isInstance).count();
+    }
+
+    //saga latency in microseconds, since start()
+    Histogram latency(){
+        return this.latency.getIntervalHistogram();
+    }
+
+    private record Outcome(boolean completed, long atNanos) {
+    }
+
+    @Override
+    public void close() {
+        if (this.receiver != null){
+            this.receiver.dispose();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package jayslabs.kafka.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+Draws ids 1..n with P(k) proportional to 1 / k^skew (skew 0 = uniform).
+The cumulative distribution is computed once; a draw is one binary search.
+*/
+final class ZipfianSampler {
+
+    private final double[] cdf;
+
+    ZipfianSampler(int n, double skew) {
+        if (n < 1){
+            throw new IllegalArgumentException("n must be >= 1: " + n);
+        }
+        this.cdf = new double[n];
+        var sum = 0.0;
+        for (int k = 1; k <= n; k++){
+            sum += 1 / Math.pow(k, skew);
+            this.cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++){
+            this.cdf[i] /= sum;
+        }
+    }
+
+    int next(SplittableRandom random){
+        var index = Arrays.binarySearch(this.cdf, random.nextDouble());
+        //not found: -(insertion point) - 1, the first entry above the draw
+        return Math.min(index >= 0 ? index : -index - 1, this.cdf.length - 1) + 1;
+    }
+}
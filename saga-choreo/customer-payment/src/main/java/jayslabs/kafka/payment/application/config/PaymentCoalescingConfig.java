@@ -0,0 +1,46 @@
+package jayslabs.kafka.payment.application.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.repository.PaymentRepository;
+import jayslabs.kafka.payment.application.service.CoalescingPaymentServiceImpl;
+
+/*
+Payments and refunds of a customer coalesced over a short window (CoalescingPaymentServiceImpl),
+taking over from PaymentServiceImpl. Off by default; not meant to be combined with the ledger.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.payment.coalescing.enabled", havingValue = "true")
+public class PaymentCoalescingConfig {
+
+    //requests per window
+    @Value("${saga.payment.coalescing.max-size:256}")
+    private int maxSize;
+
+    //longest a request waits for its window to close
+    @Value("${saga.payment.coalescing.window:2ms}")
+    private Duration window;
+
+    //customers of one window settled in parallel transactions
+    @Value("${saga.payment.coalescing.concurrency:4}")
+    private int concurrency;
+
+    //the processor gets this one over PaymentServiceImpl
+    @Bean
+    @Primary
+    public CoalescingPaymentServiceImpl coalescingPaymentService(CustomerRepository custRepo, PaymentRepository pymtRepo,
+                                                                 ProcessedEventCache processedEvtCache, ProcessedEventTable processedEvents,
+                                                                 TransactionalOperator tx){
+        return new CoalescingPaymentServiceImpl(custRepo, pymtRepo, processedEvtCache, processedEvents, tx, this.maxSize, this.window, this.concurrency);
+    }
+}
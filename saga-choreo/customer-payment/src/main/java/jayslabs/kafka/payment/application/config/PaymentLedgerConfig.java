@@ -0,0 +1,39 @@
+package jayslabs.kafka.payment.application.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.repository.PaymentRepository;
+import jayslabs.kafka.payment.application.service.LedgerPaymentServiceImpl;
+
+/*
+In-memory balance ledger with write-behind group commits (LedgerPaymentServiceImpl),
+replacing PaymentServiceImpl. Off by default.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.payment.ledger.enabled", havingValue = "true")
+public class PaymentLedgerConfig {
+
+    //writes per group commit
+    @Value("${saga.payment.ledger.batch-size:256}")
+    private int batchSize;
+
+    //longest a decided payment waits for its group commit
+    @Value("${saga.payment.ledger.max-wait:2ms}")
+    private Duration maxWait;
+
+    @Bean
+    public LedgerPaymentServiceImpl ledgerPaymentService(CustomerRepository custRepo, PaymentRepository pymtRepo,
+                                                         ProcessedEventCache processedEvtCache, ProcessedEventTable processedEvents,
+                                                         TransactionalOperator tx){
+        return new LedgerPaymentServiceImpl(custRepo, pymtRepo, processedEvtCache, processedEvents, tx, this.batchSize, this.maxWait);
+    }
+}
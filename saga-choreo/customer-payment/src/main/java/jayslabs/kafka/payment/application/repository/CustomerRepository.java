@@ -1,11 +1,33 @@
 package jayslabs.kafka.payment.application.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import jayslabs.kafka.payment.application.entity.Customer;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface CustomerRepository extends ReactiveCrudRepository<Customer, Integer> {
 
+    //guarded debit, check and write in one statement: 1 = deducted, 0 = unknown customer or insufficient balance
+    @Modifying
+    @Query("UPDATE customer SET balance = balance - :amount WHERE id = :id AND balance >= :amount")
+    Mono<Integer> debit(Integer id, Integer amount);
+
+    //refund; relative, so it cannot overwrite a concurrent debit
+    @Modifying
+    @Query("UPDATE customer SET balance = balance + :amount WHERE id = :id")
+    Mono<Integer> credit(Integer id, Integer amount);
+
+    //write-behind ledger: net balance change of a group commit, negative for debits;
+    //guarded like debit(): 0 = the balance would go negative (another writer took it)
+    @Modifying
+    @Query("UPDATE customer SET balance = balance + :delta WHERE id = :id AND balance + :delta >= 0")
+    Mono<Integer> adjustBalance(Integer id, Integer delta);
+
+    //coalescing window: the customer row stays locked until the transaction ends
+    @Query("SELECT * FROM customer WHERE id = :id FOR UPDATE")
+    Mono<Customer> findByIdForUpdate(Integer id);
 }
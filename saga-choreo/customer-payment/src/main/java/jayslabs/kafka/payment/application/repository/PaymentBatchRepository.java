@@ -0,0 +1,13 @@
+package jayslabs.kafka.payment.application.repository;
+
+import java.util.List;
+
+import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import reactor.core.publisher.Mono;
+
+//custom fragment of PaymentRepository for multi-row statements
+public interface PaymentBatchRepository {
+
+    //single INSERT ... VALUES (..), (..) statement; paymentId must be pre-assigned
+    Mono<Void> insertAll(List<CustomerPayment> payments);
+}
@@ -0,0 +1,43 @@
+package jayslabs.kafka.payment.application.repository;
+
+import java.util.List;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class PaymentBatchRepositoryImpl implements PaymentBatchRepository {
+
+    private static final String INSERT = "INSERT INTO customer_payment (payment_id, order_id, customer_id, status, amount) VALUES ";
+
+    private final DatabaseClient client;
+
+    @Override
+    public Mono<Void> insertAll(List<CustomerPayment> payments) {
+        if (payments.isEmpty()){
+            return Mono.empty();
+        }
+        var sql = new StringBuilder(INSERT);
+        for (int i = 0; i < payments.size(); i++){
+            sql.append(i == 0 ? "" : ", ")
+               .append("(:paymentId").append(i)
+               .append(", :orderId").append(i)
+               .append(", :customerId").append(i)
+               .append(", :status").append(i)
+               .append(", :amount").append(i).append(")");
+        }
+        var spec = this.client.sql(sql.toString());
+        for (int i = 0; i < payments.size(); i++){
+            var pymt = payments.get(i);
+            spec = spec.bind("paymentId" + i, pymt.getPaymentId())
+                .bind("orderId" + i, pymt.getOrderId())
+                .bind("customerId" + i, pymt.getCustomerId())
+                .bind("status" + i, pymt.getStatus().name())
+                .bind("amount" + i, pymt.getAmount());
+        }
+        return spec.then();
+    }
+}
@@ -1,20 +1,32 @@
 package jayslabs.kafka.payment.application.repository;
 
+import java.util.Collection;
 import java.util.UUID;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import jayslabs.kafka.common.events.payment.PaymentStatus;
 import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface PaymentRepository extends ReactiveCrudRepository<CustomerPayment, UUID> {
+public interface PaymentRepository extends ReactiveCrudRepository<CustomerPayment, UUID>, PaymentBatchRepository {
     
-    //to check if a payment already exists for an order
-    Mono<Boolean> existsByOrderId(UUID orderId);
-
     //to find a payment by orderId
     Mono<CustomerPayment> findByOrderIdAndStatus(UUID orderId, PaymentStatus status);
-}
\ No newline at end of file
+
+    //the order's payment in any status (order_id is unique)
+    Mono<CustomerPayment> findByOrderId(UUID orderId);
+
+    //batch refund lookup: the given orders' payments still in the given status
+    Flux<CustomerPayment> findByOrderIdInAndStatus(Collection<UUID> orderIds, PaymentStatus status);
+
+    //write-behind ledger: refunds of a group commit in one statement
+    @Modifying
+    @Query("UPDATE customer_payment SET status = 'REFUNDED' WHERE order_id IN (:orderIds)")
+    Mono<Integer> markRefunded(Collection<UUID> orderIds);
+}
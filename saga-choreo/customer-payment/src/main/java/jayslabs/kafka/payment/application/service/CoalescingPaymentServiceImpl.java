@@ -0,0 +1,279 @@
+package jayslabs.kafka.payment.application.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.util.MpscSinks;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+import jayslabs.kafka.payment.application.entity.Customer;
+import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import jayslabs.kafka.payment.application.mapper.EntityDTOMapper;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.repository.PaymentRepository;
+import jayslabs.kafka.payment.common.dto.PaymentDTO;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.CustomerNotFoundException;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/*
+  PaymentService coalescing the payments and refunds of a customer
+  (saga.payment.coalescing.*, PaymentCoalescingConfig).
+
+  processPayment() and processRefund() requests from every lane are collected
+  for up to window or max-size requests, whichever comes first. The refunds'
+  DEDUCTED payments are looked up in one query, then the window is split by
+  customer. Each customer's requests are settled in one transaction:
+    - the customer row is read and locked once
+    - deductions and refunds are decided in arrival order against the running
+      balance, so a refund earlier in the window pays for a later deduction
+    - one relative balance update for the net of the window
+    - one multi-row customer_payment insert for the deductions, and one
+      processed_event insert claiming them
+    - one status update for the refunds
+
+  Customers of a window run concurrently, windows one after the other. Every
+  request still gets its own outcome once its customer's transaction committed:
+  PaymentDTO (DEDUCTED / REFUNDED), the errors processPayment() would raise, or
+  empty for a refund with nothing left to refund. Should the coalescer itself
+  stop, the requests it still held and every later one fail.
+*/
+public class CoalescingPaymentServiceImpl implements PaymentService, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingPaymentServiceImpl.class);
+
+    private final CustomerRepository custRepo;
+    private final PaymentRepository pymtRepo;
+    private final ProcessedEventCache processedEvtCache;
+    private final ProcessedEventTable processedEvents;
+    private final TransactionalOperator tx;
+    private final Sinks.Many<Request> requests = MpscSinks.unbounded(); //payments and refunds of every lane
+    private final Disposable coalescer;
+
+    private final LongAdder deductions = new LongAdder();
+    private final LongAdder refunds = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+
+    public CoalescingPaymentServiceImpl(CustomerRepository custRepo, PaymentRepository pymtRepo, ProcessedEventCache processedEvtCache,
+                                        ProcessedEventTable processedEvents, TransactionalOperator tx, int maxSize, Duration window, int concurrency) {
+        this.custRepo = custRepo;
+        this.pymtRepo = pymtRepo;
+        this.processedEvtCache = processedEvtCache;
+        this.processedEvents = processedEvents;
+        this.tx = tx;
+        this.coalescer = this.requests.asFlux()
+            .bufferTimeout(maxSize, window, true) //no overflow while a window is processed
+            .concatMap(batch -> this.byCustomer(batch)
+                .flatMap(group -> this.settle(group.getKey(), group.getValue()), concurrency)
+                .then())
+            .doOnDiscard(Object.class, this::discarded)
+            .subscribe(v -> {}, ex -> log.error("Payment coalescer stopped", ex));
+    }
+
+    @Override
+    public Mono<PaymentDTO> processPayment(PaymentProcessRequest request) {
+        return Mono.defer(() -> this.enqueue(new Request(request, request.orderId(), Sinks.one())));
+    }
+
+    @Override
+    public Mono<PaymentDTO> processRefund(UUID orderId) {
+        return Mono.defer(() -> this.enqueue(new Request(null, orderId, Sinks.one())));
+    }
+
+    @Override
+    public Mono<PaymentDTO> getPayment(UUID orderId) {
+        return this.pymtRepo.findByOrderId(orderId)
+            .map(EntityDTOMapper::toPaymentDTO);
+    }
+
+    //enqueued right away, not on subscription: the caller subscribes to the outcomes one at a time
+    @Override
+    public Flux<Mono<PaymentDTO>> processPayments(List<PaymentProcessRequest> requests) {
+        return Flux.defer(() -> Flux.fromIterable(requests.stream()
+            .map(req -> this.enqueue(new Request(req, req.orderId(), Sinks.one())))
+            .toList()));
+    }
+
+    private Mono<PaymentDTO> enqueue(Request req) {
+        if (this.requests.tryEmitNext(req).isFailure()){
+            return Mono.error(new IllegalStateException("Payment coalescer is not running"));
+        }
+        return req.outcome().asMono();
+    }
+
+    //requests still queued or windowed when the coalescer stopped (settle() handles its own errors)
+    private void discarded(Object dropped) {
+        if (dropped instanceof Request req){
+            req.outcome().tryEmitError(new IllegalStateException("Payment coalescer stopped"));
+        } else if (dropped instanceof List<?> window){
+            window.forEach(this::discarded);
+        }
+    }
+
+    //customerId -> its requests in arrival order; refunds of orders without a DEDUCTED payment complete empty here
+    private Flux<Map.Entry<Integer, List<Request>>> byCustomer(List<Request> batch) {
+        var refundIds = batch.stream().filter(Request::isRefund).map(Request::orderId).toList();
+        var payments = refundIds.isEmpty()
+            ? Mono.just(Map.<UUID, CustomerPayment>of())
+            : this.pymtRepo.findByOrderIdInAndStatus(refundIds, PaymentStatus.DEDUCTED).collectMap(CustomerPayment::getOrderId);
+        return payments
+            .onErrorResume(ex -> {
+                log.error("Refund lookup of {} orders failed", refundIds.size(), ex);
+                batch.stream().filter(Request::isRefund).forEach(req -> req.outcome().tryEmitError(ex));
+                return Mono.just(Map.of());
+            })
+            .flatMapIterable(refunded -> {
+                var groups = new LinkedHashMap<Integer, List<Request>>();
+                for (var req : batch){
+                    if (!req.isRefund()){
+                        groups.computeIfAbsent(req.deduction().customerId(), id -> new ArrayList<>()).add(req);
+                        continue;
+                    }
+                    var custPymt = refunded.get(req.orderId());
+                    if (custPymt == null){
+                        req.outcome().tryEmitEmpty();
+                        continue;
+                    }
+                    groups.computeIfAbsent(custPymt.getCustomerId(), id -> new ArrayList<>()).add(req.withPayment(custPymt));
+                }
+                return List.copyOf(groups.entrySet());
+            });
+    }
+
+    private Mono<Void> settle(Integer customerId, List<Request> group) {
+        this.groups.increment();
+        var orderIds = group.stream().filter(req -> !req.isRefund()).map(Request::orderId).toList();
+        var processed = this.processedEvents.processed(orderIds, OrderEvent.OrderCreated.class);
+        var decisions = new ArrayList<Mono<PaymentDTO>>(group.size());
+        var settlement = this.custRepo.findByIdForUpdate(customerId)
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .zipWith(processed)
+            .flatMap(tup -> this.decide(tup.getT1().orElse(null), group, tup.getT2(), decisions));
+        return this.tx.transactional(settlement)
+            .doOnSuccess(v -> {
+                for (int i = 0; i < group.size(); i++){
+                    var outcome = group.get(i).outcome();
+                    decisions.get(i).subscribe(outcome::tryEmitValue, outcome::tryEmitError, outcome::tryEmitEmpty);
+                }
+            })
+            .onErrorResume(ex -> {
+                log.error("Coalesced settlement of {} requests for customerId {} failed", group.size(), customerId, ex);
+                group.forEach(req -> req.outcome().tryEmitError(ex));
+                return Mono.empty();
+            });
+    }
+
+    //decides every request against the running balance, then writes the window's net in 3 statements
+    private Mono<Void> decide(Customer cust, List<Request> group, Set<UUID> processed, List<Mono<PaymentDTO>> decisions) {
+        var balance = cust == null ? 0 : cust.getBalance();
+        var deducted = new ArrayList<CustomerPayment>();
+        var refunded = new ArrayList<UUID>();
+        var refundedIds = new HashSet<UUID>();
+        for (var req : group){
+            if (req.isRefund()){
+                var custPymt = req.payment();
+                //the same cancellation twice in one window: refunded once
+                if (!refundedIds.add(custPymt.getOrderId())){
+                    decisions.add(Mono.empty());
+                    continue;
+                }
+                custPymt.setStatus(PaymentStatus.REFUNDED);
+                balance += custPymt.getAmount();
+                refunded.add(custPymt.getOrderId());
+                decisions.add(Mono.just(EntityDTOMapper.toPaymentDTO(custPymt)));
+                continue;
+            }
+            var reqDTO = req.deduction();
+            //also catches the same orderId twice within one window
+            if (!processed.add(reqDTO.orderId())){
+                log.warn("Duplicate event");
+                decisions.add(Mono.error(new EventAlreadyProcessedException()));
+            } else if (cust == null){
+                decisions.add(Mono.error(new CustomerNotFoundException()));
+            } else if (balance < reqDTO.amount()){
+                decisions.add(Mono.error(new InsufficientBalanceException()));
+            } else {
+                var custPymt = EntityDTOMapper.toCustomerPayment(reqDTO);
+                custPymt.setPaymentId(UUID.randomUUID()); //multi-row insert does not return generated keys
+                custPymt.setStatus(PaymentStatus.DEDUCTED);
+                balance -= reqDTO.amount();
+                deducted.add(custPymt);
+                decisions.add(Mono.just(EntityDTOMapper.toPaymentDTO(custPymt)));
+            }
+        }
+        this.deductions.add(deducted.size());
+        this.refunds.add(refunded.size());
+        if (cust == null){
+            return Mono.empty();
+        }
+        var delta = balance - cust.getBalance();
+        var deductedIds = deducted.stream().map(CustomerPayment::getOrderId).toList();
+        return (delta == 0 ? Mono.<Integer>empty() : this.custRepo.adjustBalance(cust.getId(), delta))
+            .then(this.pymtRepo.insertAll(deducted))
+            .then(this.processedEvents.claimAll(deductedIds, OrderEvent.OrderCreated.class))
+            .then(refunded.isEmpty() ? Mono.<Integer>empty() : this.pymtRepo.markRefunded(refunded))
+            .then(this.processedEvtCache.markProcessed(deductedIds));
+    }
+
+    //requests not settled yet are dropped: their offsets were not acknowledged either
+    @Override
+    public void close() {
+        this.coalescer.dispose();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.settledCounter(registry, "deducted", this.deductions);
+        this.settledCounter(registry, "refunded", this.refunds);
+        FunctionCounter.builder("saga.payment.coalescing.groups", this.groups, LongAdder::sum)
+            .description("Coalesced customer settlements, one transaction each")
+            .register(registry);
+    }
+
+    private void settledCounter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("saga.payment.coalescing.payments", adder, LongAdder::sum)
+            .description("Payments settled in coalesced groups by outcome")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    //deduction: the request; refund: deduction null, payment filled in once looked up. outcome completes after the commit
+    private record Request(PaymentProcessRequest deduction, UUID orderId, Sinks.One<PaymentDTO> outcome, CustomerPayment payment) {
+
+        private Request(PaymentProcessRequest deduction, UUID orderId, Sinks.One<PaymentDTO> outcome) {
+            this(deduction, orderId, outcome, null);
+        }
+
+        private boolean isRefund() {
+            return this.deduction == null;
+        }
+
+        private Request withPayment(CustomerPayment payment) {
+            return new Request(null, this.orderId, this.outcome, payment);
+        }
+    }
+}
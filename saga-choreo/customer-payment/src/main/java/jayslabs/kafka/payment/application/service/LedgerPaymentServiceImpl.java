@@ -0,0 +1,318 @@
+package jayslabs.kafka.payment.application.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.util.DuplicateEventValidator;
+import jayslabs.kafka.common.util.MpscSinks;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+import jayslabs.kafka.payment.application.entity.CustomerPayment;
+import jayslabs.kafka.payment.application.mapper.EntityDTOMapper;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.repository.PaymentRepository;
+import jayslabs.kafka.payment.common.dto.PaymentDTO;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.CustomerNotFoundException;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/*
+  PaymentService deciding against in-memory balances, persisted write-behind
+  (saga.payment.ledger.*, PaymentLedgerConfig).
+
+  A customer is loaded into the ledger on first use. From then on deductions
+  and refunds are decided under that customer's lock against the ledger
+  balance, without reading or locking the customer row, and queued as writes.
+  The writer drains the queue in group commits of up to batch-size writes or
+  max-wait, in one transaction:
+    - one relative balance update per customer, net of the batch
+    - one multi-row customer_payment insert for the deductions, and one
+      processed_event insert claiming them
+    - one status update for the refunds
+
+  A payment's Mono completes only once its group commit is durable, so the
+  event is emitted and the kafka offset acknowledged after the flush: nothing
+  acknowledged is lost on a crash, and redelivered events are decided again
+  from the database. Per-event latency is the flush window; throughput comes
+  from many lanes sharing a commit (saga.processing.lanes.processor).
+
+  The ledger must be the only writer of customer.balance; the balance update
+  is still guarded, so a balance taken by another writer fails the commit
+  instead of going negative. A failed group commit is retried per customer,
+  so only the customers whose own commit fails lose their payments; their
+  ledger balance is then reloaded from the database, plus their writes still
+  queued.
+*/
+public class LedgerPaymentServiceImpl implements PaymentService, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerPaymentServiceImpl.class);
+
+    private static final Mono<Account> CUSTOMER_NOT_FOUND = Mono.error(new CustomerNotFoundException());
+
+    private final CustomerRepository custRepo;
+    private final PaymentRepository pymtRepo;
+    private final ProcessedEventCache processedEvtCache;
+    private final ProcessedEventTable processedEvents;
+    private final TransactionalOperator tx;
+
+    private final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<UUID, Write> pending = new ConcurrentHashMap<>(); //queued, not committed yet
+    private final Sinks.Many<Write> writes = MpscSinks.unbounded(); //enqueue() under each customer's own lock
+    private final Disposable writer;
+
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public LedgerPaymentServiceImpl(CustomerRepository custRepo, PaymentRepository pymtRepo, ProcessedEventCache processedEvtCache,
+                                    ProcessedEventTable processedEvents, TransactionalOperator tx, int batchSize, Duration maxWait) {
+        this.custRepo = custRepo;
+        this.pymtRepo = pymtRepo;
+        this.processedEvtCache = processedEvtCache;
+        this.processedEvents = processedEvents;
+        this.tx = tx;
+        this.writer = this.writes.asFlux()
+            .bufferTimeout(batchSize, maxWait, true) //no overflow while a flush is running
+            .concatMap(this::flush)
+            .subscribe(v -> {}, this::writerFailed);
+    }
+
+    @Override
+    public Mono<PaymentDTO> processPayment(PaymentProcessRequest reqDTO) {
+        return DuplicateEventValidator.validate(
+            //queued but not committed counts as processed; the cache only learns committed orderIds
+            this.processedEvtCache.isDuplicate(reqDTO.orderId(), Mono.defer(() -> this.pending.containsKey(reqDTO.orderId())
+                ? Mono.just(true)
+                : this.processedEvents.isProcessed(reqDTO.orderId(), OrderEvent.OrderCreated.class))),
+            this.account(reqDTO.customerId())
+            )
+            .switchIfEmpty(CUSTOMER_NOT_FOUND)
+            .flatMap(acct -> this.deduct(acct, reqDTO))
+            .doOnNext(pymtDTO -> log.info("Payment deducted successfully for orderId: {}", pymtDTO.orderId()))
+            .transform(DuplicateEventValidator.mapDuplicateKey());
+    }
+
+    @Override
+    public Mono<PaymentDTO> processRefund(UUID orderId) {
+        //the deduction is committed before its PaymentDeducted is emitted, so it is in the table by now
+        return this.pymtRepo.findByOrderIdAndStatus(orderId, PaymentStatus.DEDUCTED)
+            .zipWhen(custPymt -> this.account(custPymt.getCustomerId()))
+            .flatMap(tup -> this.refund(tup.getT2(), tup.getT1()))
+            .doOnNext(pymtDTO -> log.info("Refunded amount of {} for orderId: {}", pymtDTO.amount(), pymtDTO.orderId()));
+    }
+
+    //a queued write is the newest state of the order: wait for its group commit
+    @Override
+    public Mono<PaymentDTO> getPayment(UUID orderId) {
+        return Mono.defer(() -> {
+            var write = this.pending.get(orderId);
+            return write != null
+                ? write.done().asMono()
+                : this.pymtRepo.findByOrderId(orderId).map(EntityDTOMapper::toPaymentDTO);
+        });
+    }
+
+    private Mono<PaymentDTO> deduct(Account acct, PaymentProcessRequest reqDTO) {
+        var custPymt = EntityDTOMapper.toCustomerPayment(reqDTO);
+        custPymt.setPaymentId(UUID.randomUUID()); //multi-row insert does not return generated keys
+        custPymt.setStatus(PaymentStatus.DEDUCTED);
+        synchronized (acct) {
+            if (acct.balance < reqDTO.amount()){
+                return Mono.error(new InsufficientBalanceException());
+            }
+            if (this.pending.containsKey(reqDTO.orderId())){ //same orderId decided concurrently
+                return Mono.error(new EventAlreadyProcessedException());
+            }
+            return this.enqueue(acct, new Write(custPymt, -reqDTO.amount(), Sinks.one()));
+        }
+    }
+
+    private Mono<PaymentDTO> refund(Account acct, CustomerPayment custPymt) {
+        synchronized (acct) {
+            if (this.pending.containsKey(custPymt.getOrderId())){ //refund of this order already queued
+                return Mono.empty();
+            }
+            custPymt.setStatus(PaymentStatus.REFUNDED);
+            return this.enqueue(acct, new Write(custPymt, custPymt.getAmount(), Sinks.one()));
+        }
+    }
+
+    //under the account lock; the balance changes only once the write is queued
+    private Mono<PaymentDTO> enqueue(Account acct, Write write) {
+        this.pending.put(write.payment().getOrderId(), write);
+        if (this.writes.tryEmitNext(write).isFailure()){ //writer stopped
+            this.pending.remove(write.payment().getOrderId());
+            return Mono.error(new IllegalStateException("Payment ledger writer is not running"));
+        }
+        acct.balance += write.delta();
+        return write.done().asMono();
+    }
+
+    private Mono<Account> account(Integer customerId) {
+        return Mono.defer(() -> {
+            var acct = this.accounts.get(customerId);
+            return acct != null
+                ? Mono.just(acct)
+                //not in the ledger yet, so no write of this customer is queued and the row is current
+                : this.custRepo.findById(customerId)
+                    .map(cust -> this.accounts.computeIfAbsent(customerId, id -> new Account(cust.getBalance())));
+        });
+    }
+
+    //one customer's failure must not fail the others: retry a failed group per customer
+    private Mono<Void> flush(List<Write> batch) {
+        return this.commit(batch)
+            .onErrorResume(ex -> {
+                var byCustomer = new LinkedHashMap<Integer, List<Write>>();
+                batch.forEach(write -> byCustomer.computeIfAbsent(write.payment().getCustomerId(), id -> new ArrayList<>()).add(write));
+                if (byCustomer.size() == 1){
+                    return this.failed(batch, ex);
+                }
+                log.warn("Payment ledger group commit of {} writes failed, retrying per customer", batch.size(), ex);
+                return Flux.fromIterable(byCustomer.values())
+                    .concatMap(writes -> this.commit(writes).onErrorResume(cex -> this.failed(writes, cex)))
+                    .then();
+            });
+    }
+
+    private Mono<Void> commit(List<Write> batch) {
+        var deltas = new LinkedHashMap<Integer, Integer>();
+        var deducted = new ArrayList<CustomerPayment>();
+        var refunded = new ArrayList<UUID>();
+        for (var write : batch){
+            deltas.merge(write.payment().getCustomerId(), write.delta(), Integer::sum);
+            if (write.payment().getStatus() == PaymentStatus.DEDUCTED){
+                deducted.add(write.payment());
+            } else {
+                refunded.add(write.payment().getOrderId());
+            }
+        }
+        var deductedIds = deducted.stream().map(CustomerPayment::getOrderId).toList();
+        var commit = Flux.fromIterable(deltas.entrySet())
+            .filter(delta -> delta.getValue() != 0)
+            .concatMap(delta -> this.custRepo.adjustBalance(delta.getKey(), delta.getValue())
+                .filter(rows -> rows == 0)
+                .flatMap(rows -> Mono.<Integer>error(new IllegalStateException("Balance of customer " + delta.getKey() + " would go negative"))))
+            .then(this.pymtRepo.insertAll(deducted))
+            .then(this.processedEvents.claimAll(deductedIds, OrderEvent.OrderCreated.class))
+            .then(refunded.isEmpty() ? Mono.<Integer>empty() : this.pymtRepo.markRefunded(refunded))
+            .then(this.processedEvtCache.markProcessed(deductedIds));
+        return this.tx.transactional(commit)
+            .doOnSuccess(v -> {
+                this.committed.add(batch.size());
+                batch.forEach(write -> {
+                    this.pending.remove(write.payment().getOrderId());
+                    write.done().tryEmitValue(EntityDTOMapper.toPaymentDTO(write.payment()));
+                });
+            });
+    }
+
+    //writes of one customer: they fail, and the guard may have seen less than the ledger, so its balance is reloaded
+    private Mono<Void> failed(List<Write> writes, Throwable ex) {
+        var customerId = writes.getFirst().payment().getCustomerId();
+        log.error("Payment ledger commit of {} writes of customer {} failed", writes.size(), customerId, ex);
+        this.failed.add(writes.size());
+        var acct = this.accounts.get(customerId);
+        writes.forEach(write -> {
+            synchronized (acct) { //kept if the reload fails too
+                acct.balance -= write.delta();
+            }
+            this.pending.remove(write.payment().getOrderId());
+            write.done().tryEmitError(ex);
+        });
+        return this.reload(customerId, acct);
+    }
+
+    /*
+    Runs on the writer, so no commit happens meanwhile: the row holds everything committed
+    and the customer's pending writes are exactly what the ledger added on top. Replacing the
+    account instead would lose writes queued on the old one by a concurrent deduction.
+    */
+    private Mono<Void> reload(Integer customerId, Account acct) {
+        return this.custRepo.findById(customerId)
+            .doOnNext(cust -> {
+                synchronized (acct) {
+                    acct.balance = cust.getBalance() + this.pending.values().stream()
+                        .filter(write -> write.payment().getCustomerId().equals(customerId))
+                        .mapToInt(Write::delta)
+                        .sum();
+                }
+            })
+            .switchIfEmpty(Mono.fromRunnable(() -> this.accounts.remove(customerId)))
+            .doOnError(ex -> log.error("Reloading the ledger balance of customer {} failed", customerId, ex))
+            .onErrorComplete()
+            .then();
+    }
+
+    /*
+    flush() handles its own errors, so this is a bug or an error of the sink: nothing is
+    written anymore. Queued payments fail (their offsets were not acknowledged) and the
+    ledger forgets its balances, new payments fail in enqueue().
+    */
+    private void writerFailed(Throwable ex) {
+        log.error("Payment ledger writer stopped", ex);
+        this.pending.values().forEach(write -> write.done().tryEmitError(ex));
+        this.pending.clear();
+        this.accounts.clear();
+    }
+
+    //queued writes that are not flushed yet are dropped: their offsets were not acknowledged either
+    @Override
+    public void close() {
+        this.writer.dispose();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.payment.ledger.accounts", this.accounts, Map::size)
+            .description("Customers whose balance is held in the ledger")
+            .register(registry);
+        Gauge.builder("saga.payment.ledger.pending", this.pending, Map::size)
+            .description("Payments decided in the ledger, waiting for their group commit")
+            .register(registry);
+        this.writeCounter(registry, "committed", this.committed);
+        this.writeCounter(registry, "failed", this.failed);
+    }
+
+    private void writeCounter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("saga.payment.ledger.writes", adder, LongAdder::sum)
+            .description("Ledger writes by outcome of their group commit")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    //guarded by its own monitor
+    private static final class Account {
+
+        private int balance;
+
+        private Account(int balance) {
+            this.balance = balance;
+        }
+    }
+
+    //delta: balance change, negative for a deduction; done completes after the group commit
+    private record Write(CustomerPayment payment, int delta, Sinks.One<PaymentDTO> done) {
+    }
+}
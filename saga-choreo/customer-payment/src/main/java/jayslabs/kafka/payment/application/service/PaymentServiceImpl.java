@@ -1,14 +1,25 @@
 package jayslabs.kafka.payment.application.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
 import jayslabs.kafka.common.util.DuplicateEventValidator;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
 import jayslabs.kafka.payment.application.entity.Customer;
 import jayslabs.kafka.payment.application.entity.CustomerPayment;
 import jayslabs.kafka.payment.application.mapper.EntityDTOMapper;
@@ -20,54 +31,138 @@ import jayslabs.kafka.payment.common.exception.CustomerNotFoundException;
 import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
 import jayslabs.kafka.payment.common.service.PaymentService;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "saga.payment.ledger.enabled", havingValue = "false", matchIfMissing = true) //else LedgerPaymentServiceImpl
 public class PaymentServiceImpl implements PaymentService{
 
     private static final Logger log = LoggerFactory.getLogger(PaymentServiceImpl.class);
 
-    private static final Mono<Customer> CUSTOMER_NOT_FOUND = Mono.error(new CustomerNotFoundException());
-    private static final Mono<Customer> INSUFFICIENT_BALANCE = Mono.error(new InsufficientBalanceException());
-
     private final CustomerRepository custRepo;
     private final PaymentRepository pymtRepo;
+    private final ProcessedEventCache processedEvtCache;
+    private final ProcessedEventTable processedEvents;
 
     @Override
     @Transactional
     public Mono<PaymentDTO> processPayment(PaymentProcessRequest reqDTO) {
-        return DuplicateEventValidator.validate(
-            //[validation publisher : Mono<Boolean>] db call to check if orderId already exists. 
-            //true = duplicate event, false = new event
-            this.pymtRepo.existsByOrderId(reqDTO.orderId()), 
+        return DuplicateEventValidator.claim(
+            //[in-memory tier] recent orderIds answer redeliveries without the db call below
+            reqDTO.orderId(), this.processedEvtCache,
+
+            //[claim publisher : Mono<Boolean>] MERGE into processed_event, in this transaction.
+            //true = claimed now (new event), false = duplicate event
+            this.processedEvents.claim(reqDTO.orderId(), OrderEvent.OrderCreated.class),
 
-            //[processing publisher : Mono<Customer>] customer validation and payment deduction
-            //returns Mono<Customer> if customer found, otherwise empty 
-            this.custRepo.findById(reqDTO.customerId())
+            //[processing publisher : Mono<Integer>] guarded debit: balance checked and deducted
+            //by one UPDATE, returns the number of rows updated (1 = deducted)
+            this.custRepo.debit(reqDTO.customerId(), reqDTO.amount())
             )
-            .switchIfEmpty(CUSTOMER_NOT_FOUND) //switched to error mono if customer not found
+            .filter(rows -> rows > 0)
+            .switchIfEmpty(this.debitRejected(reqDTO.customerId())) //switched to error mono
 
-            //verify if Mono<Customer> has sufficient balance
-            //returns Mono<Customer> if customer has sufficient balance, otherwise empty
-            .filter(cust -> cust.getBalance() >= reqDTO.amount())
-            .switchIfEmpty(INSUFFICIENT_BALANCE) //switched to error mono
+            //record the payment
+            .then(this.savePayment(reqDTO))
+            .doOnNext(pymtDTO -> log.info("Payment deducted successfully for orderId: {}", pymtDTO.orderId()))
+            .transform(DuplicateEventValidator.mapDuplicateKey());
+    }
 
-            //apply payment deduction
-            .flatMap(cust -> this.deductPayment(cust, reqDTO))
-            .doOnNext(pymtDTO -> log.info("Payment deducted successfully for orderId: {}", pymtDTO.orderId())
-        );
+    //0 rows debited: only this path reads the customer, to tell the two failures apart
+    private Mono<Integer> debitRejected(Integer customerId) {
+        return this.custRepo.existsById(customerId)
+            .flatMap(exists -> Mono.<Integer>error(exists ? new InsufficientBalanceException() : new CustomerNotFoundException()));
     }
 
-    private Mono<PaymentDTO> deductPayment(Customer customer, PaymentProcessRequest reqDTO) {
-        var custPymt = EntityDTOMapper.toCustomerPayment(reqDTO); //[BP] for creating a pymt transaction
-        customer.setBalance(customer.getBalance() - reqDTO.amount());
-        custPymt.setStatus(PaymentStatus.DEDUCTED);
-        return this.custRepo.save(customer)
-        .then(this.pymtRepo.save(custPymt))
+    private Mono<PaymentDTO> savePayment(PaymentProcessRequest reqDTO) {
+        return Mono.defer(() -> {
+            var custPymt = EntityDTOMapper.toCustomerPayment(reqDTO); //[BP] for creating a pymt transaction
+            custPymt.setStatus(PaymentStatus.DEDUCTED);
+            return this.pymtRepo.save(custPymt);
+        })
         .map(EntityDTOMapper::toPaymentDTO);
     }
 
+    /*
+    Batch payment: 2 reads for the whole batch (processed_event, customers), balances
+    decided in memory in request order (running balance per customer), then one guarded
+    debit per customer for its total and one multi-row insert each into customer_payment
+    and processed_event.
+    A customer whose total no longer fits (balance taken by a concurrent consumer since
+    the read) falls back to one guarded debit per order, in request order: the orders
+    that still fit are paid, the others fail as insufficient balance.
+    */
+    @Override
+    @Transactional
+    public Flux<Mono<PaymentDTO>> processPayments(List<PaymentProcessRequest> requests) {
+        var orderIds = requests.stream().map(PaymentProcessRequest::orderId).toList();
+        var customerIds = requests.stream().map(PaymentProcessRequest::customerId).distinct().toList();
+        return this.processedEvents.processed(orderIds, OrderEvent.OrderCreated.class)
+            .zipWith(this.custRepo.findAllById(customerIds).collectMap(Customer::getId))
+            .flatMapMany(tup -> this.deductPayments(requests, tup.getT1(), tup.getT2()));
+    }
+
+    private Flux<Mono<PaymentDTO>> deductPayments(List<PaymentProcessRequest> requests, Set<UUID> processed, Map<Integer, Customer> customers) {
+        var outcomes = new ArrayList<Mono<PaymentDTO>>(requests.size());
+        var payments = new ArrayList<CustomerPayment>(requests.size());
+        var debits = new LinkedHashMap<Integer, List<CustomerPayment>>(); //customerId -> its payments of the batch
+        var rejected = new HashSet<UUID>(); //orders whose guarded debit updated no row
+
+        for (var reqDTO : requests){
+            //also catches the same orderId twice within one batch
+            if (!processed.add(reqDTO.orderId())){
+                log.warn("Duplicate event");
+                outcomes.add(Mono.error(new EventAlreadyProcessedException()));
+                continue;
+            }
+            var cust = customers.get(reqDTO.customerId());
+            if (cust == null){
+                outcomes.add(Mono.error(new CustomerNotFoundException()));
+            } else if (cust.getBalance() < reqDTO.amount()){
+                outcomes.add(Mono.error(new InsufficientBalanceException()));
+            } else {
+                var custPymt = EntityDTOMapper.toCustomerPayment(reqDTO);
+                custPymt.setPaymentId(UUID.randomUUID()); //multi-row insert does not return generated keys
+                custPymt.setStatus(PaymentStatus.DEDUCTED);
+                cust.setBalance(cust.getBalance() - reqDTO.amount());
+                debits.computeIfAbsent(cust.getId(), id -> new ArrayList<>()).add(custPymt);
+                payments.add(custPymt);
+                var pymtDTO = EntityDTOMapper.toPaymentDTO(custPymt);
+                //resolved after the debits below, outcomes are subscribed last
+                outcomes.add(Mono.defer(() -> rejected.contains(custPymt.getOrderId())
+                    ? Mono.error(new InsufficientBalanceException())
+                    : Mono.just(pymtDTO)));
+            }
+        }
+
+        return Flux.fromIterable(debits.entrySet())
+            .concatMap(debit -> this.debit(debit.getKey(), debit.getValue(), rejected))
+            .then(Mono.defer(() -> {
+                var deducted = payments.stream().filter(p -> !rejected.contains(p.getOrderId())).toList();
+                var deductedIds = deducted.stream().map(CustomerPayment::getOrderId).toList();
+                return this.pymtRepo.insertAll(deducted)
+                    .then(this.processedEvents.claimAll(deductedIds, OrderEvent.OrderCreated.class))
+                    .then(this.processedEvtCache.markProcessed(deductedIds))
+                    .doOnSuccess(v -> log.info("Batch deducted {} of {} payments", deducted.size(), requests.size()));
+            }))
+            .thenMany(Flux.fromIterable(outcomes));
+    }
+
+    //the customer's total in one guarded debit, or per payment once the total no longer fits
+    //(a lone payment is not debited again, its total was its own amount)
+    private Mono<Void> debit(Integer customerId, List<CustomerPayment> payments, Set<UUID> rejected) {
+        var total = payments.stream().mapToInt(CustomerPayment::getAmount).sum();
+        return this.custRepo.debit(customerId, total)
+            .filter(rows -> rows == 0)
+            .flatMapMany(rows -> Flux.fromIterable(payments))
+            .concatMap(custPymt -> (payments.size() == 1 ? Mono.just(0) : this.custRepo.debit(customerId, custPymt.getAmount()))
+                .filter(rows -> rows == 0)
+                .doOnNext(rows -> rejected.add(custPymt.getOrderId())))
+            .then();
+    }
+
     @Override
     @Transactional
     public Mono<PaymentDTO> processRefund(UUID orderId) {
@@ -78,29 +173,25 @@ public class PaymentServiceImpl implements PaymentService{
         If no payment found → Mono completes empty (no refund processed)
         */
         return this.pymtRepo.findByOrderIdAndStatus(orderId, PaymentStatus.DEDUCTED) //returns Mono<CustomerPayment>
-            /* 
-            Input: Mono<CustomerPayment> from Phase 1
-            Operation: For each CustomerPayment, fetch the corresponding Customer
-            Output: Mono<Tuple2<CustomerPayment, Customer>>
-
-            zipWhen preserves both the original CustomerPayment AND the fetched Customer as a tuple
-            This avoids nested reactive chains and keeps both entities accessible
-            */
-            .zipWhen(custPymt -> this.custRepo.findById(custPymt.getCustomerId())) //Mono<Tuple2<CustomerPayment, Customer>>
-            .flatMap(tup -> this.refundPayment(tup.getT1(), tup.getT2()))
+            .flatMap(this::refundPayment)
             .doOnNext(pymtDTO -> log.info("Refunded amount of {} for orderId: {}", pymtDTO.amount(), pymtDTO.orderId())
         );
     }
 
-    private Mono<PaymentDTO> refundPayment(CustomerPayment custPymt, Customer cust){
-        cust.setBalance(cust.getBalance() + custPymt.getAmount());
+    @Override
+    public Mono<PaymentDTO> getPayment(UUID orderId) {
+        return this.pymtRepo.findByOrderId(orderId)
+            .map(EntityDTOMapper::toPaymentDTO);
+    }
+
+    private Mono<PaymentDTO> refundPayment(CustomerPayment custPymt){
         custPymt.setStatus(PaymentStatus.REFUNDED);
-        return this.custRepo.save(cust) //Mono<Customer>
+        return this.custRepo.credit(custPymt.getCustomerId(), custPymt.getAmount()) //Mono<Integer>, rows updated
 
         /* 
-        Waits for the customer save to complete
-        Discards the Mono<Customer> result
-        Subscribes to pymtRepo.save(custPymt) only after customer is saved
+        Waits for the balance update to complete
+        Discards the row count
+        Subscribes to pymtRepo.save(custPymt) only after the customer is credited
         Ensures sequential execution for database consistency
         */
         .then(this.pymtRepo.save(custPymt)) //Mono<CustomerPayment>
@@ -121,53 +212,37 @@ Process Payment Flow
 INPUT: PaymentProcessRequestDTO(customerId=1, orderId=abc-123, amount=50)
 ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 1: IDEMPOTENCY CHECK                                  │
+│ PHASE 1: IDEMPOTENCY CLAIM                                  │
 ├─────────────────────────────────────────────────────────────┤
-│ pymtRepo.existsByOrderId(abc-123)                           │
-│ → Query: SELECT EXISTS(SELECT 1 FROM customer_payment       │
-│          WHERE order_id = 'abc-123')                        │
-│ → Result: false (not processed before)                      │
+│ processedEvents.claim(abc-123, OrderCreated)                │
+│ → MERGE INTO processed_event ... WHEN NOT MATCHED           │
+│          THEN INSERT ('abc-123', 'OrderCreated')            │
+│ → Result: 1 row (not processed before, claimed)             │
 │ → DuplicateEventValidator: PASS ✓                           │
 └─────────────────────────────────────────────────────────────┘
 ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 2: CUSTOMER VALIDATION                                │
-├─────────────────────────────────────────────────────────────┤
-│ custRepo.findById(1)                                        │
-│ → Query: SELECT * FROM customer WHERE id = 1                │
-│ → Result: Customer(id=1, name="Sam", balance=100)           │
-│ → switchIfEmpty: SKIPPED (customer found) ✓                 │
-└─────────────────────────────────────────────────────────────┘
-↓
-┌─────────────────────────────────────────────────────────────┐
-│ PHASE 3: BALANCE VALIDATION                                 │
+│ PHASE 2: GUARDED DEBIT                                      │
 ├─────────────────────────────────────────────────────────────┤
-│ filter(cust -> 100 >= 50)                                   │
-│ → Predicate: true                                           │
-│ → Customer passes through ✓                                 │
-│ → switchIfEmpty: SKIPPED (not empty) ✓                      │
+│ custRepo.debit(1, 50)                                       │
+│ → UPDATE customer SET balance = balance - 50                │
+│   WHERE id = 1 AND balance >= 50                            │
+│ → Result: 1 row (balance 100 → 50) ✓                        │
+│ → 0 rows: existsById(1) decides between                     │
+│   CustomerNotFound and InsufficientBalance                  │
 └─────────────────────────────────────────────────────────────┘
 ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 4: PAYMENT DEDUCTION                                  │
+│ PHASE 3: PAYMENT RECORD                                     │
 ├─────────────────────────────────────────────────────────────┤
-│ flatMap(cust -> deductPayment(cust, request))               │
-│                                                             │
-│ Inside deductPayment():                                     │
-│ 1. Create payment entity (orderId, customerId, amount)      │
-│ 2. Update customer balance: 100 - 50 = 50 (in-memory)       │
-│ 3. Set payment status: DEDUCTED                             │
-│ 4. custRepo.save(customer)                                  │
-│    → UPDATE customer SET balance=50 WHERE id=1              │
-│ 5. .then(pymtRepo.save(payment))                            │
-│    → INSERT INTO customer_payment VALUES(...)               │
-│    → Auto-generated paymentId: xyz-789                      │
-│ 6. .map(EntityDTOMapper::toPaymentDTO)                      │
-│    → Convert entity to DTO                                  │
+│ .then(savePayment(request))                                 │
+│ → INSERT INTO customer_payment VALUES(...)                  │
+│ → Auto-generated paymentId: xyz-789                         │
+│ .map(EntityDTOMapper::toPaymentDTO)                         │
 └─────────────────────────────────────────────────────────────┘
 ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 5: LOGGING & RETURN                                   │
+│ PHASE 4: LOGGING & RETURN                                   │
 ├─────────────────────────────────────────────────────────────┤
 │ doOnNext(log.info("Payment deducted..."))                   │
 │ → Log: "Payment deducted successfully for orderId: abc-123" │
@@ -204,56 +279,28 @@ INPUT: processRefund(orderId = "abc-123")
 └─────────────────────────────────────────────────────────────┘
         ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 2: ZIP WITH CUSTOMER (zipWhen)                        │
+│ PHASE 2: REFUND PAYMENT (flatMap → refundPayment)           │
 ├─────────────────────────────────────────────────────────────┤
-│ custRepo.findById(5)                                        │
-│ → SQL: SELECT * FROM customer WHERE id = 5                  │
-│ → Found: Customer(id=5, name="John", balance=200)           │
-│                                                             │
-│ Result: Tuple2(                                             │
-│   T1 = CustomerPayment(...),                                │
-│   T2 = Customer(...)                                        │
-│ )                                                           │
-└─────────────────────────────────────────────────────────────┘
-        ↓
-┌─────────────────────────────────────────────────────────────┐
-│ PHASE 3: REFUND PAYMENT (flatMap → refundPayment)           │
-├─────────────────────────────────────────────────────────────┤
-│ refundPayment(CustomerPayment, Customer)                    │
-│                                                             │
-│ Step 3.1: Update in-memory state                            │
-│   cust.balance = 200 + 100 = 300 (in-memory)                │
-│   custPymt.status = REFUNDED (in-memory)                    │
+│ refundPayment(CustomerPayment)                              │
 │                                                             │
-│ Step 3.2: Save customer                                     │
-│   custRepo.save(cust)                                       │
-│   → UPDATE customer SET balance=300 WHERE id=5              │
-│   → Emits: Mono<Customer>                                   │
+│ Step 2.1: custPymt.status = REFUNDED (in-memory)            │
 │                                                             │
-│ Step 3.3: .then() - Sequential chaining                     │
-│   Wait for customer save completion                         │
-│   Discard Mono<Customer> result                             │
+│ Step 2.2: Credit customer                                   │
+│   custRepo.credit(5, 100)                                   │
+│   → UPDATE customer SET balance = balance + 100             │
+│      WHERE id = 5                                           │
 │                                                             │
-│ Step 3.4: Save payment                                      │
+│ Step 2.3: Save payment                                      │
 │   pymtRepo.save(custPymt)                                   │
 │   → UPDATE customer_payment                                 │
 │      SET status='REFUNDED'                                  │
 │      WHERE payment_id='xyz-789'                             │
-│   → Emits: Mono<CustomerPayment>                            │
 │                                                             │
-│ Step 3.5: Transform to DTO                                  │
-│   .map(EntityDTOMapper::toPaymentDTO)                       │
-│   → PaymentDTO(                                             │
-│       paymentId=xyz-789,                                    │
-│       orderId=abc-123,                                      │
-│       customerId=5,                                         │
-│       amount=100,                                           │
-│       status=REFUNDED                                       │
-│     )                                                       │
+│ Step 2.4: .map(EntityDTOMapper::toPaymentDTO)               │
 └─────────────────────────────────────────────────────────────┘
         ↓
 ┌─────────────────────────────────────────────────────────────┐
-│ PHASE 4: LOGGING (doOnNext)                                 │
+│ PHASE 3: LOGGING (doOnNext)                                 │
 ├─────────────────────────────────────────────────────────────┤
 │ log.info("Refunded amount of 100 for orderId: abc-123")     │
 └─────────────────────────────────────────────────────────────┘
@@ -1,9 +1,11 @@
 package jayslabs.kafka.payment.common.service;
 
+import java.util.List;
 import java.util.UUID;
 
 import jayslabs.kafka.payment.common.dto.PaymentDTO;
 import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface PaymentService {
@@ -11,4 +13,21 @@ public interface PaymentService {
     Mono<PaymentDTO> processPayment(PaymentProcessRequest request);
 
     Mono<PaymentDTO> processRefund(UUID orderId);
+
+    /*
+    The order's stored payment, deducted or refunded; empty if none was deducted.
+    Exactly-once mode replays the outcome of a redelivered event from it.
+    */
+    Mono<PaymentDTO> getPayment(UUID orderId);
+
+    /*
+    Batch variant of processPayment(): emits one outcome per request, in request order.
+    Each outcome is a Mono that emits the PaymentDTO, or errors the same way processPayment()
+    would (EventAlreadyProcessedException, CustomerNotFoundException, InsufficientBalanceException).
+    Default delegates to processPayment() one request at a time.
+    */
+    default Flux<Mono<PaymentDTO>> processPayments(List<PaymentProcessRequest> requests){
+        return Flux.fromIterable(requests)
+            .map(this::processPayment);
+    }
 }
@@ -0,0 +1,22 @@
+package jayslabs.kafka.payment.messaging.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.SpanExporter;
+
+/*
+Saga tracing: hops follow the traceparent header written by order-service.
+Spans are logged unless a SpanExporter bean is defined (tests: InMemorySpanExporter).
+*/
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public SagaTracer sagaTracer(Environment env, ObjectProvider<SpanExporter> exporter){
+        return SagaTracer.fromEnvironment(env, exporter.getIfAvailable(SpanExporter::logging));
+    }
+}
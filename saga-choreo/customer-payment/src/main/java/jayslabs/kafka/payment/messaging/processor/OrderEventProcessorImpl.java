@@ -1,18 +1,24 @@
 package jayslabs.kafka.payment.messaging.processor;
 
+import java.util.List;
+import java.util.UUID;
 import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
 import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
 import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.payment.common.dto.PaymentDTO;
 import jayslabs.kafka.payment.common.service.PaymentService;
 import jayslabs.kafka.payment.messaging.mapper.EventDTOMapper;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /** 
@@ -38,6 +44,15 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<PaymentEvent
 
     private final PaymentService service;
 
+    /*
+    Exactly-once mode: the db transaction commits before the kafka transaction, so an
+    aborted kafka transaction redelivers events whose processing already committed.
+    Their duplicate is answered with the stored outcome instead of nothing, otherwise
+    the aborted output would never be sent and the saga would stall.
+    */
+    @Value("${saga.processing.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
     /**
      * Payment processing pipeline:
      
@@ -73,6 +88,7 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<PaymentEvent
     @Override
     public Mono<PaymentEvent> handle(OrderEvent.OrderCancelled event) {
         return this.service.processRefund(event.orderId())
+        .switchIfEmpty(this.replay(event.orderId(), PaymentStatus.REFUNDED))
         .map(EventDTOMapper::toPaymentRefundedEvent)
         .doOnNext(evt -> log.info("payment refunded {}", evt))
         .doOnError(ex -> log.error("error refunding payment", ex));
@@ -83,14 +99,49 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<PaymentEvent
         return Mono.empty();
     }
 
+    /*
+    Micro-batch: consecutive OrderCreated events are paid with one batched service call;
+    any other event (e.g. OrderCancelled) is processed on its own, keeping the batch order.
+    Every OrderCreated still yields its own PaymentDeducted/PaymentFailed (or nothing if duplicate,
+    the stored PaymentDeducted in exactly-once mode).
+    */
+    @Override
+    public Flux<PaymentEvent> processBatch(List<OrderEvent> events) {
+        return Flux.fromIterable(events)
+        .bufferUntilChanged(OrderEvent.OrderCreated.class::isInstance)
+        .concatMap(run -> run.getFirst() instanceof OrderEvent.OrderCreated
+            ? this.handleAll(run.stream().map(OrderEvent.OrderCreated.class::cast).toList())
+            : Flux.fromIterable(run).concatMap(this::process));
+    }
+
+    private Flux<PaymentEvent> handleAll(List<OrderEvent.OrderCreated> events) {
+        var requests = events.stream().map(EventDTOMapper::toPaymentProcessRequest).toList();
+        return this.service.processPayments(requests)
+        .zipWithIterable(events)
+        .concatMap(tup -> tup.getT1()
+            .map(EventDTOMapper::toPaymentDeductedEvent)
+            .doOnNext(evt -> log.info("payment processed {}", evt))
+            .transform(exceptionHandler(tup.getT2())));
+    }
+
     private UnaryOperator<Mono<PaymentEvent>> exceptionHandler(OrderEvent.OrderCreated evt){
-        return mono -> mono.onErrorResume(EventAlreadyProcessedException.class, e-> Mono.empty())
+        return mono -> mono.onErrorResume(EventAlreadyProcessedException.class, e -> this.replay(evt.orderId(), PaymentStatus.DEDUCTED)
+            .map(EventDTOMapper::toPaymentDeductedEvent))
         //.onErrorResume(CustomerNotFoundException.class, EventDTOMapper.toPaymentFailedEvent(evt))
         //.onErrorResume(InsufficientBalanceException.class, EventDTOMapper.toPaymentFailedEvent(evt))
         
         //Catch-all safety net - handles unexpected exceptions
         .onErrorResume(EventDTOMapper.toPaymentFailedEvent(evt));
     }
+
+    //stored payment of an already processed event in the given status, exactly-once mode only
+    private Mono<PaymentDTO> replay(UUID orderId, PaymentStatus status){
+        return Mono.defer(() -> this.exactlyOnce
+            ? this.service.getPayment(orderId)
+                .filter(pymtDTO -> pymtDTO.status() == status)
+                .doOnNext(pymtDTO -> log.info("replaying stored payment outcome {}", pymtDTO))
+            : Mono.empty());
+    }
 }
 
 /*
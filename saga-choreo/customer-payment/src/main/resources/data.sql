@@ -1,5 +1,7 @@
-DROP TABLE IF EXISTS customer;
+-- children before the tables they reference
+DROP TABLE IF EXISTS processed_event;
 DROP TABLE IF EXISTS customer_payment;
+DROP TABLE IF EXISTS customer;
 
 CREATE TABLE customer (
    id int AUTO_INCREMENT primary key,
@@ -9,13 +11,21 @@ CREATE TABLE customer (
 
 CREATE TABLE customer_payment (
    payment_id uuid default random_uuid() primary key,
-   order_id uuid,
+   order_id uuid unique,
    customer_id int,
    status VARCHAR(50),
    amount int,
    foreign key (customer_id) references customer(id)
 );
 
+-- one row per consumed event (ProcessedEventTable): claimed in the transaction
+-- that processes it, the primary key decides between concurrent redeliveries
+CREATE TABLE processed_event (
+   order_id uuid,
+   event_type VARCHAR(50),
+   primary key (order_id, event_type)
+);
+
 insert into customer(name, balance)
     values
         ('anya', 1000),
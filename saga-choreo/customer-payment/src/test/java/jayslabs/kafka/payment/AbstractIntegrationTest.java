@@ -8,7 +8,9 @@ import org.springframework.test.annotation.DirtiesContext;
 @SpringBootTest(properties={
     "logging.level.root=ERROR",
     "logging.level.jayslabs.kafka*=INFO",
-    "spring.cloud.stream.kafka.binder.configuration.auto.offset.reset=earliest"
+    "spring.cloud.stream.kafka.binder.configuration.auto.offset.reset=earliest",
+    //schema and rows of the main data.sql, then the balances/stock the assertions are written against
+    "spring.sql.init.data-locations=classpath:data.sql,classpath:test-data.sql"
 })
 @EmbeddedKafka(
     partitions = 1, 
@@ -0,0 +1,118 @@
+package jayslabs.kafka.payment;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.service.CoalescingPaymentServiceImpl;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.CustomerNotFoundException;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/*
+A window long enough that the requests of each step below share it.
+Each test works on its own customer.
+*/
+@TestPropertySource(properties = {
+    "saga.payment.coalescing.enabled=true",
+    "saga.payment.coalescing.window=200ms"
+})
+public class CoalescingPaymentServiceTest extends AbstractIntegrationTest{
+
+    @Autowired
+    private PaymentService pymtService;
+
+    @Autowired
+    private CustomerRepository custrepo;
+
+    @Test
+    public void runningBalanceTest(){
+        Assertions.assertInstanceOf(CoalescingPaymentServiceImpl.class, this.pymtService);
+
+        //customer 1 has 100: both fit
+        var first = request(1, 60);
+        var second = request(1, 40);
+        Flux.merge(this.pymtService.processPayment(first), this.pymtService.processPayment(second))
+            .as(StepVerifier::create)
+            .expectNextCount(2)
+            .verifyComplete();
+        this.expectBalance(1, 0);
+
+        //one window, in this order: the refund pays for the first deduction, not for the second
+        var refund = this.pymtService.processRefund(first.orderId()).toFuture();
+        var fits = this.pymtService.processPayment(request(1, 50)).toFuture();
+        var tooMuch = this.pymtService.processPayment(request(1, 20)).toFuture();
+        var again = this.pymtService.processRefund(first.orderId()).toFuture();
+
+        Assertions.assertEquals(PaymentStatus.REFUNDED, refund.join().status());
+        Assertions.assertEquals(PaymentStatus.DEDUCTED, fits.join().status());
+        var ex = Assertions.assertThrows(CompletionException.class, tooMuch::join);
+        Assertions.assertInstanceOf(InsufficientBalanceException.class, ex.getCause());
+        Assertions.assertNull(again.join()); //refunded once
+        this.expectBalance(1, 10);
+    }
+
+    @Test
+    public void concurrentDeductTest(){
+        //customer 3 has 100: of 150 concurrent payments of 1, exactly 100 go through
+        var deducted = Flux.range(0, 150)
+            .flatMap(i -> this.pymtService.processPayment(request(3, 1))
+                .onErrorResume(InsufficientBalanceException.class, e -> Mono.empty())
+                .subscribeOn(Schedulers.parallel()), 32)
+            .count()
+            .block(Duration.ofSeconds(30));
+        Assertions.assertEquals(100, deducted);
+        this.expectBalance(3, 0);
+    }
+
+    @Test
+    public void duplicateAndUnknownCustomerTest(){
+        var req = request(2, 10);
+        Flux.merge(
+                this.pymtService.processPayment(req).map(pymt -> "ok"),
+                this.pymtService.processPayment(req).map(pymt -> "ok")
+                    .onErrorResume(EventAlreadyProcessedException.class, e -> Mono.just("duplicate")))
+            .collectList()
+            .as(StepVerifier::create)
+            .consumeNextWith(outcomes -> Assertions.assertTrue(outcomes.contains("ok") && outcomes.contains("duplicate")))
+            .verifyComplete();
+        this.expectBalance(2, 90);
+
+        //redelivered in a later window
+        this.pymtService.processPayment(req)
+            .as(StepVerifier::create)
+            .verifyError(EventAlreadyProcessedException.class);
+
+        this.pymtService.processPayment(request(19, 10))
+            .as(StepVerifier::create)
+            .verifyError(CustomerNotFoundException.class);
+    }
+
+    private void expectBalance(int customerId, int balance){
+        this.custrepo.findById(customerId)
+            .as(StepVerifier::create)
+            .consumeNextWith(cust -> Assertions.assertEquals(balance, cust.getBalance()))
+            .verifyComplete();
+    }
+
+    private static PaymentProcessRequest request(int customerId, int amount){
+        return PaymentProcessRequest.builder()
+            .customerId(customerId)
+            .orderId(UUID.randomUUID())
+            .amount(amount)
+            .build();
+    }
+}
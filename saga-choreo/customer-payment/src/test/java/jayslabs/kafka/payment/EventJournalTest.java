@@ -0,0 +1,118 @@
+package jayslabs.kafka.payment;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.journal.JournalEntry;
+import jayslabs.kafka.common.journal.JournalReader;
+import jayslabs.kafka.common.journal.JournalReplayer;
+import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+/*
+Consumed order-events are journaled with their kafka position, and replaying the
+journal through the processor is absorbed by duplicate detection.
+*/
+@TestPropertySource(properties = {
+    "spring.cloud.function.definition=processor;orderEvtProducer;paymentEvtConsumer",
+    "spring.cloud.stream.bindings.orderEvtProducer-out-0.destination=order-events",
+    "spring.cloud.stream.bindings.paymentEvtConsumer-in-0.destination=payment-events",
+    "saga.journal.enabled=true",
+    "saga.journal.directory=target/journal-test",
+    "saga.journal.segment-size=4KB" //a few records per segment: the run spans several
+})
+public class EventJournalTest extends AbstractIntegrationTest{
+
+    private static final Path JOURNAL = Path.of("target/journal-test");
+    private static final int ORDERS = 40;
+
+    private static final Sinks.Many<OrderEvent> reqSink = Sinks.many().unicast().onBackpressureBuffer();
+    private static final Sinks.Many<PaymentEvent> respSink = Sinks.many().unicast().onBackpressureBuffer();
+    private static final Flux<PaymentEvent> respFlux = respSink.asFlux().cache(0); //cache the response flux
+
+    @Autowired
+    private OrderEventProcessor<PaymentEvent> evtProcessor;
+
+    @Autowired
+    private CustomerRepository custrepo;
+
+    @Test
+    public void journalAndReplayTest(){
+        var before = JournalReader.read(JOURNAL).count().block(); //left over from an earlier run
+
+        //customer 2 pays 1 per order
+        var orders = IntStream.range(0, ORDERS)
+            .mapToObj(i -> TestDataUtil.createOrderCreatedEvent(2, 1, 1, 1))
+            .toList();
+        respFlux
+            .doFirst(() -> orders.forEach(reqSink::tryEmitNext))
+            .take(ORDERS)
+            .timeout(Duration.ofSeconds(15))
+            .then()
+            .as(StepVerifier::create)
+            .verifyComplete();
+
+        //every consumed record, in partition order
+        List<JournalEntry> entries = JournalReader.read(JOURNAL).skip(before).collectList().block();
+        Assertions.assertEquals(ORDERS, entries.size());
+        Assertions.assertEquals(orders.stream().map(OrderEvent::orderId).toList(),
+            entries.stream().map(e -> ((OrderEvent) e.event()).orderId()).toList());
+        for (int i = 0; i < entries.size(); i++){
+            Assertions.assertEquals("order-events", entries.get(i).topic());
+            Assertions.assertEquals(0, entries.get(i).partition());
+            if (i > 0){
+                Assertions.assertTrue(entries.get(i).offset() > entries.get(i - 1).offset());
+            }
+        }
+
+        //replayed orders are duplicates: no output, balance unchanged
+        new JournalReplayer(Flux.fromIterable(entries))
+            .route(OrderEvent.class, this.evtProcessor)
+            .lanes(4)
+            .replay()
+            .as(StepVerifier::create)
+            .consumeNextWith(result -> {
+                Assertions.assertEquals(ORDERS, result.replayed());
+                Assertions.assertEquals(0, result.outputs());
+                Assertions.assertEquals(0, result.errors());
+            })
+            .verifyComplete();
+
+        this.custrepo.findById(2)
+           .as(StepVerifier::create)
+           .consumeNextWith(cust -> Assertions.assertEquals(100 - ORDERS, cust.getBalance()))
+           .verifyComplete();
+    }
+
+    @TestConfiguration
+    static class TestConfig{
+
+        @Bean
+        public Supplier<Flux<OrderEvent>> orderEvtProducer(){
+            return reqSink::asFlux;
+        }
+
+        @Bean
+        public Consumer<Flux<PaymentEvent>> paymentEvtConsumer(){
+            return f -> f
+            .doOnNext(respSink::tryEmitNext)
+            .subscribe();
+        }
+    }
+}
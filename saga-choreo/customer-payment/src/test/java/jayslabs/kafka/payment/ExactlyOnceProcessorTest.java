@@ -0,0 +1,205 @@
+package jayslabs.kafka.payment;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.common.util.ExactlyOnceProcessor;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.messaging.processor.OrderEventProcessorImpl;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+/*
+Exactly-once mode: the processor function is not bound, order-events are consumed by
+ExactlyOnceProcessor and payment-events are read with isolation.level=read_committed.
+A redelivered OrderCreated is a duplicate and replays the stored PaymentDeducted.
+*/
+@TestPropertySource(properties = {
+    "spring.cloud.function.definition=orderEvtProducer;paymentEvtConsumer",
+    "spring.cloud.stream.bindings.orderEvtProducer-out-0.destination=order-events",
+    "spring.cloud.stream.bindings.paymentEvtConsumer-in-0.destination=payment-events",
+    "spring.cloud.stream.kafka.bindings.paymentEvtConsumer-in-0.consumer.configuration.isolation.level=read_committed",
+    "saga.processing.exactly-once.enabled=true",
+    "saga.processing.exactly-once.transactional-id=payment-tx-test"
+})
+public class ExactlyOnceProcessorTest extends AbstractIntegrationTest{
+
+    private static final Sinks.Many<OrderEvent> reqSink = Sinks.many().unicast().onBackpressureBuffer();
+    private static final Sinks.Many<PaymentEvent> respSink = Sinks.many().unicast().onBackpressureBuffer();
+    private static final Flux<PaymentEvent> respFlux = respSink.asFlux().cache(0); //cache the response flux
+
+    @Autowired
+    private ExactlyOnceProcessor<OrderEvent, PaymentEvent> eosProcessor;
+
+    @Autowired
+    private CustomerRepository custrepo;
+
+    @Autowired
+    private AbortingProcessor abortingProcessor;
+
+    @Test
+    public void restartWithoutDuplicateOutputsTest(){
+
+        //3 orders processed normally
+        var first = createOrders(3);
+        var firstOutputs = respFlux
+            .doFirst(() -> first.forEach(reqSink::tryEmitNext))
+            .take(3)
+            .timeout(Duration.ofSeconds(15))
+            .collectList()
+            .block();
+        assertPaidExactlyOnce(first, firstOutputs);
+
+        //forced restart: transaction loop and producer torn down while new orders
+        //(and a redelivery of the first ones) are published
+        this.eosProcessor.stop();
+        var second = createOrders(3);
+        second.forEach(reqSink::tryEmitNext);
+        first.forEach(reqSink::tryEmitNext);
+
+        //everything committed after the restart, once per input: the redelivered
+        //first orders replay their stored PaymentDeducted, they are not paid again
+        var secondOutputs = respFlux
+            .doFirst(this.eosProcessor::start)
+            .take(Duration.ofSeconds(10))
+            .collectList()
+            .block();
+        assertPaidExactlyOnce(Stream.concat(second.stream(), first.stream()).toList(), secondOutputs);
+
+        //6 x 1 deducted from becky exactly once
+        this.custrepo.findById(2)
+           .as(StepVerifier::create)
+           .consumeNextWith(cust -> Assertions.assertEquals(94, cust.getBalance()))
+           .verifyComplete();
+    }
+
+    @Test
+    public void abortAfterDbCommitTest(){
+        //the payment commits, then the kafka transaction aborts: the redelivery is a duplicate
+        var order = TestDataUtil.createOrderCreatedEvent(3, 1, 1, 1);
+        this.abortingProcessor.abortAfter(order.orderId());
+        var outputs = respFlux
+            .doFirst(() -> reqSink.tryEmitNext(order))
+            .filter(evt -> evt.orderId().equals(order.orderId()))
+            .take(Duration.ofSeconds(10))
+            .collectList()
+            .block();
+        Assertions.assertNull(this.abortingProcessor.abortAfter.get(), "transaction not aborted");
+
+        //the aborted output is replayed from the stored payment, and bondo paid once
+        assertPaidExactlyOnce(List.of(order), outputs);
+        this.custrepo.findById(3)
+           .as(StepVerifier::create)
+           .consumeNextWith(cust -> Assertions.assertEquals(99, cust.getBalance()))
+           .verifyComplete();
+    }
+
+    @Test
+    public void duplicateOfRefundedOrderTest(){
+        //a duplicate OrderCreated only replays a DEDUCTED payment: once refunded, nothing is sent
+        var order = TestDataUtil.createOrderCreatedEvent(1, 1, 1, 1);
+        var outputs = respFlux
+            .doFirst(() -> {
+                reqSink.tryEmitNext(order);
+                reqSink.tryEmitNext(TestDataUtil.createOrderCancelledEvent(order.orderId()));
+                reqSink.tryEmitNext(order);
+            })
+            .filter(evt -> evt.orderId().equals(order.orderId()))
+            .take(Duration.ofSeconds(10))
+            .collectList()
+            .block();
+        Assertions.assertEquals(2, outputs.size(), "outputs: " + outputs);
+        Assertions.assertInstanceOf(PaymentEvent.PaymentDeducted.class, outputs.get(0));
+        Assertions.assertInstanceOf(PaymentEvent.PaymentRefunded.class, outputs.get(1));
+    }
+
+    private static List<OrderEvent> createOrders(int count){
+        return IntStream.range(0, count)
+            .<OrderEvent>mapToObj(i -> TestDataUtil.createOrderCreatedEvent(2, 1, 1, 1))
+            .toList();
+    }
+
+    private static void assertPaidExactlyOnce(List<OrderEvent> orders, List<PaymentEvent> outputs){
+        var expected = new HashSet<UUID>(orders.stream().map(OrderEvent::orderId).toList());
+        var actual = outputs.stream().map(PaymentEvent::orderId).toList();
+        Assertions.assertEquals(expected.size(), actual.size(), "outputs: " + outputs);
+        Assertions.assertEquals(expected, new HashSet<>(actual));
+        outputs.forEach(evt -> Assertions.assertInstanceOf(PaymentEvent.PaymentDeducted.class, evt));
+    }
+
+    //fails the output of the given order once, after its payment committed
+    static class AbortingProcessor implements OrderEventProcessor<PaymentEvent> {
+
+        private final OrderEventProcessor<PaymentEvent> delegate;
+        private final AtomicReference<UUID> abortAfter = new AtomicReference<>();
+
+        AbortingProcessor(OrderEventProcessor<PaymentEvent> delegate) {
+            this.delegate = delegate;
+        }
+
+        void abortAfter(UUID orderId){
+            this.abortAfter.set(orderId);
+        }
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCreated e) {
+            return this.delegate.handle(e)
+                //the deserialized orderId is another instance: compared by equals(), not compareAndSet()
+                .flatMap(evt -> e.orderId().equals(this.abortAfter.getAndUpdate(id -> e.orderId().equals(id) ? null : id))
+                    ? Mono.error(new IllegalStateException("forced abort"))
+                    : Mono.just(evt));
+        }
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCancelled e) {
+            return this.delegate.handle(e);
+        }
+
+        @Override
+        public Mono<PaymentEvent> handle(OrderEvent.OrderCompleted e) {
+            return this.delegate.handle(e);
+        }
+    }
+
+    @TestConfiguration
+    static class TestConfig{
+
+        @Bean
+        @Primary
+        public AbortingProcessor abortingProcessor(OrderEventProcessorImpl delegate){
+            return new AbortingProcessor(delegate);
+        }
+
+        @Bean
+        public Supplier<Flux<OrderEvent>> orderEvtProducer(){
+            return reqSink::asFlux;
+        }
+
+        @Bean
+        public Consumer<Flux<PaymentEvent>> paymentEvtConsumer(){
+            return f -> f
+            .doOnNext(respSink::tryEmitNext)
+            .subscribe();
+        }
+    }
+}
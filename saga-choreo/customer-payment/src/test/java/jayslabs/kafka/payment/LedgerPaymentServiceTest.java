@@ -0,0 +1,152 @@
+package jayslabs.kafka.payment;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.payment.application.entity.Customer;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.application.repository.PaymentRepository;
+import jayslabs.kafka.payment.application.service.LedgerPaymentServiceImpl;
+import jayslabs.kafka.payment.common.dto.PaymentDTO;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.CustomerNotFoundException;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/*
+Write-behind ledger: decisions from memory, visible in the database once a payment's Mono completes.
+*/
+@TestPropertySource(properties = {
+    "saga.payment.ledger.enabled=true",
+    "saga.payment.ledger.batch-size=32",
+    "saga.payment.ledger.max-wait=5ms"
+})
+public class LedgerPaymentServiceTest extends AbstractIntegrationTest{
+
+    @Autowired
+    private PaymentService pymtService;
+
+    @Autowired
+    private CustomerRepository custrepo;
+
+    @Autowired
+    private PaymentRepository pymtrepo;
+
+    @Test
+    public void ledgerServiceTest(){
+        Assertions.assertInstanceOf(LedgerPaymentServiceImpl.class, this.pymtService);
+    }
+
+    @Test
+    public void concurrentDeductAndRefundTest(){
+        //customer 1 has 100: of 150 concurrent payments of 1, exactly 100 go through
+        var requests = Flux.range(0, 150).map(i -> request(1, 1)).collectList().block();
+        var deducted = Flux.fromIterable(requests)
+            .flatMap(req -> this.pymtService.processPayment(req)
+                .onErrorResume(InsufficientBalanceException.class, ex -> Mono.empty())
+                .subscribeOn(Schedulers.parallel()), 16)
+            .collectList()
+            .block(Duration.ofSeconds(30));
+        Assertions.assertEquals(100, deducted.size());
+        this.expectBalance(1, 0);
+
+        //refund one: committed before the Mono completes
+        var orderId = deducted.getFirst().orderId();
+        this.pymtService.processRefund(orderId)
+            .as(StepVerifier::create)
+            .consumeNextWith(pymt -> Assertions.assertEquals(PaymentStatus.REFUNDED, pymt.status()))
+            .verifyComplete();
+        this.expectBalance(1, 1);
+        this.pymtrepo.findByOrderIdAndStatus(orderId, PaymentStatus.REFUNDED)
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+
+        //second refund of the same order: nothing left to refund
+        this.pymtService.processRefund(orderId)
+            .as(StepVerifier::create)
+            .verifyComplete();
+        this.expectBalance(1, 1);
+    }
+
+    @Test
+    public void duplicateAndUnknownCustomerTest(){
+        var req = request(2, 10);
+        this.pymtService.processPayment(req)
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+        this.pymtService.processPayment(req)
+            .as(StepVerifier::create)
+            .verifyError(EventAlreadyProcessedException.class);
+        this.expectBalance(2, 90);
+
+        this.pymtService.processPayment(request(19, 10))
+            .as(StepVerifier::create)
+            .verifyError(CustomerNotFoundException.class);
+    }
+
+    @Test
+    public void guardedGroupCommitTest(){
+        //customer 3 and a new customer are loaded into the ledger, then 3's balance is taken behind the ledger's back
+        var cust = new Customer();
+        cust.setName("dora");
+        cust.setBalance(110);
+        var other = this.custrepo.save(cust).block().getId();
+        Flux.just(request(3, 10), request(other, 10))
+            .concatMap(this.pymtService::processPayment)
+            .as(StepVerifier::create)
+            .expectNextCount(2)
+            .verifyComplete();
+        this.custrepo.debit(3, 85).block();
+
+        //the ledger still sees 90: the guarded update fails customer 3, the other customer sharing the group is not affected
+        Mono.zip(
+                this.pymtService.processPayment(request(3, 10)).map(PaymentDTO::status).onErrorResume(ex -> Mono.just(PaymentStatus.FAILED)).subscribeOn(Schedulers.parallel()),
+                this.pymtService.processPayment(request(other, 10)).map(PaymentDTO::status).onErrorResume(ex -> Mono.just(PaymentStatus.FAILED)).subscribeOn(Schedulers.parallel()))
+            .as(StepVerifier::create)
+            .consumeNextWith(tup -> {
+                Assertions.assertEquals(PaymentStatus.FAILED, tup.getT1());
+                Assertions.assertEquals(PaymentStatus.DEDUCTED, tup.getT2());
+            })
+            .verifyComplete();
+        this.expectBalance(3, 5);
+        this.expectBalance(other, 90);
+
+        //the ledger reloaded 5: decided in memory again, not by the guard
+        this.pymtService.processPayment(request(3, 6))
+            .as(StepVerifier::create)
+            .verifyError(InsufficientBalanceException.class);
+        this.pymtService.processPayment(request(3, 5))
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+        this.expectBalance(3, 0);
+    }
+
+    private void expectBalance(int customerId, int balance){
+        this.custrepo.findById(customerId)
+            .as(StepVerifier::create)
+            .consumeNextWith(cust -> Assertions.assertEquals(balance, cust.getBalance()))
+            .verifyComplete();
+    }
+
+    private static PaymentProcessRequest request(int customerId, int amount){
+        return PaymentProcessRequest.builder()
+            .customerId(customerId)
+            .orderId(UUID.randomUUID())
+            .amount(amount)
+            .build();
+    }
+}
@@ -15,9 +15,13 @@ import org.springframework.test.context.TestPropertySource;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.payment.PaymentEvent;
 import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 
@@ -35,6 +39,9 @@ public class PaymentServiceTest extends AbstractIntegrationTest{
     @Autowired
     private CustomerRepository custrepo;
 
+    @Autowired
+    private PaymentService pymtService;
+
     @Test
     public void deductAndRefundTest(){
 
@@ -109,6 +116,25 @@ public class PaymentServiceTest extends AbstractIntegrationTest{
       });
     }
 
+    @Test
+    public void concurrentDebitTest(){
+      //customer 3 has 100: of 150 concurrent payments of 1, exactly 100 go through
+      var outcomes = Flux.range(0, 150)
+         .flatMap(i -> this.pymtService.processPayment(
+               PaymentProcessRequest.builder().customerId(3).orderId(UUID.randomUUID()).amount(1).build())
+            .map(pymt -> true)
+            .onErrorResume(InsufficientBalanceException.class, ex -> Mono.just(false))
+            .subscribeOn(Schedulers.parallel()), 16)
+         .collectList()
+         .block(Duration.ofSeconds(30));
+
+      Assertions.assertEquals(100, outcomes.stream().filter(ok -> ok).count());
+      this.custrepo.findById(3)
+         .as(StepVerifier::create)
+         .consumeNextWith(cust -> Assertions.assertEquals(0, cust.getBalance()))
+         .verifyComplete();
+    }
+
     /*
     */
     private <T> void expectEvent(OrderEvent evt, Class<T> type, Consumer<T> assertion){
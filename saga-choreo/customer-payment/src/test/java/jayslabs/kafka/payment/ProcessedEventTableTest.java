@@ -0,0 +1,100 @@
+package jayslabs.kafka.payment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+import jayslabs.kafka.payment.application.repository.CustomerRepository;
+import jayslabs.kafka.payment.common.dto.PaymentProcessRequest;
+import jayslabs.kafka.payment.common.exception.InsufficientBalanceException;
+import jayslabs.kafka.payment.common.service.PaymentService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/*
+processed_event claims: one MERGE per event, rolled back with a failed payment.
+*/
+public class ProcessedEventTableTest extends AbstractIntegrationTest{
+
+    @Autowired
+    private ProcessedEventTable processedEvents;
+
+    @Autowired
+    private PaymentService pymtService;
+
+    @Autowired
+    private CustomerRepository custrepo;
+
+    @Test
+    public void claimTest(){
+        var orderId = UUID.randomUUID();
+        this.processedEvents.claim(orderId, OrderEvent.OrderCreated.class)
+            .as(StepVerifier::create)
+            .expectNext(true)
+            .verifyComplete();
+        this.processedEvents.claim(orderId, OrderEvent.OrderCreated.class)
+            .as(StepVerifier::create)
+            .expectNext(false)
+            .verifyComplete();
+        //keyed by event type as well
+        this.processedEvents.claim(orderId, OrderEvent.OrderCancelled.class)
+            .as(StepVerifier::create)
+            .expectNext(true)
+            .verifyComplete();
+
+        var other = UUID.randomUUID();
+        this.processedEvents.claimAll(List.of(other), OrderEvent.OrderCreated.class)
+            .then(this.processedEvents.processed(List.of(orderId, other, UUID.randomUUID()), OrderEvent.OrderCreated.class))
+            .as(StepVerifier::create)
+            .expectNext(Set.of(orderId, other))
+            .verifyComplete();
+    }
+
+    @Test
+    public void concurrentRedeliveryTest(){
+        //the same OrderCreated handled 8 times at once: one payment, 7 duplicates
+        var req = request(2, 10);
+        var deducted = Flux.range(0, 8)
+            .flatMap(i -> this.pymtService.processPayment(req)
+                .map(pymt -> 1)
+                .onErrorResume(EventAlreadyProcessedException.class, ex -> Mono.empty())
+                .subscribeOn(Schedulers.parallel()))
+            .count()
+            .block(Duration.ofSeconds(30));
+        Assertions.assertEquals(1, deducted);
+        this.custrepo.findById(2)
+            .as(StepVerifier::create)
+            .consumeNextWith(cust -> Assertions.assertEquals(90, cust.getBalance()))
+            .verifyComplete();
+    }
+
+    @Test
+    public void failedPaymentReleasesClaimTest(){
+        var req = request(3, 1000);
+        this.pymtService.processPayment(req)
+            .as(StepVerifier::create)
+            .verifyError(InsufficientBalanceException.class);
+        this.processedEvents.isProcessed(req.orderId(), OrderEvent.OrderCreated.class)
+            .as(StepVerifier::create)
+            .expectNext(false)
+            .verifyComplete();
+    }
+
+    private static PaymentProcessRequest request(int customerId, int amount){
+        return PaymentProcessRequest.builder()
+            .customerId(customerId)
+            .orderId(UUID.randomUUID())
+            .amount(amount)
+            .build();
+    }
+}
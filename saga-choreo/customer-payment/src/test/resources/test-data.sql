@@ -0,0 +1,3 @@
+-- runs after the main data.sql: resets the seeded customers to the
+-- balances the test assertions are written against
+update customer set balance = 100;
@@ -0,0 +1,40 @@
+package jayslabs.kafka.inventory.application.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import jayslabs.kafka.inventory.application.service.CoalescingInventoryServiceImpl;
+import jayslabs.kafka.inventory.application.service.InventoryServiceImpl;
+
+/*
+Same-product deductions coalesced over a short window (CoalescingInventoryServiceImpl),
+in front of InventoryServiceImpl. Off by default.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.inventory.coalescing.enabled", havingValue = "true")
+public class InventoryCoalescingConfig {
+
+    //requests per window
+    @Value("${saga.inventory.coalescing.max-size:256}")
+    private int maxSize;
+
+    //longest a request waits for its window to close
+    @Value("${saga.inventory.coalescing.window:2ms}")
+    private Duration window;
+
+    //products of one window deducted in parallel transactions
+    @Value("${saga.inventory.coalescing.concurrency:4}")
+    private int concurrency;
+
+    //the processor gets this one; InventoryServiceImpl stays a bean of its own
+    @Bean
+    @Primary
+    public CoalescingInventoryServiceImpl coalescingInventoryService(InventoryServiceImpl delegate){
+        return new CoalescingInventoryServiceImpl(delegate, this.maxSize, this.window, this.concurrency);
+    }
+}
@@ -0,0 +1,52 @@
+package jayslabs.kafka.inventory.application.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
+
+/*
+In-memory duplicate detection tier (bloom filter + recent orderIds) in front of
+the processed_event claim (ProcessedEventTable). Off by default (saga.dedup.cache.enabled,
+also false in application.yaml): the cache is then a pass-through.
+*/
+@Configuration
+public class ProcessedEventCacheConfig {
+
+    @Value("${saga.dedup.cache.enabled:false}")
+    private boolean enabled;
+
+    //bloom filter sizing: ~9.6 bits per orderId at 1%
+    @Value("${saga.dedup.cache.expected-insertions:1000000}")
+    private int expectedInsertions;
+
+    @Value("${saga.dedup.cache.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${saga.dedup.cache.recent-size:10000}")
+    private int recentSize;
+
+    @Bean
+    public ProcessedEventCache processedEventCache(){
+        return this.enabled
+            ? new ProcessedEventCache("inventory", this.expectedInsertions, this.falsePositiveRate, this.recentSize)
+            : ProcessedEventCache.disabled("inventory");
+    }
+
+    //consumed events, claimed inside the business transaction
+    @Bean
+    public ProcessedEventTable processedEventTable(DatabaseClient client){
+        return new ProcessedEventTable(client);
+    }
+
+    //lookups go to the db until the filter holds every orderId already claimed
+    @Bean
+    public ApplicationRunner processedEventCacheLoader(ProcessedEventCache cache, ProcessedEventTable table){
+        return args -> cache.rebuild(table.orderIds(OrderEvent.OrderCreated.class)).subscribe();
+    }
+}
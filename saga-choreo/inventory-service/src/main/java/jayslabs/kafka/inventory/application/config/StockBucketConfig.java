@@ -0,0 +1,43 @@
+package jayslabs.kafka.inventory.application.config;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import jayslabs.kafka.inventory.application.service.BucketedStockServiceImpl;
+
+/*
+Hot products' stock split over bucket rows (BucketedStockServiceImpl), replacing
+ProductStockServiceImpl. Off by default.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.inventory.stock-buckets.enabled", havingValue = "true")
+public class StockBucketConfig {
+
+    private static final String PRODUCTS = "saga.inventory.stock-buckets.products";
+
+    //buckets of every product not listed under products
+    @Value("${saga.inventory.stock-buckets.default:1}")
+    private int defaultBuckets;
+
+    @Value("${saga.inventory.stock-buckets.rebalance-interval:1s}")
+    private Duration rebalanceInterval;
+
+    //the service moves the stock into the buckets on start(), before the processor binding starts consuming
+    @Bean
+    @DependsOnDatabaseInitialization
+    public BucketedStockServiceImpl bucketedStockService(DatabaseClient client, TransactionalOperator tx, Environment env){
+        var buckets = Binder.get(env).bind(PRODUCTS, Bindable.mapOf(Integer.class, Integer.class)).orElseGet(Map::of);
+        return new BucketedStockServiceImpl(client, tx, this.defaultBuckets, buckets, this.rebalanceInterval);
+    }
+}
@@ -0,0 +1,13 @@
+package jayslabs.kafka.inventory.application.repository;
+
+import java.util.List;
+
+import jayslabs.kafka.inventory.application.entity.OrderInventory;
+import reactor.core.publisher.Mono;
+
+//custom fragment of InventoryRepository for multi-row statements
+public interface InventoryBatchRepository {
+
+    //single INSERT ... VALUES (..), (..) statement; inventoryId must be pre-assigned
+    Mono<Void> insertAll(List<OrderInventory> inventories);
+}
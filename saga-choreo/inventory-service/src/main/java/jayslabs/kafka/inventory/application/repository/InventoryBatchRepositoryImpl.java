@@ -0,0 +1,43 @@
+package jayslabs.kafka.inventory.application.repository;
+
+import java.util.List;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import jayslabs.kafka.inventory.application.entity.OrderInventory;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class InventoryBatchRepositoryImpl implements InventoryBatchRepository {
+
+    private static final String INSERT = "INSERT INTO order_inventory (inventory_id, order_id, product_id, status, quantity) VALUES ";
+
+    private final DatabaseClient client;
+
+    @Override
+    public Mono<Void> insertAll(List<OrderInventory> inventories) {
+        if (inventories.isEmpty()){
+            return Mono.empty();
+        }
+        var sql = new StringBuilder(INSERT);
+        for (int i = 0; i < inventories.size(); i++){
+            sql.append(i == 0 ? "" : ", ")
+               .append("(:inventoryId").append(i)
+               .append(", :orderId").append(i)
+               .append(", :productId").append(i)
+               .append(", :status").append(i)
+               .append(", :quantity").append(i).append(")");
+        }
+        var spec = this.client.sql(sql.toString());
+        for (int i = 0; i < inventories.size(); i++){
+            var ordinv = inventories.get(i);
+            spec = spec.bind("inventoryId" + i, ordinv.getInventoryId())
+                .bind("orderId" + i, ordinv.getOrderId())
+                .bind("productId" + i, ordinv.getProductId())
+                .bind("status" + i, ordinv.getStatus().name())
+                .bind("quantity" + i, ordinv.getQuantity());
+        }
+        return spec.then();
+    }
+}
@@ -10,11 +10,11 @@ import jayslabs.kafka.inventory.application.entity.OrderInventory;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface InventoryRepository extends ReactiveCrudRepository<OrderInventory, UUID> {
-
-    //to check if an inventory already exists for an order
-    Mono<Boolean> existsByOrderId(UUID orderId);
+public interface InventoryRepository extends ReactiveCrudRepository<OrderInventory, UUID>, InventoryBatchRepository {
 
     //to find an inventory by orderId and status
     Mono<OrderInventory> findByOrderIdAndStatus(UUID orderId, InventoryStatus status);
+
+    //the order's inventory in any status (order_id is unique)
+    Mono<OrderInventory> findByOrderId(UUID orderId);
 }
@@ -1,11 +1,23 @@
 package jayslabs.kafka.inventory.application.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import jayslabs.kafka.inventory.application.entity.Product;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface ProductRepository extends ReactiveCrudRepository<Product, Integer> {
-    
+
+    //guarded deduction, check and write in one statement: 1 = deducted, 0 = unknown product or out of stock
+    @Modifying
+    @Query("UPDATE product SET available_quantity = available_quantity - :quantity WHERE id = :id AND available_quantity >= :quantity")
+    Mono<Integer> deduct(Integer id, Integer quantity);
+
+    //restore; relative, so it cannot overwrite a concurrent deduction
+    @Modifying
+    @Query("UPDATE product SET available_quantity = available_quantity + :quantity WHERE id = :id")
+    Mono<Integer> restore(Integer id, Integer quantity);
 }
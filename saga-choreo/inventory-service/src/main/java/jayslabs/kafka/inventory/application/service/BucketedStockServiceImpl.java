@@ -0,0 +1,295 @@
+package jayslabs.kafka.inventory.application.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.inventory.common.service.StockService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+  Stock of hot products split over bucket rows (saga.inventory.stock-buckets.*).
+
+  A product with K > 1 buckets keeps its stock in K product_stock_bucket rows
+  and 0 in product.available_quantity; a product with K = 1 keeps its single
+  product row. A deduction tries a bucket picked at random, then the others
+  in turn, each with a guarded update, so up to K concurrent transactions on
+  one product update different rows. When no single bucket holds the
+  quantity, the product's buckets are locked and consolidated into one and
+  the deduction is retried there: it only fails when the total is short.
+  Restores go to a random bucket.
+
+  The consolidation locks run in the caller's transaction, which may already
+  hold a bucket of another product: callers deduct products in ascending
+  productId order (see StockService), so a transaction only ever waits on a
+  higher product than those it holds and two consolidations cannot deadlock.
+  Within a product, a transaction either holds the one bucket it deducted
+  from or, after a consolidation, all of them. A caller may deduct the same
+  product again only after a failed deduction of it (the per-order fallback
+  of InventoryServiceImpl): that one consolidated, so the transaction already
+  holds every bucket the later deductions touch and waits on none.
+
+  rebalance() evens out a product's buckets under the same lock once one of
+  them has fallen below half its share, so random picks keep hitting stocked
+  buckets. The total (product row + buckets) is exact at all times.
+
+  split() moves each product's stock into its configured buckets, and back to
+  the product row for a product reduced to K = 1. start() runs it before the
+  bindings start consuming (see getPhase()), then starts the rebalancing.
+*/
+public class BucketedStockServiceImpl implements StockService, SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(BucketedStockServiceImpl.class);
+
+    private static final String DEDUCT_ROW = "UPDATE product SET available_quantity = available_quantity - :quantity WHERE id = :id AND available_quantity >= :quantity";
+    private static final String RESTORE_ROW = "UPDATE product SET available_quantity = available_quantity + :quantity WHERE id = :id";
+    private static final String DEDUCT_BUCKET = "UPDATE product_stock_bucket SET quantity = quantity - :quantity WHERE product_id = :id AND bucket = :bucket AND quantity >= :quantity";
+    private static final String RESTORE_BUCKET = "UPDATE product_stock_bucket SET quantity = quantity + :quantity WHERE product_id = :id AND bucket = :bucket";
+    private static final String LOCK_ROW = "SELECT available_quantity FROM product WHERE id = :id FOR UPDATE";
+    private static final String LOCK_BUCKETS = "SELECT bucket, quantity FROM product_stock_bucket WHERE product_id = :id FOR UPDATE";
+    private static final String CONSOLIDATE = "UPDATE product_stock_bucket SET quantity = CASE WHEN bucket = :bucket THEN :total ELSE 0 END WHERE product_id = :id";
+    //every bucket gets total / K, the first total % K buckets one more
+    private static final String SPREAD = "UPDATE product_stock_bucket SET quantity = :share + CASE WHEN bucket < :remainder THEN 1 ELSE 0 END WHERE product_id = :id";
+    private static final String CREATE_BUCKET = "INSERT INTO product_stock_bucket (product_id, bucket, quantity) VALUES (:id, :bucket, :quantity)";
+    private static final String AVAILABLE = """
+        SELECT p.id, p.available_quantity + COALESCE(SUM(b.quantity), 0)
+        FROM product p LEFT JOIN product_stock_bucket b ON b.product_id = p.id
+        WHERE p.id IN (:ids) GROUP BY p.id, p.available_quantity""";
+
+    private final DatabaseClient client;
+    private final TransactionalOperator tx;
+    private final int defaultBuckets;
+    private final Map<Integer, Integer> buckets; //per product, overrides defaultBuckets
+    private final Duration rebalanceInterval;
+    private volatile Disposable rebalancer;
+
+    private final LongAdder firstBucket = new LongAdder();  //the random pick held the quantity
+    private final LongAdder otherBucket = new LongAdder();  //a later bucket did
+    private final LongAdder consolidated = new LongAdder(); //only the consolidated total did
+    private final LongAdder rejected = new LongAdder();     //total short
+    private final LongAdder rebalances = new LongAdder();
+
+    public BucketedStockServiceImpl(DatabaseClient client, TransactionalOperator tx, int defaultBuckets, Map<Integer, Integer> buckets,
+                                    Duration rebalanceInterval) {
+        this.client = client;
+        this.tx = tx;
+        this.defaultBuckets = defaultBuckets;
+        this.buckets = Map.copyOf(buckets);
+        this.rebalanceInterval = rebalanceInterval;
+    }
+
+    public int bucketsOf(Integer productId){
+        return this.buckets.getOrDefault(productId, this.defaultBuckets);
+    }
+
+    @Override
+    public Mono<Boolean> deduct(Integer productId, Integer quantity) {
+        var buckets = this.bucketsOf(productId);
+        if (buckets <= 1){
+            return this.update(DEDUCT_ROW, productId, quantity).map(rows -> rows > 0);
+        }
+        var first = ThreadLocalRandom.current().nextInt(buckets);
+        return Flux.range(0, buckets)
+            .concatMap(i -> this.updateBucket(DEDUCT_BUCKET, productId, (first + i) % buckets, quantity)
+                .filter(rows -> rows > 0)
+                .map(rows -> i))
+            .next() //stops at the first bucket that held the quantity
+            .doOnNext(i -> (i == 0 ? this.firstBucket : this.otherBucket).increment())
+            .map(i -> true)
+            .switchIfEmpty(Mono.defer(() -> this.consolidate(productId, first)
+                .then(this.updateBucket(DEDUCT_BUCKET, productId, first, quantity))
+                .map(rows -> rows > 0)
+                .doOnNext(ok -> (ok ? this.consolidated : this.rejected).increment())));
+    }
+
+    @Override
+    public Mono<Void> restore(Integer productId, Integer quantity) {
+        var buckets = this.bucketsOf(productId);
+        return (buckets <= 1
+            ? this.update(RESTORE_ROW, productId, quantity)
+            : this.updateBucket(RESTORE_BUCKET, productId, ThreadLocalRandom.current().nextInt(buckets), quantity))
+            .then();
+    }
+
+    @Override
+    public Mono<Map<Integer, Integer>> available(Collection<Integer> productIds) {
+        if (productIds.isEmpty()){
+            return Mono.just(Map.of());
+        }
+        return this.client.sql(AVAILABLE)
+            .bind("ids", productIds)
+            .map(row -> Map.entry(row.get(0, Integer.class), ((Number) row.get(1)).intValue()))
+            .all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    //moves every product's stock into its configured number of buckets, one transaction per product
+    public Mono<Void> split(){
+        var products = this.defaultBuckets > 1
+            ? this.client.sql("SELECT id FROM product")
+            : this.client.sql("SELECT DISTINCT product_id FROM product_stock_bucket");
+        return Flux.fromIterable(this.buckets.keySet())
+            .concatWith(products.map(row -> row.get(0, Integer.class)).all())
+            .distinct()
+            .concatMap(id -> this.tx.transactional(this.split(id, this.bucketsOf(id))))
+            .then();
+    }
+
+    private Mono<Void> split(Integer productId, int buckets){
+        return this.client.sql(LOCK_ROW).bind("id", productId)
+            .map(row -> row.get(0, Integer.class))
+            .one()
+            .zipWith(this.lockBuckets(productId))
+            .filter(tup -> buckets > 1
+                ? tup.getT1() != 0 || tup.getT2().size() != buckets
+                : !tup.getT2().isEmpty())
+            .flatMap(tup -> {
+                var total = tup.getT1() + tup.getT2().values().stream().mapToInt(Integer::intValue).sum();
+                var reset = this.client.sql("DELETE FROM product_stock_bucket WHERE product_id = :id").bind("id", productId).then();
+                if (buckets <= 1){
+                    return reset.then(this.client.sql("UPDATE product SET available_quantity = :total WHERE id = :id")
+                        .bind("total", total).bind("id", productId).then());
+                }
+                return reset
+                    .then(this.client.sql("UPDATE product SET available_quantity = 0 WHERE id = :id").bind("id", productId).then())
+                    //every bucket gets total / K, the first total % K buckets one more
+                    .thenMany(Flux.range(0, buckets).concatMap(bucket -> this.client.sql(CREATE_BUCKET)
+                        .bind("id", productId)
+                        .bind("bucket", bucket)
+                        .bind("quantity", total / buckets + (bucket < total % buckets ? 1 : 0))
+                        .then()))
+                    .then()
+                    .doOnSuccess(v -> log.info("Product {}: {} in stock, split over {} buckets", productId, total, buckets));
+            });
+    }
+
+    //evens out the buckets of every bucketed product whose stock is skewed
+    public Mono<Void> rebalance(){
+        var products = this.defaultBuckets > 1
+            ? this.client.sql("SELECT DISTINCT product_id FROM product_stock_bucket").map(row -> row.get(0, Integer.class)).all()
+            : Flux.fromIterable(this.buckets.keySet()).filter(id -> this.bucketsOf(id) > 1);
+        return products
+            .concatMap(this::rebalance)
+            .then();
+    }
+
+    public Mono<Void> rebalance(Integer productId){
+        var buckets = this.bucketsOf(productId);
+        return this.tx.transactional(this.lockBuckets(productId)
+            .filter(quantities -> quantities.size() == buckets && skewed(quantities))
+            .flatMap(quantities -> {
+                var total = quantities.values().stream().mapToInt(Integer::intValue).sum();
+                return this.client.sql(SPREAD)
+                    .bind("share", total / buckets)
+                    .bind("remainder", total % buckets)
+                    .bind("id", productId)
+                    .then()
+                    .doOnSuccess(v -> this.rebalances.increment());
+            }));
+    }
+
+    //a bucket below half its share, while the total could refill it
+    private static boolean skewed(Map<Integer, Integer> quantities){
+        var total = quantities.values().stream().mapToInt(Integer::intValue).sum();
+        var share = total / quantities.size();
+        return share > 0 && quantities.values().stream().anyMatch(q -> q < share / 2);
+    }
+
+    //blocking on purpose: no deduction may reach a product before its stock is in its buckets
+    @Override
+    public void start() {
+        this.split().block();
+        this.rebalancer = Flux.interval(this.rebalanceInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> this.rebalance()
+                .onErrorResume(ex -> {
+                    log.warn("Stock bucket rebalance failed", ex);
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    @Override
+    public void stop() {
+        this.rebalancer.dispose();
+        this.rebalancer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.rebalancer != null;
+    }
+
+    //ahead of the web server (DEFAULT_PHASE - 1024) and the stream input bindings (DEFAULT_PHASE - 1000)
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    //everything into one bucket; the other buckets are locked until the caller's transaction ends
+    private Mono<Void> consolidate(Integer productId, int bucket){
+        return this.lockBuckets(productId)
+            .flatMap(quantities -> this.client.sql(CONSOLIDATE)
+                .bind("bucket", bucket)
+                .bind("total", quantities.values().stream().mapToInt(Integer::intValue).sum())
+                .bind("id", productId)
+                .then());
+    }
+
+    //bucket -> quantity, rows locked for the rest of the transaction
+    private Mono<Map<Integer, Integer>> lockBuckets(Integer productId){
+        return this.client.sql(LOCK_BUCKETS)
+            .bind("id", productId)
+            .map(row -> Map.entry(row.get(0, Integer.class), row.get(1, Integer.class)))
+            .all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private Mono<Long> update(String sql, Integer productId, Integer quantity){
+        return this.client.sql(sql)
+            .bind("quantity", quantity)
+            .bind("id", productId)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    private Mono<Long> updateBucket(String sql, Integer productId, int bucket, Integer quantity){
+        return this.client.sql(sql)
+            .bind("quantity", quantity)
+            .bind("id", productId)
+            .bind("bucket", bucket)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.deductionCounter(registry, "first_bucket", this.firstBucket);
+        this.deductionCounter(registry, "other_bucket", this.otherBucket);
+        this.deductionCounter(registry, "consolidated", this.consolidated);
+        this.deductionCounter(registry, "rejected", this.rejected);
+        FunctionCounter.builder("saga.inventory.stock.rebalances", this.rebalances, LongAdder::sum)
+            .description("Bucketed products whose buckets were evened out")
+            .register(registry);
+    }
+
+    private void deductionCounter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("saga.inventory.stock.deductions", adder, LongAdder::sum)
+            .description("Deductions of bucketed products by the step that found the stock")
+            .tag("result", result)
+            .register(registry);
+    }
+}
@@ -0,0 +1,149 @@
+package jayslabs.kafka.inventory.application.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.util.MpscSinks;
+import jayslabs.kafka.inventory.common.dto.InventoryDTO;
+import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
+import jayslabs.kafka.inventory.common.service.InventoryService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/*
+  InventoryService coalescing deductions of the same product (saga.inventory.coalescing.*,
+  InventoryCoalescingConfig).
+
+  processInventory() requests from every lane are collected for up to window or
+  max-size requests, whichever comes first. Each window is split by productId and
+  every product's requests, in arrival order, go to the delegate's batch path
+  (InventoryServiceImpl.processInventories) in one transaction: one stock read,
+  one guarded deduction for their total, one multi-row order_inventory insert.
+  Products of a window run concurrently, windows one after the other, so a
+  product's requests are decided in arrival order across windows.
+
+  Every request still gets its own outcome: its Mono completes with the
+  InventoryDTO, or errors as processInventory() would, once its group committed.
+  Restores go straight to the delegate. Should the coalescer itself stop, the
+  requests it still held fail and later ones go straight to the delegate too.
+*/
+public class CoalescingInventoryServiceImpl implements InventoryService, MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingInventoryServiceImpl.class);
+
+    private final InventoryService delegate;
+    private final Sinks.Many<Request> requests = MpscSinks.unbounded(); //processInventory() of every lane
+    private final Disposable coalescer;
+
+    private final LongAdder coalesced = new LongAdder(); //requests
+    private final LongAdder groups = new LongAdder();    //delegate calls
+
+    public CoalescingInventoryServiceImpl(InventoryService delegate, int maxSize, Duration window, int concurrency) {
+        this.delegate = delegate;
+        this.coalescer = this.requests.asFlux()
+            .bufferTimeout(maxSize, window, true) //no overflow while a window is processed
+            .concatMap(batch -> Flux.fromIterable(byProduct(batch))
+                .flatMap(this::process, concurrency)
+                .then())
+            .doOnDiscard(Object.class, this::discarded)
+            .subscribe(v -> {}, ex -> log.error("Inventory coalescer stopped, deductions go straight to the delegate", ex));
+    }
+
+    @Override
+    public Mono<InventoryDTO> processInventory(InventoryProcessRequest request) {
+        return Mono.defer(() -> this.enqueue(request));
+    }
+
+    //enqueued right away, not on subscription: the caller subscribes to the outcomes one at a time
+    @Override
+    public Flux<Mono<InventoryDTO>> processInventories(List<InventoryProcessRequest> requests) {
+        return Flux.defer(() -> Flux.fromIterable(requests.stream().map(this::enqueue).toList()));
+    }
+
+    @Override
+    public Mono<InventoryDTO> processRestore(UUID orderId) {
+        return this.delegate.processRestore(orderId);
+    }
+
+    @Override
+    public Mono<InventoryDTO> getInventory(UUID orderId) {
+        return this.delegate.getInventory(orderId);
+    }
+
+    private Mono<InventoryDTO> enqueue(InventoryProcessRequest request) {
+        var req = new Request(request, Sinks.one());
+        if (this.requests.tryEmitNext(req).isFailure()){ //coalescer stopped
+            return this.delegate.processInventory(request);
+        }
+        return req.outcome().asMono();
+    }
+
+    //requests still queued or windowed when the coalescer stopped (process() handles its own errors)
+    private void discarded(Object dropped) {
+        if (dropped instanceof Request req){
+            req.outcome().tryEmitError(new IllegalStateException("Inventory coalescer stopped"));
+        } else if (dropped instanceof List<?> window){
+            window.forEach(this::discarded);
+        }
+    }
+
+    //productId -> its requests, both in arrival order
+    private static List<List<Request>> byProduct(List<Request> batch) {
+        var groups = new LinkedHashMap<Integer, List<Request>>();
+        for (var req : batch){
+            groups.computeIfAbsent(req.request().productId(), id -> new ArrayList<>()).add(req);
+        }
+        return List.copyOf(groups.values());
+    }
+
+    private Mono<Void> process(List<Request> group) {
+        this.coalesced.add(group.size());
+        this.groups.increment();
+        return this.delegate.processInventories(group.stream().map(Request::request).toList())
+            .collectList() //the transaction has committed once the outcomes are emitted
+            .doOnNext(outcomes -> {
+                for (int i = 0; i < group.size(); i++){
+                    var outcome = group.get(i).outcome();
+                    outcomes.get(i).subscribe(outcome::tryEmitValue, outcome::tryEmitError);
+                }
+            })
+            .onErrorResume(ex -> {
+                log.error("Coalesced deduction of {} requests for productId {} failed", group.size(), group.getFirst().request().productId(), ex);
+                group.forEach(req -> req.outcome().tryEmitError(ex));
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    //requests not decided yet are dropped: their offsets were not acknowledged either
+    @Override
+    public void close() {
+        this.coalescer.dispose();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saga.inventory.coalescing.requests", this.coalesced, LongAdder::sum)
+            .description("Deductions decided in coalesced groups")
+            .register(registry);
+        FunctionCounter.builder("saga.inventory.coalescing.groups", this.groups, LongAdder::sum)
+            .description("Coalesced groups, one transaction each; requests / groups = requests per transaction")
+            .register(registry);
+    }
+
+    //outcome completes after the group's transaction
+    private record Request(InventoryProcessRequest request, Sinks.One<InventoryDTO> outcome) {
+    }
+}
@@ -1,5 +1,12 @@
 package jayslabs.kafka.inventory.application.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -8,17 +15,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jayslabs.kafka.common.events.inventory.InventoryStatus;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.util.DuplicateEventValidator;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
 import jayslabs.kafka.inventory.application.entity.OrderInventory;
-import jayslabs.kafka.inventory.application.entity.Product;
 import jayslabs.kafka.inventory.application.mapper.EntityDTOMapper;
 import jayslabs.kafka.inventory.application.repository.InventoryRepository;
-import jayslabs.kafka.inventory.application.repository.ProductRepository;
 import jayslabs.kafka.inventory.common.dto.InventoryDTO;
 import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
 import jayslabs.kafka.inventory.common.exception.OutOfStockException;
 import jayslabs.kafka.inventory.common.service.InventoryService;
+import jayslabs.kafka.inventory.common.service.StockService;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 
@@ -28,51 +39,138 @@ public class InventoryServiceImpl implements InventoryService{
 
     private static final Logger log = LoggerFactory.getLogger(InventoryServiceImpl.class);
 
-    private static final Mono<Product> OUT_OF_STOCK = Mono.error(new OutOfStockException());
+    private static final Mono<Boolean> OUT_OF_STOCK = Mono.error(new OutOfStockException());
 
-    private final ProductRepository prodRepo;
+    private final StockService stock;
     private final InventoryRepository invRepo;
+    private final ProcessedEventCache processedEvtCache;
+    private final ProcessedEventTable processedEvents;
 
     @Override
     @Transactional
     public Mono<InventoryDTO> processInventory(InventoryProcessRequest reqDTO){
-        return DuplicateEventValidator.validate(
-            this.invRepo.existsByOrderId(reqDTO.orderId()),
-            this.prodRepo.findById(reqDTO.productId())
+        return DuplicateEventValidator.claim(
+            reqDTO.orderId(), this.processedEvtCache,
+            //claimed in this transaction, rolled back with it when out of stock
+            this.processedEvents.claim(reqDTO.orderId(), OrderEvent.OrderCreated.class),
+            //guarded deduction: stock checked and deducted by one UPDATE
+            this.stock.deduct(reqDTO.productId(), reqDTO.quantity())
         )
-        .filter(prod -> prod.getAvailableQuantity() >= reqDTO.quantity())
+        //unknown product or not enough stock, both reported as out of stock
+        .filter(Boolean::booleanValue)
         .switchIfEmpty(OUT_OF_STOCK)
-        .flatMap(prod -> this.deductInventory(prod, reqDTO))
-        .doOnNext(invDTO -> log.info("Inventory deducted successfully for orderId: {}", invDTO.orderId())
-        );
+        .then(this.saveInventory(reqDTO))
+        .doOnNext(invDTO -> log.info("Inventory deducted successfully for orderId: {}", invDTO.orderId()))
+        .transform(DuplicateEventValidator.mapDuplicateKey());
+    }
+
+    /*
+    Batch deduction: 2 reads for the whole batch (processed_event, stock), stock
+    decided in memory in request order (running quantity per product), then one guarded
+    deduction per product for its total, in ascending productId order and one multi-row insert each into order_inventory
+    and processed_event.
+    A product whose total no longer fits (stock taken by a concurrent consumer since the
+    read) falls back to one guarded deduction per order, in request order: the orders
+    that still fit are deducted, the others fail as out of stock.
+    */
+    @Override
+    @Transactional
+    public Flux<Mono<InventoryDTO>> processInventories(List<InventoryProcessRequest> requests){
+        var orderIds = requests.stream().map(InventoryProcessRequest::orderId).toList();
+        var productIds = requests.stream().map(InventoryProcessRequest::productId).distinct().toList();
+        return this.processedEvents.processed(orderIds, OrderEvent.OrderCreated.class)
+        .zipWith(this.stock.available(productIds))
+        .flatMapMany(tup -> this.deductInventories(requests, tup.getT1(), tup.getT2()));
+    }
+
+    private Flux<Mono<InventoryDTO>> deductInventories(List<InventoryProcessRequest> requests, Set<UUID> processed, Map<Integer, Integer> available){
+        var outcomes = new ArrayList<Mono<InventoryDTO>>(requests.size());
+        var inventories = new ArrayList<OrderInventory>(requests.size());
+        //productId -> its orders of the batch; ascending productId, the lock order of StockService
+        var deductions = new TreeMap<Integer, List<OrderInventory>>();
+        var rejected = new HashSet<UUID>(); //orders whose guarded deduction updated no row
+        var running = new HashMap<>(available); //stock left after the requests so far
+
+        for (var reqDTO : requests){
+            //also catches the same orderId twice within one batch
+            if (!processed.add(reqDTO.orderId())){
+                log.warn("Duplicate event");
+                outcomes.add(Mono.error(new EventAlreadyProcessedException()));
+                continue;
+            }
+            var quantity = running.get(reqDTO.productId());
+            //unknown product is reported as out of stock, same as processInventory()
+            if (quantity == null || quantity < reqDTO.quantity()){
+                outcomes.add(Mono.error(new OutOfStockException()));
+                continue;
+            }
+            var ordinv = EntityDTOMapper.toOrderInventory(reqDTO);
+            ordinv.setInventoryId(UUID.randomUUID()); //multi-row insert does not return generated keys
+            ordinv.setStatus(InventoryStatus.DEDUCTED);
+            running.put(reqDTO.productId(), quantity - reqDTO.quantity());
+            deductions.computeIfAbsent(reqDTO.productId(), id -> new ArrayList<>()).add(ordinv);
+            inventories.add(ordinv);
+            var invDTO = EntityDTOMapper.toInventoryDTO(ordinv);
+            //resolved after the deductions below, outcomes are subscribed last
+            outcomes.add(Mono.defer(() -> rejected.contains(ordinv.getOrderId())
+                ? Mono.error(new OutOfStockException())
+                : Mono.just(invDTO)));
+        }
+
+        return Flux.fromIterable(deductions.entrySet())
+        .concatMap(deduction -> this.deduct(deduction.getKey(), deduction.getValue(), rejected))
+        .then(Mono.defer(() -> {
+            var deducted = inventories.stream().filter(inv -> !rejected.contains(inv.getOrderId())).toList();
+            var deductedIds = deducted.stream().map(OrderInventory::getOrderId).toList();
+            return this.invRepo.insertAll(deducted)
+            .then(this.processedEvents.claimAll(deductedIds, OrderEvent.OrderCreated.class))
+            .then(this.processedEvtCache.markProcessed(deductedIds))
+            .doOnSuccess(v -> log.info("Batch deducted inventory for {} of {} orders", deducted.size(), requests.size()));
+        }))
+        .thenMany(Flux.fromIterable(outcomes));
+    }
+
+    //the product's total in one guarded deduction, or per order once the total no longer fits
+    //(a lone order is not deducted again, its total was its own quantity)
+    private Mono<Void> deduct(Integer productId, List<OrderInventory> orders, Set<UUID> rejected){
+        var total = orders.stream().mapToInt(OrderInventory::getQuantity).sum();
+        return this.stock.deduct(productId, total)
+        .filter(ok -> !ok)
+        .flatMapMany(ok -> Flux.fromIterable(orders))
+        .concatMap(ordinv -> (orders.size() == 1 ? Mono.just(false) : this.stock.deduct(productId, ordinv.getQuantity()))
+            .filter(ok -> !ok)
+            .doOnNext(ok -> rejected.add(ordinv.getOrderId())))
+        .then();
     }
 
     @Override
     @Transactional
     public Mono<InventoryDTO> processRestore(UUID orderId){
         return this.invRepo.findByOrderIdAndStatus(orderId, InventoryStatus.DEDUCTED)
-        .zipWhen(ordinv -> this.prodRepo.findById(ordinv.getProductId()))
-        .flatMap(tup -> this.restoreInventory(tup.getT1(), tup.getT2()))
+        .flatMap(this::restoreInventory)
         .doOnNext(invDTO -> log.info("Inventory restored for quantity:{}, of productId: {}, for orderId: {}", 
         invDTO.quantity(), invDTO.productId(), invDTO.orderId())
         );
     }
 
-    private Mono<InventoryDTO> deductInventory(Product prod, InventoryProcessRequest reqDTO){
-        
-        var ordinv = EntityDTOMapper.toOrderInventory(reqDTO);
-        prod.setAvailableQuantity(prod.getAvailableQuantity() - reqDTO.quantity());
-        ordinv.setStatus(InventoryStatus.DEDUCTED);
+    @Override
+    public Mono<InventoryDTO> getInventory(UUID orderId){
+        return this.invRepo.findByOrderId(orderId)
+        .map(EntityDTOMapper::toInventoryDTO);
+    }
 
-        return  this.prodRepo.save(prod)
-        .then(this.invRepo.save(ordinv))
+    private Mono<InventoryDTO> saveInventory(InventoryProcessRequest reqDTO){
+        return Mono.defer(() -> {
+            var ordinv = EntityDTOMapper.toOrderInventory(reqDTO);
+            ordinv.setStatus(InventoryStatus.DEDUCTED);
+            return this.invRepo.save(ordinv);
+        })
         .map(EntityDTOMapper::toInventoryDTO);
     }
 
-    private Mono<InventoryDTO> restoreInventory(OrderInventory ordinv, Product prod){
-        prod.setAvailableQuantity(prod.getAvailableQuantity() + ordinv.getQuantity());
+    private Mono<InventoryDTO> restoreInventory(OrderInventory ordinv){
         ordinv.setStatus(InventoryStatus.RESTORED);
-        return this.prodRepo.save(prod)
+        return this.stock.restore(ordinv.getProductId(), ordinv.getQuantity())
         .then(this.invRepo.save(ordinv))
         .map(EntityDTOMapper::toInventoryDTO);
     }
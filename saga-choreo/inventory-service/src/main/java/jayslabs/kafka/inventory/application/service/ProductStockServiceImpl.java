@@ -0,0 +1,39 @@
+package jayslabs.kafka.inventory.application.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jayslabs.kafka.inventory.application.entity.Product;
+import jayslabs.kafka.inventory.application.repository.ProductRepository;
+import jayslabs.kafka.inventory.common.service.StockService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+//stock in product.available_quantity, one row per product
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "saga.inventory.stock-buckets.enabled", havingValue = "false", matchIfMissing = true) //else BucketedStockServiceImpl
+public class ProductStockServiceImpl implements StockService {
+
+    private final ProductRepository prodRepo;
+
+    @Override
+    public Mono<Boolean> deduct(Integer productId, Integer quantity) {
+        return this.prodRepo.deduct(productId, quantity)
+            .map(rows -> rows > 0);
+    }
+
+    @Override
+    public Mono<Void> restore(Integer productId, Integer quantity) {
+        return this.prodRepo.restore(productId, quantity).then();
+    }
+
+    @Override
+    public Mono<Map<Integer, Integer>> available(Collection<Integer> productIds) {
+        return this.prodRepo.findAllById(productIds)
+            .collectMap(Product::getId, Product::getAvailableQuantity);
+    }
+}
@@ -1,9 +1,11 @@
 package jayslabs.kafka.inventory.common.service;
 
+import java.util.List;
 import java.util.UUID;
 
 import jayslabs.kafka.inventory.common.dto.InventoryDTO;
 import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface InventoryService {
@@ -11,4 +13,21 @@ public interface InventoryService {
 
     Mono<InventoryDTO> processRestore(UUID orderId);
 
+    /*
+    The order's stored inventory, deducted or restored; empty if none was deducted.
+    Exactly-once mode replays the outcome of a redelivered event from it.
+    */
+    Mono<InventoryDTO> getInventory(UUID orderId);
+
+    /*
+    Batch variant of processInventory(): emits one outcome per request, in request order.
+    Each outcome is a Mono that emits the InventoryDTO, or errors the same way
+    processInventory() would (EventAlreadyProcessedException, OutOfStockException).
+    Default delegates to processInventory() one request at a time.
+    */
+    default Flux<Mono<InventoryDTO>> processInventories(List<InventoryProcessRequest> requests){
+        return Flux.fromIterable(requests)
+            .map(this::processInventory);
+    }
+
 }
@@ -0,0 +1,24 @@
+package jayslabs.kafka.inventory.common.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+
+/*
+Stock of the products. Deductions are checked and applied in one guarded statement,
+restores are relative, so concurrent consumers cannot lose updates. Runs in the
+caller's transaction; a transaction deducting several products does so in ascending
+productId order, so concurrent ones cannot wait on each other's rows in a cycle. It
+deducts a product again only after a failed deduction of that product.
+*/
+public interface StockService {
+
+    //true = deducted; false = unknown product or not enough stock
+    Mono<Boolean> deduct(Integer productId, Integer quantity);
+
+    Mono<Void> restore(Integer productId, Integer quantity);
+
+    //exact available quantity per known product
+    Mono<Map<Integer, Integer>> available(Collection<Integer> productIds);
+}
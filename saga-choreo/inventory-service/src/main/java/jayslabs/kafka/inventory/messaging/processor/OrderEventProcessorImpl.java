@@ -1,18 +1,24 @@
 package jayslabs.kafka.inventory.messaging.processor;
 
+import java.util.List;
+import java.util.UUID;
 import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.inventory.InventoryStatus;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
 import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.inventory.common.dto.InventoryDTO;
 import jayslabs.kafka.inventory.common.service.InventoryService;
 import jayslabs.kafka.inventory.messaging.mapper.EventDTOMapper;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -23,6 +29,10 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<InventoryEve
 
     private final InventoryService service;
 
+    //exactly-once mode: duplicates of already committed events replay the stored outcome
+    @Value("${saga.processing.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
     @Override
     public Mono<InventoryEvent> handle(OrderEvent.OrderCreated event) {
         return this.service.processInventory(EventDTOMapper.toInventoryProcessRequest(event))
@@ -34,6 +44,7 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<InventoryEve
     @Override
     public Mono<InventoryEvent> handle(OrderEvent.OrderCancelled event) {
         return this.service.processRestore(event.orderId())
+        .switchIfEmpty(this.replay(event.orderId(), InventoryStatus.RESTORED))
         .map(EventDTOMapper::toInventoryRestoredEvent)
         .doOnNext(evt -> log.info("Inventory restored successfully for orderId: {}", evt.orderId()))
         .doOnError(ex -> log.error("error restoring inventory", ex));
@@ -44,9 +55,39 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<InventoryEve
         return Mono.empty();
     }
     
+    //micro-batch: consecutive OrderCreated events share one batched service call, others run on their own
+    @Override
+    public Flux<InventoryEvent> processBatch(List<OrderEvent> events) {
+        return Flux.fromIterable(events)
+        .bufferUntilChanged(OrderEvent.OrderCreated.class::isInstance)
+        .concatMap(run -> run.getFirst() instanceof OrderEvent.OrderCreated
+            ? this.handleAll(run.stream().map(OrderEvent.OrderCreated.class::cast).toList())
+            : Flux.fromIterable(run).concatMap(this::process));
+    }
+
+    private Flux<InventoryEvent> handleAll(List<OrderEvent.OrderCreated> events) {
+        var requests = events.stream().map(EventDTOMapper::toInventoryProcessRequest).toList();
+        return this.service.processInventories(requests)
+        .zipWithIterable(events)
+        .concatMap(tup -> tup.getT1()
+            .map(EventDTOMapper::toInventoryDeductedEvent)
+            .doOnNext(evt -> log.info("Inventory deducted successfully for orderId: {}", evt.orderId()))
+            .transform(exceptionHandler(tup.getT2())));
+    }
+
     private UnaryOperator<Mono<InventoryEvent>> exceptionHandler(OrderEvent.OrderCreated evt){
-        return mono -> mono.onErrorResume(EventAlreadyProcessedException.class, e-> Mono.empty())
+        return mono -> mono.onErrorResume(EventAlreadyProcessedException.class, e -> this.replay(evt.orderId(), InventoryStatus.DEDUCTED)
+            .map(EventDTOMapper::toInventoryDeductedEvent))
         .onErrorResume(EventDTOMapper.toInventoryFailedEvent(evt));
     }
 
+    //stored inventory of an already processed event in the given status, exactly-once mode only
+    private Mono<InventoryDTO> replay(UUID orderId, InventoryStatus status){
+        return Mono.defer(() -> this.exactlyOnce
+            ? this.service.getInventory(orderId)
+                .filter(invDTO -> invDTO.status() == status)
+                .doOnNext(invDTO -> log.info("replaying stored inventory outcome {}", invDTO))
+            : Mono.empty());
+    }
+
 }
@@ -1,5 +1,8 @@
-DROP TABLE IF EXISTS product;
+-- children before the tables they reference
+DROP TABLE IF EXISTS processed_event;
+DROP TABLE IF EXISTS product_stock_bucket;
 DROP TABLE IF EXISTS order_inventory;
+DROP TABLE IF EXISTS product;
 
 CREATE TABLE product (
    id int AUTO_INCREMENT primary key,
@@ -9,13 +12,31 @@ CREATE TABLE product (
 
 CREATE TABLE order_inventory (
    inventory_id uuid default random_uuid() primary key,
-   order_id uuid,
+   order_id uuid unique,
    product_id int,
    status VARCHAR(50),
    quantity int,
    foreign key (product_id) references product(id)
 );
 
+-- stock of a hot product split over K rows (saga.inventory.stock-buckets),
+-- so concurrent deductions of it update different rows; empty when off
+CREATE TABLE product_stock_bucket (
+   product_id int,
+   bucket int,
+   quantity int,
+   primary key (product_id, bucket),
+   foreign key (product_id) references product(id)
+);
+
+-- one row per consumed event (ProcessedEventTable): claimed in the transaction
+-- that processes it, the primary key decides between concurrent redeliveries
+CREATE TABLE processed_event (
+   order_id uuid,
+   event_type VARCHAR(50),
+   primary key (order_id, event_type)
+);
+
 insert into product(description, available_quantity)
     values
         ('book', 1000),
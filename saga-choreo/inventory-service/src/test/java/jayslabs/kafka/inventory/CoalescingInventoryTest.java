@@ -0,0 +1,89 @@
+package jayslabs.kafka.inventory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
+import jayslabs.kafka.inventory.application.service.CoalescingInventoryServiceImpl;
+import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
+import jayslabs.kafka.inventory.common.exception.OutOfStockException;
+import jayslabs.kafka.inventory.common.service.InventoryService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/*
+A window long enough that the concurrent requests below share it.
+*/
+@TestPropertySource(properties = {
+    "saga.inventory.coalescing.enabled=true",
+    "saga.inventory.coalescing.window=200ms"
+})
+public class CoalescingInventoryTest extends AbstractIntegrationTest{
+
+    @Autowired
+    private InventoryService invService;
+
+    @Test
+    public void coalescedDeductionTest(){
+        Assertions.assertInstanceOf(CoalescingInventoryServiceImpl.class, this.invService);
+        var registry = new SimpleMeterRegistry();
+        ((CoalescingInventoryServiceImpl) this.invService).bindTo(registry);
+
+        //product 1 (10 in stock): 12 orders of 1, product 2: 2 orders of 3, plus a redelivered order
+        var duplicate = request(2, 3);
+        var requests = Flux.concat(
+            Flux.range(0, 12).map(i -> request(1, 1)),
+            Flux.just(duplicate, request(2, 3), duplicate));
+        var outcomes = requests
+            .flatMap(req -> this.invService.processInventory(req)
+                .map(inv -> "ok")
+                .onErrorResume(OutOfStockException.class, ex -> Mono.just("out-of-stock"))
+                .onErrorResume(EventAlreadyProcessedException.class, ex -> Mono.just("duplicate"))
+                .subscribeOn(Schedulers.parallel()))
+            .collectList()
+            .block(Duration.ofSeconds(30));
+
+        Assertions.assertEquals(12, outcomes.stream().filter("ok"::equals).count());
+        Assertions.assertEquals(2, outcomes.stream().filter("out-of-stock"::equals).count());
+        Assertions.assertEquals(1, outcomes.stream().filter("duplicate"::equals).count());
+
+        //15 requests in a handful of transactions
+        Assertions.assertEquals(15, registry.get("saga.inventory.coalescing.requests").functionCounter().count());
+        Assertions.assertTrue(registry.get("saga.inventory.coalescing.groups").functionCounter().count() < 15);
+
+        //the order is on record: its restore is not coalesced
+        this.invService.processRestore(duplicate.orderId())
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+    }
+
+    @Test
+    public void batchEnqueuesEagerlyTest(){
+        //outcomes subscribed one at a time still share one window
+        var requests = List.of(request(3, 1), request(3, 1), request(3, 1));
+        this.invService.processInventories(requests)
+            .concatMap(mono -> mono)
+            .as(StepVerifier::create)
+            .expectNextCount(3)
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+    }
+
+    private static InventoryProcessRequest request(int productId, int quantity){
+        return InventoryProcessRequest.builder()
+            .productId(productId)
+            .orderId(UUID.randomUUID())
+            .quantity(quantity)
+            .build();
+    }
+}
@@ -4,6 +4,7 @@ import java.time.Duration;
 import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -15,9 +16,13 @@ import org.springframework.test.context.TestPropertySource;
 import jayslabs.kafka.common.events.inventory.InventoryEvent;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.inventory.application.repository.ProductRepository;
+import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
+import jayslabs.kafka.inventory.common.exception.OutOfStockException;
+import jayslabs.kafka.inventory.common.service.InventoryService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 @TestPropertySource(properties = {
@@ -34,6 +39,9 @@ public class InventoryServiceTest extends AbstractIntegrationTest{
     @Autowired
     private ProductRepository prodrepo;
 
+    @Autowired
+    private InventoryService invService;
+
     @Test
     public void reserveAndRestoreTest(){
 
@@ -127,6 +135,55 @@ public class InventoryServiceTest extends AbstractIntegrationTest{
         this.printProductInfo(1);
     }
 
+    @Test
+    public void concurrentDeductAndRestoreTest(){
+        //product 2 has 10: of 15 concurrent deductions of 1, exactly 10 go through
+        var deducted = Flux.range(0, 15)
+           .flatMap(i -> this.invService.processInventory(request(2))
+              .onErrorResume(OutOfStockException.class, ex -> Mono.empty())
+              .subscribeOn(Schedulers.parallel()), 16)
+           .collectList()
+           .block(Duration.ofSeconds(30));
+
+        Assertions.assertEquals(10, deducted.size());
+        this.expectAvailable(2, 0);
+
+        //restores are relative: concurrent ones all land
+        Flux.fromIterable(deducted)
+           .flatMap(inv -> this.invService.processRestore(inv.orderId())
+              .subscribeOn(Schedulers.parallel()), 16)
+           .then()
+           .block(Duration.ofSeconds(30));
+        this.expectAvailable(2, 10);
+    }
+
+    @Test
+    public void concurrentBatchDeductTest(){
+        //product 3 has 10: every batch of 4 fits the stock it read, a total that no longer
+        //fits falls back to per-order deductions, so exactly 10 of the 16 orders go through
+        var deducted = Flux.range(0, 4)
+           .flatMap(b -> this.invService.processInventories(IntStream.range(0, 4).mapToObj(i -> request(3)).toList())
+              .concatMap(outcome -> outcome.map(inv -> true).onErrorResume(OutOfStockException.class, ex -> Mono.just(false)))
+              .subscribeOn(Schedulers.parallel()), 4)
+           .filter(ok -> ok)
+           .count()
+           .block(Duration.ofSeconds(30));
+
+        Assertions.assertEquals(10, deducted);
+        this.expectAvailable(3, 0);
+    }
+
+    private static InventoryProcessRequest request(Integer productId){
+        return InventoryProcessRequest.builder().productId(productId).orderId(UUID.randomUUID()).quantity(1).build();
+    }
+
+    private void expectAvailable(Integer productId, int quantity){
+        this.prodrepo.findById(productId)
+           .map(prod -> prod.getAvailableQuantity())
+           .as(StepVerifier::create)
+           .expectNext(quantity)
+           .verifyComplete();
+    }
 
     @TestConfiguration
     static class TestConfig{
@@ -0,0 +1,120 @@
+package jayslabs.kafka.inventory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.inventory.application.service.BucketedStockServiceImpl;
+import jayslabs.kafka.inventory.common.dto.InventoryProcessRequest;
+import jayslabs.kafka.inventory.common.exception.OutOfStockException;
+import jayslabs.kafka.inventory.common.service.InventoryService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/*
+Products 1 and 2 (10 in stock each) split over 4 buckets, product 3 on its single row.
+Each test works on its own product, so they do not depend on the order they run in.
+*/
+@TestPropertySource(properties = {
+    "saga.inventory.stock-buckets.enabled=true",
+    "saga.inventory.stock-buckets.products[1]=4",
+    "saga.inventory.stock-buckets.products[2]=4",
+    "saga.inventory.stock-buckets.rebalance-interval=1h"
+})
+public class StockBucketTest extends AbstractIntegrationTest{
+
+    @Autowired
+    private InventoryService invService;
+
+    @Autowired
+    private BucketedStockServiceImpl stock;
+
+    @Autowired
+    private DatabaseClient client;
+
+    @Test
+    public void exactTotalUnderConcurrencyTest(){
+        //split at startup: 3, 3, 2, 2 and nothing left on the product row
+        Assertions.assertEquals(List.of(3, 3, 2, 2), this.buckets(1));
+        this.expectAvailable(1, 10);
+
+        //12 concurrent orders of 1: exactly 10 go through, the last ones via fallback / consolidation
+        var deducted = Flux.range(0, 12)
+            .flatMap(i -> this.invService.processInventory(request(1, 1))
+                .map(inv -> true)
+                .onErrorResume(OutOfStockException.class, ex -> Mono.just(false))
+                .subscribeOn(Schedulers.parallel()), 8)
+            .filter(ok -> ok)
+            .count()
+            .block(Duration.ofSeconds(30));
+        Assertions.assertEquals(10, deducted);
+        this.expectAvailable(1, 0);
+
+        //an order for more than any single bucket holds, but not more than the total
+        this.client.sql("UPDATE product_stock_bucket SET quantity = 1 WHERE product_id = 1").then().block();
+        var req = request(1, 3);
+        this.invService.processInventory(req)
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+        this.expectAvailable(1, 1);
+
+        //restored into one of the buckets
+        this.invService.processRestore(req.orderId())
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+        this.expectAvailable(1, 4);
+
+        //products without buckets keep using their row
+        this.invService.processInventory(request(3, 4))
+            .as(StepVerifier::create)
+            .expectNextCount(1)
+            .verifyComplete();
+        this.expectAvailable(3, 6);
+    }
+
+    @Test
+    public void rebalanceTest(){
+        //everything left in one bucket: 3 of 4 random picks would miss
+        this.client.sql("UPDATE product_stock_bucket SET quantity = CASE WHEN bucket = 0 THEN 10 ELSE 0 END WHERE product_id = 2").then().block();
+        this.stock.rebalance(2)
+            .as(StepVerifier::create)
+            .verifyComplete();
+        Assertions.assertEquals(List.of(3, 3, 2, 2), this.buckets(2));
+        this.expectAvailable(2, 10);
+    }
+
+    private List<Integer> buckets(int productId){
+        return this.client.sql("SELECT quantity FROM product_stock_bucket WHERE product_id = :id ORDER BY bucket")
+            .bind("id", productId)
+            .map(row -> row.get(0, Integer.class))
+            .all()
+            .collectList()
+            .block();
+    }
+
+    private void expectAvailable(int productId, int quantity){
+        this.stock.available(List.of(productId))
+            .as(StepVerifier::create)
+            .expectNext(Map.of(productId, quantity))
+            .verifyComplete();
+    }
+
+    private static InventoryProcessRequest request(int productId, int quantity){
+        return InventoryProcessRequest.builder()
+            .productId(productId)
+            .orderId(UUID.randomUUID())
+            .quantity(quantity)
+            .build();
+    }
+}
@@ -0,0 +1,3 @@
+-- runs after the main data.sql: resets the seeded products to the
+-- stock the test assertions are written against
+update product set available_quantity = 10;
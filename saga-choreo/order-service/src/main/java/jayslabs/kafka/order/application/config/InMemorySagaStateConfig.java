@@ -0,0 +1,47 @@
+package jayslabs.kafka.order.application.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import jayslabs.kafka.common.util.SagaStateTable;
+import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
+import jayslabs.kafka.order.application.service.InMemorySagaStateServiceImpl;
+import jayslabs.kafka.order.application.service.SingleRowSagaStateServiceImpl;
+
+/*
+Saga decisions in memory (InMemorySagaStateServiceImpl), persisted to the purchase_order
+row of the single-row mode (SingleRowSagaStateConfig). Off by default.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.state.mode", havingValue = "in-memory")
+public class InMemorySagaStateConfig {
+
+    //lock striping of the state table
+    @Value("${saga.state.in-memory.segments:16}")
+    private int segments;
+
+    //presized for this many in-flight sagas; grows beyond
+    @Value("${saga.state.in-memory.expected-entries:100000}")
+    private int expectedEntries;
+
+    //orders beyond this take the single-row path
+    @Value("${saga.state.in-memory.max-entries:4000000}")
+    private int maxEntries;
+
+    //PENDING orders are loaded before the bindings start
+    @Value("${saga.state.in-memory.rebuild-timeout:2m}")
+    private Duration rebuildTimeout;
+
+    //the processors and OrderServiceImpl get this one; the single-row service stays a bean of its own
+    @Bean
+    @Primary
+    public InMemorySagaStateServiceImpl inMemorySagaStateService(PurchaseOrderRepository porepo, SingleRowSagaStateServiceImpl singleRow){
+        var table = new SagaStateTable(this.segments, this.expectedEntries, this.maxEntries);
+        return new InMemorySagaStateServiceImpl(table, porepo, singleRow, this.rebuildTimeout);
+    }
+}
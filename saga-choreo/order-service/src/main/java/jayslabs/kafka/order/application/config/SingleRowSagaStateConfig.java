@@ -0,0 +1,39 @@
+package jayslabs.kafka.order.application.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
+import jayslabs.kafka.order.application.service.SingleRowSagaStateServiceImpl;
+import jayslabs.kafka.order.common.service.inventory.InventoryComponentFetcher;
+import jayslabs.kafka.order.common.service.payment.PaymentComponentFetcher;
+
+/*
+Saga state in the purchase_order row (SingleRowSagaStateServiceImpl) instead of
+order_payment / order_inventory. Off by default (saga.state.mode=tables).
+in-memory keeps the same row (InMemorySagaStateConfig) and uses this path for the orders it does not track.
+*/
+@Configuration
+@ConditionalOnExpression("'${saga.state.mode:tables}' == 'single-row' or '${saga.state.mode:tables}' == 'in-memory'")
+public class SingleRowSagaStateConfig {
+
+    @Bean
+    public SingleRowSagaStateServiceImpl singleRowSagaStateService(PurchaseOrderRepository porepo){
+        return new SingleRowSagaStateServiceImpl(porepo);
+    }
+
+    //order details read the components from the same row; the table-backed fetchers stay beans of their own
+    @Bean
+    @Primary
+    public PaymentComponentFetcher singleRowPaymentFetcher(SingleRowSagaStateServiceImpl sagaState){
+        return sagaState::getPayment;
+    }
+
+    @Bean
+    @Primary
+    public InventoryComponentFetcher singleRowInventoryFetcher(SingleRowSagaStateServiceImpl sagaState){
+        return sagaState::getInventory;
+    }
+}
@@ -1,7 +1,11 @@
 package jayslabs.kafka.order.application.controller;
 
+import java.time.Duration;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,6 +17,8 @@ import org.springframework.web.bind.annotation.RestController;
 import jayslabs.kafka.order.common.dto.OrderCreateRequest;
 import jayslabs.kafka.order.common.dto.OrderDetailsDTO;
 import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import jayslabs.kafka.order.common.exception.OrderBufferFullException;
+import jayslabs.kafka.order.common.service.OrderEventListener;
 import jayslabs.kafka.order.common.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
@@ -24,11 +30,27 @@ import reactor.core.publisher.Mono;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderEventListener orderEventListener;
 
+    @Value("${saga.order-buffer.retry-after:1s}")
+    private Duration retryAfter;
+
+    //503 + Retry-After while the OrderCreated buffer is near capacity, instead of queueing without limit
     @PostMapping
     public Mono<ResponseEntity<PurchaseOrderDTO>> placeOrder(@RequestBody Mono<OrderCreateRequest> monoreq) {
+        if (this.orderEventListener.isNearCapacity()){
+            return Mono.just(this.serviceUnavailable());
+        }
         return monoreq.flatMap(orderService::placeOrder)
-        .map(ResponseEntity.accepted()::body);
+        .map(ResponseEntity.accepted()::body)
+        //no slot left for the event: the order was not written
+        .onErrorResume(OrderBufferFullException.class, ex -> Mono.just(this.serviceUnavailable()));
+    }
+
+    private ResponseEntity<PurchaseOrderDTO> serviceUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, this.retryAfter.toSeconds())))
+            .build();
     }
 
     @GetMapping("all")
@@ -0,0 +1,34 @@
+package jayslabs.kafka.order.application.controller;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import jayslabs.kafka.order.common.dto.SagaLatencyDTO;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import lombok.RequiredArgsConstructor;
+
+/*
+GET /actuator/sagalatency          p50/p99/p999/max (ms) of every saga metric, last full interval
+GET /actuator/sagalatency/{metric} one metric, e.g. hop.payment
+*/
+@Component
+@Endpoint(id = "sagalatency")
+@RequiredArgsConstructor
+public class SagaLatencyEndpoint {
+
+    private final SagaLatencyTracker tracker;
+
+    @ReadOperation
+    public Map<String, SagaLatencyDTO> latencies() {
+        return this.tracker.snapshot();
+    }
+
+    @ReadOperation
+    public SagaLatencyDTO latency(@Selector String metric) {
+        return this.tracker.snapshot().get(metric);
+    }
+}
@@ -0,0 +1,24 @@
+package jayslabs.kafka.order.application.entity;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//pending OrderCreated for orderId, written in the same transaction as the purchase_order row
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOutbox {
+
+    @Id
+    private Long id;
+    private UUID orderId;
+    private Instant createdAt;
+}
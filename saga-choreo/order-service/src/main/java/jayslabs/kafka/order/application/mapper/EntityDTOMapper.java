@@ -1,6 +1,9 @@
 package jayslabs.kafka.order.application.mapper;
 
+import java.time.Instant;
+
 import jayslabs.kafka.order.application.entity.OrderInventory;
+import jayslabs.kafka.order.application.entity.OrderOutbox;
 import jayslabs.kafka.order.application.entity.OrderPayment;
 import jayslabs.kafka.order.application.entity.PurchaseOrder;
 import jayslabs.kafka.order.common.dto.OrderInventoryDTO;
@@ -8,6 +11,7 @@ import jayslabs.kafka.order.common.dto.OrderPaymentDTO;
 import jayslabs.kafka.order.common.dto.OrderCreateRequest;
 import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
 import jayslabs.kafka.order.common.dto.OrderDetailsDTO;
+import jayslabs.kafka.order.common.dto.OrderOutboxEntryDTO;
 
 import jayslabs.kafka.common.events.order.OrderStatus;
 
@@ -86,4 +90,20 @@ public class EntityDTOMapper {
             .inventory(inventoryDTO)
             .build();
     }
-}
\ No newline at end of file
+
+    // outbox mode: written in the same transaction as the purchase order
+    public static OrderOutbox toOrderOutbox(PurchaseOrderDTO orderDTO) {
+        return OrderOutbox.builder()
+            .orderId(orderDTO.orderId())
+            .createdAt(Instant.now())
+            .build();
+    }
+
+    public static OrderOutboxEntryDTO toOrderOutboxEntryDTO(OrderOutbox entity, PurchaseOrder order) {
+        return OrderOutboxEntryDTO.builder()
+            .outboxId(entity.getId())
+            .order(toPurchaseOrderDTO(order))
+            .createdAt(entity.getCreatedAt())
+            .build();
+    }
+}
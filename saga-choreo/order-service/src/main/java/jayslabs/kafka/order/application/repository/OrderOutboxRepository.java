@@ -0,0 +1,16 @@
+package jayslabs.kafka.order.application.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import jayslabs.kafka.order.application.entity.OrderOutbox;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface OrderOutboxRepository extends ReactiveCrudRepository<OrderOutbox, Long> {
+
+    //oldest first: id is insertion order
+    @Query("SELECT * FROM order_outbox ORDER BY id LIMIT :limit")
+    Flux<OrderOutbox> findNextBatch(int limit);
+}
@@ -12,7 +12,7 @@ import reactor.core.publisher.Mono;
 
 
 @Repository
-public interface PurchaseOrderRepository extends ReactiveCrudRepository<PurchaseOrder, UUID> {
+public interface PurchaseOrderRepository extends ReactiveCrudRepository<PurchaseOrder, UUID>, PurchaseOrderStateRepository {
     Mono<PurchaseOrder> findByOrderIdAndStatus(UUID orderId, OrderStatus status);
 
     @Query("""
@@ -0,0 +1,37 @@
+package jayslabs.kafka.order.application.repository;
+
+import java.util.UUID;
+
+import jayslabs.kafka.common.events.order.OrderStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//custom fragment of PurchaseOrderRepository for the single-row saga state (saga.state.mode=single-row)
+public interface PurchaseOrderStateRepository {
+
+    /*
+    one UPDATE of the purchase_order row: ORs bit into components, records componentId (when not null)
+    and decides the status - CANCELLED for a failureBits bit, COMPLETED once all completeBits are set,
+    only while still PENDING. Emits the row as it was BEFORE the update, empty for an unknown orderId.
+    */
+    Mono<SagaState> applyPayment(UUID orderId, int bit, UUID paymentId, int failureBits, int completeBits);
+
+    Mono<SagaState> applyInventory(UUID orderId, int bit, UUID inventoryId, int failureBits, int completeBits);
+
+    Mono<SagaState> findSagaState(UUID orderId);
+
+    /*
+    saga.state.mode=in-memory: persists a decision made in memory. ORs components in, records
+    componentId (when not null) and writes status, only to a PENDING order.
+    true = the row was updated, false = unknown orderId or already decided.
+    */
+    Mono<Boolean> recordPayment(UUID orderId, int components, UUID paymentId, OrderStatus status);
+
+    Mono<Boolean> recordInventory(UUID orderId, int components, UUID inventoryId, OrderStatus status);
+
+    //in-flight sagas, to rebuild the in-memory state on startup
+    Flux<SagaState> findPendingSagaStates();
+
+    record SagaState(UUID orderId, OrderStatus status, int components, UUID paymentId, UUID inventoryId) {
+    }
+}
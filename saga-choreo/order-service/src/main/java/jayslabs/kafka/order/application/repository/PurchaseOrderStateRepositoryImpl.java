@@ -0,0 +1,122 @@
+package jayslabs.kafka.order.application.repository;
+
+import java.util.UUID;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import io.r2dbc.spi.Readable;
+import jayslabs.kafka.common.events.order.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class PurchaseOrderStateRepositoryImpl implements PurchaseOrderStateRepository {
+
+    private static final String COLUMNS = "order_id, status, components, payment_id, inventory_id";
+
+    /*
+    H2 data change delta table: OLD TABLE returns the updated row as it was before, so the caller
+    learns from the same statement whether this update moved the order out of PENDING.
+    The row lock serializes the payment and inventory updates of one order.
+    */
+    private static final String APPLY = """
+        SELECT %1$s FROM OLD TABLE (
+            UPDATE purchase_order
+            SET    components = BITOR(components, :bit),
+                   %2$s = COALESCE(:componentId, %2$s),
+                   status = CASE
+                       WHEN status <> 'PENDING' THEN status
+                       WHEN BITAND(:bit, :failureBits) <> 0 THEN 'CANCELLED'
+                       WHEN BITAND(BITOR(components, :bit), :completeBits) = :completeBits THEN 'COMPLETED'
+                       ELSE status
+                   END,
+                   version = version + 1
+            WHERE  order_id = :orderId
+        )""";
+
+    private static final String APPLY_PAYMENT = APPLY.formatted(COLUMNS, "payment_id");
+    private static final String APPLY_INVENTORY = APPLY.formatted(COLUMNS, "inventory_id");
+    private static final String FIND = "SELECT " + COLUMNS + " FROM purchase_order WHERE order_id = :orderId";
+    private static final String FIND_PENDING = "SELECT " + COLUMNS + " FROM purchase_order WHERE status = 'PENDING'";
+
+    //in-memory mode: the caller decided, nothing is read back; the decision only lands on a PENDING row
+    //(H2 cannot infer the type of a lone BITOR parameter, hence the CAST)
+    private static final String RECORD = """
+        UPDATE purchase_order
+        SET    components = BITOR(components, CAST(:components AS INT)),
+               %1$s = COALESCE(:componentId, %1$s),
+               status = :status,
+               version = version + 1
+        WHERE  order_id = :orderId
+            AND status = 'PENDING'""";
+
+    private static final String RECORD_PAYMENT = RECORD.formatted("payment_id");
+    private static final String RECORD_INVENTORY = RECORD.formatted("inventory_id");
+
+    private final DatabaseClient client;
+
+    @Override
+    public Mono<SagaState> applyPayment(UUID orderId, int bit, UUID paymentId, int failureBits, int completeBits) {
+        return this.apply(APPLY_PAYMENT, orderId, bit, paymentId, failureBits, completeBits);
+    }
+
+    @Override
+    public Mono<SagaState> applyInventory(UUID orderId, int bit, UUID inventoryId, int failureBits, int completeBits) {
+        return this.apply(APPLY_INVENTORY, orderId, bit, inventoryId, failureBits, completeBits);
+    }
+
+    @Override
+    public Mono<SagaState> findSagaState(UUID orderId) {
+        return this.client.sql(FIND)
+            .bind("orderId", orderId)
+            .map(PurchaseOrderStateRepositoryImpl::toSagaState)
+            .one();
+    }
+
+    @Override
+    public Mono<Boolean> recordPayment(UUID orderId, int components, UUID paymentId, OrderStatus status) {
+        return this.record(RECORD_PAYMENT, orderId, components, paymentId, status);
+    }
+
+    @Override
+    public Mono<Boolean> recordInventory(UUID orderId, int components, UUID inventoryId, OrderStatus status) {
+        return this.record(RECORD_INVENTORY, orderId, components, inventoryId, status);
+    }
+
+    @Override
+    public Flux<SagaState> findPendingSagaStates() {
+        return this.client.sql(FIND_PENDING)
+            .map(PurchaseOrderStateRepositoryImpl::toSagaState)
+            .all();
+    }
+
+    private Mono<Boolean> record(String sql, UUID orderId, int components, UUID componentId, OrderStatus status) {
+        var spec = this.client.sql(sql)
+            .bind("orderId", orderId)
+            .bind("components", components)
+            .bind("status", status.name());
+        spec = componentId == null ? spec.bindNull("componentId", UUID.class) : spec.bind("componentId", componentId);
+        return spec.fetch().rowsUpdated().map(rows -> rows > 0);
+    }
+
+    private Mono<SagaState> apply(String sql, UUID orderId, int bit, UUID componentId, int failureBits, int completeBits) {
+        var spec = this.client.sql(sql)
+            .bind("orderId", orderId)
+            .bind("bit", bit)
+            .bind("failureBits", failureBits)
+            .bind("completeBits", completeBits);
+        spec = componentId == null ? spec.bindNull("componentId", UUID.class) : spec.bind("componentId", componentId);
+        return spec.map(PurchaseOrderStateRepositoryImpl::toSagaState).one();
+    }
+
+    private static SagaState toSagaState(Readable row) {
+        var components = row.get("components", Integer.class);
+        return new SagaState(
+            row.get("order_id", UUID.class),
+            OrderStatus.valueOf(row.get("status", String.class)),
+            components == null ? 0 : components,
+            row.get("payment_id", UUID.class),
+            row.get("inventory_id", UUID.class));
+    }
+}
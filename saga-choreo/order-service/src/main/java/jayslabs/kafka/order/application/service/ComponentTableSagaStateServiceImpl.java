@@ -0,0 +1,53 @@
+package jayslabs.kafka.order.application.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jayslabs.kafka.order.common.dto.OrderInventoryDTO;
+import jayslabs.kafka.order.common.dto.OrderPaymentDTO;
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import jayslabs.kafka.order.common.service.OrderFulfillmentService;
+import jayslabs.kafka.order.common.service.SagaStateService;
+import jayslabs.kafka.order.common.service.inventory.InventoryComponentStatusListener;
+import jayslabs.kafka.order.common.service.payment.PaymentComponentStatusListener;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/*
+Default saga state: the component outcome goes to order_payment / order_inventory
+(the status listeners), then OrderFulfillmentServiceImpl decides the purchase_order status.
+*/
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "saga.state.mode", havingValue = "tables", matchIfMissing = true)
+public class ComponentTableSagaStateServiceImpl implements SagaStateService {
+
+    private final OrderFulfillmentService fulfillmentService;
+    private final PaymentComponentStatusListener paymentListener;
+    private final InventoryComponentStatusListener inventoryListener;
+
+    @Override
+    public Mono<PurchaseOrderDTO> onPayment(OrderPaymentDTO event) {
+        return switch (event.status()) {
+            case DEDUCTED -> this.paymentListener.onSuccess(event)
+                .then(this.fulfillmentService.completeOrder(event.orderId()));
+            case FAILED -> this.paymentListener.onFailure(event)
+                .then(this.fulfillmentService.cancelOrder(event.orderId()));
+            case REFUNDED -> this.paymentListener.onRollback(event)
+                .then(Mono.empty());
+        };
+    }
+
+    @Override
+    public Mono<PurchaseOrderDTO> onInventory(OrderInventoryDTO event) {
+        return switch (event.status()) {
+            //order_inventory row, then COMPLETED if the payment is DEDUCTED as well
+            case DEDUCTED -> this.inventoryListener.onSuccess(event)
+                .then(this.fulfillmentService.completeOrder(event.orderId()));
+            case DECLINED -> this.inventoryListener.onFailure(event)
+                .then(this.fulfillmentService.cancelOrder(event.orderId()));
+            case RESTORED -> this.inventoryListener.onRollback(event)
+                .then(Mono.empty());
+        };
+    }
+}
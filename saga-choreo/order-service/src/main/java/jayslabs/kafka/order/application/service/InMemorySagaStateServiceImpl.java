@@ -0,0 +1,219 @@
+package jayslabs.kafka.order.application.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.events.order.OrderStatus;
+import jayslabs.kafka.common.util.SagaStateTable;
+import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
+import jayslabs.kafka.order.application.repository.PurchaseOrderStateRepository.SagaState;
+import jayslabs.kafka.order.common.dto.OrderInventoryDTO;
+import jayslabs.kafka.order.common.dto.OrderPaymentDTO;
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import jayslabs.kafka.order.common.service.SagaStateService;
+import reactor.core.publisher.Mono;
+
+/*
+  Saga state decided in memory (saga.state.mode=in-memory, InMemorySagaStateConfig).
+
+  Every in-flight order has one state byte in a SagaStateTable (primitive open-addressing
+  map keyed by the two longs of the orderId): IN_FLIGHT plus the component bits of
+  SingleRowSagaStateServiceImpl. Orders are added when placed and, on startup, from the
+  PENDING purchase_order rows (before the bindings start, see getPhase()).
+
+  A payment / inventory event reads the order's state, which decides the order without
+  a query: CANCELLED on a failure bit, COMPLETED once both DEDUCTED bits are there.
+  The database write comes first, the table only takes the bit once it succeeded (a
+  failed write leaves the entry as it was for the redelivery):
+    - duplicate (bit already set)   nothing written
+    - undecided                     the atomic single-row UPDATE (applyPayment /
+                                    applyInventory): the row as it was before still
+                                    decides, should it hold bits the table does not
+                                    (a concurrent reply of the same order)
+    - decided                       one blind UPDATE, bits + status only WHERE status =
+                                    'PENDING': 0 rows means another path decided first,
+                                    no event is emitted
+  A decided order leaves the table.
+  Orders the table does not know (decided already, placed by another instance, table
+  full at max-entries) take the single-row path (one atomic update, decided in SQL), so
+  rollbacks and late events still end up in the row.
+
+  The decision relies on this instance seeing both replies of an order: with several
+  instances the payment-events and inventory-events partitions of an order must be
+  assigned to the same one, as with a single instance.
+*/
+public class InMemorySagaStateServiceImpl implements SagaStateService, SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemorySagaStateServiceImpl.class);
+
+    static final int IN_FLIGHT = 1 << 6; //non-zero state for an order without replies yet
+
+    private static final int COMPONENTS = SingleRowSagaStateServiceImpl.COMPONENTS;
+    private static final int FAILURE = SingleRowSagaStateServiceImpl.FAILURE;
+    private static final int COMPLETE = SingleRowSagaStateServiceImpl.COMPLETE;
+
+    private final SagaStateTable table;
+    private final PurchaseOrderRepository porepo;
+    private final SingleRowSagaStateServiceImpl untracked;
+    private final Duration rebuildTimeout;
+    private volatile boolean running;
+
+    private final LongAdder decided = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder lost = new LongAdder(); //the row was decided already by another path
+
+    public InMemorySagaStateServiceImpl(SagaStateTable table, PurchaseOrderRepository porepo,
+                                        SingleRowSagaStateServiceImpl untracked, Duration rebuildTimeout) {
+        this.table = table;
+        this.porepo = porepo;
+        this.untracked = untracked;
+        this.rebuildTimeout = rebuildTimeout;
+    }
+
+    @Override
+    public Mono<PurchaseOrderDTO> onPayment(OrderPaymentDTO event) {
+        var bit = SingleRowSagaStateServiceImpl.paymentBit(event.status());
+        return Mono.defer(() -> this.transition(event.orderId(), bit,
+            () -> this.porepo.applyPayment(event.orderId(), bit, event.paymentId(), FAILURE, COMPLETE),
+            (components, status) -> this.porepo.recordPayment(event.orderId(), components, event.paymentId(), status),
+            () -> this.untracked.onPayment(event)));
+    }
+
+    @Override
+    public Mono<PurchaseOrderDTO> onInventory(OrderInventoryDTO event) {
+        var bit = SingleRowSagaStateServiceImpl.inventoryBit(event.status());
+        return Mono.defer(() -> this.transition(event.orderId(), bit,
+            () -> this.porepo.applyInventory(event.orderId(), bit, event.inventoryId(), FAILURE, COMPLETE),
+            (components, status) -> this.porepo.recordInventory(event.orderId(), components, event.inventoryId(), status),
+            () -> this.untracked.onInventory(event)));
+    }
+
+    @Override
+    public void onOrderPlaced(UUID orderId) {
+        this.table.putIfAbsent(orderId, IN_FLIGHT);
+    }
+
+    private Mono<PurchaseOrderDTO> transition(UUID orderId, int bit, Supplier<Mono<SagaState>> applier,
+                                              Recorder recorder, Supplier<Mono<PurchaseOrderDTO>> fallback) {
+        var state = this.table.get(orderId);
+        if (state == 0){
+            this.fallbacks.increment();
+            return fallback.get();
+        }
+        if ((state | bit) == state){
+            this.duplicates.increment();
+            return Mono.empty();
+        }
+        var status = SingleRowSagaStateServiceImpl.decision(state & COMPONENTS, bit);
+        if (status == null){
+            return applier.get()
+                .doOnSuccess(old -> {
+                    if (old == null){ //the row is gone
+                        this.table.remove(orderId);
+                    }
+                })
+                .mapNotNull(old -> this.applied(orderId, bit, old));
+        }
+        return recorder.record((state | bit) & COMPONENTS, status)
+            .flatMap(updated -> {
+                this.table.remove(orderId);
+                if (!updated){
+                    this.lost.increment();
+                    return Mono.empty();
+                }
+                this.decided.increment();
+                return Mono.just(PurchaseOrderDTO.builder().orderId(orderId).status(status).build());
+            });
+    }
+
+    //undecided in memory: the row as it was before the update has the final say
+    private PurchaseOrderDTO applied(UUID orderId, int bit, SagaState old) {
+        var decided = SingleRowSagaStateServiceImpl.decided(old, bit);
+        if (decided != null){
+            this.decided.increment();
+            this.table.remove(orderId);
+        } else if (old.status() != OrderStatus.PENDING){
+            this.lost.increment();
+            this.table.remove(orderId);
+        } else {
+            this.recorded.increment();
+            this.table.update(orderId, current -> next(current, bit));
+        }
+        return decided;
+    }
+
+    //state after bit: 0 (entry removed) once the order is decided
+    static int next(int state, int bit) {
+        return SingleRowSagaStateServiceImpl.decision(state & COMPONENTS, bit) == null ? state | bit : 0;
+    }
+
+    //blocking on purpose: the table must hold every PENDING order before the first reply is consumed
+    @Override
+    public void start() {
+        var loaded = this.porepo.findPendingSagaStates()
+            .filter(state -> this.table.putIfAbsent(state.orderId(), IN_FLIGHT | state.components()))
+            .count()
+            .block(this.rebuildTimeout);
+        log.info("Saga state table rebuilt from {} PENDING orders", loaded);
+        this.running = true;
+    }
+
+    //after the bindings stopped; a later start() rebuilds the table from the database
+    @Override
+    public void stop() {
+        this.running = false;
+        this.table.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    //ahead of the web server (DEFAULT_PHASE - 1024) and the stream input bindings (DEFAULT_PHASE - 1000)
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.state.inflight", this.table, SagaStateTable::size)
+            .description("In-flight sagas held in the in-memory state table")
+            .register(registry);
+        Gauge.builder("saga.state.table.bytes", this.table, SagaStateTable::footprint)
+            .description("Bytes of the state table's slot arrays")
+            .baseUnit("bytes")
+            .register(registry);
+        this.transitionCounter(registry, "decided", this.decided);
+        this.transitionCounter(registry, "recorded", this.recorded);
+        this.transitionCounter(registry, "duplicate", this.duplicates);
+        this.transitionCounter(registry, "untracked", this.fallbacks);
+        this.transitionCounter(registry, "lost", this.lost);
+    }
+
+    private void transitionCounter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("saga.state.events", adder, LongAdder::sum)
+            .description("Payment / inventory events by what the in-memory state made of them")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    //persists the components bits and the status decided in memory
+    @FunctionalInterface
+    private interface Recorder {
+        Mono<Boolean> record(int components, OrderStatus status);
+    }
+}
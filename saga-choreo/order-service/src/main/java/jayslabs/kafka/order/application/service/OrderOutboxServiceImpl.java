@@ -0,0 +1,43 @@
+package jayslabs.kafka.order.application.service;
+
+import java.util.Collection;
+
+import org.springframework.stereotype.Service;
+
+import jayslabs.kafka.order.application.entity.OrderOutbox;
+import jayslabs.kafka.order.application.entity.PurchaseOrder;
+import jayslabs.kafka.order.application.mapper.EntityDTOMapper;
+import jayslabs.kafka.order.application.repository.OrderOutboxRepository;
+import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
+import jayslabs.kafka.order.common.dto.OrderOutboxEntryDTO;
+import jayslabs.kafka.order.common.service.OrderOutboxService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@RequiredArgsConstructor
+public class OrderOutboxServiceImpl implements OrderOutboxService {
+
+    private final OrderOutboxRepository outboxRepo;
+    private final PurchaseOrderRepository porepo;
+
+    //2 queries per batch: outbox rows, then their orders
+    @Override
+    public Flux<OrderOutboxEntryDTO> getPending(int limit) {
+        return this.outboxRepo.findNextBatch(limit)
+        .collectList()
+        .filter(entries -> !entries.isEmpty())
+        .flatMapMany(entries -> this.porepo.findAllById(entries.stream().map(OrderOutbox::getOrderId).toList())
+            .collectMap(PurchaseOrder::getOrderId)
+            .flatMapIterable(orders -> entries.stream()
+                .filter(entry -> orders.containsKey(entry.getOrderId()))
+                .map(entry -> EntityDTOMapper.toOrderOutboxEntryDTO(entry, orders.get(entry.getOrderId())))
+                .toList()));
+    }
+
+    @Override
+    public Mono<Void> remove(Collection<Long> outboxIds) {
+        return outboxIds.isEmpty() ? Mono.empty() : this.outboxRepo.deleteAllById(outboxIds);
+    }
+}
@@ -1,16 +1,23 @@
 package jayslabs.kafka.order.application.service;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
+import jayslabs.kafka.order.application.entity.PurchaseOrder;
 import jayslabs.kafka.order.application.mapper.EntityDTOMapper;
+import jayslabs.kafka.order.application.repository.OrderOutboxRepository;
 import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
 import jayslabs.kafka.order.common.dto.OrderCreateRequest;
 import jayslabs.kafka.order.common.dto.OrderDetailsDTO;
 import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import jayslabs.kafka.order.common.exception.OrderBufferFullException;
 import jayslabs.kafka.order.common.service.OrderEventListener;
 import jayslabs.kafka.order.common.service.OrderService;
+import jayslabs.kafka.order.common.service.SagaStateService;
 import jayslabs.kafka.order.common.service.inventory.InventoryComponentFetcher;
 import jayslabs.kafka.order.common.service.payment.PaymentComponentFetcher;
 import lombok.RequiredArgsConstructor;
@@ -25,16 +32,53 @@ public class OrderServiceImpl implements OrderService {
     private final OrderEventListener ordEvtLstnr;
     private final PaymentComponentFetcher paymentCompFetcher;
     private final InventoryComponentFetcher inventoryCompFetcher;
+    private final OrderOutboxRepository outboxRepo;
+    private final TransactionalOperator txOperator;
+    private final SagaStateService sagaState;
 
+    //outbox mode: OrderCreated is written to order_outbox with the order and relayed by OrderOutboxRelay
+    @Value("${saga.outbox.enabled:false}")
+    private boolean outboxEnabled;
 
     @Override
     public Mono<PurchaseOrderDTO> placeOrder(OrderCreateRequest request) {
         
         //Create PurchaseOrder entity 
         var purchaseOrder = EntityDTOMapper.toPurchaseOrder(request);
+        if (this.outboxEnabled){
+            return this.placeOrderWithOutbox(purchaseOrder);
+        }
+        return Mono.defer(() -> this.placeOrderWithEvent(purchaseOrder));
+    }
+
+    //room for the OrderCreated event is taken before the row is written: a full buffer rejects the order instead of dropping its event
+    private Mono<PurchaseOrderDTO> placeOrderWithEvent(PurchaseOrder purchaseOrder) {
+        if (!this.ordEvtLstnr.tryReserve()){
+            return Mono.error(new OrderBufferFullException());
+        }
+        var emitted = new AtomicBoolean();
         return this.porepo.save(purchaseOrder) //save to database
         .map(EntityDTOMapper::toPurchaseOrderDTO) //convert to DTO
-        .doOnNext(ordEvtLstnr::emitOrderCreated); //and emit event to Kafka
+        .doOnNext(podto -> this.sagaState.onOrderPlaced(podto.orderId())) //before any reply can arrive
+        .doOnNext(podto -> {
+            emitted.set(true);
+            this.ordEvtLstnr.emitOrderCreated(podto); //and emit event to Kafka
+        })
+        .doFinally(signal -> {
+            if (!emitted.get()){
+                this.ordEvtLstnr.release(); //save failed or was cancelled
+            }
+        });
+    }
+
+    //order row + outbox row in one R2DBC transaction; nothing is emitted in memory
+    private Mono<PurchaseOrderDTO> placeOrderWithOutbox(PurchaseOrder purchaseOrder) {
+        return this.porepo.save(purchaseOrder)
+        .map(EntityDTOMapper::toPurchaseOrderDTO)
+        .flatMap(podto -> this.outboxRepo.save(EntityDTOMapper.toOrderOutbox(podto)).thenReturn(podto))
+        .as(this.txOperator::transactional)
+        //after commit, so a rolled back order is never tracked; the relay only sees the row on its next poll
+        .doOnNext(podto -> this.sagaState.onOrderPlaced(podto.orderId()));
     }
 
     @Override
@@ -110,6 +154,8 @@ Flow Diagram for placeOrder():
 │                                                                     │
 │  Step 4: .doOnNext(ordEvtLstnr::emitOrderCreated)                   │
 │    → Emit OrderEvent.OrderCreated to Kafka                          │
+│    (outbox mode: INSERT INTO order_outbox in the same transaction   │
+│     instead; OrderOutboxRelay publishes it)                         │
 └─────────────────────────────────────────────────────────────────────┘
                             ↓
 ┌─────────────────────────────────────────────────────────────────────┐
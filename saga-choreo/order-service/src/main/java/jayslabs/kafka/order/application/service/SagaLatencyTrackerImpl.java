@@ -0,0 +1,198 @@
+package jayslabs.kafka.order.application.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import jayslabs.kafka.order.common.dto.SagaLatencyDTO;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/*
+In-process saga latency tracker.
+
+Each metric is an HdrHistogram Recorder (lock-free recording, 3 significant
+digits, microseconds); every interval the recorders are rotated and the last
+full interval is what snapshot() reports, so percentiles are live and do not
+drift towards all-time values.
+
+In-flight sagas are kept by orderId from OrderCreated until ShippingScheduled
+(or OrderCancelled). Entries older than max-age are swept on rotation and at
+most max-tracked sagas are followed at once, so the map stays bounded when
+replies are lost. Only the first reply per hop is recorded (redeliveries skip).
+*/
+@Service
+public class SagaLatencyTrackerImpl implements SagaLatencyTracker, SmartLifecycle {
+
+    private static final String SAGA_COMPLETED = "saga.completed";
+    private static final String SAGA_CANCELLED = "saga.cancelled";
+    private static final String SAGA_SHIPPED = "saga.shipped";
+    private static final String HOP_PAYMENT = "hop.payment";
+    private static final String HOP_INVENTORY = "hop.inventory";
+    private static final String HOP_SHIPPING = "hop.shipping";
+
+    @Value("${saga.latency.interval:1m}")
+    private Duration interval;
+
+    @Value("${saga.latency.max-age:10m}")
+    private Duration maxAge;
+
+    @Value("${saga.latency.max-tracked:100000}")
+    private int maxTracked;
+
+    private final Map<UUID, SagaTimes> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, RotatingHistogram> histograms = new LinkedHashMap<>();
+    private volatile Disposable rotation;
+
+    public SagaLatencyTrackerImpl() {
+        List.of(SAGA_COMPLETED, SAGA_CANCELLED, SAGA_SHIPPED, HOP_PAYMENT, HOP_INVENTORY, HOP_SHIPPING)
+            .forEach(name -> this.histograms.put(name, new RotatingHistogram()));
+    }
+
+    @Override
+    public void onOrderCreated(UUID orderId, Instant createdAt) {
+        if (this.inFlight.size() < this.maxTracked){
+            this.inFlight.putIfAbsent(orderId, new SagaTimes(micros(createdAt)));
+        }
+    }
+
+    @Override
+    public void onReply(Hop hop, UUID orderId) {
+        var times = this.inFlight.get(orderId);
+        if (times != null && times.firstReply(hop)){
+            this.record(hop == Hop.PAYMENT ? HOP_PAYMENT : HOP_INVENTORY, nowMicros() - times.createdMicros);
+        }
+    }
+
+    @Override
+    public void onOrderCompleted(UUID orderId) {
+        var times = this.inFlight.get(orderId);
+        var now = nowMicros();
+        if (times != null && times.completedMicros.compareAndSet(0, now)){
+            this.record(SAGA_COMPLETED, now - times.createdMicros);
+        }
+    }
+
+    @Override
+    public void onOrderCancelled(UUID orderId) {
+        var times = this.inFlight.remove(orderId); //no shipping follows
+        if (times != null){
+            this.record(SAGA_CANCELLED, nowMicros() - times.createdMicros);
+        }
+    }
+
+    @Override
+    public void onShippingScheduled(UUID orderId) {
+        var times = this.inFlight.remove(orderId);
+        if (times == null){
+            return;
+        }
+        var now = nowMicros();
+        this.record(SAGA_SHIPPED, now - times.createdMicros);
+        var completed = times.completedMicros.get();
+        if (completed > 0){
+            this.record(HOP_SHIPPING, now - completed);
+        }
+    }
+
+    @Override
+    public Map<String, SagaLatencyDTO> snapshot() {
+        var snapshot = new LinkedHashMap<String, SagaLatencyDTO>();
+        this.histograms.forEach((name, histogram) -> snapshot.put(name, histogram.snapshot()));
+        return snapshot;
+    }
+
+    @Override
+    public void start() {
+        this.rotation = Flux.interval(this.interval)
+            .subscribe(tick -> this.rotate());
+    }
+
+    @Override
+    public void stop() {
+        if (this.rotation != null){
+            this.rotation.dispose();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.rotation != null && !this.rotation.isDisposed();
+    }
+
+    //package-private for tests
+    void rotate(){
+        this.histograms.values().forEach(RotatingHistogram::rotate);
+        var oldest = nowMicros() - this.maxAge.toNanos() / 1000;
+        this.inFlight.values().removeIf(times -> times.createdMicros < oldest);
+    }
+
+    private void record(String name, long micros){
+        this.histograms.get(name).record(micros);
+    }
+
+    private static long nowMicros(){
+        return micros(Instant.now());
+    }
+
+    private static long micros(Instant instant){
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static final class SagaTimes {
+
+        private final long createdMicros;
+        private final AtomicInteger replied = new AtomicInteger(); //bit per Hop
+        private final AtomicLong completedMicros = new AtomicLong();
+
+        SagaTimes(long createdMicros) {
+            this.createdMicros = createdMicros;
+        }
+
+        boolean firstReply(Hop hop){
+            var bit = 1 << hop.ordinal();
+            return (this.replied.getAndUpdate(mask -> mask | bit) & bit) == 0;
+        }
+    }
+
+    private static final class RotatingHistogram {
+
+        private final Recorder recorder = new Recorder(3);
+        private volatile Histogram last = new Histogram(3); //empty until the first rotation
+
+        void record(long micros){
+            this.recorder.recordValue(Math.max(0, micros)); //wall clock can step back
+        }
+
+        void rotate(){
+            this.last = this.recorder.getIntervalHistogram();
+        }
+
+        SagaLatencyDTO snapshot(){
+            var h = this.last;
+            return SagaLatencyDTO.builder()
+                .intervalStart(Instant.ofEpochMilli(h.getStartTimeStamp()))
+                .intervalEnd(Instant.ofEpochMilli(h.getEndTimeStamp()))
+                .count(h.getTotalCount())
+                .p50(h.getValueAtPercentile(50) / 1000.0)
+                .p99(h.getValueAtPercentile(99) / 1000.0)
+                .p999(h.getValueAtPercentile(99.9) / 1000.0)
+                .max(h.getMaxValue() / 1000.0)
+                .build();
+        }
+    }
+}
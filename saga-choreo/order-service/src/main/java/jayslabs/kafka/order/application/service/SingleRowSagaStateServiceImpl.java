@@ -0,0 +1,151 @@
+package jayslabs.kafka.order.application.service;
+
+import java.util.UUID;
+
+import jayslabs.kafka.common.events.inventory.InventoryStatus;
+import jayslabs.kafka.common.events.order.OrderStatus;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+import jayslabs.kafka.order.application.repository.PurchaseOrderRepository;
+import jayslabs.kafka.order.application.repository.PurchaseOrderStateRepository.SagaState;
+import jayslabs.kafka.order.common.dto.OrderInventoryDTO;
+import jayslabs.kafka.order.common.dto.OrderPaymentDTO;
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import jayslabs.kafka.order.common.service.SagaStateService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/*
+  Saga state kept in the purchase_order row (saga.state.mode=single-row, SingleRowSagaStateConfig):
+  status, one bit per component outcome in `components`, payment_id / inventory_id and version.
+
+  Every payment / inventory event is ONE atomic UPDATE (PurchaseOrderRepository.applyPayment /
+  applyInventory) that sets its bit and, while the order is PENDING, decides the status in the
+  same statement: CANCELLED on a failure bit, COMPLETED once both DEDUCTED bits are set. The
+  statement returns the row as it was before, so "this event just decided the order" is
+  old status PENDING + the decision the update made - duplicates and late events decide nothing.
+  No order_payment / order_inventory rows, no EXISTS join, no optimistic-lock retry; it is an
+  UPDATE rather than an upsert because the purchase_order row always exists first.
+
+  The order details view derives the component statuses from the bits (getPayment /
+  getInventory); failure messages are not kept in this mode.
+*/
+@RequiredArgsConstructor
+public class SingleRowSagaStateServiceImpl implements SagaStateService {
+
+    static final int PAYMENT_DEDUCTED   = 1;
+    static final int PAYMENT_FAILED     = 1 << 1;
+    static final int PAYMENT_REFUNDED   = 1 << 2;
+    static final int INVENTORY_DEDUCTED = 1 << 3;
+    static final int INVENTORY_DECLINED = 1 << 4;
+    static final int INVENTORY_RESTORED = 1 << 5;
+
+    static final int FAILURE = PAYMENT_FAILED | INVENTORY_DECLINED;
+    static final int COMPLETE = PAYMENT_DEDUCTED | INVENTORY_DEDUCTED;
+    static final int COMPONENTS = (1 << 6) - 1;
+
+    private static final OrderPaymentDTO DEFAULT_PAYMENT = OrderPaymentDTO.builder().build();
+    private static final OrderInventoryDTO DEFAULT_INVENTORY = OrderInventoryDTO.builder().build();
+
+    private final PurchaseOrderRepository porepo;
+
+    @Override
+    public Mono<PurchaseOrderDTO> onPayment(OrderPaymentDTO event) {
+        var bit = paymentBit(event.status());
+        return this.porepo.applyPayment(event.orderId(), bit, event.paymentId(), FAILURE, COMPLETE)
+            .mapNotNull(old -> decided(old, bit));
+    }
+
+    @Override
+    public Mono<PurchaseOrderDTO> onInventory(OrderInventoryDTO event) {
+        var bit = inventoryBit(event.status());
+        return this.porepo.applyInventory(event.orderId(), bit, event.inventoryId(), FAILURE, COMPLETE)
+            .mapNotNull(old -> decided(old, bit));
+    }
+
+    //PaymentComponentFetcher in this mode
+    public Mono<OrderPaymentDTO> getPayment(UUID orderId) {
+        return this.porepo.findSagaState(orderId)
+            .filter(state -> paymentStatus(state.components()) != null)
+            .map(state -> OrderPaymentDTO.builder()
+                .orderId(orderId)
+                .paymentId(state.paymentId())
+                .status(paymentStatus(state.components()))
+                .build())
+            .defaultIfEmpty(DEFAULT_PAYMENT);
+    }
+
+    //InventoryComponentFetcher in this mode
+    public Mono<OrderInventoryDTO> getInventory(UUID orderId) {
+        return this.porepo.findSagaState(orderId)
+            .filter(state -> inventoryStatus(state.components()) != null)
+            .map(state -> OrderInventoryDTO.builder()
+                .orderId(orderId)
+                .inventoryId(state.inventoryId())
+                .status(inventoryStatus(state.components()))
+                .build())
+            .defaultIfEmpty(DEFAULT_INVENTORY);
+    }
+
+    //orderId + new status if this bit moved the order out of PENDING, else null
+    static PurchaseOrderDTO decided(SagaState old, int bit) {
+        var status = old.status() == OrderStatus.PENDING ? decision(old.components(), bit) : null;
+        return status == null ? null : PurchaseOrderDTO.builder()
+            .orderId(old.orderId())
+            .status(status)
+            .build();
+    }
+
+    //mirrors the CASE of the update, for a PENDING order: the status bit decides, null while undecided
+    static OrderStatus decision(int components, int bit) {
+        if ((bit & FAILURE) != 0){
+            return OrderStatus.CANCELLED;
+        }
+        if (((components | bit) & COMPLETE) == COMPLETE){
+            return OrderStatus.COMPLETED;
+        }
+        return null;
+    }
+
+    static int paymentBit(PaymentStatus status) {
+        return switch (status) {
+            case DEDUCTED -> PAYMENT_DEDUCTED;
+            case FAILED -> PAYMENT_FAILED;
+            case REFUNDED -> PAYMENT_REFUNDED;
+        };
+    }
+
+    static int inventoryBit(InventoryStatus status) {
+        return switch (status) {
+            case DEDUCTED -> INVENTORY_DEDUCTED;
+            case DECLINED -> INVENTORY_DECLINED;
+            case RESTORED -> INVENTORY_RESTORED;
+        };
+    }
+
+    //a rollback follows a success; a success outranks a (late, conflicting) failure
+    static PaymentStatus paymentStatus(int components) {
+        if ((components & PAYMENT_REFUNDED) != 0){
+            return PaymentStatus.REFUNDED;
+        }
+        if ((components & PAYMENT_DEDUCTED) != 0){
+            return PaymentStatus.DEDUCTED;
+        }
+        if ((components & PAYMENT_FAILED) != 0){
+            return PaymentStatus.FAILED;
+        }
+        return null;
+    }
+
+    static InventoryStatus inventoryStatus(int components) {
+        if ((components & INVENTORY_RESTORED) != 0){
+            return InventoryStatus.RESTORED;
+        }
+        if ((components & INVENTORY_DEDUCTED) != 0){
+            return InventoryStatus.DEDUCTED;
+        }
+        if ((components & INVENTORY_DECLINED) != 0){
+            return InventoryStatus.DECLINED;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,14 @@
+package jayslabs.kafka.order.common.dto;
+
+import java.time.Instant;
+
+import lombok.Builder;
+
+@Builder
+public record OrderOutboxEntryDTO(
+    Long outboxId,
+    PurchaseOrderDTO order,
+    Instant createdAt
+) {
+
+}
@@ -0,0 +1,19 @@
+package jayslabs.kafka.order.common.dto;
+
+import java.time.Instant;
+
+import lombok.Builder;
+
+//latencies in milliseconds over [intervalStart, intervalEnd)
+@Builder
+public record SagaLatencyDTO(
+    Instant intervalStart,
+    Instant intervalEnd,
+    long count,
+    double p50,
+    double p99,
+    double p999,
+    double max
+) {
+
+}
@@ -0,0 +1,10 @@
+package jayslabs.kafka.order.common.exception;
+
+public class OrderBufferFullException extends RuntimeException {
+    private static final String MESSAGE = "No room left for the OrderCreated event, order not placed";
+
+    public OrderBufferFullException() {
+        super(MESSAGE);
+    }
+
+}
@@ -4,5 +4,15 @@ import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
 
 public interface OrderEventListener {
 
+    //uses the buffer slot taken by tryReserve()
     void emitOrderCreated(PurchaseOrderDTO dto);
+
+    //takes a buffer slot for one OrderCreated before the order is written; false when the buffer is full
+    boolean tryReserve();
+
+    //gives back a slot whose order was not placed
+    void release();
+
+    //true when the outgoing event buffer is close to full; new orders should be rejected
+    boolean isNearCapacity();
 }
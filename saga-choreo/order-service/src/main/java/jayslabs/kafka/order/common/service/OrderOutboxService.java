@@ -0,0 +1,20 @@
+package jayslabs.kafka.order.common.service;
+
+import java.util.Collection;
+
+import jayslabs.kafka.order.common.dto.OrderOutboxEntryDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+Read/remove side of the order outbox (saga.outbox.enabled=true).
+Entries are written by OrderService.placeOrder() together with the order row
+and removed by the relay once kafka acknowledged the OrderCreated event.
+*/
+public interface OrderOutboxService {
+
+    //oldest first
+    Flux<OrderOutboxEntryDTO> getPending(int limit);
+
+    Mono<Void> remove(Collection<Long> outboxIds);
+}
@@ -0,0 +1,32 @@
+package jayslabs.kafka.order.common.service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import jayslabs.kafka.order.common.dto.SagaLatencyDTO;
+
+/*
+End-to-end saga latency, measured in order-service (single clock):
+    saga.completed / saga.cancelled  OrderCreated.createdAt → OrderCompleted / OrderCancelled emitted
+    saga.shipped                     OrderCreated.createdAt → ShippingScheduled received
+    hop.payment / hop.inventory      OrderCreated.createdAt → first payment / inventory reply received
+    hop.shipping                     OrderCompleted emitted → ShippingScheduled received
+*/
+public interface SagaLatencyTracker {
+
+    enum Hop { PAYMENT, INVENTORY }
+
+    void onOrderCreated(UUID orderId, Instant createdAt);
+
+    void onReply(Hop hop, UUID orderId);
+
+    void onOrderCompleted(UUID orderId);
+
+    void onOrderCancelled(UUID orderId);
+
+    void onShippingScheduled(UUID orderId);
+
+    //percentiles of the last full interval, by metric name
+    Map<String, SagaLatencyDTO> snapshot();
+}
@@ -0,0 +1,29 @@
+package jayslabs.kafka.order.common.service;
+
+import java.util.UUID;
+
+import jayslabs.kafka.order.common.dto.OrderInventoryDTO;
+import jayslabs.kafka.order.common.dto.OrderPaymentDTO;
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+import reactor.core.publisher.Mono;
+
+/*
+Saga progress of an order (saga.state.mode): records a payment / inventory outcome and decides
+the order. Emits the order once this outcome moved it to COMPLETED / CANCELLED, empty otherwise
+(still waiting for the other component, already decided, or a rollback).
+    tables      order_payment / order_inventory rows, then the purchase_order status
+                (ComponentTableSagaStateServiceImpl)
+    single-row  one atomic update of the purchase_order row (SingleRowSagaStateServiceImpl)
+    in-memory   decided in an in-memory state table, the db only persists transitions
+                (InMemorySagaStateServiceImpl)
+*/
+public interface SagaStateService {
+
+    Mono<PurchaseOrderDTO> onPayment(OrderPaymentDTO event);
+
+    Mono<PurchaseOrderDTO> onInventory(OrderInventoryDTO event);
+
+    //the PENDING order row is written; the saga starts
+    default void onOrderPlaced(UUID orderId) {
+    }
+}
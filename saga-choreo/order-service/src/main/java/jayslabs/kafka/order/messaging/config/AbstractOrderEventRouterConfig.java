@@ -1,18 +1,30 @@
 package jayslabs.kafka.order.messaging.config;
 
+import java.time.Duration;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jayslabs.kafka.common.events.DomainEvent;
 import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.journal.EventJournal;
 import jayslabs.kafka.common.processor.EventProcessor;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.TraceContext;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.KeyOrderedExecutor;
 import jayslabs.kafka.common.util.MessageConverter;
+import jayslabs.kafka.common.util.OffsetTracker;
+import jayslabs.kafka.common.util.ProcessorMetrics;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 /*
  Provides reusable message wrapping logic
@@ -24,22 +36,55 @@ public abstract class AbstractOrderEventRouterConfig {
     private static final String DESTINATION_HEADER = "spring.cloud.stream.sendto.destination";
     private static final String ORDER_EVENTS_CHANNEL = "order-events-channel";
 
-    protected <T extends DomainEvent> Function<Flux<Message<T>>, Flux<Message<OrderEvent>>> processor(EventProcessor<T, OrderEvent> evtProcessor){
-        return flux -> flux.map(MessageConverter::toRecord)
+    //a failing event (e.g. its database write) is retried before it is skipped
+    private static final int MAX_RETRIES = 3;
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(100);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SagaTracer sagaTracer;
+
+    @Autowired
+    private EventJournal eventJournal;
+
+    protected <T extends DomainEvent> Function<Flux<Message<T>>, Flux<Message<OrderEvent>>> processor(String binding, EventProcessor<T, OrderEvent> evtProcessor, int lanes, OffsetTracker tracker){
+        //latency/outcome timers per event subtype (saga.processor.process)
+        var instrumented = ProcessorMetrics.instrument(binding, evtProcessor, this.meterRegistry);
+        var hop = this.sagaTracer.hop(binding); //trace context from toRecord to toMessage, by orderId
+        return flux -> flux.doOnNext(this.eventJournal::record) //no-op unless saga.journal.enabled
+        .map(msg -> MessageConverter.toRecord(msg, tracker, hop))
         .doOnNext(cr -> log.info("received in order-service: {}", cr.message()))
-        .concatMap(cr -> evtProcessor.process(cr.message())
+        .transform(KeyOrderedExecutor.execute(lanes, cr -> instrumented.process(cr.message())
+        .retryWhen(Retry.backoff(MAX_RETRIES, RETRY_BACKOFF))
+        .onErrorResume(ex -> this.skipped(binding, cr, ex))
         .doOnSuccess(evt -> cr.acknowledgement().acknowledge())
-        ).map(this::toMessage);
+        )).map(evt -> this.toMessage(evt, hop.send(evt.orderId())));
     }
 
+    //an error reaching the flux would end the binding: the event is logged and skipped instead
+    private <T extends DomainEvent> Mono<OrderEvent> skipped(String binding, CustomRecord<T> cr, Throwable ex){
+        log.error("{} failed to process {} after {} retries, skipped", binding, cr.message(), MAX_RETRIES, ex);
+        return Mono.empty();
+    }
+
+    //OrderCreated: starts the saga's trace when the order is sampled
     protected Message<OrderEvent> toMessage(OrderEvent evt){
+        return this.toMessage(evt, this.sagaTracer.startSaga(evt.orderId(), evt.createdAt()));
+    }
+
+    protected Message<OrderEvent> toMessage(OrderEvent evt, TraceContext trace){
         log.info("order-service produced: {}", evt);
-        return MessageBuilder.withPayload(evt)
+        var builder = MessageBuilder.withPayload(evt)
         .setHeader(KafkaHeaders.KEY, evt.orderId().toString())
         //Dynamic Routing: Uses spring.cloud.stream.sendto.destination header 
         //to route all output to order-events-channel
-        .setHeader(DESTINATION_HEADER, ORDER_EVENTS_CHANNEL)
-        .build();
+        .setHeader(DESTINATION_HEADER, ORDER_EVENTS_CHANNEL);
+        if (trace != null){
+            builder.setHeader(TraceContext.HEADER, trace.toTraceparent());
+        }
+        return builder.build();
     }
 }
 
@@ -53,9 +98,14 @@ Generic Processing: <T extends DomainEvent> allows processing any event type
 
 Standard Pipeline:
 - MessageConverter::toRecord → Extract payload, key, acknowledgment
-- concatMap → Sequential processing (preserves order per partition)
-- doOnSuccess(acknowledge()) → Manual Kafka offset commit
-- toMessage() → Add routing headers
+  (acknowledgment wrapped by OffsetTracker: commits contiguous offsets only)
+- ProcessorMetrics → timer per event subtype/outcome around process()
+- KeyOrderedExecutor → concatMap per lane (preserves order per orderId),
+  lanes hashed by orderId run concurrently (lanes=1 → sequential per partition)
+- retryWhen / onErrorResume → a failing event is retried, then logged and
+  skipped (acknowledged) so that one error does not end the binding
+- doOnSuccess(acknowledge()) → Manual Kafka offset commit (via watermark)
+- toMessage() → Add routing headers (+ traceparent of sampled sagas)
 
 Dynamic Routing: Uses spring.cloud.stream.sendto.destination header to route 
 all output to order-events-channel
@@ -1,22 +1,35 @@
 package jayslabs.kafka.order.messaging.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import jayslabs.kafka.common.events.order.OrderEvent;
-import jayslabs.kafka.order.common.service.OrderEventListener;
+import jayslabs.kafka.common.util.MpscRingBuffer;
+import jayslabs.kafka.common.util.MpscSinks;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
 import jayslabs.kafka.order.messaging.processor.OrderEventListenerImpl;
 import lombok.RequiredArgsConstructor;
-import reactor.core.publisher.Sinks;
 
 @Configuration
 @RequiredArgsConstructor
 public class OrderEventListenerConfig {
 
+    @Value("${saga.order-buffer.capacity:8192}")
+    private int capacity;
+
+    @Value("${saga.order-buffer.high-watermark:0.8}")
+    private double highWatermark;
+
+    /*
+    Bounded multi-producer buffer: emitOrderCreated runs concurrently on request threads.
+    Declared as the impl so the bean also resolves as EventPublisher and MeterBinder.
+    */
     @Bean
-    public OrderEventListener orderEventListener(){
-        var sink = Sinks.many().unicast().<OrderEvent>onBackpressureBuffer();
+    public OrderEventListenerImpl orderEventListener(SagaLatencyTracker latencyTracker){
+        var buffer = new MpscRingBuffer<OrderEvent>(this.capacity);
+        var sink = MpscSinks.of(buffer);
         var flux = sink.asFlux();
-        return new OrderEventListenerImpl(sink, flux);
+        return new OrderEventListenerImpl(sink, flux, buffer, this.highWatermark, latencyTracker);
     }
 }
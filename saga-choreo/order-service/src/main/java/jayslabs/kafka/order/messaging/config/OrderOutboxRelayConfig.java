@@ -0,0 +1,63 @@
+package jayslabs.kafka.order.messaging.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.order.common.service.OrderOutboxService;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import jayslabs.kafka.order.messaging.processor.OrderOutboxRelay;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+
+/*
+Outbox mode: OrderCreated events are relayed from order_outbox by a dedicated
+KafkaSender (its acknowledgement is what allows the outbox row to be deleted).
+The sender reuses the binder's producer-properties (serializers) and brokers.
+*/
+@Configuration
+@ConditionalOnProperty(name = "saga.outbox.enabled", havingValue = "true")
+public class OrderOutboxRelayConfig {
+
+    private static final String BINDER_PRODUCER_PROPERTIES = "spring.cloud.stream.kafka.binder.producer-properties";
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${spring.cloud.stream.bindings.order-events-channel.destination:order-events}")
+    private String topic;
+
+    @Value("${saga.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${saga.outbox.poll-interval:100ms}")
+    private Duration pollInterval;
+
+    @Bean
+    public OrderOutboxRelay orderOutboxRelay(OrderOutboxService outboxService, SagaLatencyTracker latencyTracker,
+                                             SagaTracer sagaTracer, Environment env){
+        Map<String, Object> props = new HashMap<>(Binder.get(env)
+            .bind(BINDER_PRODUCER_PROPERTIES, Bindable.mapOf(String.class, String.class))
+            .orElseGet(Map::of));
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, this.bootstrapServers);
+        //an acknowledged send must survive a broker failover: the outbox row is deleted on it
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+
+        //stopOnError=false: one failed record does not hide the results of the rest of the batch
+        var options = SenderOptions.<String, OrderEvent>create(props).stopOnError(false);
+        return new OrderOutboxRelay(outboxService, KafkaSender.create(options), this.topic, this.batchSize, this.pollInterval,
+            latencyTracker, sagaTracer);
+    }
+}
@@ -3,6 +3,7 @@ package jayslabs.kafka.order.messaging.config;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
@@ -13,6 +14,7 @@ import jayslabs.kafka.common.events.payment.PaymentEvent;
 import jayslabs.kafka.common.events.shipping.ShippingEvent;
 import jayslabs.kafka.common.processor.EventProcessor;
 import jayslabs.kafka.common.publisher.EventPublisher;
+import jayslabs.kafka.common.util.OffsetTracker;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 
@@ -28,19 +30,45 @@ public class ProcessorConfig extends AbstractOrderEventRouterConfig {
     private final EventProcessor<ShippingEvent, OrderEvent> shippingEventProcessor;
     private final EventPublisher<OrderEvent> eventPublisher;
 
+    //number of key-ordered lanes per binding (1 = sequential)
+    @Value("${saga.processing.lanes.inventoryProcessor:1}")
+    private int inventoryLanes;
+
+    @Value("${saga.processing.lanes.paymentProcessor:1}")
+    private int paymentLanes;
+
+    @Value("${saga.processing.lanes.shippingProcessor:1}")
+    private int shippingLanes;
+
+    //commits only the contiguous completed offsets of each partition (lanes complete out of order)
+    @Bean
+    public OffsetTracker inventoryOffsetTracker(){
+        return new OffsetTracker("inventoryProcessor");
+    }
+
+    @Bean
+    public OffsetTracker paymentOffsetTracker(){
+        return new OffsetTracker("paymentProcessor");
+    }
+
+    @Bean
+    public OffsetTracker shippingOffsetTracker(){
+        return new OffsetTracker("shippingProcessor");
+    }
+
     @Bean
     public Function<Flux<Message<InventoryEvent>>, Flux<Message<OrderEvent>>> inventoryProcessor(){
-        return this.processor(this.inventoryEventProcessor);
+        return this.processor("inventoryProcessor", this.inventoryEventProcessor, this.inventoryLanes, this.inventoryOffsetTracker());
     }
 
     @Bean
     public Function<Flux<Message<PaymentEvent>>, Flux<Message<OrderEvent>>> paymentProcessor(){
-        return this.processor(this.paymentEventProcessor);
+        return this.processor("paymentProcessor", this.paymentEventProcessor, this.paymentLanes, this.paymentOffsetTracker());
     }
 
     @Bean
     public Function<Flux<Message<ShippingEvent>>, Flux<Message<OrderEvent>>> shippingProcessor(){
-        return this.processor(this.shippingEventProcessor);
+        return this.processor("shippingProcessor", this.shippingEventProcessor, this.shippingLanes, this.shippingOffsetTracker());
     }
 
     @Bean
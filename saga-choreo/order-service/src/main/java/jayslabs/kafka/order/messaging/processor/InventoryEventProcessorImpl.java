@@ -7,8 +7,8 @@ import org.springframework.stereotype.Service;
 import jayslabs.kafka.common.events.inventory.InventoryEvent;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.processor.InventoryEventProcessor;
-import jayslabs.kafka.order.common.service.OrderFulfillmentService;
-import jayslabs.kafka.order.common.service.inventory.InventoryComponentStatusListener;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import jayslabs.kafka.order.common.service.SagaStateService;
 import jayslabs.kafka.order.messaging.mapper.InventoryEventMapper;
 import jayslabs.kafka.order.messaging.mapper.OrderEventMapper;
 import lombok.RequiredArgsConstructor;
@@ -20,37 +20,37 @@ public class InventoryEventProcessorImpl implements InventoryEventProcessor<Orde
 
     private static final Logger log = LoggerFactory.getLogger(InventoryEventProcessorImpl.class);
 
-    private final OrderFulfillmentService fulfillmentService;
-    private final InventoryComponentStatusListener statusListener;
+    private final SagaStateService sagaState;
+    private final SagaLatencyTracker latencyTracker;
 
     @Override
     public Mono<OrderEvent> handle(InventoryEvent.InventoryDeducted event) {
+        this.latencyTracker.onReply(SagaLatencyTracker.Hop.INVENTORY, event.orderId());
         var dto = InventoryEventMapper.toOrderInventoryDTO(event);
 
-        //line below updates order_inventory table (component tracking) by
-        //invoking onSuccess() in InventoryComponentServiceImpl
-        return this.statusListener.onSuccess(dto) 
-
-        //line below invokes completeOrder() in OrderFulfillmentServiceImpl
-        //which updates purchase_order table (order tracking) to COMPLETED
-        //if inventory is deducted successfully and payment is deducted successfully
-        //else Mono.empty() is returned
-        .then(this.fulfillmentService.completeOrder(event.orderId())) 
-        .map(OrderEventMapper::toOrderCompletedEvent);
+        //line below records the inventory outcome (saga.state.mode):
+        //  tables      order_inventory row, then completeOrder() in OrderFulfillmentServiceImpl
+        //  single-row  one update of the purchase_order row
+        //and emits the order if it is now COMPLETED (inventory and payment
+        //deducted successfully), else Mono.empty() is returned
+        return this.sagaState.onInventory(dto)
+        .map(OrderEventMapper::toOrderCompletedEvent)
+        .doOnNext(evt -> this.latencyTracker.onOrderCompleted(event.orderId()));
     }
     
     @Override
     public Mono<OrderEvent> handle(InventoryEvent.InventoryFailed event) {
+        this.latencyTracker.onReply(SagaLatencyTracker.Hop.INVENTORY, event.orderId());
         var dto = InventoryEventMapper.toOrderInventoryDTO(event);
-        return this.statusListener.onFailure(dto)
-        .then(this.fulfillmentService.cancelOrder(event.orderId()))
-        .map(OrderEventMapper::toOrderCancelledEvent);
+        return this.sagaState.onInventory(dto)
+        .map(OrderEventMapper::toOrderCancelledEvent)
+        .doOnNext(evt -> this.latencyTracker.onOrderCancelled(event.orderId()));
     }
     
     @Override
     public Mono<OrderEvent> handle(InventoryEvent.InventoryRestored event) {
         var dto = InventoryEventMapper.toOrderInventoryDTO(event);
-        return this.statusListener.onRollback(dto)
+        return this.sagaState.onInventory(dto)
         .then(Mono.empty());
     }
 }
@@ -73,7 +73,7 @@ public class InventoryEventProcessorImpl implements InventoryEventProcessor<Orde
 │    ↓ (Spring Cloud Stream Function)                             │
 │  InventoryEventProcessorImpl ← YOU ARE HERE                     │
 │    ├─ Consumes InventoryEvent                                   │
-│    ├─ Updates order_inventory table (component tracking)        │
+│    ├─ Records the inventory outcome (SagaStateService)          │
 │    ├─ Decides: Complete or Cancel order?                        │
 │    └─ Emits OrderEvent (OrderCompleted/OrderCancelled)          │
 └─────────────────────────────────────────────────────────────────┘
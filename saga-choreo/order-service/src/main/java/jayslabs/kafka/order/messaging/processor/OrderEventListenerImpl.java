@@ -1,14 +1,21 @@
 package jayslabs.kafka.order.messaging.processor;
 
-import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.publisher.EventPublisher;
+import jayslabs.kafka.common.util.MpscRingBuffer;
 import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
 import jayslabs.kafka.order.common.service.OrderEventListener;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
 import jayslabs.kafka.order.messaging.mapper.OrderEventMapper;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
@@ -19,32 +26,81 @@ import reactor.core.publisher.Sinks;
 // cannot be auto-injected by Spring. The sink is injected via constructor 
 // from a @Bean factory method in OrderEventListenerConfig.
 @RequiredArgsConstructor
-public class OrderEventListenerImpl implements OrderEventListener, EventPublisher<OrderEvent> {
+public class OrderEventListenerImpl implements OrderEventListener, EventPublisher<OrderEvent>, MeterBinder {
 
     private final static Logger log = LoggerFactory.getLogger(OrderEventListenerImpl.class);
 
     private final Sinks.Many<OrderEvent> sink; //Where you drop events
     private final Flux<OrderEvent> flux; //Stream that reads from sink
+    private final MpscRingBuffer<OrderEvent> buffer; //bounded queue behind the sink
+    private final double highWatermark; //fill ratio above which new orders are turned away
+    private final SagaLatencyTracker latencyTracker; //saga clock starts at OrderCreated.createdAt
+
+    private final AtomicInteger reserved = new AtomicInteger(); //slots taken by orders not yet emitted
+    private final LongAdder dropped = new LongAdder();
     
     //Constructor Injection: OrderEventListenerConfig.orderEventListener() 
-    // injects sink and flux from the bean factory method
+    // injects sink, flux and buffer from the bean factory method
 
 
 
+    /*
+    Concurrent callers (one per request) offer into the lock-free buffer; nothing blocks.
+    Every emit holds a slot reserved before its order was written, so buffered + reserved
+    never exceeds the capacity and the offer cannot overflow: a full buffer turns the
+    order away (tryReserve) instead of dropping the event of a committed order.
+    */
     @Override
     public void emitOrderCreated(PurchaseOrderDTO dto) {
         var event = OrderEventMapper.toOrderCreatedEvent(dto);
-        this.sink.emitNext(
-            event,
-            Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))
-        );
+        var result = this.sink.tryEmitNext(event);
+        this.reserved.decrementAndGet(); //the buffer holds it now
+        if (result.isFailure()){
+            //only once the binding is gone (terminated / cancelled)
+            this.dropped.increment();
+            log.error("OrderCreated not emitted for order {}: {}", dto.orderId(), result);
+            return;
+        }
+        this.latencyTracker.onOrderCreated(event.orderId(), event.createdAt());
+    }
+
+    @Override
+    public boolean tryReserve() {
+        for (;;){
+            var taken = this.reserved.get();
+            if (this.buffer.size() + taken >= this.buffer.capacity()){
+                return false;
+            }
+            if (this.reserved.compareAndSet(taken, taken + 1)){
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        this.reserved.decrementAndGet();
+    }
 
+    @Override
+    public boolean isNearCapacity() {
+        return (double) (this.buffer.size() + this.reserved.get()) / this.buffer.capacity() >= this.highWatermark;
     }
 
     @Override
     public Flux<OrderEvent> publish() {
         return this.flux;
     }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.order.buffer.fill", this.buffer, MpscRingBuffer::fillRatio)
+            .description("Fill ratio of the OrderCreated buffer in front of order-events")
+            .register(registry);
+        FunctionCounter.builder("saga.order.buffer.dropped", this.dropped, LongAdder::sum)
+            .description("OrderCreated events the sink refused after the binding stopped")
+            .register(registry);
+    }
 }
 
 /*
@@ -79,13 +135,13 @@ Application Start
 // Setting up the bean
 OrderEventListenerConfig.orderEventListener()
     ↓
-1. Create Sinks.Many<OrderEvent> 
-   (Think of this as a "bucket" where you can drop events)
+1. Create Sinks.Many<OrderEvent> over a bounded MpscRingBuffer
+   (Think of this as a "bucket" where you can drop events; it has a fixed size)
     ↓
 2. Create Flux<OrderEvent> from sink
    (Think of this as a "stream" that reads from the bucket)
     ↓
-3. Create OrderEventListenerImpl(sink, flux)
+3. Create OrderEventListenerImpl(sink, flux, buffer, ...)
     ↓
 4. Spring registers this as the OrderEventListener bean
     ↓
@@ -0,0 +1,175 @@
+package jayslabs.kafka.order.messaging.processor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.TraceContext;
+import jayslabs.kafka.order.common.dto.OrderOutboxEntryDTO;
+import jayslabs.kafka.order.common.service.OrderOutboxService;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import jayslabs.kafka.order.messaging.mapper.OrderEventMapper;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+/*
+Drains order_outbox to the order-events topic (saga.outbox.enabled=true).
+
+Every poll-interval the relay reads up to batch-size entries (oldest first),
+sends them with a dedicated KafkaSender and deletes only the entries whose
+send was acknowledged. Failed sends stay in the outbox and are retried on the
+next poll, so delivery is at-least-once; consumers already drop duplicates.
+A full batch is followed immediately by the next one until the outbox is drained.
+The saga is started (latency clock, root span) on an entry's first send only:
+a re-send carries the same traceparent.
+
+One relay per outbox table: running several order-service instances would
+relay the same rows more than once (still safe, just redundant).
+*/
+public class OrderOutboxRelay implements SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderOutboxRelay.class);
+
+    private final OrderOutboxService outboxService;
+    private final KafkaSender<String, OrderEvent> sender;
+    private final String topic;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final SagaLatencyTracker latencyTracker;
+    private final SagaTracer sagaTracer;
+
+    private final LongAdder relayed = new LongAdder();
+    private final Map<Long, Optional<TraceContext>> started = new ConcurrentHashMap<>(); //outboxId -> root span, until deleted
+    private volatile Instant oldestPending; //createdAt of the oldest entry seen by the last poll, null when drained
+    private volatile Disposable relay;
+
+    public OrderOutboxRelay(OrderOutboxService outboxService, KafkaSender<String, OrderEvent> sender,
+                            String topic, int batchSize, Duration pollInterval, SagaLatencyTracker latencyTracker, SagaTracer sagaTracer) {
+        this.outboxService = outboxService;
+        this.sender = sender;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.latencyTracker = latencyTracker;
+        this.sagaTracer = sagaTracer;
+    }
+
+    @Override
+    public void start() {
+        this.relay = Flux.interval(this.pollInterval)
+        .onBackpressureDrop() //a slow drain skips ticks instead of queueing them
+        .concatMap(tick -> this.drain()
+            .onErrorResume(ex -> {
+                log.error("Outbox relay failed, retrying on next poll: {}", ex.getMessage());
+                return Mono.empty();
+            }))
+        .subscribe();
+    }
+
+    @Override
+    public void stop() {
+        if (this.relay != null){
+            this.relay.dispose();
+        }
+        this.sender.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.relay != null && !this.relay.isDisposed();
+    }
+
+    //batches back to back while they come back full
+    private Mono<Integer> drain(){
+        return this.relayBatch()
+        .expand(sent -> sent == this.batchSize ? this.relayBatch() : Mono.empty())
+        .reduce(0, Integer::sum);
+    }
+
+    private Mono<Integer> relayBatch(){
+        return this.outboxService.getPending(this.batchSize)
+        .collectList()
+        .flatMap(entries -> {
+            this.oldestPending = entries.isEmpty() ? null : entries.getFirst().createdAt();
+            return entries.isEmpty() ? Mono.just(0) : this.send(entries);
+        });
+    }
+
+    private Mono<Integer> send(List<OrderOutboxEntryDTO> entries){
+        return this.sender.send(Flux.fromIterable(entries).map(this::toSenderRecord))
+        .filter(result -> result.exception() == null)
+        .map(SenderResult::correlationMetadata)
+        .collectList()
+        .flatMap(acked -> this.outboxService.remove(acked)
+            .doOnSuccess(v -> this.started.keySet().removeAll(acked))
+            .thenReturn(acked.size()))
+        .doOnNext(count -> {
+            this.relayed.add(count);
+            log.info("Outbox relay sent {} of {} OrderCreated events", count, entries.size());
+        });
+    }
+
+    private SenderRecord<String, OrderEvent, Long> toSenderRecord(OrderOutboxEntryDTO entry){
+        var event = OrderEventMapper.toOrderCreatedEvent(entry.order());
+        var record = new ProducerRecord<String, OrderEvent>(this.topic, entry.order().orderId().toString(), event);
+        this.start(entry).ifPresent(trace -> record.headers().add(TraceContext.HEADER, trace.toTraceparent()));
+        return SenderRecord.create(record, entry.outboxId());
+    }
+
+    //first send of the entry only; the saga started when the row was written
+    private Optional<TraceContext> start(OrderOutboxEntryDTO entry){
+        return this.started.computeIfAbsent(entry.outboxId(), id -> {
+            this.latencyTracker.onOrderCreated(entry.order().orderId(), entry.createdAt());
+            return Optional.ofNullable(this.sagaTracer.startSaga(entry.order().orderId(), entry.createdAt()));
+        });
+    }
+
+    //seconds between the oldest unsent OrderCreated being written and now
+    public double lagSeconds(){
+        var oldest = this.oldestPending;
+        return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis() / 1000.0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.outbox.lag", this, OrderOutboxRelay::lagSeconds)
+            .description("Age of the oldest outbox entry not yet relayed to kafka")
+            .baseUnit("seconds")
+            .register(registry);
+        FunctionCounter.builder("saga.outbox.relayed", this.relayed, LongAdder::sum)
+            .description("Outbox entries acknowledged by kafka and removed")
+            .register(registry);
+    }
+}
+
+/*
+placeOrder() (outbox mode)                    OrderOutboxRelay (every poll-interval)
+┌───────────────── tx ─────────────────┐      
+│ INSERT purchase_order (PENDING)      │      SELECT * FROM order_outbox ORDER BY id LIMIT n
+│ INSERT order_outbox (orderId, now)   │  ──► + purchase_order rows → OrderCreated events
+└──────────────────────────────────────┘          ↓ KafkaSender.send (acks=all)
+                                              SenderResult ok → DELETE FROM order_outbox WHERE id IN (...)
+                                              SenderResult failed → row stays, resent next poll (same traceparent, no new root span)
+
+crash after commit, before send → row still in outbox → relayed after restart (nothing lost)
+crash after send, before delete → relayed again → duplicate dropped by consumers
+*/
@@ -5,8 +5,8 @@ import org.springframework.stereotype.Service;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.payment.PaymentEvent;
 import jayslabs.kafka.common.processor.PaymentEventProcessor;
-import jayslabs.kafka.order.common.service.OrderFulfillmentService;
-import jayslabs.kafka.order.common.service.payment.PaymentComponentStatusListener;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
+import jayslabs.kafka.order.common.service.SagaStateService;
 import jayslabs.kafka.order.messaging.mapper.OrderEventMapper;
 import jayslabs.kafka.order.messaging.mapper.PaymentEventMapper;
 import lombok.RequiredArgsConstructor;
@@ -16,29 +16,31 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class PaymentEventProcessorImpl implements PaymentEventProcessor<OrderEvent> {
 
-    private final OrderFulfillmentService fulfillmentService;
-    private final PaymentComponentStatusListener statusListener;
+    private final SagaStateService sagaState;
+    private final SagaLatencyTracker latencyTracker;
 
     @Override
     public Mono<OrderEvent> handle(PaymentEvent.PaymentDeducted event) {
+        this.latencyTracker.onReply(SagaLatencyTracker.Hop.PAYMENT, event.orderId());
         var dto = PaymentEventMapper.toOrderPaymentDTO(event);
-        return this.statusListener.onSuccess(dto)
-        .then(this.fulfillmentService.completeOrder(event.orderId()))
-        .map(OrderEventMapper::toOrderCompletedEvent);
+        return this.sagaState.onPayment(dto)
+        .map(OrderEventMapper::toOrderCompletedEvent)
+        .doOnNext(evt -> this.latencyTracker.onOrderCompleted(event.orderId()));
     }
 
     @Override
     public Mono<OrderEvent> handle(PaymentEvent.PaymentFailed event) {
+        this.latencyTracker.onReply(SagaLatencyTracker.Hop.PAYMENT, event.orderId());
         var dto = PaymentEventMapper.toOrderPaymentDTO(event);
-        return this.statusListener.onFailure(dto)
-        .then(this.fulfillmentService.cancelOrder(event.orderId()))
-        .map(OrderEventMapper::toOrderCancelledEvent);
+        return this.sagaState.onPayment(dto)
+        .map(OrderEventMapper::toOrderCancelledEvent)
+        .doOnNext(evt -> this.latencyTracker.onOrderCancelled(event.orderId()));
     }
 
     @Override
     public Mono<OrderEvent> handle(PaymentEvent.PaymentRefunded event) {
         var dto = PaymentEventMapper.toOrderPaymentDTO(event);
-        return this.statusListener.onRollback(dto)
+        return this.sagaState.onPayment(dto)
         .then(Mono.empty());
     }
 }
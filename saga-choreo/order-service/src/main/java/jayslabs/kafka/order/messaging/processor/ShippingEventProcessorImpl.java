@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.shipping.ShippingEvent;
 import jayslabs.kafka.common.processor.ShippingEventProcessor;
+import jayslabs.kafka.order.common.service.SagaLatencyTracker;
 import jayslabs.kafka.order.common.service.shipping.ShippingComponentStatusListener;
 import jayslabs.kafka.order.messaging.mapper.ShippingEventMapper;
 import lombok.RequiredArgsConstructor;
@@ -15,11 +16,13 @@ import reactor.core.publisher.Mono;
 public class ShippingEventProcessorImpl implements ShippingEventProcessor<OrderEvent> {
 
     private final ShippingComponentStatusListener statusListener;
+    private final SagaLatencyTracker latencyTracker;
 
     @Override
     public Mono<OrderEvent> handle(ShippingEvent.ShippingScheduled event) {
         var dto = ShippingEventMapper.toOrderShipmentDTO(event);
         return this.statusListener.onSuccess(dto)
+        .doOnSuccess(v -> this.latencyTracker.onShippingScheduled(event.orderId()))
         .then(Mono.empty());
     }
 }
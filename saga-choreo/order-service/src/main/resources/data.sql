@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS order_outbox;
 DROP TABLE IF EXISTS order_payment;
 DROP TABLE IF EXISTS order_inventory;
 DROP TABLE IF EXISTS purchase_order;
@@ -11,7 +12,11 @@ CREATE TABLE purchase_order (
     amount int,
     status VARCHAR(50),
     delivery_date TIMESTAMP,
-    version int
+    version int,
+    -- saga.state.mode=single-row: component outcome bits and ids (SingleRowSagaStateServiceImpl)
+    components int default 0,
+    payment_id uuid,
+    inventory_id uuid
 );
 
 CREATE TABLE order_payment (
@@ -32,4 +37,11 @@ CREATE TABLE order_inventory (
     status VARCHAR(50),
     message VARCHAR(50),
     foreign key (order_id) references purchase_order(order_id)
+);
+
+CREATE TABLE order_outbox (
+    id bigint AUTO_INCREMENT primary key,
+    order_id uuid,
+    created_at TIMESTAMP,
+    foreign key (order_id) references purchase_order(order_id)
 );
\ No newline at end of file
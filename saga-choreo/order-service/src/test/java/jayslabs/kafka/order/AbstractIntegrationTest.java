@@ -139,6 +139,14 @@ public abstract class AbstractIntegrationTest {
            .verifyComplete();
     }
   
+    //every event received within window, to count events rather than expect them one by one
+    protected List<OrderEvent> collectEvents(Duration window){
+        return respFlux
+           .take(window)
+           .collectList()
+           .block();
+    }
+
     protected void expectNoEvent(){
         respFlux //start listening for response (InventoryEvent)
            .next() //wait for Mono<InventoryEvent> to be emitted
@@ -0,0 +1,40 @@
+package jayslabs.kafka.order;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.order.OrderStatus;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.order.application.service.InMemorySagaStateServiceImpl;
+
+//the single-row workflows again, decided by the in-memory state table
+@TestPropertySource(properties = "saga.state.mode=in-memory")
+public class InMemorySagaStateTest extends SingleRowSagaStateTest {
+
+    @Autowired
+    private InMemorySagaStateServiceImpl sagaState;
+
+    @Test
+    public void restartRebuildsPendingOrdersTest() throws InterruptedException{
+
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+        verifyOrderCreatedEvent(ordId, 6);
+
+        emitEvent(PaymentEvent.PaymentDeducted.builder().orderId(ordId).build());
+        Thread.sleep(1_000);
+
+        // a restart empties the table: PENDING orders and their persisted bits are loaded again
+        this.sagaState.stop();
+        this.sagaState.start();
+
+        emitEvent(InventoryEvent.InventoryDeducted.builder().orderId(ordId).build());
+        verifyOrderCompletedEvent(ordId);
+
+        Thread.sleep(1_500);
+
+        verifyOrderDetails(ordId, odto -> Assertions.assertEquals(OrderStatus.COMPLETED, odto.order().status()));
+    }
+}
@@ -0,0 +1,57 @@
+package jayslabs.kafka.order;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import jayslabs.kafka.order.common.dto.PurchaseOrderDTO;
+
+/*
+Full OrderCreated buffer: orderEventProducer is not bound, so nothing drains the 4 slots.
+The high-watermark pre-check is disabled (> 1), the slot reservation alone turns the
+5th order away with 503 + Retry-After, before its row is written.
+*/
+@TestPropertySource(properties = {
+    "spring.cloud.function.definition=inventoryProcessor;paymentProcessor;shippingProcessor;orderEvtConsumer",
+    "saga.order-buffer.capacity=4",
+    "saga.order-buffer.high-watermark=2.0",
+    "saga.order-buffer.retry-after=2s"
+})
+public class OrderBufferTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    public void fullBufferRejectsOrderTest(){
+        var placed = new ArrayList<UUID>();
+        for (int i = 0; i < 4; i++){
+            placed.add(initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3)));
+        }
+
+        this.client.post()
+            .uri("/order")
+            .bodyValue(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3))
+            .exchange()
+            .expectStatus().isEqualTo(503)
+            .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        //only the accepted orders were written
+        this.client.get()
+            .uri("/order/all")
+            .exchange()
+            .expectStatus().is2xxSuccessful()
+            .expectBody(new ParameterizedTypeReference<List<PurchaseOrderDTO>>() {})
+            .value(orders -> Assertions.assertEquals(new HashSet<>(placed),
+                new HashSet<>(orders.stream().map(PurchaseOrderDTO::orderId).toList())));
+    }
+}
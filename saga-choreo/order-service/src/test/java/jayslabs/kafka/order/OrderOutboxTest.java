@@ -0,0 +1,124 @@
+package jayslabs.kafka.order;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.order.OrderEvent;
+import jayslabs.kafka.common.tracing.InMemorySpanExporter;
+import jayslabs.kafka.order.application.repository.OrderOutboxRepository;
+import jayslabs.kafka.order.application.service.OrderOutboxServiceImpl;
+import jayslabs.kafka.order.common.dto.OrderOutboxEntryDTO;
+import jayslabs.kafka.order.common.service.OrderOutboxService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/*
+Outbox mode: OrderCreated reaches order-events through OrderOutboxRelay, the outbox
+row is deleted once kafka acknowledged the send and kept (then re-sent) otherwise.
+*/
+@TestPropertySource(properties = {
+    "saga.outbox.enabled=true",
+    "saga.outbox.poll-interval=50ms",
+    "saga.tracing.sampling-probability=1.0"
+})
+public class OrderOutboxTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private OrderOutboxRepository outboxRepo;
+
+    @Autowired
+    private FlakyOutboxService outboxService;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Test
+    public void relayDeletesOnAckTest(){
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+        verifyOrderCreatedEvent(ordId, 6);
+        expectOutboxDrained();
+        Assertions.assertEquals(1, this.spanExporter.spans(ordId).size());
+    }
+
+    @Test
+    public void failedDeleteIsResentTest(){
+        //the send is acknowledged but the row survives: the next poll sends it again
+        this.outboxService.failNextRemove();
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+
+        //the re-send follows within a poll: both are collected over one window
+        var created = collectEvents(Duration.ofSeconds(3)).stream()
+            .filter(OrderEvent.OrderCreated.class::isInstance)
+            .map(OrderEvent.OrderCreated.class::cast)
+            .filter(evt -> evt.orderId().equals(ordId))
+            .toList();
+        Assertions.assertEquals(2, created.size(), "OrderCreated events: " + created);
+        created.forEach(evt -> Assertions.assertEquals(6, evt.totalAmount()));
+        expectOutboxDrained();
+
+        //the re-send did not start the saga again
+        Assertions.assertEquals(1, this.spanExporter.spans(ordId).size());
+    }
+
+    private void expectOutboxDrained(){
+        this.outboxRepo.count()
+            .filter(count -> count == 0)
+            .repeatWhenEmpty(polls -> polls.delayElements(Duration.ofMillis(50)))
+            .timeout(Duration.ofSeconds(5))
+            .as(StepVerifier::create)
+            .expectNext(0L)
+            .verifyComplete();
+    }
+
+    //fails the next remove() once, as a crash between send and delete would
+    static class FlakyOutboxService implements OrderOutboxService {
+
+        private final OrderOutboxService delegate;
+        private final AtomicBoolean failNext = new AtomicBoolean();
+
+        FlakyOutboxService(OrderOutboxService delegate) {
+            this.delegate = delegate;
+        }
+
+        void failNextRemove(){
+            this.failNext.set(true);
+        }
+
+        @Override
+        public Flux<OrderOutboxEntryDTO> getPending(int limit) {
+            return this.delegate.getPending(limit);
+        }
+
+        @Override
+        public Mono<Void> remove(Collection<Long> outboxIds) {
+            return this.failNext.compareAndSet(true, false)
+                ? Mono.error(new IllegalStateException("outbox delete failed"))
+                : this.delegate.remove(outboxIds);
+        }
+    }
+
+    @TestConfiguration
+    static class OutboxTestConfig {
+
+        @Bean
+        @Primary
+        public FlakyOutboxService flakyOutboxService(OrderOutboxServiceImpl delegate){
+            return new FlakyOutboxService(delegate);
+        }
+
+        @Bean
+        public InMemorySpanExporter spanExporter(){
+            return new InMemorySpanExporter();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package jayslabs.kafka.order;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Bean;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.tracing.InMemorySpanExporter;
+import jayslabs.kafka.common.tracing.SpanData;
+import jayslabs.kafka.common.tracing.TraceContext;
+
+@TestPropertySource(properties = "saga.tracing.sampling-probability=1.0")
+public class SagaTracingTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private StreamBridge streamBridge;
+
+    @Test
+    public void traceFollowsOrderThroughReplies(){
+
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+        verifyOrderCreatedEvent(ordId, 6);
+
+        // root span: trace id is the orderId
+        var root = this.spanExporter.spans(ordId).getFirst();
+        Assertions.assertTrue(root.isRoot());
+        Assertions.assertEquals("OrderCreated", root.name());
+        Assertions.assertEquals(ordId.toString().replace("-", ""), root.traceId());
+
+        // replies carry the traceparent as payment / inventory service would send it
+        var traceparent = root.context().toTraceparent();
+        this.streamBridge.send("payment-events", MessageBuilder.withPayload(PaymentEvent.PaymentDeducted.builder().orderId(ordId).build())
+            .setHeader(TraceContext.HEADER, traceparent).build());
+        this.streamBridge.send("inventory-events", MessageBuilder.withPayload(InventoryEvent.InventoryDeducted.builder().orderId(ordId).build())
+            .setHeader(TraceContext.HEADER, traceparent).build());
+        verifyOrderCompletedEvent(ordId);
+
+        // one hop span per consuming binding, children of the root span
+        var spans = this.spanExporter.spans(ordId);
+        for (var binding : new String[]{"paymentProcessor", "inventoryProcessor"}){
+            var hop = spans.stream().filter(span -> binding.equals(span.name())).findFirst().orElseThrow();
+            Assertions.assertEquals(root.traceId(), hop.traceId());
+            Assertions.assertEquals(root.context().spanId(), hop.parentSpanId());
+        }
+        Assertions.assertEquals(3, spans.size(), () -> spans.stream().map(SpanData::toString).toList().toString());
+    }
+
+    @Test
+    public void untracedRepliesAreNotSpanned(){
+
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+        verifyOrderCreatedEvent(ordId, 6);
+
+        emitEvent(PaymentEvent.PaymentDeducted.builder().orderId(ordId).build());
+        emitEvent(InventoryEvent.InventoryDeducted.builder().orderId(ordId).build());
+        verifyOrderCompletedEvent(ordId);
+
+        Assertions.assertEquals(1, this.spanExporter.spans(ordId).size());
+    }
+
+    @TestConfiguration
+    static class TracingTestConfig {
+
+        @Bean
+        public InMemorySpanExporter spanExporter(){
+            return new InMemorySpanExporter();
+        }
+    }
+}
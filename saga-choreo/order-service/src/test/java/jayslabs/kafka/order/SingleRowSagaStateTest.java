@@ -0,0 +1,44 @@
+package jayslabs.kafka.order;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import jayslabs.kafka.common.events.inventory.InventoryEvent;
+import jayslabs.kafka.common.events.inventory.InventoryStatus;
+import jayslabs.kafka.common.events.order.OrderStatus;
+import jayslabs.kafka.common.events.payment.PaymentEvent;
+import jayslabs.kafka.common.events.payment.PaymentStatus;
+
+//the OrderServiceTest workflows again, with the saga state in the purchase_order row
+@TestPropertySource(properties = "saga.state.mode=single-row")
+public class SingleRowSagaStateTest extends OrderServiceTest {
+
+    @Test
+    public void duplicateEventsDecideOnceTest() throws InterruptedException{
+
+        var ordId = initiateOrder(TestDataUtil.toOrderCreateRequest(1, 1, 2, 3));
+        verifyOrderCreatedEvent(ordId, 6);
+
+        // redelivered payment reply, then the inventory reply twice
+        emitEvent(PaymentEvent.PaymentDeducted.builder().orderId(ordId).build());
+        emitEvent(PaymentEvent.PaymentDeducted.builder().orderId(ordId).build());
+        emitEvent(InventoryEvent.InventoryDeducted.builder().orderId(ordId).build());
+        emitEvent(InventoryEvent.InventoryDeducted.builder().orderId(ordId).build());
+
+        // exactly one OrderCompleted
+        verifyOrderCompletedEvent(ordId);
+
+        // a late failure does not cancel a completed order
+        emitEvent(PaymentEvent.PaymentFailed.builder().orderId(ordId).build());
+        expectNoEvent();
+
+        Thread.sleep(1_500);
+
+        verifyOrderDetails(ordId, odto -> {
+            Assertions.assertEquals(OrderStatus.COMPLETED, odto.order().status());
+            Assertions.assertEquals(PaymentStatus.DEDUCTED, odto.payment().status());
+            Assertions.assertEquals(InventoryStatus.DEDUCTED, odto.inventory().status());
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package jayslabs.kafka.order.application.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jayslabs.kafka.order.common.service.SagaLatencyTracker.Hop;
+
+public class SagaLatencyTrackerImplTest {
+
+    private SagaLatencyTrackerImpl tracker;
+
+    @BeforeEach
+    public void setUp(){
+        this.tracker = tracker(Duration.ofMinutes(10), 100);
+    }
+
+    @Test
+    public void completedSagaTest(){
+        var orderId = UUID.randomUUID();
+        this.tracker.onOrderCreated(orderId, Instant.now().minusMillis(200));
+        this.tracker.onReply(Hop.PAYMENT, orderId);
+        this.tracker.onReply(Hop.INVENTORY, orderId);
+        this.tracker.onOrderCompleted(orderId);
+        this.tracker.onShippingScheduled(orderId);
+        this.tracker.rotate();
+
+        var snapshot = this.tracker.snapshot();
+        for (var name : new String[]{"hop.payment", "hop.inventory", "saga.completed", "saga.shipped", "hop.shipping"}){
+            Assertions.assertEquals(1, snapshot.get(name).count(), name);
+        }
+        Assertions.assertEquals(0, snapshot.get("saga.cancelled").count());
+
+        //measured from createdAt, in milliseconds
+        Assertions.assertTrue(snapshot.get("hop.payment").p50() >= 199, "p50: " + snapshot.get("hop.payment").p50());
+        Assertions.assertTrue(snapshot.get("saga.shipped").max() >= snapshot.get("saga.completed").max());
+        Assertions.assertTrue(snapshot.get("hop.shipping").max() < 199);
+    }
+
+    @Test
+    public void firstReplyOnlyTest(){
+        var orderId = UUID.randomUUID();
+        this.tracker.onOrderCreated(orderId, Instant.now());
+
+        //redeliveries of the same reply are not recorded again
+        IntStream.range(0, 3).forEach(i -> this.tracker.onReply(Hop.PAYMENT, orderId));
+        this.tracker.onOrderCompleted(orderId);
+        this.tracker.onOrderCompleted(orderId);
+        this.tracker.rotate();
+
+        var snapshot = this.tracker.snapshot();
+        Assertions.assertEquals(1, snapshot.get("hop.payment").count());
+        Assertions.assertEquals(0, snapshot.get("hop.inventory").count());
+        Assertions.assertEquals(1, snapshot.get("saga.completed").count());
+    }
+
+    @Test
+    public void cancelledSagaTest(){
+        var orderId = UUID.randomUUID();
+        this.tracker.onOrderCreated(orderId, Instant.now());
+        this.tracker.onOrderCancelled(orderId);
+
+        //no longer in flight: late events are ignored
+        this.tracker.onReply(Hop.INVENTORY, orderId);
+        this.tracker.onShippingScheduled(orderId);
+        this.tracker.rotate();
+
+        var snapshot = this.tracker.snapshot();
+        Assertions.assertEquals(1, snapshot.get("saga.cancelled").count());
+        Assertions.assertEquals(0, snapshot.get("hop.inventory").count());
+        Assertions.assertEquals(0, snapshot.get("saga.shipped").count());
+    }
+
+    @Test
+    public void rotationTest(){
+        var orderId = UUID.randomUUID();
+        this.tracker.onOrderCreated(orderId, Instant.now());
+        this.tracker.onReply(Hop.PAYMENT, orderId);
+
+        //the current interval is not reported until it is rotated out
+        Assertions.assertEquals(0, this.tracker.snapshot().get("hop.payment").count());
+        this.tracker.rotate();
+        var snapshot = this.tracker.snapshot().get("hop.payment");
+        Assertions.assertEquals(1, snapshot.count());
+        Assertions.assertFalse(snapshot.intervalEnd().isBefore(snapshot.intervalStart()));
+
+        //an interval without replies reports nothing, not the previous values
+        this.tracker.rotate();
+        Assertions.assertEquals(0, this.tracker.snapshot().get("hop.payment").count());
+    }
+
+    @Test
+    public void maxTrackedTest(){
+        var tracker = tracker(Duration.ofMinutes(10), 2);
+        var orderIds = IntStream.range(0, 3).mapToObj(i -> UUID.randomUUID()).toList();
+        orderIds.forEach(orderId -> tracker.onOrderCreated(orderId, Instant.now()));
+
+        //the third saga is not followed
+        orderIds.forEach(orderId -> tracker.onReply(Hop.PAYMENT, orderId));
+        tracker.rotate();
+        Assertions.assertEquals(2, tracker.snapshot().get("hop.payment").count());
+
+        //a finished saga frees its slot
+        tracker.onOrderCancelled(orderIds.get(0));
+        var next = UUID.randomUUID();
+        tracker.onOrderCreated(next, Instant.now());
+        tracker.onReply(Hop.PAYMENT, next);
+        tracker.rotate();
+        Assertions.assertEquals(1, tracker.snapshot().get("hop.payment").count());
+    }
+
+    @Test
+    public void maxAgeSweepTest(){
+        var tracker = tracker(Duration.ofSeconds(1), 100);
+        var stale = UUID.randomUUID();
+        var fresh = UUID.randomUUID();
+        tracker.onOrderCreated(stale, Instant.now().minusSeconds(5));
+        tracker.onOrderCreated(fresh, Instant.now());
+
+        //the rotation sweeps sagas older than max-age, their replies are lost
+        tracker.rotate();
+        tracker.onReply(Hop.PAYMENT, stale);
+        tracker.onReply(Hop.PAYMENT, fresh);
+        tracker.rotate();
+        Assertions.assertEquals(1, tracker.snapshot().get("hop.payment").count());
+    }
+
+    private static SagaLatencyTrackerImpl tracker(Duration maxAge, int maxTracked){
+        var tracker = new SagaLatencyTrackerImpl();
+        ReflectionTestUtils.setField(tracker, "interval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(tracker, "maxAge", maxAge);
+        ReflectionTestUtils.setField(tracker, "maxTracked", maxTracked);
+        return tracker;
+    }
+}
@@ -12,9 +12,7 @@ import reactor.core.publisher.Mono;
 @Repository
 public interface ShipmentRepository extends ReactiveCrudRepository<Shipment, UUID> {
 
-    Mono<Boolean> existsByOrderId(UUID orderId);
     Mono<Shipment> findByOrderIdAndStatus(UUID orderId, ShippingStatus status);
     
     Mono<Void> deleteByOrderId(UUID orderId);
-
 }
@@ -2,6 +2,8 @@ package jayslabs.kafka.shipping.application.service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -9,8 +11,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.shipping.ShippingStatus;
 import jayslabs.kafka.common.util.DuplicateEventValidator;
+import jayslabs.kafka.common.util.ProcessedEventCache;
+import jayslabs.kafka.common.util.ProcessedEventTable;
 import jayslabs.kafka.shipping.application.entity.Shipment;
 import jayslabs.kafka.shipping.application.mapper.EntityDTOMapper;
 import jayslabs.kafka.shipping.application.repository.ShipmentRepository;
@@ -18,6 +23,7 @@ import jayslabs.kafka.shipping.common.dto.CreateShippingRequest;
 import jayslabs.kafka.shipping.common.dto.ShipmentDTO;
 import jayslabs.kafka.shipping.common.service.ShippingService;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -27,14 +33,18 @@ public class ShippingServiceImpl implements ShippingService {
     private static final Logger log = LoggerFactory.getLogger(ShippingServiceImpl.class);
 
     private final ShipmentRepository shipmentRepo;
+    private final ProcessedEventCache processedEvtCache;
+    private final ProcessedEventTable processedEvents;
 
     @Override
     @Transactional
     public Mono<Void> createShipmentRecord(CreateShippingRequest reqDTO) {
-        return DuplicateEventValidator.validate(
-            this.shipmentRepo.existsByOrderId(reqDTO.orderId()),
+        return DuplicateEventValidator.claim(
+            reqDTO.orderId(), this.processedEvtCache,
+            this.processedEvents.claim(reqDTO.orderId(), OrderEvent.OrderCreated.class),
             Mono.defer(() -> this.createShipmentRec(reqDTO))
-        );
+        )
+        .transform(DuplicateEventValidator.mapDuplicateKey());
     }
 
     private Mono<Void> createShipmentRec(CreateShippingRequest reqDTO) {
@@ -44,6 +54,34 @@ public class ShippingServiceImpl implements ShippingService {
         .then();
     }
 
+    //one duplicate check for the whole batch, then the new shipments are saved and claimed in a single transaction
+    @Override
+    @Transactional
+    public Mono<Void> createShipmentRecords(List<CreateShippingRequest> requests) {
+        var orderIds = requests.stream().map(CreateShippingRequest::orderId).toList();
+        return this.processedEvents.processed(orderIds, OrderEvent.OrderCreated.class)
+        .flatMapMany(processed -> this.newShipments(requests, processed))
+        .as(this.shipmentRepo::saveAll)
+        .map(Shipment::getOrderId)
+        .collectList()
+        .flatMap(created -> this.processedEvents.claimAll(created, OrderEvent.OrderCreated.class)
+            .then(this.processedEvtCache.markProcessed(created))
+            .thenReturn(created.size()))
+        .doOnNext(count -> log.info("Batch created {} shipment records for {} orders", count, requests.size()))
+        .then();
+    }
+
+    private Flux<Shipment> newShipments(List<CreateShippingRequest> requests, Set<UUID> processed) {
+        return Flux.fromIterable(requests)
+        //add() is false for already processed orders and for repeats within the batch
+        .filter(reqDTO -> processed.add(reqDTO.orderId()))
+        .map(reqDTO -> {
+            var shipment = EntityDTOMapper.toShipment(reqDTO);
+            shipment.setStatus(ShippingStatus.PENDING);
+            return shipment;
+        });
+    }
+
     @Override
     @Transactional
     public Mono<ShipmentDTO> scheduleShipment(UUID orderId) {
@@ -59,9 +97,16 @@ public class ShippingServiceImpl implements ShippingService {
         .map(EntityDTOMapper::toShipmentDTO);
     }
 
+    @Override
+    public Mono<ShipmentDTO> getScheduledShipment(UUID orderId) {
+        return this.shipmentRepo.findByOrderIdAndStatus(orderId, ShippingStatus.SCHEDULED)
+        .map(EntityDTOMapper::toShipmentDTO);
+    }
+
     @Override
     @Transactional
     public Mono<Void> cancelShipment(UUID orderId) {
+        //the OrderCreated claim stays: a redelivery after the cancel does not bring the shipment back
         return this.shipmentRepo.deleteByOrderId(orderId)
         .doOnNext(v -> log.info("Shipment cancelled for orderId: {}", orderId))
         .then(Mono.empty());
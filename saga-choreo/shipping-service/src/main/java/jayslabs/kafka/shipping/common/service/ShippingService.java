@@ -1,15 +1,26 @@
 package jayslabs.kafka.shipping.common.service;
 
+import java.util.List;
 import java.util.UUID;
 
+import jayslabs.kafka.common.exception.EventAlreadyProcessedException;
 import jayslabs.kafka.shipping.common.dto.CreateShippingRequest;
 import jayslabs.kafka.shipping.common.dto.ShipmentDTO;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ShippingService {
 
     Mono<Void> createShipmentRecord(CreateShippingRequest request);
 
+    //batch variant of createShipmentRecord(); requests for already processed orders are skipped
+    default Mono<Void> createShipmentRecords(List<CreateShippingRequest> requests){
+        return Flux.fromIterable(requests)
+            .concatMap(req -> this.createShipmentRecord(req)
+                .onErrorResume(EventAlreadyProcessedException.class, e -> Mono.empty()))
+            .then();
+    }
+
 
     //orderId is used instead of shipmentId because cancel is being invoked from an 
     //OrderEvent.OrderCancelled event and that contains an orderId, not a shipmentId.
@@ -17,4 +28,7 @@ public interface ShippingService {
 
     Mono<ShipmentDTO> scheduleShipment(UUID orderId);
 
+    //the order's SCHEDULED shipment, exactly-once mode replays ShippingScheduled from it
+    Mono<ShipmentDTO> getScheduledShipment(UUID orderId);
+
 }
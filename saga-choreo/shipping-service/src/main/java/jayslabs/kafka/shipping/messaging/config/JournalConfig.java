@@ -0,0 +1,20 @@
+package jayslabs.kafka.shipping.messaging.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import jayslabs.kafka.common.journal.EventJournal;
+
+/*
+Journal of the consumed events (saga.journal.*), replayable with JournalReplayer.
+Off by default; closed (segments forced to disk) with the context.
+*/
+@Configuration
+public class JournalConfig {
+
+    @Bean
+    public EventJournal eventJournal(Environment env){
+        return EventJournal.fromEnvironment(env);
+    }
+}
@@ -1,20 +1,34 @@
 package jayslabs.kafka.shipping.messaging.config;
 
 //import java.util.function.Consumer;
+import java.time.Duration;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jayslabs.kafka.common.events.order.OrderEvent;
 import jayslabs.kafka.common.events.shipping.ShippingEvent;
+import jayslabs.kafka.common.journal.EventJournal;
+import jayslabs.kafka.common.processor.EventProcessor;
 import jayslabs.kafka.common.processor.OrderEventProcessor;
+import jayslabs.kafka.common.tracing.SagaTracer;
+import jayslabs.kafka.common.tracing.TraceContext;
+import jayslabs.kafka.common.util.CustomRecord;
+import jayslabs.kafka.common.util.ExactlyOnceProcessor;
+import jayslabs.kafka.common.util.KeyOrderedExecutor;
 import jayslabs.kafka.common.util.MessageConverter;
+import jayslabs.kafka.common.util.OffsetTracker;
+import jayslabs.kafka.common.util.ProcessorMetrics;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 
@@ -24,23 +38,75 @@ public class OrderEventProcessorConfig {
 
     private static final Logger log = LoggerFactory.getLogger(OrderEventProcessorConfig.class);
     private final OrderEventProcessor<ShippingEvent> evtProcessor;
+    private final MeterRegistry meterRegistry;
+    private final SagaTracer sagaTracer;
+    private final EventJournal eventJournal;
+
+    //number of key-ordered lanes for the processor binding (1 = sequential)
+    @Value("${saga.processing.lanes.processor:1}")
+    private int lanes;
+
+    //micro-batch mode: records buffered by size/time and handed to processBatch() (1 = off)
+    @Value("${saga.processing.batch.processor.size:1}")
+    private int batchSize;
+
+    @Value("${saga.processing.batch.processor.max-wait:20ms}")
+    private Duration batchMaxWait;
 
     // @Bean
     // public Consumer<Flux<Message<OrderEvent>>> consumer(){
     //     return flux -> flux.map(MessageConverter::toRecord)
     //     .doOnNext(cr -> log.info("shipping processed: {}", cr.message()))
-    //     .concatMap(cr -> this.evtProcessor.process(cr.message())
+    //     .concatMap(cr -> processor.process(cr.message())
     //     .doOnSuccess(evt -> cr.acknowledgement().acknowledge())
     //     ).subscribe();
     // }
 
+    //commits only the contiguous completed offsets of each partition (lanes complete out of order)
+    @Bean
+    public OffsetTracker processorOffsetTracker(){
+        return new OffsetTracker("processor");
+    }
+
     @Bean
     public Function<Flux<Message<OrderEvent>>, Flux<Message<ShippingEvent>>> processor(){
-        return flux -> flux.map(MessageConverter::toRecord)
-        .doOnNext(cr -> log.info("shipping service received: {}", cr.message()))
-        .concatMap(cr -> this.evtProcessor.process(cr.message())
-        .doOnSuccess(evt -> cr.acknowledgement().acknowledge())
-        ).map(this::toMessage);
+        var tracker = this.processorOffsetTracker();
+        var hop = this.sagaTracer.hop("processor"); //trace context from toRecord to toMessage, by orderId
+        return flux -> flux.doOnNext(this.eventJournal::record) //no-op unless saga.journal.enabled
+        .map(msg -> MessageConverter.toRecord(msg, tracker, hop))
+        .transform(this.pipeline())
+        .map(evt -> this.toMessage(evt, hop.send(evt.orderId())));
+    }
+
+    /*
+    Exactly-once mode: the same pipeline driven by a kafka transaction per polled batch
+    (outputs + input offsets committed together). The processor function must not be
+    bound at the same time, see application-exactly-once.yaml.
+    */
+    @Bean
+    @ConditionalOnProperty(name = "saga.processing.exactly-once.enabled", havingValue = "true")
+    public ExactlyOnceProcessor<OrderEvent, ShippingEvent> exactlyOnceProcessor(Environment env){
+        return ExactlyOnceProcessor.fromBinding(env, "processor", this.pipeline());
+    }
+
+    //latency/outcome timers per event subtype around evtProcessor (saga.processor.process)
+    private Function<Flux<CustomRecord<OrderEvent>>, Flux<ShippingEvent>> pipeline(){
+        var processor = ProcessorMetrics.instrument("processor", this.evtProcessor, this.meterRegistry);
+        return flux -> flux.doOnNext(cr -> log.info("shipping service received: {}", cr.message()))
+            .transform(this.batchSize > 1 ? this.batched(processor) : this.perRecord(processor));
+    }
+
+    //records of the same orderId stay in order; other orders run on parallel lanes
+    private Function<Flux<CustomRecord<OrderEvent>>, Flux<ShippingEvent>> perRecord(EventProcessor<OrderEvent, ShippingEvent> processor){
+        return KeyOrderedExecutor.execute(this.lanes, cr -> processor.process(cr.message())
+            .doOnSuccess(evt -> cr.acknowledgement().acknowledge()));
+    }
+
+    //same lanes, but each lane is drained in micro-batches acknowledged once per batch
+    private Function<Flux<CustomRecord<OrderEvent>>, Flux<ShippingEvent>> batched(EventProcessor<OrderEvent, ShippingEvent> processor){
+        return KeyOrderedExecutor.executeBatched(this.lanes, this.batchSize, this.batchMaxWait,
+            batch -> processor.processBatch(batch.stream().map(CustomRecord::message).toList())
+            .doOnComplete(() -> batch.forEach(cr -> cr.acknowledgement().acknowledge())));
     }
 
 
@@ -50,14 +116,18 @@ public class OrderEventProcessorConfig {
     // public Function<Flux<Message<OrderEvent.OrderCompleted>>, Flux<Message<ShippingEvent>>> orderCompletedProcessor(){
     //     return flux -> flux.map(MessageConverter::toRecord)
     //     .doOnNext(cr -> log.info("shipping scheduled: {}", cr.message()))
-    //     .concatMap(cr -> this.evtProcessor.process(cr.message())
+    //     .concatMap(cr -> processor.process(cr.message())
     //     .doOnSuccess(evt -> cr.acknowledgement().acknowledge())
     //     ).map(this::toMessage);
     // }
 
-    private Message<ShippingEvent> toMessage(ShippingEvent evt){
-        return MessageBuilder.withPayload(evt)
-        .setHeader(KafkaHeaders.KEY, evt.orderId().toString())
-        .build();
+    //trace: hop span of the input record, null when the saga is not sampled
+    private Message<ShippingEvent> toMessage(ShippingEvent evt, TraceContext trace){
+        var builder = MessageBuilder.withPayload(evt)
+        .setHeader(KafkaHeaders.KEY, evt.orderId().toString());
+        if (trace != null){
+            builder.setHeader(TraceContext.HEADER, trace.toTraceparent());
+        }
+        return builder.build();
     }
 }
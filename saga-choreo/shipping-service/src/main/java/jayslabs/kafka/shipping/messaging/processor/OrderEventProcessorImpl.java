@@ -1,9 +1,11 @@
 package jayslabs.kafka.shipping.messaging.processor;
 
+import java.util.List;
 import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jayslabs.kafka.common.events.order.OrderEvent;
@@ -13,6 +15,7 @@ import jayslabs.kafka.common.processor.OrderEventProcessor;
 import jayslabs.kafka.shipping.common.service.ShippingService;
 import jayslabs.kafka.shipping.messaging.mapper.EventDTOMapper;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 
@@ -25,6 +28,10 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<ShippingEven
 
     private final ShippingService service;
 
+    //exactly-once mode: a redelivered OrderCompleted whose schedule already committed replays ShippingScheduled
+    @Value("${saga.processing.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
     @Override
     public Mono<ShippingEvent> handle(OrderEvent.OrderCreated event) {
         return this.service.createShipmentRecord(EventDTOMapper.toCreateShippingRequest(event))
@@ -43,10 +50,23 @@ public class OrderEventProcessorImpl implements OrderEventProcessor<ShippingEven
     @Override
     public Mono<ShippingEvent> handle(OrderEvent.OrderCompleted event) {
         return this.service.scheduleShipment(event.orderId())
+        .switchIfEmpty(Mono.defer(() -> this.exactlyOnce ? this.service.getScheduledShipment(event.orderId()) : Mono.empty()))
         .map(EventDTOMapper::toShippingScheduledEvent)
         .doOnNext(evt -> log.info("Shipment scheduled: {}", evt));
     }
 
+    //micro-batch: consecutive OrderCreated events become one createShipmentRecords() call (no events emitted)
+    @Override
+    public Flux<ShippingEvent> processBatch(List<OrderEvent> events) {
+        return Flux.fromIterable(events)
+        .bufferUntilChanged(OrderEvent.OrderCreated.class::isInstance)
+        .concatMap(run -> run.getFirst() instanceof OrderEvent.OrderCreated
+            ? this.service.createShipmentRecords(run.stream().map(OrderEvent.OrderCreated.class::cast).map(EventDTOMapper::toCreateShippingRequest).toList())
+                .transform(exceptionHandler())
+                .thenMany(Flux.<ShippingEvent>empty())
+            : Flux.fromIterable(run).concatMap(this::process));
+    }
+
     private <T> UnaryOperator<Mono<T>> exceptionHandler(){
         return mono -> mono.onErrorResume(EventAlreadyProcessedException.class, e-> Mono.empty())
         .doOnError(ex -> log.error(ex.getMessage()));
@@ -1,11 +1,20 @@
+DROP TABLE IF EXISTS processed_event;
 DROP TABLE IF EXISTS shipment;
 
 CREATE TABLE shipment (
    id uuid default random_uuid() primary key,
-   order_id uuid,
+   order_id uuid unique,
    product_id int,
    customer_id int,
    quantity int,
    status VARCHAR(50),
    delivery_date TIMESTAMP DEFAULT NULL
-);
\ No newline at end of file
+);
+
+-- one row per consumed event (ProcessedEventTable): claimed in the transaction
+-- that processes it, the primary key decides between concurrent redeliveries
+CREATE TABLE processed_event (
+   order_id uuid,
+   event_type VARCHAR(50),
+   primary key (order_id, event_type)
+);